@@ -1,7 +1,7 @@
 <%@ page language="java" contentType="text/html; charset=ISO-8859-1"
 	pageEncoding="ISO-8859-1"%>
 <%@ page
-	import="com.shashi.service.impl.*, com.shashi.service.*,com.shashi.beans.*,java.util.*,javax.servlet.ServletOutputStream,java.io.*"%>
+	import="com.shashi.service.impl.*, com.shashi.service.*,com.shashi.beans.*,java.util.*,javax.servlet.ServletOutputStream,java.io.*,com.shashi.srv.ShowImage"%>
 <!DOCTYPE html>
 <html>
 <head>
@@ -62,14 +62,14 @@
 
 
 					<%
-					ProductServiceImpl productDao = new ProductServiceImpl();
-					List<ProductBean> products = new ArrayList<ProductBean>();
-					products = productDao.getAllProducts();
-					for (ProductBean product : products) {
+					ProductCatalog catalog = ProductCatalog.shared();
+					List<ProductSummary> products = new ArrayList<ProductSummary>();
+					products = catalog.getAllProducts();
+					for (ProductSummary product : products) {
 					%>
 
 					<tr>
-						<td><img src="./ShowImage?pid=<%=product.getProdId()%>"
+						<td><img src="<%=ShowImage.url(product, ImageVariants.Size.THUMB)%>"
 							style="width: 50px; height: 50px;"></td>
 						<td><a
 							href="./updateProduct.jsp?prodid=<%=product.getProdId()%>"><%=product.getProdId()%></a></td>
@@ -1,7 +1,7 @@
 <%@ page language="java" contentType="text/html; charset=ISO-8859-1"
 	pageEncoding="ISO-8859-1"%>
 <%@ page
-	import="com.shashi.service.impl.*, com.shashi.service.*,com.shashi.beans.*,java.util.*,javax.servlet.ServletOutputStream,java.io.*"%>
+	import="com.shashi.service.impl.*, com.shashi.service.*,com.shashi.beans.*,java.util.*,javax.servlet.ServletOutputStream,java.io.*,com.shashi.srv.ShowImage,com.shashi.utility.ListingUrl"%>
 <!DOCTYPE html>
 <html>
 <head>
@@ -35,25 +35,32 @@
 		response.sendRedirect("login.jsp?message=Session Expired, Login Again!!");
 
 	}
+	ProductCatalog catalog = ProductCatalog.shared();
 	ProductServiceImpl prodDao = new ProductServiceImpl();
-	List<ProductBean> products = new ArrayList<ProductBean>();
+	/* The listing is served by the catalog; the database is only paged while the catalog could not be loaded */
+	boolean fromCatalog = catalog.isLoaded();
 
 	String search = request.getParameter("search");
-	String type = request.getParameter("type");
+	String type = search != null ? null : request.getParameter("type");
+	String sort = request.getParameter("sort");
 	String message = "All Products";
 	if (search != null) {
-		products = prodDao.searchAllProducts(search);
 		message = "Showing Results for '" + search + "'";
 	} else if (type != null) {
-		products = prodDao.getAllProductsByType(type);
 		message = "Showing Results for '" + type + "'";
-	} else {
-		products = prodDao.getAllProducts();
 	}
-	if (products.isEmpty()) {
+	/* One page at a time; the page parameter is the next page token of the previous page */
+	ProductPage productPage = fromCatalog
+			? catalog.getProductPage(type, search, sort, request.getParameter("page"), ProductPage.DEFAULT_PAGE_SIZE)
+			: prodDao.getProductPage(type, search, sort, request.getParameter("page"), ProductPage.DEFAULT_PAGE_SIZE);
+	if (productPage.getProducts().isEmpty() && (search != null || type != null)) {
 		message = "No items found for the search '" + (search != null ? search : type) + "'";
-		products = prodDao.getAllProducts();
+		search = null;
+		type = null;
+		productPage = fromCatalog ? catalog.getProductPage(null, null, sort, null, ProductPage.DEFAULT_PAGE_SIZE)
+				: prodDao.getProductPage(null, null, sort, null, ProductPage.DEFAULT_PAGE_SIZE);
 	}
+	List<ProductSummary> products = productPage.getProducts();
 	%>
 
 
@@ -62,16 +69,21 @@
 
 	<div class="text-center"
 		style="color: black; font-size: 14px; font-weight: bold;"><%=message%></div>
+	<div class="text-center" style="color: black; font-size: 13px;">
+		Sort by: <a href="<%=ListingUrl.build("adminViewProduct.jsp", search, type, null, null)%>">Default</a> |
+		<a href="<%=ListingUrl.build("adminViewProduct.jsp", search, type, "name", null)%>">Name</a> |
+		<a href="<%=ListingUrl.build("adminViewProduct.jsp", search, type, "price", null)%>">Price</a>
+	</div>
 	<!-- Start of Product Items List -->
 	<div class="container" style="background-color: #E6F9E6;">
 		<div class="row text-center">
 
 			<%
-			for (ProductBean product : products) {
+			for (ProductSummary product : products) {
 			%>
 			<div class="col-sm-4" style='height: 350px;'>
 				<div class="thumbnail">
-					<img src="./ShowImage?pid=<%=product.getProdId()%>" alt="Product"
+					<img src="<%=ShowImage.url(product, ImageVariants.Size.CARD)%>" alt="Product"
 						style="height: 150px; max-width: 180px;">
 					<p class="productname"><%=product.getProdName()%>
 						(
@@ -102,6 +114,17 @@
 		</div>
 	</div>
 	<!-- ENd of Product Items List -->
+	<%
+	if (productPage.hasNextPage()) {
+	%>
+	<div class="text-center" style="margin-bottom: 20px;">
+		<a class="btn btn-default"
+			href="<%=ListingUrl.build("adminViewProduct.jsp", search, type, productPage.getSortBy(), productPage.getNextPageToken())%>">Next
+			Page</a>
+	</div>
+	<%
+	}
+	%>
 
 	<%@ include file="footer.html"%>
 
@@ -1,7 +1,7 @@
 <%@ page language="java" contentType="text/html; charset=ISO-8859-1"
 	pageEncoding="ISO-8859-1"%>
 <%@ page
-	import="com.shashi.service.impl.*, com.shashi.service.*,com.shashi.beans.*,java.util.*,javax.servlet.ServletOutputStream,java.io.*"%>
+	import="com.shashi.service.impl.*, com.shashi.service.*,com.shashi.beans.*,java.util.*,javax.servlet.ServletOutputStream,java.io.*,com.shashi.srv.ShowImage"%>
 <!DOCTYPE html>
 <html>
 <head>
@@ -107,7 +107,7 @@
 				%>
 
 				<tr>
-					<td><img src="./ShowImage?pid=<%=product.getProdId()%>"
+					<td><img src="<%=ShowImage.url(product, ImageVariants.Size.THUMB)%>"
 						style="width: 50px; height: 50px;"></td>
 					<td><%=product.getProdName()%></td>
 					<td><%=product.getProdPrice()%></td>
@@ -27,7 +27,9 @@
 		<form class="form-inline" action="index.jsp" method="get">
 			<div class="input-group">
 				<input type="text" class="form-control" size="50" name="search"
-					placeholder="Search Items" required>
+					placeholder="Search Items" list="searchSuggestions"
+					autocomplete="off" id="searchBox" required>
+				<datalist id="searchSuggestions"></datalist>
 				<div class="input-group-btn">
 					<input type="submit" class="btn btn-danger" value="Search" />
 				</div>
@@ -38,6 +40,24 @@
 			id="message"></p>
 	</div>
 	<!-- Company Header Ending -->
+	<script>
+		/* Suggestions for the search box, asked for once the typing pauses */
+		$(function() {
+			var timer;
+			$('#searchBox').on('input', function() {
+				var query = $(this).val();
+				clearTimeout(timer);
+				timer = setTimeout(function() {
+					$.getJSON('./SearchSuggest', { q : query }, function(suggestions) {
+						var list = $('#searchSuggestions').empty();
+						$.each(suggestions, function(i, suggestion) {
+							list.append($('<option>').attr('value', suggestion));
+						});
+					});
+				}, 150);
+			});
+		});
+	</script>
 
 	<%
 	/* Checking the user credentials */
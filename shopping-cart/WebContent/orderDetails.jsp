@@ -1,7 +1,7 @@
 <%@ page language="java" contentType="text/html; charset=ISO-8859-1"
 	pageEncoding="ISO-8859-1"%>
 <%@ page
-	import="com.shashi.service.impl.*, com.shashi.service.*,com.shashi.beans.*,java.util.*,javax.servlet.ServletOutputStream,java.io.*"%>
+	import="com.shashi.service.impl.*, com.shashi.service.*,com.shashi.beans.*,java.util.*,javax.servlet.ServletOutputStream,java.io.*,com.shashi.srv.ShowImage"%>
 <!DOCTYPE html>
 <html>
 <head>
@@ -65,7 +65,7 @@
 					%>
 
 					<tr>
-						<td><img src="./ShowImage?pid=<%=order.getProductId()%>"
+						<td><img src="<%=ShowImage.url(order.getProductId(), ImageVariants.Size.THUMB)%>"
 							style="width: 50px; height: 50px;"></td>
 						<td><%=order.getProdName()%></td>
 						<td><%=order.getOrderId()%></td>
@@ -1,7 +1,7 @@
 <%@ page language="java" contentType="text/html; charset=ISO-8859-1"
 	pageEncoding="ISO-8859-1"%>
 <%@ page
-	import="com.shashi.service.impl.*, com.shashi.service.*,com.shashi.beans.*,java.util.*,javax.servlet.ServletOutputStream,java.io.*"%>
+	import="com.shashi.service.impl.*, com.shashi.service.*,com.shashi.beans.*,java.util.*,javax.servlet.ServletOutputStream,java.io.*,com.shashi.srv.ShowImage"%>
 <!DOCTYPE html>
 <html>
 <head>
@@ -49,7 +49,7 @@
 				style="border: 2px solid black; border-radius: 10px; background-color: #FFE5CC; padding: 10px;">
 				<div style="font-weight: bold;" class="text-center">
 					<div class="form-group">
-						<img src="./ShowImage?pid=<%=product.getProdId()%>"
+						<img src="<%=ShowImage.url(product, ImageVariants.Size.THUMB)%>"
 							alt="Product Image" height="100px" />
 						<h2 style="color: green;">Product Update Form</h2>
 					</div>
@@ -1,7 +1,7 @@
 <%@ page language="java" contentType="text/html; charset=ISO-8859-1"
 	pageEncoding="ISO-8859-1"%>
 <%@ page
-	import="com.shashi.service.impl.*, com.shashi.service.*,com.shashi.beans.*,java.util.*,javax.servlet.ServletOutputStream,java.io.*"%>
+	import="com.shashi.service.impl.*, com.shashi.service.*,com.shashi.beans.*,java.util.*,javax.servlet.ServletOutputStream,java.io.*,com.shashi.srv.ShowImage,com.shashi.utility.ListingUrl"%>
 <!DOCTYPE html>
 <html>
 <head>
@@ -28,25 +28,27 @@
 		response.sendRedirect("login.jsp?message=Session Expired, Login Again!!");
 	}
 
-	ProductServiceImpl prodDao = new ProductServiceImpl();
-	List<ProductBean> products = new ArrayList<ProductBean>();
+	ProductCatalog catalog = ProductCatalog.shared();
 
 	String search = request.getParameter("search");
-	String type = request.getParameter("type");
+	String type = search != null ? null : request.getParameter("type");
+	String sort = request.getParameter("sort");
 	String message = "All Products";
 	if (search != null) {
-		products = prodDao.searchAllProducts(search);
 		message = "Showing Results for '" + search + "'";
 	} else if (type != null) {
-		products = prodDao.getAllProductsByType(type);
 		message = "Showing Results for '" + type + "'";
-	} else {
-		products = prodDao.getAllProducts();
 	}
-	if (products.isEmpty()) {
+	/* One page at a time; the page parameter is the next page token of the previous page */
+	ProductPage productPage = catalog.getProductPage(type, search, sort, request.getParameter("page"),
+			ProductPage.DEFAULT_PAGE_SIZE);
+	if (productPage.getProducts().isEmpty() && (search != null || type != null)) {
 		message = "No items found for the search '" + (search != null ? search : type) + "'";
-		products = prodDao.getAllProducts();
+		search = null;
+		type = null;
+		productPage = catalog.getProductPage(null, null, sort, null, ProductPage.DEFAULT_PAGE_SIZE);
 	}
+	List<ProductSummary> products = productPage.getProducts();
 	%>
 
 
@@ -55,6 +57,11 @@
 
 	<div class="text-center"
 		style="color: black; font-size: 14px; font-weight: bold;"><%=message%></div>
+	<div class="text-center" style="color: black; font-size: 13px;">
+		Sort by: <a href="<%=ListingUrl.build("userHome.jsp", search, type, null, null)%>">Default</a> |
+		<a href="<%=ListingUrl.build("userHome.jsp", search, type, "name", null)%>">Name</a> |
+		<a href="<%=ListingUrl.build("userHome.jsp", search, type, "price", null)%>">Price</a>
+	</div>
 	<!-- <script>document.getElementById('mycart').innerHTML='<i data-count="20" class="fa fa-shopping-cart fa-3x icon-white badge" style="background-color:#333;margin:0px;padding:0px; margin-top:5px;"></i>'</script>
  -->
 	<!-- Start of Product Items List -->
@@ -62,12 +69,14 @@
 		<div class="row text-center">
 
 			<%
-			for (ProductBean product : products) {
-				int cartQty = new CartServiceImpl().getCartItemCount(userName, product.getProdId());
+			/* The quantities of the whole cart in one query, instead of one query per product */
+			Map<String, Integer> cartQuantities = new CartServiceImpl().getCartQuantities(userName);
+			for (ProductSummary product : products) {
+				int cartQty = cartQuantities.getOrDefault(product.getProdId(), 0);
 			%>
 			<div class="col-sm-4" style='height: 350px;'>
 				<div class="thumbnail">
-					<img src="./ShowImage?pid=<%=product.getProdId()%>" alt="Product"
+					<img src="<%=ShowImage.url(product, ImageVariants.Size.CARD)%>" alt="Product"
 						style="height: 150px; max-width: 180px">
 					<p class="productname"><%=product.getProdName()%>
 					</p>
@@ -116,6 +125,17 @@
 		</div>
 	</div>
 	<!-- ENd of Product Items List -->
+	<%
+	if (productPage.hasNextPage()) {
+	%>
+	<div class="text-center" style="margin-bottom: 20px;">
+		<a class="btn btn-default"
+			href="<%=ListingUrl.build("userHome.jsp", search, type, productPage.getSortBy(), productPage.getNextPageToken())%>">Next
+			Page</a>
+	</div>
+	<%
+	}
+	%>
 
 
 	<%@ include file="footer.html"%>
@@ -27,7 +27,10 @@ CREATE TABLE IF NOT EXISTS `shopping-cart`.`product` (
   `pprice` DECIMAL(12,2) NULL DEFAULT NULL,
   `pquantity` INT NULL DEFAULT NULL,
   `image` LONGBLOB NULL DEFAULT NULL,
-  PRIMARY KEY (`pid`))
+  `image_key` CHAR(64) NULL DEFAULT NULL,
+  PRIMARY KEY (`pid`),
+  INDEX `product_price_idx` (`pprice` ASC, `pid` ASC) VISIBLE,
+  INDEX `product_name_idx` (`pname` ASC, `pid` ASC) VISIBLE)
 ENGINE = InnoDB
 DEFAULT CHARACTER SET = utf8mb4
 COLLATE = utf8mb4_0900_ai_ci;
@@ -110,8 +113,10 @@ CREATE TABLE IF NOT EXISTS `shopping-cart`.`user_demand` (
   `username` VARCHAR(60) NOT NULL,
   `prodid` VARCHAR(45) NOT NULL,
   `quantity` INT NULL DEFAULT NULL,
+  `demanded_at` TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
   PRIMARY KEY (`username`, `prodid`),
   INDEX `prodid_idx` (`prodid` ASC) VISIBLE,
+  INDEX `user_demand_queue_idx` (`prodid` ASC, `demanded_at` ASC) VISIBLE,
   CONSTRAINT `userdemailemail`
     FOREIGN KEY (`username`)
     REFERENCES `shopping-cart`.`user` (`email`)
@@ -136,7 +141,7 @@ CREATE TABLE IF NOT EXISTS `shopping-cart`.`usercart` (
   `username` VARCHAR(60) NULL DEFAULT NULL,
   `prodid` VARCHAR(45) NULL DEFAULT NULL,
   `quantity` INT NULL DEFAULT NULL,
-  INDEX `useremail_idx` (`username` ASC) VISIBLE,
+  UNIQUE INDEX `usercart_item_uq` (`username` ASC, `prodid` ASC) VISIBLE,
   INDEX `prodidcart_idx` (`prodid` ASC) VISIBLE,
   CONSTRAINT `useremail`
     FOREIGN KEY (`username`)
@@ -153,6 +158,27 @@ DEFAULT CHARACTER SET = utf8mb4
 COLLATE = utf8mb4_0900_ai_ci;
 
 
+-- -----------------------------------------------------
+-- Table `shopping-cart`.`mail_outbox`
+-- -----------------------------------------------------
+DROP TABLE IF EXISTS `shopping-cart`.`mail_outbox` ;
+
+CREATE TABLE IF NOT EXISTS `shopping-cart`.`mail_outbox` (
+  `id` BIGINT NOT NULL AUTO_INCREMENT,
+  `recipient` VARCHAR(60) NOT NULL,
+  `subject` VARCHAR(200) NOT NULL,
+  `body` MEDIUMTEXT NOT NULL,
+  `attempts` INT NOT NULL DEFAULT 0,
+  `next_attempt` BIGINT NOT NULL,
+  `last_error` VARCHAR(255) NULL DEFAULT NULL,
+  `created` TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`id`),
+  INDEX `mail_outbox_due_idx` (`next_attempt` ASC) VISIBLE)
+ENGINE = InnoDB
+DEFAULT CHARACTER SET = utf8mb4
+COLLATE = utf8mb4_0900_ai_ci;
+
+
 SET SQL_MODE=@OLD_SQL_MODE;
 SET FOREIGN_KEY_CHECKS=@OLD_FOREIGN_KEY_CHECKS;
 SET UNIQUE_CHECKS=@OLD_UNIQUE_CHECKS;
@@ -1,20 +1,13 @@
 package com.shashi.beans;
 
 import java.io.InputStream;
-import java.io.Serializable;
 
 /**
- * A JavaBean representing a product in the shopping system.
+ * A JavaBean representing a product in the shopping system, including its image.
  */
 @SuppressWarnings("serial")
-public class ProductBean implements Serializable {
+public class ProductBean extends ProductSummary {
 
-	private String prodId;
-	private String prodName;
-	private String prodType;
-	private String prodInfo;
-	private double prodPrice;
-	private int prodQuantity;
 	private InputStream prodImage;
 
 	public ProductBean() {
@@ -22,64 +15,10 @@ public class ProductBean implements Serializable {
 
 	public ProductBean(String prodId, String prodName, String prodType, String prodInfo, double prodPrice,
 			int prodQuantity, InputStream prodImage) {
-		super();
-		this.prodId = prodId;
-		this.prodName = prodName;
-		this.prodType = prodType;
-		this.prodInfo = prodInfo;
-		this.prodPrice = prodPrice;
-		this.prodQuantity = prodQuantity;
+		super(prodId, prodName, prodType, prodInfo, prodPrice, prodQuantity);
 		this.prodImage = prodImage;
 	}
 
-	public String getProdId() {
-		return prodId;
-	}
-
-	public void setProdId(String prodId) {
-		this.prodId = prodId;
-	}
-
-	public String getProdName() {
-		return prodName;
-	}
-
-	public void setProdName(String prodName) {
-		this.prodName = prodName;
-	}
-
-	public String getProdType() {
-		return prodType;
-	}
-
-	public void setProdType(String prodType) {
-		this.prodType = prodType;
-	}
-
-	public String getProdInfo() {
-		return prodInfo;
-	}
-
-	public void setProdInfo(String prodInfo) {
-		this.prodInfo = prodInfo;
-	}
-
-	public double getProdPrice() {
-		return prodPrice;
-	}
-
-	public void setProdPrice(double prodPrice) {
-		this.prodPrice = prodPrice;
-	}
-
-	public int getProdQuantity() {
-		return prodQuantity;
-	}
-
-	public void setProdQuantity(int prodQuantity) {
-		this.prodQuantity = prodQuantity;
-	}
-
 	public InputStream getProdImage() {
 		return prodImage;
 	}
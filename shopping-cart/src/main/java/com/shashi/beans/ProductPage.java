@@ -0,0 +1,72 @@
+package com.shashi.beans;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A JavaBean holding one page of a product listing and the token to fetch the next page.
+ */
+@SuppressWarnings("serial")
+public class ProductPage implements Serializable {
+
+	/** The page size used when none (or an invalid one) is requested. */
+	public static final int DEFAULT_PAGE_SIZE = 24;
+
+	/** The largest page size that can be requested. */
+	public static final int MAX_PAGE_SIZE = 96;
+
+	private List<ProductSummary> products = new ArrayList<ProductSummary>();
+
+	private String sortBy;
+
+	private String nextPageToken;
+
+	public ProductPage() {
+	}
+
+	public ProductPage(List<ProductSummary> products, String sortBy, String nextPageToken) {
+		super();
+		this.products = products;
+		this.sortBy = sortBy;
+		this.nextPageToken = nextPageToken;
+	}
+
+	public List<ProductSummary> getProducts() {
+		return products;
+	}
+
+	public void setProducts(List<ProductSummary> products) {
+		this.products = products;
+	}
+
+	public String getSortBy() {
+		return sortBy;
+	}
+
+	public void setSortBy(String sortBy) {
+		this.sortBy = sortBy;
+	}
+
+	public String getNextPageToken() {
+		return nextPageToken;
+	}
+
+	public void setNextPageToken(String nextPageToken) {
+		this.nextPageToken = nextPageToken;
+	}
+
+	public boolean hasNextPage() {
+		return nextPageToken != null;
+	}
+
+	/**
+	 * Clamps a requested page size to the allowed range.
+	 *
+	 * @param pageSize The requested page size.
+	 * @return A page size between 1 and {@link #MAX_PAGE_SIZE}, or {@link #DEFAULT_PAGE_SIZE} if pageSize is not positive.
+	 */
+	public static int normalizePageSize(int pageSize) {
+		return pageSize <= 0 ? DEFAULT_PAGE_SIZE : Math.min(pageSize, MAX_PAGE_SIZE);
+	}
+}
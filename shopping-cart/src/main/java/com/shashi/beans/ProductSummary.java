@@ -0,0 +1,94 @@
+package com.shashi.beans;
+
+import java.io.Serializable;
+
+/**
+ * A JavaBean holding the listing details of a product, without its image.
+ * Product images are served separately by the ShowImage servlet, so the listing queries never read them.
+ */
+@SuppressWarnings("serial")
+public class ProductSummary implements Serializable {
+
+	private String prodId;
+	private String prodName;
+	private String prodType;
+	private String prodInfo;
+	private double prodPrice;
+	private int prodQuantity;
+	private String prodImageKey;
+
+	public ProductSummary() {
+	}
+
+	public ProductSummary(String prodId, String prodName, String prodType, String prodInfo, double prodPrice,
+			int prodQuantity) {
+		super();
+		this.prodId = prodId;
+		this.prodName = prodName;
+		this.prodType = prodType;
+		this.prodInfo = prodInfo;
+		this.prodPrice = prodPrice;
+		this.prodQuantity = prodQuantity;
+	}
+
+	public String getProdId() {
+		return prodId;
+	}
+
+	public void setProdId(String prodId) {
+		this.prodId = prodId;
+	}
+
+	public String getProdName() {
+		return prodName;
+	}
+
+	public void setProdName(String prodName) {
+		this.prodName = prodName;
+	}
+
+	public String getProdType() {
+		return prodType;
+	}
+
+	public void setProdType(String prodType) {
+		this.prodType = prodType;
+	}
+
+	public String getProdInfo() {
+		return prodInfo;
+	}
+
+	public void setProdInfo(String prodInfo) {
+		this.prodInfo = prodInfo;
+	}
+
+	public double getProdPrice() {
+		return prodPrice;
+	}
+
+	public void setProdPrice(double prodPrice) {
+		this.prodPrice = prodPrice;
+	}
+
+	public int getProdQuantity() {
+		return prodQuantity;
+	}
+
+	public void setProdQuantity(int prodQuantity) {
+		this.prodQuantity = prodQuantity;
+	}
+
+	/**
+	 * @return The key of the product image in the image store, which changes whenever the image changes, or null if
+	 *         the product has no image there.
+	 */
+	public String getProdImageKey() {
+		return prodImageKey;
+	}
+
+	public void setProdImageKey(String prodImageKey) {
+		this.prodImageKey = prodImageKey;
+	}
+
+}
@@ -1,6 +1,7 @@
 package com.shashi.service;
 
 import java.util.List;
+import java.util.Map;
 
 import com.shashi.beans.CartBean;
 
@@ -35,7 +36,8 @@ public interface CartService {
 	public List<CartBean> getAllCartItems(String userId);
 
 	/**
-	 * Gets the total count of items (sum of quantities) in a user's cart.
+	 * Gets the total count of items (sum of quantities) in a user's cart. Called on every page for the badge of
+	 * the header, so implementations keep the count at hand rather than compute it.
 	 * @param userId The ID of the user.
 	 * @return The total count of items in the cart.
 	 */
@@ -49,6 +51,13 @@ public interface CartService {
 	 */
 	public int getCartItemCount(String userId, String itemId);
 
+	/**
+	 * Gets the quantity of every product in a user's cart at once, for pages showing many products.
+	 * @param userId The ID of the user.
+	 * @return The quantities by product ID; products not in the cart are absent.
+	 */
+	public Map<String, Integer> getCartQuantities(String userId);
+
 	/**
 	 * Removes one unit of a product from the user's cart. If quantity becomes zero, the product is removed.
 	 * @param userId The ID of the user.
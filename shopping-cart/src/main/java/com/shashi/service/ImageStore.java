@@ -0,0 +1,73 @@
+package com.shashi.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Storage for the product images, outside of the product table.
+ * Images are addressed by a key derived from their content, so saving the same image twice stores it once.
+ * Variants of an image (such as its thumbnail) are stored under the key of the image followed by the name of the
+ * variant (see {@link #variantKey(String, String)}), and read like any other image.
+ */
+public interface ImageStore {
+
+	/**
+	 * Saves an image.
+	 * @param image The image content; the stream is read to the end but not closed.
+	 * @return The key of the image, or null if the stream was empty.
+	 * @throws IOException if the image could not be written.
+	 */
+	public String save(InputStream image) throws IOException;
+
+	/**
+	 * Saves a variant of a stored image, replacing the previous one.
+	 * @param key The key of the original image.
+	 * @param variant The name of the variant, in lower-case letters.
+	 * @param image The content of the variant; the stream is read to the end but not closed.
+	 * @throws IOException if the variant could not be written.
+	 */
+	public void saveVariant(String key, String variant, InputStream image) throws IOException;
+
+	/**
+	 * Gives the size of a stored image.
+	 * @param key The key returned by {@link #save(InputStream)}.
+	 * @return The size in bytes, or -1 if there is no image for this key.
+	 */
+	public long size(String key);
+
+	/**
+	 * Gives the time a stored image was saved.
+	 * @param key The key returned by {@link #save(InputStream)}.
+	 * @return The time in milliseconds since the epoch, or -1 if there is no image for this key.
+	 */
+	public long lastModified(String key);
+
+	/**
+	 * Opens a stored image for reading.
+	 * @param key The key returned by {@link #save(InputStream)}.
+	 * @return A stream of the image, to be closed by the caller, or null if there is no image for this key.
+	 * @throws IOException if the image could not be opened.
+	 */
+	public InputStream open(String key) throws IOException;
+
+	/**
+	 * Writes a stored image to a channel, such as the output stream of a response.
+	 * @param key The key returned by {@link #save(InputStream)}.
+	 * @param target Where to write the image.
+	 * @return The number of bytes written, or -1 if there is no image for this key.
+	 * @throws IOException if the image could not be read or written.
+	 */
+	public long transferTo(String key, WritableByteChannel target) throws IOException;
+
+	/**
+	 * Builds the key under which a variant of an image is stored.
+	 * @param key The key of the original image.
+	 * @param variant The name of the variant.
+	 * @return The key of the variant.
+	 */
+	public static String variantKey(String key, String variant) {
+		return key + "-" + variant;
+	}
+
+}
@@ -2,8 +2,11 @@ package com.shashi.service;
 
 import java.io.InputStream;
 import java.util.List;
+import java.util.Map;
 
 import com.shashi.beans.ProductBean;
+import com.shashi.beans.ProductPage;
+import com.shashi.beans.ProductSummary;
 
 /**
  * Service interface for managing product-related operations.
@@ -54,24 +57,37 @@ public interface ProductService {
 	public String updateProductPrice(String prodId, double updatedPrice);
 
 	/**
-	 * Retrieves a list of all products in the system.
-	 * @return A list of ProductBean objects.
+	 * Retrieves a list of all products in the system, without their images.
+	 * @return A list of ProductSummary objects.
 	 */
-	public List<ProductBean> getAllProducts();
+	public List<ProductSummary> getAllProducts();
+
+	/**
+	 * Retrieves one page of the product listing, using keyset pagination: the page starts right after the
+	 * product named by the page token, so every page costs the same however deep into the listing it is.
+	 * @param type Only list products whose type contains this text, or null for all types.
+	 * @param search Only list products whose type, name or info matches this search, or null.
+	 * @param sortBy "id", "price", "name" or "relevance"; a search without an order is sorted by relevance,
+	 *            anything else by id.
+	 * @param pageToken The next page token of the previous page, or null for the first page.
+	 * @param pageSize The number of products per page, capped at ProductPage.MAX_PAGE_SIZE.
+	 * @return The page, with a next page token if more products follow.
+	 */
+	public ProductPage getProductPage(String type, String search, String sortBy, String pageToken, int pageSize);
 
 	/**
 	 * Retrieves a list of products filtered by their type.
 	 * @param type The type or category of products to retrieve.
-	 * @return A list of ProductBean objects matching the specified type.
+	 * @return A list of ProductSummary objects (without images) matching the specified type.
 	 */
-	public List<ProductBean> getAllProductsByType(String type);
+	public List<ProductSummary> getAllProductsByType(String type);
 
 	/**
 	 * Searches for products based on a search term across product type, name, or info.
 	 * @param search The search term.
-	 * @return A list of ProductBean objects matching the search criteria.
+	 * @return A list of ProductSummary objects (without images) matching the search criteria.
 	 */
-	public List<ProductBean> searchAllProducts(String search);
+	public List<ProductSummary> searchAllProducts(String search);
 
 	/**
 	 * Retrieves the image data for a specific product.
@@ -80,10 +96,17 @@ public interface ProductService {
 	 */
 	public byte[] getImage(String prodId);
 
+	/**
+	 * Retrieves the key of a product image in the image store.
+	 * @param prodId The ID of the product.
+	 * @return The key of the image, or null if the product has no image in the store.
+	 */
+	public String getImageKey(String prodId);
+
 	/**
 	 * Retrieves all details for a specific product.
 	 * @param prodId The ID of the product.
-	 * @return A ProductBean object containing all details of the specified product.
+	 * @return A ProductBean object containing all details of the specified product except its image (see getImage).
 	 */
 	public ProductBean getProductDetails(String prodId);
 
@@ -104,12 +127,20 @@ public interface ProductService {
 
 	/**
 	 * Decrements the quantity of a product by a specified number (e.g., after a sale).
+	 * The quantity is only decremented if at least n units are in stock.
 	 * @param prodId The ID of the product.
 	 * @param n The number of units to sell.
-	 * @return true if the operation was successful, false otherwise.
+	 * @return true if the operation was successful, false otherwise (including when the stock is too low).
 	 */
 	public boolean sellNProduct(String prodId, int n);
 
+	/**
+	 * Decrements the quantity of several products at once, each only if enough units are in stock.
+	 * @param quantities The number of units to sell, by product ID.
+	 * @return For every product, true if its quantity was decremented.
+	 */
+	public Map<String, Boolean> sellProducts(Map<String, Integer> quantities);
+
 	/**
 	 * Retrieves the current quantity of a specific product in stock.
 	 * @param prodId The ID of the product.
@@ -50,6 +50,15 @@ public interface UserService {
 	 */
 	public UserBean getUserDetails(String emailId, String password);
 
+	/**
+	 * Validates user credentials and retrieves the user's details in one step.
+	 * @param emailId The user's email ID.
+	 * @param password The user's password.
+	 * @param clientAddress The address the user logs in from, which failed logins are counted against.
+	 * @return A UserBean object containing user details, or null if the credentials are incorrect.
+	 */
+	public UserBean authenticate(String emailId, String password, String clientAddress);
+
 	/**
 	 * Retrieves the first name of a user based on their email ID.
 	 * @param emailId The user's email ID.
@@ -1,24 +1,40 @@
 package com.shashi.service.impl;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import com.shashi.beans.CartBean;
 import com.shashi.beans.DemandBean;
 import com.shashi.beans.ProductBean;
 import com.shashi.service.CartService;
-import com.shashi.utility.DBUtil;
 
 /**
  * Implementation of the CartService interface.
  * This class handles all business logic related to the user's shopping cart.
+ * The carts are read and changed in memory through the {@link CartStore}, which writes the changes to the
+ * usercart table in the background.
  */
 public class CartServiceImpl implements CartService {
 
+	private final CartStore carts;
+
+	/**
+	 * Creates a service working on the carts of the application.
+	 */
+	public CartServiceImpl() {
+		this(CartStore.shared());
+	}
+
+	/**
+	 * Creates a service working on the given carts.
+	 *
+	 * @param carts The carts.
+	 */
+	public CartServiceImpl(CartStore carts) {
+		this.carts = carts;
+	}
+
 	/**
 	 * Adds a product to the user's cart. This method contains complex logic for handling stock and demand.
 	 * NOTE: This method is currently untestable due to its tight coupling with other service implementations.
@@ -32,69 +48,44 @@ public class CartServiceImpl implements CartService {
 	public String addProductToCart(String userId, String prodId, int prodQty) {
 		String status = "Failed to Add into Cart";
 
-		Connection con = DBUtil.provideConnection();
-
-		PreparedStatement ps = null;
-		PreparedStatement ps2 = null;
-		ResultSet rs = null;
-
-		try {
-
-			// Check if the product is already in the user's cart
-			ps = con.prepareStatement("select * from usercart where username=? and prodid=?");
+		// Check if the product is already in the user's cart
+		int cartQuantity = carts.getQuantity(userId, prodId);
 
-			ps.setString(1, userId);
-			ps.setString(2, prodId);
+		if (cartQuantity > 0) {
 
-			rs = ps.executeQuery();
+			// This method creates new service instances, making it untestable without refactoring.
+			ProductBean product = new ProductServiceImpl().getProductDetails(prodId);
 
-			if (rs.next()) {
+			int availableQty = product.getProdQuantity();
 
-				int cartQuantity = rs.getInt("quantity");
+			prodQty += cartQuantity;
 
-				// This method creates new service instances, making it untestable without refactoring.
-				ProductBean product = new ProductServiceImpl().getProductDetails(prodId);
+			// If the desired quantity is more than what is available in stock
+			if (availableQty < prodQty) {
 
-				int availableQty = product.getProdQuantity();
+				status = updateProductToCart(userId, prodId, availableQty);
 
-				prodQty += cartQuantity;
-				
-				// If the desired quantity is more than what is available in stock
-				if (availableQty < prodQty) {
+				status = "Only " + availableQty + " no of " + product.getProdName()
+						+ " are available in the shop! So we are adding only " + availableQty
+						+ " no of that item into Your Cart" + "";
 
-					status = updateProductToCart(userId, prodId, availableQty);
+				// Add the remaining quantity to the user's demand list
+				DemandBean demandBean = new DemandBean(userId, product.getProdId(), prodQty - availableQty);
 
-					status = "Only " + availableQty + " no of " + product.getProdName()
-							+ " are available in the shop! So we are adding only " + availableQty
-							+ " no of that item into Your Cart" + "";
+				DemandServiceImpl demand = new DemandServiceImpl();
 
-					// Add the remaining quantity to the user's demand list
-					DemandBean demandBean = new DemandBean(userId, product.getProdId(), prodQty - availableQty);
+				boolean flag = demand.addProduct(demandBean);
 
-					DemandServiceImpl demand = new DemandServiceImpl();
+				if (flag)
+					status += "<br/>Later, We Will Mail You when " + product.getProdName()
+							+ " will be available into the Store!";
 
-					boolean flag = demand.addProduct(demandBean);
-
-					if (flag)
-						status += "<br/>Later, We Will Mail You when " + product.getProdName()
-								+ " will be available into the Store!";
-
-				} else {
-					status = updateProductToCart(userId, prodId, prodQty);
+			} else {
+				status = updateProductToCart(userId, prodId, prodQty);
 
-				}
 			}
-
-		} catch (SQLException e) {
-			status = "Error: " + e.getMessage();
-			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
-		DBUtil.closeConnection(ps);
-		DBUtil.closeConnection(rs);
-		DBUtil.closeConnection(ps2);
-
 		return status;
 	}
 
@@ -108,39 +99,16 @@ public class CartServiceImpl implements CartService {
 	public List<CartBean> getAllCartItems(String userId) {
 		List<CartBean> items = new ArrayList<CartBean>();
 
-		Connection con = DBUtil.provideConnection();
-
-		PreparedStatement ps = null;
-		ResultSet rs = null;
-
-		try {
-
-			ps = con.prepareStatement("select * from usercart where username=?");
-
-			ps.setString(1, userId);
-
-			rs = ps.executeQuery();
-
-			while (rs.next()) {
-				CartBean cart = new CartBean();
-
-				cart.setUserId(rs.getString("username"));
-				cart.setProdId(rs.getString("prodid"));
-				cart.setQuantity(Integer.parseInt(rs.getString("quantity")));
+		for (Map.Entry<String, Integer> line : carts.getQuantities(userId).entrySet()) {
+			CartBean cart = new CartBean();
 
-				items.add(cart);
+			cart.setUserId(userId);
+			cart.setProdId(line.getKey());
+			cart.setQuantity(line.getValue());
 
-			}
-
-		} catch (SQLException e) {
-
-			e.printStackTrace();
+			items.add(cart);
 		}
 
-		DBUtil.closeConnection(con);
-		DBUtil.closeConnection(ps);
-		DBUtil.closeConnection(rs);
-
 		return items;
 	}
 
@@ -152,34 +120,7 @@ public class CartServiceImpl implements CartService {
 	 */
 	@Override
 	public int getCartCount(String userId) {
-		int count = 0;
-
-		Connection con = DBUtil.provideConnection();
-
-		PreparedStatement ps = null;
-
-		ResultSet rs = null;
-
-		try {
-			ps = con.prepareStatement("select sum(quantity) from usercart where username=?");
-
-			ps.setString(1, userId);
-
-			rs = ps.executeQuery();
-
-			if (rs.next() && !rs.wasNull())
-				count = rs.getInt(1);
-
-		} catch (SQLException e) {
-
-			e.printStackTrace();
-		}
-
-		DBUtil.closeConnection(con);
-		DBUtil.closeConnection(ps);
-		DBUtil.closeConnection(rs);
-
-		return count;
+		return carts.getCount(userId);
 	}
 
 	/**
@@ -191,74 +132,13 @@ public class CartServiceImpl implements CartService {
 	 */
 	@Override
 	public String removeProductFromCart(String userId, String prodId) {
-		String status = "Product Removal Failed";
-
-		Connection con = DBUtil.provideConnection();
-
-		PreparedStatement ps = null;
-		PreparedStatement ps2 = null;
-		ResultSet rs = null;
-
-		try {
-
-			ps = con.prepareStatement("select * from usercart where username=? and prodid=?");
-
-			ps.setString(1, userId);
-			ps.setString(2, prodId);
-
-			rs = ps.executeQuery();
-
-			if (rs.next()) {
-
-				int prodQuantity = rs.getInt("quantity");
+		if (carts.getQuantity(userId, prodId) <= 0)
+			return "Product Not Available in the cart!";
 
-				prodQuantity -= 1;
+		if (carts.addQuantity(userId, prodId, -1) < 0)
+			return "Product Removal Failed";
 
-				// If quantity is still greater than 0, update the row.
-				if (prodQuantity > 0) {
-					ps2 = con.prepareStatement("update usercart set quantity=? where username=? and prodid=?");
-
-					ps2.setInt(1, prodQuantity);
-
-					ps2.setString(2, userId);
-
-					ps2.setString(3, prodId);
-
-					int k = ps2.executeUpdate();
-
-					if (k > 0)
-						status = "Product Successfully removed from the Cart!";
-				} else if (prodQuantity <= 0) {
-					// If quantity is 0 or less, delete the row entirely.
-					ps2 = con.prepareStatement("delete from usercart where username=? and prodid=?");
-
-					ps2.setString(1, userId);
-
-					ps2.setString(2, prodId);
-
-					int k = ps2.executeUpdate();
-
-					if (k > 0)
-						status = "Product Successfully removed from the Cart!";
-				}
-
-			} else {
-
-				status = "Product Not Available in the cart!";
-
-			}
-
-		} catch (SQLException e) {
-			status = "Error: " + e.getMessage();
-			e.printStackTrace();
-		}
-
-		DBUtil.closeConnection(con);
-		DBUtil.closeConnection(ps);
-		DBUtil.closeConnection(rs);
-		DBUtil.closeConnection(ps2);
-
-		return status;
+		return "Product Successfully removed from the Cart!";
 	}
 
 	/**
@@ -270,34 +150,10 @@ public class CartServiceImpl implements CartService {
 	 */
 	@Override
 	public boolean removeAProduct(String userId, String prodId) {
-		boolean flag = false;
-
-		Connection con = DBUtil.provideConnection();
-
-		PreparedStatement ps = null;
-		ResultSet rs = null;
-
-		try {
-
-			ps = con.prepareStatement("delete from usercart where username=? and prodid=?");
-			ps.setString(1, userId);
-			ps.setString(2, prodId);
-
-			int k = ps.executeUpdate();
+		if (carts.getQuantity(userId, prodId) <= 0)
+			return false;
 
-			if (k > 0)
-				flag = true;
-
-		} catch (SQLException e) {
-			flag = false;
-			e.printStackTrace();
-		}
-
-		DBUtil.closeConnection(con);
-		DBUtil.closeConnection(ps);
-		DBUtil.closeConnection(rs);
-
-		return flag;
+		return carts.setQuantity(userId, prodId, 0) == 0;
 	}
 
 	/**
@@ -305,86 +161,18 @@ public class CartServiceImpl implements CartService {
 	 *
 	 * @param userId The user's ID.
 	 * @param prodId The product's ID.
-	 * @param prodQty The new quantity.
+	 * @param prodQty The new quantity; 0 removes the product from the cart.
 	 * @return A string indicating the status of the operation.
 	 */
 	@Override
 	public String updateProductToCart(String userId, String prodId, int prodQty) {
+		if (prodQty < 0 || carts.setQuantity(userId, prodId, prodQty) < 0)
+			return "Failed to Add into Cart";
 
-		String status = "Failed to Add into Cart";
-
-		Connection con = DBUtil.provideConnection();
-
-		PreparedStatement ps = null;
-		PreparedStatement ps2 = null;
-		ResultSet rs = null;
-
-		try {
-
-			// Check if the product is already in the cart
-			ps = con.prepareStatement("select * from usercart where username=? and prodid=?");
-
-			ps.setString(1, userId);
-			ps.setString(2, prodId);
-
-			rs = ps.executeQuery();
-
-			if (rs.next()) {
-				// If the product exists, update its quantity.
-				if (prodQty > 0) {
-					ps2 = con.prepareStatement("update usercart set quantity=? where username=? and prodid=?");
-
-					ps2.setInt(1, prodQty);
-
-					ps2.setString(2, userId);
-
-					ps2.setString(3, prodId);
-
-					int k = ps2.executeUpdate();
-
-					if (k > 0)
-						status = "Product Successfully Updated to Cart!";
-				} else if (prodQty == 0) {
-					// If the new quantity is 0, remove the product from the cart.
-					ps2 = con.prepareStatement("delete from usercart where username=? and prodid=?");
-
-					ps2.setString(1, userId);
-
-					ps2.setString(2, prodId);
-
-					int k = ps2.executeUpdate();
-
-					if (k > 0)
-						status = "Product Successfully Updated in Cart!";
-				}
-			} else {
-				// If the product does not exist in the cart, insert it.
-				ps2 = con.prepareStatement("insert into usercart values(?,?,?)");
-
-				ps2.setString(1, userId);
-
-				ps2.setString(2, prodId);
+		if (prodQty == 0)
+			return "Product Successfully Updated in Cart!";
 
-				ps2.setInt(3, prodQty);
-
-				int k = ps2.executeUpdate();
-
-				if (k > 0)
-					status = "Product Successfully Updated to Cart!";
-
-			}
-
-		} catch (SQLException e) {
-			status = "Error: " + e.getMessage();
-			e.printStackTrace();
-		}
-
-		DBUtil.closeConnection(con);
-		DBUtil.closeConnection(ps);
-		DBUtil.closeConnection(rs);
-		DBUtil.closeConnection(ps2);
-
-		return status;
+		return "Product Successfully Updated to Cart!";
 	}
 
 	/**
@@ -395,27 +183,7 @@ public class CartServiceImpl implements CartService {
 	 * @return The quantity of the product, or 0 if not found.
 	 */
 	public int getProductCount(String userId, String prodId) {
-		int count = 0;
-
-		Connection con = DBUtil.provideConnection();
-
-		PreparedStatement ps = null;
-		ResultSet rs = null;
-
-		try {
-			ps = con.prepareStatement("select sum(quantity) from usercart where username=? and prodid=?");
-			ps.setString(1, userId);
-			ps.setString(2, prodId);
-			rs = ps.executeQuery();
-
-			if (rs.next() && !rs.wasNull())
-				count = rs.getInt(1);
-
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-
-		return count;
+		return carts.getQuantity(userId, prodId);
 	}
 
 	/**
@@ -428,35 +196,20 @@ public class CartServiceImpl implements CartService {
 	 */
 	@Override
 	public int getCartItemCount(String userId, String itemId) {
-		int count = 0;
 		if (userId == null || itemId == null)
 			return 0;
-		Connection con = DBUtil.provideConnection();
-
-		PreparedStatement ps = null;
-
-		ResultSet rs = null;
-
-		try {
-			ps = con.prepareStatement("select quantity from usercart where username=? and prodid=?");
-
-			ps.setString(1, userId);
-			ps.setString(2, itemId);
-
-			rs = ps.executeQuery();
-
-			if (rs.next() && !rs.wasNull())
-				count = rs.getInt(1);
-
-		} catch (SQLException e) {
-
-			e.printStackTrace();
-		}
-
-		DBUtil.closeConnection(con);
-		DBUtil.closeConnection(ps);
-		DBUtil.closeConnection(rs);
+		return carts.getQuantity(userId, itemId);
+	}
 
-		return count;
+	/**
+	 * Gets the quantity of every product in a user's cart, from the cart held in memory, so that a listing does not
+	 * query the cart once per product.
+	 *
+	 * @param userId The user's ID.
+	 * @return The quantities by product ID, empty if the user is not logged in.
+	 */
+	@Override
+	public Map<String, Integer> getCartQuantities(String userId) {
+		return carts.getQuantities(userId);
 	}
 }
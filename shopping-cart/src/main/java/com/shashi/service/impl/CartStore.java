@@ -0,0 +1,474 @@
+package com.shashi.service.impl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.shashi.utility.AppConfig;
+import com.shashi.utility.DBUtil;
+
+/**
+ * The carts of the logged-in users, held in memory and written to the usercart table behind the scenes.
+ * <p>
+ * The cart of a user is loaded with one query the first time it is used, and every read after that (the cart page,
+ * the badge of the header, the quantities of the listings) is served from memory. Changes are applied to the
+ * memory cart at once and only remembered as pending for the database: a background thread writes the pending
+ * changes of all the carts every cart.flush.millis (1000 by default), in one transaction, so that several changes
+ * to the same line are written once.
+ * <p>
+ * The pending changes of a cart are written right away at checkout ({@link #flush(String)}), when the user logs
+ * out or the session expires ({@link #evict(String)}) and when the application stops ({@link #shutdown()}). If a
+ * write fails, the changes stay pending and are tried again with the next flush.
+ */
+public class CartStore {
+
+	/**
+	 * Reads and writes the carts.
+	 */
+	public interface Storage {
+
+		/**
+		 * @param userId The user's email address.
+		 * @return The quantities of the products in the cart of the user, or null if the cart could not be read.
+		 */
+		Map<String, Integer> load(String userId);
+
+		/**
+		 * Writes the quantities of some lines of some carts.
+		 *
+		 * @param quantities The new quantities by product ID, by user; a quantity of 0 removes the line.
+		 * @return false if nothing was written.
+		 */
+		boolean store(Map<String, Map<String, Integer>> quantities);
+	}
+
+	private static final CartStore SHARED = new CartStore(new DatabaseStorage(),
+			AppConfig.getLong("cart.flush.millis", 1000));
+
+	private final Storage storage;
+	private final ConcurrentHashMap<String, UserCart> carts = new ConcurrentHashMap<String, UserCart>();
+	private final ScheduledThreadPoolExecutor flusher;
+
+	// one flush at a time, so that an older write can never overwrite a newer one
+	private final ReentrantLock flushLock = new ReentrantLock();
+
+	/**
+	 * Creates a new store.
+	 *
+	 * @param storage Where the carts are loaded from and written to.
+	 * @param flushMillis How often the pending changes are written, 0 to only write them on demand.
+	 */
+	public CartStore(Storage storage, long flushMillis) {
+		this.storage = storage;
+		if (flushMillis > 0) {
+			this.flusher = new ScheduledThreadPoolExecutor(1, runnable -> {
+				Thread thread = new Thread(runnable, "cart-flusher");
+				thread.setDaemon(true);
+				return thread;
+			});
+			this.flusher.scheduleWithFixedDelay(this::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+		} else {
+			this.flusher = null;
+		}
+	}
+
+	/**
+	 * @return The carts of the application, stored in the usercart table.
+	 */
+	public static CartStore shared() {
+		return SHARED;
+	}
+
+	/**
+	 * @param userId The user's email address.
+	 * @return A copy of the cart: the quantities by product ID, in the order the products were added.
+	 */
+	public Map<String, Integer> getQuantities(String userId) {
+		UserCart cart = cart(userId);
+		if (cart == null)
+			return new LinkedHashMap<String, Integer>();
+		synchronized (cart) {
+			return new LinkedHashMap<String, Integer>(cart.quantities);
+		}
+	}
+
+	/**
+	 * @param userId The user's email address.
+	 * @param prodId The product ID.
+	 * @return The quantity of the product in the cart, 0 if it is not in the cart.
+	 */
+	public int getQuantity(String userId, String prodId) {
+		UserCart cart = cart(userId);
+		if (cart == null)
+			return 0;
+		synchronized (cart) {
+			return cart.quantities.getOrDefault(prodId, 0);
+		}
+	}
+
+	/**
+	 * Gives the number of items in a cart, as shown by the badge of the header on every page. The count is kept up
+	 * to date by every change of the cart, so reading it takes no lock and no computation once the cart is loaded.
+	 *
+	 * @param userId The user's email address.
+	 * @return The number of items in the cart (the sum of the quantities).
+	 */
+	public int getCount(String userId) {
+		UserCart cart = cart(userId);
+		return cart == null ? 0 : cart.count;
+	}
+
+	/**
+	 * Sets the quantity of a product in the cart.
+	 *
+	 * @param userId The user's email address.
+	 * @param prodId The product ID.
+	 * @param quantity The new quantity; 0 or less removes the product from the cart.
+	 * @return The quantity now in the cart, or -1 if the cart could not be loaded.
+	 */
+	public int setQuantity(String userId, String prodId, int quantity) {
+		while (true) {
+			UserCart cart = cart(userId);
+			if (cart == null)
+				return -1;
+			synchronized (cart) {
+				// dropped while we were waiting: the next cart() loads it again, with its changes written
+				if (cart.evicted)
+					continue;
+				return cart.set(prodId, quantity);
+			}
+		}
+	}
+
+	/**
+	 * Changes the quantity of a product in the cart by the given amount, removing the product if none is left.
+	 *
+	 * @param userId The user's email address.
+	 * @param prodId The product ID.
+	 * @param delta The quantity to add, negative to remove.
+	 * @return The quantity now in the cart, or -1 if the cart could not be loaded.
+	 */
+	public int addQuantity(String userId, String prodId, int delta) {
+		while (true) {
+			UserCart cart = cart(userId);
+			if (cart == null)
+				return -1;
+			synchronized (cart) {
+				if (cart.evicted)
+					continue;
+				return cart.set(prodId, cart.quantities.getOrDefault(prodId, 0) + delta);
+			}
+		}
+	}
+
+	/**
+	 * Writes the pending changes of all the carts. Called periodically by the background thread.
+	 */
+	public void flush() {
+		flush(carts.values());
+	}
+
+	/**
+	 * Writes the pending changes of one cart, e.g. before checkout reads the cart from the database.
+	 *
+	 * @param userId The user's email address.
+	 * @return false if the changes could not be written.
+	 */
+	public boolean flush(String userId) {
+		UserCart cart = carts.get(userId);
+		return cart == null || flush(Collections.singleton(cart));
+	}
+
+	/**
+	 * Writes the pending changes of a cart and drops it from memory, when the user logs out or the session
+	 * expires. The cart is loaded again the next time it is used.
+	 *
+	 * @param userId The user's email address.
+	 */
+	public void evict(String userId) {
+		UserCart cart = carts.get(userId);
+		if (cart == null)
+			return;
+
+		flushLock.lock();
+		try {
+			// if the write failed, or the cart changed meanwhile, it stays for the background thread to write
+			if (flush(Collections.singleton(cart))) {
+				synchronized (cart) {
+					if (cart.dirty.isEmpty()) {
+						cart.evicted = true;
+						carts.remove(userId, cart);
+					}
+				}
+			}
+		} finally {
+			flushLock.unlock();
+		}
+	}
+
+	/**
+	 * Empties a cart in memory without writing anything, after the cart was emptied in the database (at checkout).
+	 * The cart stays loaded, so the next pages show the empty cart without reading it again.
+	 *
+	 * @param userId The user's email address.
+	 */
+	public void clear(String userId) {
+		UserCart cart = carts.put(userId, new UserCart(userId, Collections.<String, Integer>emptyMap()));
+		if (cart == null)
+			return;
+		synchronized (cart) {
+			cart.evicted = true;
+			cart.dirty.clear();
+		}
+	}
+
+	/**
+	 * Drops a product from all the carts in memory, after it was deleted with its cart lines from the database.
+	 *
+	 * @param prodId The product ID.
+	 */
+	public void removeProduct(String prodId) {
+		for (UserCart cart : carts.values()) {
+			synchronized (cart) {
+				Integer quantity = cart.quantities.remove(prodId);
+				if (quantity != null)
+					cart.count -= quantity;
+				cart.dirty.remove(prodId);
+			}
+		}
+	}
+
+	/**
+	 * Stops the background thread and writes what is still pending. Called when the web application is stopped.
+	 */
+	public void shutdown() {
+		if (flusher != null)
+			flusher.shutdownNow();
+		flush();
+	}
+
+	/**
+	 * @return The number of carts held in memory.
+	 */
+	public int getSize() {
+		return carts.size();
+	}
+
+	/**
+	 * @return The number of cart lines changed in memory and not written yet.
+	 */
+	public int getPendingCount() {
+		int pending = 0;
+		for (UserCart cart : carts.values()) {
+			synchronized (cart) {
+				pending += cart.dirty.size();
+			}
+		}
+		return pending;
+	}
+
+	@Override
+	public String toString() {
+		return "CartStore [carts=" + getSize() + ", pending=" + getPendingCount() + "]";
+	}
+
+	// The cart of a user, loaded if needed; null if the user is not logged in or the cart could not be loaded
+	private UserCart cart(String userId) {
+		if (userId == null)
+			return null;
+		UserCart cart = carts.get(userId);
+		if (cart != null)
+			return cart;
+
+		Map<String, Integer> loaded = storage.load(userId);
+		if (loaded == null)
+			return null;
+		// another request may have loaded it meanwhile, and changed it: keep that one
+		UserCart created = new UserCart(userId, loaded);
+		UserCart existing = carts.putIfAbsent(userId, created);
+		return existing != null ? existing : created;
+	}
+
+	private boolean flush(Iterable<UserCart> toFlush) {
+		flushLock.lock();
+		try {
+			Map<String, Map<String, Integer>> changes = new LinkedHashMap<String, Map<String, Integer>>();
+			Map<UserCart, Set<String>> taken = new LinkedHashMap<UserCart, Set<String>>();
+			for (UserCart cart : toFlush) {
+				synchronized (cart) {
+					if (cart.dirty.isEmpty())
+						continue;
+					Map<String, Integer> lines = new LinkedHashMap<String, Integer>();
+					for (String prodId : cart.dirty)
+						lines.put(prodId, cart.quantities.getOrDefault(prodId, 0));
+					changes.put(cart.userId, lines);
+					taken.put(cart, new LinkedHashSet<String>(cart.dirty));
+					cart.dirty.clear();
+				}
+			}
+			if (changes.isEmpty())
+				return true;
+
+			boolean stored;
+			try {
+				stored = storage.store(changes);
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+				stored = false;
+			}
+			if (!stored) {
+				// pending again, unless the cart was cleared meanwhile
+				for (Map.Entry<UserCart, Set<String>> entry : taken.entrySet()) {
+					UserCart cart = entry.getKey();
+					synchronized (cart) {
+						if (carts.get(cart.userId) == cart)
+							cart.dirty.addAll(entry.getValue());
+					}
+				}
+			}
+			return stored;
+		} finally {
+			flushLock.unlock();
+		}
+	}
+
+	/**
+	 * The cart of one user. Guarded by its own monitor.
+	 */
+	private static class UserCart {
+		private final String userId;
+		private final Map<String, Integer> quantities;
+		private final Set<String> dirty = new LinkedHashSet<String>();
+		// written under the monitor, read without it
+		private volatile int count;
+		private boolean evicted;
+
+		private UserCart(String userId, Map<String, Integer> loaded) {
+			this.userId = userId;
+			this.quantities = new LinkedHashMap<String, Integer>(loaded);
+			for (int quantity : quantities.values())
+				count += quantity;
+		}
+
+		private int set(String prodId, int quantity) {
+			int previous = quantities.getOrDefault(prodId, 0);
+			quantity = Math.max(0, quantity);
+			if (quantity == previous)
+				return quantity;
+
+			if (quantity == 0)
+				quantities.remove(prodId);
+			else
+				quantities.put(prodId, quantity);
+			count += quantity - previous;
+			dirty.add(prodId);
+			return quantity;
+		}
+	}
+
+	/**
+	 * Reads and writes the carts in the usercart table.
+	 */
+	public static class DatabaseStorage implements Storage {
+
+		@Override
+		public Map<String, Integer> load(String userId) {
+			Map<String, Integer> quantities = new LinkedHashMap<String, Integer>();
+
+			Connection con = DBUtil.provideConnection();
+
+			PreparedStatement ps = null;
+			ResultSet rs = null;
+
+			try {
+				ps = con.prepareStatement("select prodid, quantity from usercart where username=?");
+
+				ps.setString(1, userId);
+
+				rs = ps.executeQuery();
+
+				while (rs.next())
+					quantities.merge(rs.getString("prodid"), rs.getInt("quantity"), Integer::sum);
+
+			} catch (SQLException e) {
+				quantities = null;
+				e.printStackTrace();
+			}
+
+			DBUtil.closeConnection(rs);
+			DBUtil.closeConnection(ps);
+			DBUtil.closeConnection(con);
+
+			return quantities;
+		}
+
+		/**
+		 * Writes the lines in one transaction, with one statement per line whatever it held before: lines still in
+		 * the carts are upserted with one batch (the unique key on username and prodid turns the insert into an
+		 * update when the line exists) and emptied lines are deleted with another.
+		 */
+		@Override
+		public boolean store(Map<String, Map<String, Integer>> quantities) {
+			boolean stored = false;
+
+			Connection con = null;
+			PreparedStatement delete = null;
+			PreparedStatement upsert = null;
+
+			try {
+				DBUtil.beginTransaction();
+
+				con = DBUtil.provideConnection();
+
+				upsert = con.prepareStatement("insert into usercart (username, prodid, quantity) values(?,?,?) as new "
+						+ "on duplicate key update quantity=new.quantity");
+				delete = con.prepareStatement("delete from usercart where username=? and prodid=?");
+				boolean upserts = false;
+				boolean deletes = false;
+				for (Map.Entry<String, Map<String, Integer>> cart : quantities.entrySet()) {
+					for (Map.Entry<String, Integer> line : cart.getValue().entrySet()) {
+						if (line.getValue() > 0) {
+							upsert.setString(1, cart.getKey());
+							upsert.setString(2, line.getKey());
+							upsert.setInt(3, line.getValue());
+							upsert.addBatch();
+							upserts = true;
+						} else {
+							delete.setString(1, cart.getKey());
+							delete.setString(2, line.getKey());
+							delete.addBatch();
+							deletes = true;
+						}
+					}
+				}
+				if (upserts)
+					upsert.executeBatch();
+				if (deletes)
+					delete.executeBatch();
+
+				DBUtil.commit();
+				stored = true;
+
+			} catch (SQLException e) {
+				DBUtil.rollback();
+				e.printStackTrace();
+			}
+
+			DBUtil.closeConnection(upsert);
+			DBUtil.closeConnection(delete);
+			DBUtil.closeConnection(con);
+
+			return stored;
+		}
+	}
+}
@@ -16,6 +16,8 @@ import com.shashi.utility.DBUtil;
  * This class handles business logic for user demands for out-of-stock products.
  * When a product is unavailable, a user's interest is recorded as a "demand".
  * This allows the system to notify users when the product is back in stock.
+ * The time a demand was recorded (demanded_at) decides who is served first when the product is restocked, see
+ * {@link RestockNotifier}.
  */
 public class DemandServiceImpl implements DemandService {
 
@@ -51,7 +53,7 @@ public class DemandServiceImpl implements DemandService {
 				flag = true;
 			} else {
 				// If no demand exists, insert a new record.
-				ps2 = con.prepareStatement("insert into  user_demand values(?,?,?)");
+				ps2 = con.prepareStatement("insert into user_demand (username, prodid, quantity) values(?,?,?)");
 
 				ps2.setString(1, userId);
 
@@ -70,10 +72,10 @@ public class DemandServiceImpl implements DemandService {
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
-		DBUtil.closeConnection(ps);
-		DBUtil.closeConnection(ps2);
 		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(ps2);
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
 
 		return flag;
 	}
@@ -126,10 +128,10 @@ public class DemandServiceImpl implements DemandService {
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
-		DBUtil.closeConnection(ps);
-		DBUtil.closeConnection(ps2);
 		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(ps2);
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
 
 		return flag;
 	}
@@ -180,6 +182,10 @@ public class DemandServiceImpl implements DemandService {
 			e.printStackTrace();
 		}
 
+		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
+
 		return demandList;
 	}
 
@@ -0,0 +1,176 @@
+package com.shashi.service.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import com.shashi.service.ImageStore;
+import com.shashi.utility.AppConfig;
+
+/**
+ * An {@link ImageStore} keeping every image in its own file on the local disk, named after the SHA-256 hash of its
+ * content (for example ab/cd/abcd1234...). Files are never modified once written, so they can be read without
+ * locking and served straight from the file system with {@link FileChannel#transferTo}. Variants are stored next
+ * to their image, with the name of the variant appended (abcd1234...-thumb).
+ * <p>
+ * The directory is set with the image.store.dir key of the application.properties file.
+ */
+public class FileImageStore implements ImageStore {
+
+	private static final FileImageStore SHARED = new FileImageStore(Paths.get(AppConfig.getString("image.store.dir",
+			System.getProperty("user.home") + File.separator + "shopping-cart-images")));
+
+	private final Path root;
+
+	/**
+	 * Creates a store in the given directory, which is created when the first image is saved.
+	 *
+	 * @param root The directory of the images.
+	 */
+	public FileImageStore(Path root) {
+		this.root = root;
+	}
+
+	/**
+	 * @return The store configured for the application.
+	 */
+	public static FileImageStore shared() {
+		return SHARED;
+	}
+
+	/**
+	 * Saves an image to a temporary file while hashing it, then moves it to its final name. If an image with the
+	 * same content is already stored, the temporary file is dropped.
+	 */
+	@Override
+	public String save(InputStream image) throws IOException {
+		Path tmpDir = Files.createDirectories(root.resolve("tmp"));
+		Path tmp = Files.createTempFile(tmpDir, "upload", ".tmp");
+		try {
+			MessageDigest digest = newDigest();
+			long size = Files.copy(new DigestInputStream(image, digest), tmp, StandardCopyOption.REPLACE_EXISTING);
+			if (size == 0)
+				return null;
+
+			String key = toHex(digest.digest());
+			Path target = pathOf(key);
+			if (!Files.exists(target)) {
+				Files.createDirectories(target.getParent());
+				try {
+					Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+				} catch (FileAlreadyExistsException e) {
+					// saved at the same time by another request
+				}
+			}
+			return key;
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	@Override
+	public void saveVariant(String key, String variant, InputStream image) throws IOException {
+		String variantKey = ImageStore.variantKey(key, variant);
+		if (!isKey(variantKey))
+			throw new IllegalArgumentException("Invalid image variant " + variantKey);
+
+		Path tmpDir = Files.createDirectories(root.resolve("tmp"));
+		Path tmp = Files.createTempFile(tmpDir, "variant", ".tmp");
+		try {
+			Files.copy(image, tmp, StandardCopyOption.REPLACE_EXISTING);
+			Path target = pathOf(variantKey);
+			Files.createDirectories(target.getParent());
+			Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	@Override
+	public long size(String key) {
+		Path file = isKey(key) ? pathOf(key) : null;
+		try {
+			return file != null && Files.isRegularFile(file) ? Files.size(file) : -1;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return -1;
+		}
+	}
+
+	@Override
+	public long lastModified(String key) {
+		Path file = isKey(key) ? pathOf(key) : null;
+		try {
+			return file != null && Files.isRegularFile(file) ? Files.getLastModifiedTime(file).toMillis() : -1;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return -1;
+		}
+	}
+
+	@Override
+	public InputStream open(String key) throws IOException {
+		if (!isKey(key) || !Files.isRegularFile(pathOf(key)))
+			return null;
+		return Files.newInputStream(pathOf(key));
+	}
+
+	@Override
+	public long transferTo(String key, WritableByteChannel target) throws IOException {
+		if (!isKey(key) || !Files.isRegularFile(pathOf(key)))
+			return -1;
+
+		try (FileChannel file = FileChannel.open(pathOf(key), StandardOpenOption.READ)) {
+			long size = file.size();
+			long position = 0;
+			// transferTo may write less than asked for
+			while (position < size)
+				position += file.transferTo(position, size - position, target);
+			return size;
+		}
+	}
+
+	private Path pathOf(String key) {
+		return root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+	}
+
+	// Keys come from requests and the database: only accept what save() and saveVariant() produce, so they cannot
+	// point elsewhere
+	private static boolean isKey(String key) {
+		if (key == null || key.length() < 64 || key.length() == 65 || (key.length() > 64 && key.charAt(64) != '-'))
+			return false;
+		for (int i = 0; i < key.length(); i++) {
+			char c = key.charAt(i);
+			if (i < 64 ? !(c >= '0' && c <= '9') && !(c >= 'a' && c <= 'f') : i > 64 && !(c >= 'a' && c <= 'z'))
+				return false;
+		}
+		return true;
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform has SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes)
+			hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		return hex.toString();
+	}
+}
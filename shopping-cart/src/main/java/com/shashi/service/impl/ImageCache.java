@@ -0,0 +1,227 @@
+package com.shashi.service.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.shashi.utility.AppConfig;
+
+/**
+ * An in-memory cache of the product images still read from the product table, so that the most requested ones are
+ * not read from the database on every request. (Images in the image store are served from their files, which the
+ * operating system already caches.)
+ * <p>
+ * The cache is bounded by the total size of the images, not by their number (image.cache.maxBytes, default 32 MB),
+ * and evicts the least recently used images first. Images larger than an eighth of the cache are not kept, so that a
+ * single large image cannot push out many small ones. With image.cache.offHeap=true the images are kept in direct
+ * buffers outside of the Java heap, which the garbage collector does not have to scan or copy.
+ * <p>
+ * Products are dropped from the cache when their image is updated or the product is removed.
+ */
+public class ImageCache {
+
+	/**
+	 * An image held by the cache, with its ETag.
+	 */
+	public static final class CachedImage {
+		private final ByteBuffer data;
+		private final String etag;
+
+		private CachedImage(ByteBuffer data, String etag) {
+			this.data = data;
+			this.etag = etag;
+		}
+
+		/**
+		 * Wraps an image held outside of any cache, such as a placeholder loaded once, to be served the same way.
+		 *
+		 * @param image The image, which must not be modified afterwards.
+		 * @param etag The ETag of the image.
+		 * @return The image.
+		 */
+		public static CachedImage of(byte[] image, String etag) {
+			return new CachedImage(ByteBuffer.wrap(image).asReadOnlyBuffer(), etag);
+		}
+
+		/**
+		 * @return The size of the image in bytes.
+		 */
+		public int getLength() {
+			return data.capacity();
+		}
+
+		/**
+		 * @return The ETag computed for the image when it was cached.
+		 */
+		public String getEtag() {
+			return etag;
+		}
+
+		/**
+		 * @return The first bytes of the image, at most the given number.
+		 */
+		public byte[] getHead(int length) {
+			ByteBuffer view = data.duplicate();
+			byte[] head = new byte[Math.min(length, view.remaining())];
+			view.get(head);
+			return head;
+		}
+
+		/**
+		 * Writes the image to a stream, such as the output stream of a response.
+		 *
+		 * @param out Where to write the image.
+		 * @throws IOException if the stream could not be written.
+		 */
+		public void writeTo(OutputStream out) throws IOException {
+			// a duplicate, so that concurrent writers each have their own position
+			Channels.newChannel(out).write(data.duplicate());
+		}
+	}
+
+	private static final ImageCache SHARED = new ImageCache(AppConfig.getLong("image.cache.maxBytes", 32L << 20),
+			AppConfig.getBoolean("image.cache.offHeap", false));
+
+	private final long maxBytes;
+	private final boolean offHeap;
+
+	// access order: the first entry is the least recently used
+	private final LinkedHashMap<String, CachedImage> images = new LinkedHashMap<String, CachedImage>(16, 0.75f, true);
+	private long residentBytes;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Creates a new cache.
+	 *
+	 * @param maxBytes The maximum total size of the cached images.
+	 * @param offHeap true to keep the images in direct buffers outside of the heap.
+	 */
+	public ImageCache(long maxBytes, boolean offHeap) {
+		this.maxBytes = maxBytes;
+		this.offHeap = offHeap;
+	}
+
+	/**
+	 * @return The cache shared by the whole application.
+	 */
+	public static ImageCache shared() {
+		return SHARED;
+	}
+
+	/**
+	 * @param prodId The product ID.
+	 * @return The cached image of the product, or null if it is not cached.
+	 */
+	public synchronized CachedImage get(String prodId) {
+		CachedImage image = images.get(prodId);
+		if (image != null)
+			hits.increment();
+		else
+			misses.increment();
+		return image;
+	}
+
+	/**
+	 * Caches the image of a product, evicting the least recently used images if needed.
+	 *
+	 * @param prodId The product ID.
+	 * @param image The image.
+	 * @param etag The ETag of the image.
+	 * @return The cached image, or the given image wrapped without a copy if it is too large to be kept.
+	 */
+	public CachedImage put(String prodId, byte[] image, String etag) {
+		if (image.length > maxBytes / 8)
+			return CachedImage.of(image, etag);
+
+		// copied outside of the lock
+		ByteBuffer data = offHeap ? ByteBuffer.allocateDirect(image.length) : ByteBuffer.allocate(image.length);
+		data.put(image);
+		data.flip();
+		CachedImage cached = new CachedImage(data.asReadOnlyBuffer(), etag);
+
+		synchronized (this) {
+			CachedImage previous = images.put(prodId, cached);
+			if (previous != null)
+				residentBytes -= previous.getLength();
+			residentBytes += cached.getLength();
+
+			Iterator<Map.Entry<String, CachedImage>> eldest = images.entrySet().iterator();
+			while (residentBytes > maxBytes && eldest.hasNext()) {
+				residentBytes -= eldest.next().getValue().getLength();
+				eldest.remove();
+				evictions.increment();
+			}
+		}
+		return cached;
+	}
+
+	/**
+	 * Drops the image of a product, after it was changed or the product removed.
+	 *
+	 * @param prodId The product ID.
+	 */
+	public synchronized void invalidate(String prodId) {
+		CachedImage previous = images.remove(prodId);
+		if (previous != null)
+			residentBytes -= previous.getLength();
+	}
+
+	/**
+	 * @return The number of reads served from the cache.
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return The number of reads of images that were not cached.
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return The share of the reads served from the cache, between 0 and 1.
+	 */
+	public double getHitRatio() {
+		long hitCount = getHitCount();
+		long total = hitCount + getMissCount();
+		return total == 0 ? 0 : (double) hitCount / total;
+	}
+
+	/**
+	 * @return The number of images dropped to make room for others.
+	 */
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	/**
+	 * @return The total size of the cached images in bytes.
+	 */
+	public synchronized long getResidentBytes() {
+		return residentBytes;
+	}
+
+	/**
+	 * @return The number of cached images.
+	 */
+	public synchronized int getSize() {
+		return images.size();
+	}
+
+	@Override
+	public String toString() {
+		return "ImageCache [hits=" + getHitCount() + ", misses=" + getMissCount() + ", hitRatio=" + getHitRatio()
+				+ ", evictions=" + getEvictionCount() + ", images=" + getSize() + ", residentBytes="
+				+ getResidentBytes() + ", maxBytes=" + maxBytes + ", offHeap=" + offHeap + "]";
+	}
+}
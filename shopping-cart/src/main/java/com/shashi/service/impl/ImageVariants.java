@@ -0,0 +1,226 @@
+package com.shashi.service.impl;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+
+import com.shashi.service.ImageStore;
+import com.shashi.utility.AppConfig;
+
+/**
+ * Generates the smaller variants of the product images (see {@link Size}) and saves them in the image store, so that
+ * pages showing a product in a 150 pixels box do not download and decode the full-size upload.
+ * <p>
+ * Variants are generated in the background by a small pool of worker threads, when an image is uploaded and, for
+ * images uploaded before, the first time one of their variants is asked for. The pool and its queue are bounded
+ * (image.variants.threads, default 2, and image.variants.queue, default 100): when the queue is full the work is
+ * dropped, and tried again the next time the variant is asked for. Until a variant exists the original is served.
+ * <p>
+ * Images that ImageIO cannot decode (such as WebP, CMYK JPEG or corrupt uploads) are remembered until the application
+ * is restarted, so that they are not queued and decoded again on every request: their original is served instead.
+ */
+public class ImageVariants {
+
+	/**
+	 * The sizes of the variants. Images are scaled down to fit in a square of the given side, keeping their
+	 * proportions; smaller images are only re-encoded.
+	 */
+	public enum Size {
+		/** For the cart, the orders and the stock tables. */
+		THUMB(100),
+		/** For the product cards of the listings. */
+		CARD(300),
+		/** For a product shown on its own. */
+		DETAIL(800);
+
+		private final int pixels;
+
+		Size(int pixels) {
+			this.pixels = pixels;
+		}
+
+		/**
+		 * @return The name of the variant in the image store and in the URLs.
+		 */
+		public String variantName() {
+			return name().toLowerCase();
+		}
+
+		/**
+		 * @param name The name of a variant, as in {@link #variantName()}.
+		 * @return The size, or null if the name is not one of them.
+		 */
+		public static Size fromName(String name) {
+			for (Size size : values())
+				if (size.variantName().equals(name))
+					return size;
+			return null;
+		}
+	}
+
+	private static final ImageVariants SHARED = new ImageVariants(FileImageStore.shared(),
+			AppConfig.getInt("image.variants.threads", 2), AppConfig.getInt("image.variants.queue", 100));
+
+	private final ImageStore imageStore;
+	private final ThreadPoolExecutor executor;
+
+	// keys of the images whose variants are queued or being generated
+	private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+	// keys of the images that could not be decoded; a new upload gets a new key
+	private final Set<String> undecodable = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Creates a pipeline saving the variants in the given store.
+	 *
+	 * @param imageStore Where the images are read from and the variants saved.
+	 * @param threads The number of worker threads.
+	 * @param queueSize How many images may wait for a worker.
+	 */
+	public ImageVariants(ImageStore imageStore, int threads, int queueSize) {
+		this.imageStore = imageStore;
+		this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(queueSize), runnable -> {
+					Thread thread = new Thread(runnable, "image-variants");
+					thread.setDaemon(true);
+					return thread;
+				}, new ThreadPoolExecutor.AbortPolicy());
+		this.executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * @return The pipeline of the application, saving to the shared image store.
+	 */
+	public static ImageVariants shared() {
+		return SHARED;
+	}
+
+	/**
+	 * Queues the generation of all the variants of an image, unless it is already queued or could not be decoded
+	 * before.
+	 *
+	 * @param key The key of the image in the store.
+	 * @return false if the queue was full and nothing was queued.
+	 */
+	public boolean generate(String key) {
+		if (key == null || undecodable.contains(key) || !pending.add(key))
+			return true;
+
+		try {
+			executor.execute(() -> {
+				try {
+					generateNow(key);
+				} finally {
+					pending.remove(key);
+				}
+			});
+			return true;
+		} catch (RejectedExecutionException e) {
+			pending.remove(key);
+			return false;
+		}
+	}
+
+	/**
+	 * Generates all the variants of an image on the calling thread.
+	 *
+	 * @param key The key of the image in the store.
+	 * @return false if the image could not be read or is not in a format ImageIO can decode.
+	 */
+	public boolean generateNow(String key) {
+		try {
+			BufferedImage original;
+			try (InputStream in = imageStore.open(key)) {
+				if (in == null)
+					return false;
+				original = decode(key, in);
+			}
+			if (original == null)
+				return false;
+
+			for (Size size : Size.values()) {
+				ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+				ImageIO.write(scale(original, size.pixels), "jpg", jpeg);
+				imageStore.saveVariant(key, size.variantName(), new ByteArrayInputStream(jpeg.toByteArray()));
+			}
+			return true;
+		} catch (IOException | RuntimeException e) {
+			System.out.println("Could not generate the variants of image " + key);
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	/**
+	 * Tells whether the variants of an image will never exist, because the image could not be decoded.
+	 *
+	 * @param key The key of the image in the store.
+	 * @return true if the generation of its variants failed to decode the image.
+	 */
+	public boolean isUndecodable(String key) {
+		return key != null && undecodable.contains(key);
+	}
+
+	// Returns null, and remembers the key, if the image is not in a format ImageIO can decode
+	private BufferedImage decode(String key, InputStream in) throws IOException {
+		try {
+			BufferedImage image = ImageIO.read(in);
+			if (image == null)
+				undecodable.add(key);
+			return image;
+		} catch (IIOException | RuntimeException e) {
+			undecodable.add(key);
+			throw e;
+		}
+	}
+
+	/**
+	 * Stops the worker threads, dropping the queued work. Called when the web application is stopped.
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	/*
+	 * Scales the image down to fit in a square of the given side. Large reductions are done in steps of at most a
+	 * half, which keeps the result sharp with bilinear interpolation. The result has no transparency (JPEG), which
+	 * becomes white.
+	 */
+	static BufferedImage scale(BufferedImage image, int side) {
+		double factor = Math.min(1.0, (double) side / Math.max(image.getWidth(), image.getHeight()));
+		int targetWidth = Math.max(1, (int) Math.round(image.getWidth() * factor));
+		int targetHeight = Math.max(1, (int) Math.round(image.getHeight() * factor));
+
+		BufferedImage current = image;
+		do {
+			int width = Math.max(targetWidth, current.getWidth() / 2);
+			int height = Math.max(targetHeight, current.getHeight() / 2);
+			BufferedImage next = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+			Graphics2D g = next.createGraphics();
+			try {
+				g.setColor(Color.WHITE);
+				g.fillRect(0, 0, width, height);
+				g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+				g.drawImage(current, 0, 0, width, height, null);
+			} finally {
+				g.dispose();
+			}
+			current = next;
+		} while (current.getWidth() != targetWidth || current.getHeight() != targetHeight);
+		return current;
+	}
+}
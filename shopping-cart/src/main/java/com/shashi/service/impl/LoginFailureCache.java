@@ -0,0 +1,221 @@
+package com.shashi.service.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+import com.shashi.utility.AppConfig;
+
+/**
+ * Remembers the recent failed logins of each email from each client address, so that logins which are bound to
+ * fail are denied without querying the user table.
+ * <p>
+ * The failures of an email from one client address are counted over a window of login.failureCache.millis in the
+ * application.properties file (one minute by default, 0 turns the cache off), starting at the first failure. Within
+ * the window, a password that already failed is denied at once, which absorbs retry storms; once the email has
+ * failed login.failureCache.maxFailures times (5 by default) from the address, every login with it from that address
+ * is denied until the window ends, which stops a brute-force run trying a new password each time. The failures are
+ * counted per address so that someone who only knows the email of a customer cannot lock the customer out: logins
+ * from other addresses are not affected. Passwords are not kept, only a SHA-256 digest of the email and password.
+ * The failures of an email are forgotten, from every address, when a user registers with it.
+ * <p>
+ * At most login.failureCache.maxEntries emails and addresses are tracked (10000 by default). As every window lasts
+ * as long, the entries are kept in the order their window started, which is the order they expire in: expired
+ * entries, and when the cache is full the oldest one, are dropped from the head, without scanning the others.
+ */
+public class LoginFailureCache {
+
+	private static final LoginFailureCache SHARED = new LoginFailureCache(
+			AppConfig.getLong("login.failureCache.millis", 60000), AppConfig.getInt("login.failureCache.maxFailures", 5),
+			AppConfig.getInt("login.failureCache.maxEntries", 10000), System::currentTimeMillis);
+
+	private final long ttlMillis;
+	private final int maxFailures;
+	private final int maxEntries;
+	private final LongSupplier clock;
+
+	// by lower-cased email and client address, in the order the windows started, which is the order they end
+	private final LinkedHashMap<String, Failures> byClient = new LinkedHashMap<String, Failures>();
+
+	/**
+	 * Creates a new cache.
+	 *
+	 * @param ttlMillis How long the failures of an email from an address are counted from the first one; 0 remembers
+	 *            nothing.
+	 * @param maxFailures How many failures of an email from an address deny all its logins from there until the
+	 *            window ends.
+	 * @param maxEntries The maximum number of emails and addresses tracked.
+	 * @param clock The time source, in milliseconds.
+	 */
+	public LoginFailureCache(long ttlMillis, int maxFailures, int maxEntries, LongSupplier clock) {
+		this.ttlMillis = ttlMillis;
+		this.maxFailures = Math.max(1, maxFailures);
+		this.maxEntries = Math.max(1, maxEntries);
+		this.clock = clock;
+	}
+
+	/**
+	 * @return The cache shared by the whole application.
+	 */
+	public static LoginFailureCache shared() {
+		return SHARED;
+	}
+
+	/**
+	 * @return How long the failures of an email from an address are counted, and a locked out email stays locked
+	 *         out, in milliseconds; 0 if the cache is off.
+	 */
+	public long getWindowMillis() {
+		return Math.max(0, ttlMillis);
+	}
+
+	/**
+	 * Tells whether a login with these credentials is bound to fail: the same password failed a moment ago, or the
+	 * email failed too many times from the same address.
+	 *
+	 * @param emailId The email the user logged in with.
+	 * @param clientAddress The address the user logged in from.
+	 * @param password The password the user logged in with.
+	 * @return true if the login can be denied without checking the credentials.
+	 */
+	public boolean isKnownFailure(String emailId, String clientAddress, String password) {
+		if (ttlMillis <= 0)
+			return false;
+
+		String key = key(emailId, clientAddress);
+		synchronized (this) {
+			Failures failures = current(key);
+			if (failures == null)
+				return false;
+			if (failures.count >= maxFailures)
+				return true;
+		}
+		// the digest is computed outside of the lock
+		String digest = digest(emailId, password);
+		synchronized (this) {
+			Failures failures = current(key);
+			return failures != null && failures.digests.contains(digest);
+		}
+	}
+
+	/**
+	 * Tells whether an email failed too many times from an address: all its logins from there are denied until its
+	 * window ends.
+	 *
+	 * @param emailId The email.
+	 * @param clientAddress The address.
+	 * @return true if the logins with the email from the address are denied.
+	 */
+	public synchronized boolean isLockedOut(String emailId, String clientAddress) {
+		if (ttlMillis <= 0)
+			return false;
+
+		Failures failures = current(key(emailId, clientAddress));
+		return failures != null && failures.count >= maxFailures;
+	}
+
+	/**
+	 * Counts a failed login.
+	 *
+	 * @param emailId The email the user logged in with.
+	 * @param clientAddress The address the user logged in from.
+	 * @param password The password the user logged in with.
+	 */
+	public void recordFailure(String emailId, String clientAddress, String password) {
+		if (ttlMillis <= 0)
+			return;
+
+		String key = key(emailId, clientAddress);
+		String digest = digest(emailId, password);
+		synchronized (this) {
+			long now = clock.getAsLong();
+			evictExpired(now);
+
+			Failures failures = byClient.get(key);
+			if (failures == null) {
+				if (byClient.size() >= maxEntries) {
+					// the entry whose window ends first
+					Iterator<Failures> oldest = byClient.values().iterator();
+					oldest.next();
+					oldest.remove();
+				}
+				failures = new Failures(now + ttlMillis);
+				byClient.put(key, failures);
+			}
+			failures.count++;
+			// once locked out, every password is denied anyway
+			if (failures.count < maxFailures)
+				failures.digests.add(digest);
+		}
+	}
+
+	/**
+	 * Forgets the failures of an email from every address, whatever the password. Only called when a user
+	 * registers, so the entries are scanned rather than indexed by email.
+	 *
+	 * @param emailId The email.
+	 */
+	public synchronized void forget(String emailId) {
+		String prefix = key(emailId, "");
+		byClient.keySet().removeIf(key -> key.startsWith(prefix));
+	}
+
+	/**
+	 * @return The number of emails and addresses tracked, including the expired ones not dropped yet.
+	 */
+	public synchronized int size() {
+		return byClient.size();
+	}
+
+	// The failures of the email and address if their window is not over; called with the lock held
+	private Failures current(String key) {
+		long now = clock.getAsLong();
+		evictExpired(now);
+		return byClient.get(key);
+	}
+
+	// Only looks at the head: the entries after the first one still running end later
+	private void evictExpired(long now) {
+		Iterator<Failures> oldest = byClient.values().iterator();
+		while (oldest.hasNext() && oldest.next().expiresAt <= now)
+			oldest.remove();
+	}
+
+	// Emails cannot contain a line break, so the address that follows it never makes two keys ambiguous
+	private static String key(String emailId, String clientAddress) {
+		return emailId.toLowerCase(Locale.ROOT) + '\n' + (clientAddress == null ? "" : clientAddress);
+	}
+
+	private static String digest(String emailId, String password) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(emailId.getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) '\n');
+			digest.update(password.getBytes(StandardCharsets.UTF_8));
+			return Base64.getEncoder().encodeToString(digest.digest());
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform has SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * The failures of one email from one address within its window.
+	 */
+	private static class Failures {
+		private final long expiresAt;
+		private final Set<String> digests = new HashSet<String>();
+		private int count;
+
+		private Failures(long expiresAt) {
+			this.expiresAt = expiresAt;
+		}
+	}
+}
@@ -4,16 +4,19 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
-import com.shashi.beans.CartBean;
 import com.shashi.beans.OrderBean;
 import com.shashi.beans.OrderDetails;
 import com.shashi.beans.TransactionBean;
 import com.shashi.service.OrderService;
 import com.shashi.utility.DBUtil;
 import com.shashi.utility.MailMessage;
+import com.shashi.utility.StockReservations;
 
 /**
  * Implementation of the OrderService interface.
@@ -23,8 +26,10 @@ public class OrderServiceImpl implements OrderService {
 
 	/**
 	 * Processes a successful payment by creating orders for all items in the user's cart.
-	 * This is a complex, high-level method that orchestrates several other services.
-	 * NOTE: This method is currently untestable due to its tight coupling with other service implementations.
+	 * The checkout runs in a single transaction with a fixed number of statements, whatever the size of the cart:
+	 * the cart lines and their prices are loaded with one query, the orders are inserted with one batch, the cart
+	 * is emptied with one delete and the stock of every product is decremented with one batch of conditional
+	 * updates. If any product does not have enough stock left, nothing is written.
 	 *
 	 * @param userName The username of the customer.
 	 * @param paidAmount The total amount paid.
@@ -34,59 +39,160 @@ public class OrderServiceImpl implements OrderService {
 	public String paymentSuccess(String userName, double paidAmount) {
 		String status = "Order Placement Failed!";
 
-		// Get all items from the user's cart
-		List<CartBean> cartItems = new CartServiceImpl().getAllCartItems(userName);
+		TransactionBean transaction = new TransactionBean(userName, paidAmount);
+		boolean ordered = false;
+
+		Connection con = null;
+		List<OrderBean> orders = new ArrayList<OrderBean>();
 
-		if (cartItems.isEmpty())
+		// The cart is read from the database below: write what is still pending in memory first
+		if (!CartStore.shared().flush(userName))
 			return status;
 
-		TransactionBean transaction = new TransactionBean(userName, paidAmount);
-		boolean ordered = false;
+		try {
+			DBUtil.beginTransaction();
 
-		String transactionId = transaction.getTransactionId();
+			con = DBUtil.provideConnection();
 
-		// Iterate through cart items to create individual orders
-		for (CartBean item : cartItems) {
+			orders = loadCartOrders(con, userName, transaction.getTransactionId());
 
-			double amount = new ProductServiceImpl().getProductPrice(item.getProdId()) * item.getQuantity();
+			if (!orders.isEmpty())
+				ordered = placeOrders(con, userName, transaction, orders);
 
-			OrderBean order = new OrderBean(transactionId, item.getProdId(), item.getQuantity(), amount);
+			if (ordered) {
+				// The confirmation email is queued in the same transaction, so it is only sent for a placed order;
+				// if it cannot be queued, the commit fails and the customer can pay again
+				MailMessage.transactionSuccess(userName, new UserServiceImpl().getFName(userName),
+						transaction.getTransactionId(), transaction.getTransAmount());
 
-			// Add the order to the database
-			ordered = addOrder(order);
-			if (!ordered)
-				break; // Stop processing if any order fails
-			else {
-				// Remove the item from the cart after ordering
-				ordered = new CartServiceImpl().removeAProduct(item.getUserId(), item.getProdId());
+				DBUtil.commit();
+			} else {
+				DBUtil.rollback();
 			}
 
-			if (!ordered)
-				break;
-			else
-				// Decrement the stock quantity of the sold product
-				ordered = new ProductServiceImpl().sellNProduct(item.getProdId(), item.getQuantity());
-
-			if (!ordered)
-				break;
+		} catch (SQLException e) {
+			ordered = false;
+			DBUtil.rollback();
+			e.printStackTrace();
 		}
 
-		// If all orders were placed successfully, record the transaction
+		DBUtil.closeConnection(con);
+
+		// The cached stock of the products may have been reloaded before the transaction ended
+		for (OrderBean order : orders)
+			ProductCatalog.shared().invalidate(order.getProductId());
+
 		if (ordered) {
-			ordered = new OrderServiceImpl().addTransaction(transaction);
-			if (ordered) {
 
-				// Send a confirmation email
-				MailMessage.transactionSuccess(userName, new UserServiceImpl().getFName(userName),
-						transaction.getTransactionId(), transaction.getTransAmount());
+			// The cart is gone, so are the holds on its products
+			CartStore.shared().clear(userName);
+			StockReservations.shared().releaseAll(userName);
 
-				status = "Order Placed Successfully!";
-			}
+			status = "Order Placed Successfully!";
 		}
 
 		return status;
 	}
 
+	/**
+	 * Loads the cart of a user together with the current product prices and turns every line into an order.
+	 * The orders are sorted by product id so that concurrent checkouts update the product rows in the same order.
+	 */
+	private List<OrderBean> loadCartOrders(Connection con, String userName, String transactionId)
+			throws SQLException {
+		List<OrderBean> orders = new ArrayList<OrderBean>();
+
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+
+		try {
+			ps = con.prepareStatement(
+					"select c.prodid as prodid, c.quantity as quantity, p.pprice as pprice from usercart c "
+							+ "inner join product p on p.pid = c.prodid where c.username=? order by c.prodid");
+			ps.setString(1, userName);
+
+			rs = ps.executeQuery();
+
+			while (rs.next()) {
+				int quantity = rs.getInt("quantity");
+				orders.add(new OrderBean(transactionId, rs.getString("prodid"), quantity,
+						rs.getDouble("pprice") * quantity));
+			}
+
+		} finally {
+			DBUtil.closeConnection(rs);
+			DBUtil.closeConnection(ps);
+		}
+
+		return orders;
+	}
+
+	/**
+	 * Writes the orders, empties the cart, decrements the stock and records the transaction on the given
+	 * connection. The caller commits or rolls back.
+	 *
+	 * @return true if every statement succeeded and every product had enough stock.
+	 */
+	private boolean placeOrders(Connection con, String userName, TransactionBean transaction, List<OrderBean> orders)
+			throws SQLException {
+		PreparedStatement ps = null;
+
+		try {
+			ps = con.prepareStatement("insert into orders values(?,?,?,?,?)");
+			for (OrderBean order : orders) {
+				ps.setString(1, order.getTransactionId());
+				ps.setString(2, order.getProductId());
+				ps.setInt(3, order.getQuantity());
+				ps.setDouble(4, order.getAmount());
+				ps.setInt(5, 0); // Shipped status defaults to 0 (not shipped)
+				ps.addBatch();
+			}
+			if (!allSucceeded(ps.executeBatch()))
+				return false;
+			DBUtil.closeConnection(ps);
+
+			ps = con.prepareStatement("delete from usercart where username=?");
+			ps.setString(1, userName);
+			ps.executeUpdate();
+			DBUtil.closeConnection(ps);
+
+			// A product without enough stock left is not decremented, which fails the whole checkout
+			Map<String, Integer> quantities = new LinkedHashMap<String, Integer>();
+			for (OrderBean order : orders)
+				quantities.put(order.getProductId(), order.getQuantity());
+
+			for (Map.Entry<String, Boolean> sold : new ProductServiceImpl().sellProducts(quantities).entrySet()) {
+				if (!sold.getValue())
+					return false;
+			}
+
+			ps = con.prepareStatement("insert into transactions values(?,?,?,?)");
+			ps.setString(1, transaction.getTransactionId());
+			ps.setString(2, transaction.getUserName());
+			ps.setTimestamp(3, transaction.getTransDateTime());
+			ps.setDouble(4, transaction.getTransAmount());
+
+			return ps.executeUpdate() > 0;
+
+		} finally {
+			DBUtil.closeConnection(ps);
+		}
+	}
+
+	/**
+	 * @param counts The update counts returned by executeBatch.
+	 * @return false if any statement of the batch failed or changed no row.
+	 */
+	private static boolean allSucceeded(int[] counts) {
+		if (counts == null)
+			return false;
+		for (int count : counts) {
+			if (count == 0 || count == Statement.EXECUTE_FAILED)
+				return false;
+		}
+		return true;
+	}
+
 	/**
 	 * Adds a single order record to the database.
 	 *
@@ -120,6 +226,9 @@ public class OrderServiceImpl implements OrderService {
 			e.printStackTrace();
 		}
 
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
+
 		return flag;
 	}
 
@@ -155,6 +264,9 @@ public class OrderServiceImpl implements OrderService {
 			e.printStackTrace();
 		}
 
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
+
 		return flag;
 	}
 
@@ -189,9 +301,9 @@ public class OrderServiceImpl implements OrderService {
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
-		DBUtil.closeConnection(ps);
 		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
 
 		return count;
 	}
@@ -230,6 +342,10 @@ public class OrderServiceImpl implements OrderService {
 			e.printStackTrace();
 		}
 
+		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
+
 		return orderList;
 	}
 
@@ -269,6 +385,10 @@ public class OrderServiceImpl implements OrderService {
 			e.printStackTrace();
 		}
 
+		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
+
 		return orderList;
 	}
 
@@ -290,7 +410,7 @@ public class OrderServiceImpl implements OrderService {
 		try {
 
 			ps = con.prepareStatement(
-					"SELECT  p.pid as prodid, o.orderid as orderid, o.shipped as shipped, p.image as image, p.pname as pname, o.quantity as qty, o.amount as amount, t.time as time FROM orders o, product p, transactions t where o.orderid=t.transid and o.orderid = t.transid and p.pid=o.prodid and t.username=?");
+					"SELECT  p.pid as prodid, o.orderid as orderid, o.shipped as shipped, p.pname as pname, o.quantity as qty, o.amount as amount, t.time as time FROM orders o, product p, transactions t where o.orderid=t.transid and o.orderid = t.transid and p.pid=o.prodid and t.username=?");
 			ps.setString(1, userEmailId);
 			rs = ps.executeQuery();
 
@@ -298,7 +418,6 @@ public class OrderServiceImpl implements OrderService {
 
 				OrderDetails order = new OrderDetails();
 				order.setOrderId(rs.getString("orderid"));
-				order.setProdImage(rs.getAsciiStream("image"));
 				order.setProdName(rs.getString("pname"));
 				order.setQty(rs.getString("qty"));
 				order.setAmount(rs.getString("amount"));
@@ -314,6 +433,10 @@ public class OrderServiceImpl implements OrderService {
 			e.printStackTrace();
 		}
 
+		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
+
 		return orderList;
 	}
 
@@ -349,8 +472,8 @@ public class OrderServiceImpl implements OrderService {
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
 		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
 
 		return status;
 	}
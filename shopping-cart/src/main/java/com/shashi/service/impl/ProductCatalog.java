@@ -0,0 +1,536 @@
+package com.shashi.service.impl;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+import com.shashi.beans.ProductPage;
+import com.shashi.beans.ProductSummary;
+import com.shashi.utility.AppConfig;
+import com.shashi.utility.PageToken;
+
+/**
+ * A read-through, in-memory cache of the product catalog used by the product listing pages.
+ * <p>
+ * The catalog holds the metadata of every product (never the images, which are served by the ShowImage servlet),
+ * keyed by product id and grouped by product type. It is loaded on first use and reloaded when it is older than
+ * catalog.ttlSeconds (300 by default, which also picks up changes made directly in the database). The write methods
+ * of {@link ProductServiceImpl} invalidate the products they change, and only those products are reloaded on the
+ * next read, so the listing pages do not touch the database in steady state.
+ * <p>
+ * When a reload fails, the catalog keeps serving what it had (the expired snapshot, or the previous version of a
+ * changed product) and tries again 10 seconds later, rather than showing empty listings or querying the database on
+ * every read while it is down.
+ * <p>
+ * The lists returned are shared between all callers and must not be modified.
+ * <p>
+ * The shared catalog also rebuilds the {@link ProductSearchIndex} whenever it is fully loaded, so the index picks up
+ * the products even when the database was not reachable at startup, and indexes again every product it reloads.
+ */
+public class ProductCatalog {
+
+	/**
+	 * Loads products for the catalog.
+	 */
+	public interface Loader {
+
+		/**
+		 * @return All the products.
+		 * @throws SQLException if the products could not be loaded.
+		 */
+		List<ProductSummary> loadAll() throws SQLException;
+
+		/**
+		 * @param prodId The product ID.
+		 * @return The product, or null if it does not exist anymore.
+		 * @throws SQLException if the product could not be loaded.
+		 */
+		ProductSummary load(String prodId) throws SQLException;
+	}
+
+	/** How long after a failed load the catalog serves what it has before loading again. */
+	private static final long RETRY_MILLIS = 10000;
+
+	/** Served when the catalog could never be loaded. */
+	private static final Snapshot EMPTY = new Snapshot(Collections.<ProductSummary>emptyList(), 0);
+
+	private static final ProductCatalog SHARED = new ProductCatalog(new DatabaseLoader(),
+			AppConfig.getLong("catalog.ttlSeconds", 300) * 1000, System::currentTimeMillis,
+			ProductSearchIndex.shared());
+
+	private final Loader loader;
+	private final long ttlMillis;
+	private final LongSupplier clock;
+	private final ProductSearchIndex searchIndex;
+
+	private volatile Snapshot snapshot;
+	private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+	private final ReentrantLock refreshLock = new ReentrantLock();
+
+	// No load is tried before this time, after a failed one
+	private volatile long retryAt;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final AtomicLong refreshCount = new AtomicLong();
+	private final AtomicLong refreshNanos = new AtomicLong();
+	private volatile long lastRefreshNanos;
+
+	/**
+	 * Creates a new catalog.
+	 *
+	 * @param loader Where the products are loaded from.
+	 * @param ttlMillis How long a full load is used before the whole catalog is reloaded, 0 to never expire.
+	 * @param clock The time source, in milliseconds.
+	 */
+	public ProductCatalog(Loader loader, long ttlMillis, LongSupplier clock) {
+		this(loader, ttlMillis, clock, null);
+	}
+
+	/**
+	 * Creates a new catalog that also keeps a search index: every full load of the catalog rebuilds the index,
+	 * and searches are answered by the index.
+	 *
+	 * @param loader Where the products are loaded from.
+	 * @param ttlMillis How long a full load is used before the whole catalog is reloaded, 0 to never expire.
+	 * @param clock The time source, in milliseconds.
+	 * @param searchIndex The index to rebuild.
+	 */
+	public ProductCatalog(Loader loader, long ttlMillis, LongSupplier clock, ProductSearchIndex searchIndex) {
+		this.loader = loader;
+		this.ttlMillis = ttlMillis;
+		this.clock = clock;
+		this.searchIndex = searchIndex;
+	}
+
+	/**
+	 * @return The catalog shared by the whole application, loaded from the database.
+	 */
+	public static ProductCatalog shared() {
+		return SHARED;
+	}
+
+	/**
+	 * @return true if the catalog holds the products of the database, false while it could not be loaded (its reads
+	 *         then find no products).
+	 */
+	public boolean isLoaded() {
+		return current() != EMPTY;
+	}
+
+	/**
+	 * @return All products, in database order.
+	 */
+	public List<ProductSummary> getAllProducts() {
+		return current().all;
+	}
+
+	/**
+	 * @param prodId The product ID.
+	 * @return The product, or null if it does not exist.
+	 */
+	public ProductSummary getProduct(String prodId) {
+		return current().byId.get(prodId);
+	}
+
+	/**
+	 * @param prodIds Product IDs.
+	 * @return The products with these IDs, in the same order, skipping the ones that do not exist.
+	 */
+	public List<ProductSummary> getProducts(List<String> prodIds) {
+		Map<String, ProductSummary> byId = current().byId;
+		List<ProductSummary> products = new ArrayList<ProductSummary>();
+		for (String prodId : prodIds) {
+			ProductSummary product = byId.get(prodId);
+			if (product != null)
+				products.add(product);
+		}
+		return products;
+	}
+
+	/**
+	 * Retrieves all products whose type contains the given text, ignoring case, like
+	 * {@link ProductServiceImpl#getAllProductsByType(String)}.
+	 *
+	 * @param type The product type to search for.
+	 * @return The matching products.
+	 */
+	public List<ProductSummary> getAllProductsByType(String type) {
+		Snapshot current = current();
+		String wanted = type.toLowerCase();
+
+		List<ProductSummary> exact = current.byType.get(wanted);
+		List<ProductSummary> products = new ArrayList<ProductSummary>();
+		if (exact != null)
+			products.addAll(exact);
+		for (Map.Entry<String, List<ProductSummary>> group : current.byType.entrySet()) {
+			if (!group.getKey().equals(wanted) && group.getKey().contains(wanted))
+				products.addAll(group.getValue());
+		}
+		return products;
+	}
+
+	/**
+	 * Searches the products by type, name or info, like {@link ProductServiceImpl#searchAllProducts(String)}.
+	 * The {@link ProductSearchIndex} ranks the results once it is built; until then the catalog is scanned for
+	 * the text, ignoring case.
+	 *
+	 * @param search The search term.
+	 * @return The matching products.
+	 */
+	public List<ProductSummary> searchAllProducts(String search) {
+		// Loading the catalog also builds the index
+		Snapshot current = current();
+		if (searchIndex != null && searchIndex.isReady())
+			return getProducts(searchIndex.search(search, 0));
+
+		String wanted = search.toLowerCase();
+
+		List<ProductSummary> products = new ArrayList<ProductSummary>();
+		for (ProductSummary product : current.all) {
+			if (contains(product.getProdType(), wanted) || contains(product.getProdName(), wanted)
+					|| contains(product.getProdInfo(), wanted))
+				products.add(product);
+		}
+		return products;
+	}
+
+	/**
+	 * Retrieves one page of the catalog, like {@link ProductServiceImpl#getProductPage(String, String, String, String, int)}
+	 * but served from memory. The page starts with a binary search for the position after the page token, so only
+	 * the products of the page (and those skipped by the filters) are looked at.
+	 * <p>
+	 * A search is answered by the {@link ProductSearchIndex} once it is built, and listed best match first unless
+	 * another order is asked for; until then the catalog is scanned for the text, ignoring case, in product id order.
+	 *
+	 * @param type Only list products whose type contains this text, or null for all types.
+	 * @param search Only list products matching this search, or null.
+	 * @param sortBy "id", "price", "name", "relevance", or null for the default order.
+	 * @param pageToken The next page token of the previous page, or null for the first page.
+	 * @param pageSize The number of products per page.
+	 * @return The page of products.
+	 */
+	public ProductPage getProductPage(String type, String search, String sortBy, String pageToken, int pageSize) {
+		sortBy = PageToken.normalizeSort(sortBy, search);
+		pageSize = ProductPage.normalizePageSize(pageSize);
+
+		// Loading the catalog also builds the index
+		Snapshot current = current();
+		boolean indexed = search != null && searchIndex != null && searchIndex.isReady();
+		if (PageToken.SORT_RELEVANCE.equals(sortBy)) {
+			if (indexed)
+				return getRankedPage(current, type, search, pageToken, pageSize);
+			sortBy = PageToken.SORT_ID;
+		}
+
+		List<ProductSummary> sorted = current.sortedBy(sortBy);
+
+		int start = 0;
+		PageToken after = PageToken.parse(pageToken);
+		if (after != null && after.getSortBy().equals(sortBy)) {
+			int position = Collections.binarySearch(sorted, after.toProbe(), PageToken.comparator(sortBy));
+			start = position >= 0 ? position + 1 : -position - 1;
+		}
+
+		String wantedType = type == null ? null : type.toLowerCase();
+		String wanted = search == null ? null : search.toLowerCase();
+		Set<String> found = null;
+		if (indexed)
+			found = new HashSet<String>(searchIndex.search(search, 0));
+
+		List<ProductSummary> products = new ArrayList<ProductSummary>();
+		String nextPageToken = null;
+		for (int i = start; i < sorted.size(); i++) {
+			ProductSummary product = sorted.get(i);
+			if (wantedType != null && !contains(product.getProdType(), wantedType))
+				continue;
+			if (found != null && !found.contains(product.getProdId()))
+				continue;
+			if (found == null && wanted != null && !(contains(product.getProdType(), wanted)
+					|| contains(product.getProdName(), wanted) || contains(product.getProdInfo(), wanted)))
+				continue;
+			if (products.size() == pageSize) {
+				nextPageToken = PageToken.after(sortBy, products.get(pageSize - 1)).toString();
+				break;
+			}
+			products.add(product);
+		}
+
+		return new ProductPage(products, sortBy, nextPageToken);
+	}
+
+	// One page of the search results, best match first; the page token holds the score and id of the last product
+	private ProductPage getRankedPage(Snapshot current, String type, String search, String pageToken, int pageSize) {
+		List<ProductSearchIndex.Match> matches = searchIndex.rank(search);
+
+		int start = 0;
+		PageToken after = PageToken.parse(pageToken);
+		if (after != null && after.getSortBy().equals(PageToken.SORT_RELEVANCE)) {
+			ProductSearchIndex.Match probe = new ProductSearchIndex.Match(after.getProdId(),
+					Integer.parseInt(after.getValue()));
+			int position = Collections.binarySearch(matches, probe, ProductSearchIndex.RANKING);
+			start = position >= 0 ? position + 1 : -position - 1;
+		}
+
+		Map<String, ProductSummary> byId = current.byId;
+		String wantedType = type == null ? null : type.toLowerCase();
+
+		List<ProductSummary> products = new ArrayList<ProductSummary>();
+		ProductSearchIndex.Match last = null;
+		String nextPageToken = null;
+		for (int i = start; i < matches.size(); i++) {
+			ProductSearchIndex.Match match = matches.get(i);
+			ProductSummary product = byId.get(match.getProdId());
+			if (product == null || (wantedType != null && !contains(product.getProdType(), wantedType)))
+				continue;
+			if (products.size() == pageSize) {
+				nextPageToken = PageToken.afterMatch(last.getScore(), last.getProdId()).toString();
+				break;
+			}
+			products.add(product);
+			last = match;
+		}
+
+		return new ProductPage(products, PageToken.SORT_RELEVANCE, nextPageToken);
+	}
+
+	/**
+	 * Marks a product as changed; it is reloaded on the next read.
+	 *
+	 * @param prodId The ID of the product that was added, updated or removed.
+	 */
+	public void invalidate(String prodId) {
+		if (prodId != null)
+			dirty.add(prodId);
+	}
+
+	/**
+	 * Drops the whole catalog; it is reloaded on the next read.
+	 */
+	public void invalidateAll() {
+		snapshot = null;
+	}
+
+	/**
+	 * @return The number of reads served from the cache.
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return The number of reads that had to load products first.
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return The number of full or partial reloads.
+	 */
+	public long getRefreshCount() {
+		return refreshCount.get();
+	}
+
+	/**
+	 * @return The average duration of a reload in milliseconds.
+	 */
+	public double getAverageRefreshMillis() {
+		long count = refreshCount.get();
+		return count == 0 ? 0 : refreshNanos.get() / 1e6 / count;
+	}
+
+	/**
+	 * @return The duration of the last reload in milliseconds.
+	 */
+	public double getLastRefreshMillis() {
+		return lastRefreshNanos / 1e6;
+	}
+
+	@Override
+	public String toString() {
+		return "ProductCatalog [hits=" + getHitCount() + ", misses=" + getMissCount() + ", refreshes="
+				+ getRefreshCount() + ", avgRefreshMillis=" + getAverageRefreshMillis() + ", lastRefreshMillis="
+				+ getLastRefreshMillis() + "]";
+	}
+
+	private Snapshot current() {
+		Snapshot current = snapshot;
+		if (current != null && isFresh(current)) {
+			hits.increment();
+			return current;
+		}
+
+		// While another thread reloads, keep serving the previous snapshot rather than waiting for it
+		if (current != null && !refreshLock.tryLock()) {
+			hits.increment();
+			return current;
+		}
+		if (current == null) {
+			// The database was just found down: do not make every read wait for it
+			if (isRetryPending())
+				return EMPTY;
+			refreshLock.lock();
+		}
+
+		try {
+			// Another thread may have loaded the catalog while we were waiting for the lock
+			current = snapshot;
+			if (current != null && isFresh(current)) {
+				hits.increment();
+				return current;
+			}
+			if (current == null && isRetryPending())
+				return EMPTY;
+
+			misses.increment();
+			long start = System.nanoTime();
+
+			boolean loaded = true;
+			if (current == null || isExpired(current)) {
+				// Invalidations arriving while we load stay in the set and are applied below
+				List<String> changed = new ArrayList<String>(dirty);
+				dirty.removeAll(changed);
+				try {
+					current = new Snapshot(loader.loadAll(), clock.getAsLong());
+					if (searchIndex != null)
+						searchIndex.rebuild(current.all);
+				} catch (SQLException e) {
+					e.printStackTrace();
+					// Keep the expired snapshot, and the products to reload, until the next try
+					dirty.addAll(changed);
+					retryAt = clock.getAsLong() + RETRY_MILLIS;
+					loaded = false;
+					if (current == null)
+						return EMPTY;
+				}
+			}
+
+			// A product saved during the full load may have been read before it changed, and the rebuilt index
+			// then replaced the version indexed when it was saved: it is reloaded and indexed again right away
+			if (loaded && !dirty.isEmpty())
+				current = reloadChanged(current);
+
+			lastRefreshNanos = System.nanoTime() - start;
+			refreshNanos.addAndGet(lastRefreshNanos);
+			refreshCount.incrementAndGet();
+
+			snapshot = current;
+			return current;
+
+		} finally {
+			refreshLock.unlock();
+		}
+	}
+
+	// Reloads the invalidated products into a new snapshot, and in the search index
+	private Snapshot reloadChanged(Snapshot current) {
+		Map<String, ProductSummary> products = new LinkedHashMap<String, ProductSummary>(current.byId);
+		List<String> failed = new ArrayList<String>();
+		Iterator<String> changed = dirty.iterator();
+		while (changed.hasNext()) {
+			String prodId = changed.next();
+			changed.remove();
+			try {
+				ProductSummary product = loader.load(prodId);
+				if (product == null) {
+					products.remove(prodId);
+					if (searchIndex != null)
+						searchIndex.remove(prodId);
+				} else {
+					products.put(prodId, product);
+					if (searchIndex != null)
+						searchIndex.index(product);
+				}
+			} catch (SQLException e) {
+				e.printStackTrace();
+				// The previous version of the product is kept until the next try
+				failed.add(prodId);
+			}
+		}
+		if (!failed.isEmpty()) {
+			dirty.addAll(failed);
+			retryAt = clock.getAsLong() + RETRY_MILLIS;
+		}
+		return new Snapshot(products.values(), current.loadedAt);
+	}
+
+	// Up to date, or not to be reloaded yet because the last load failed
+	private boolean isFresh(Snapshot current) {
+		return (dirty.isEmpty() && !isExpired(current)) || isRetryPending();
+	}
+
+	private boolean isRetryPending() {
+		return clock.getAsLong() < retryAt;
+	}
+
+	private boolean isExpired(Snapshot current) {
+		return ttlMillis > 0 && clock.getAsLong() - current.loadedAt >= ttlMillis;
+	}
+
+	private static boolean contains(String value, String wanted) {
+		return value != null && value.toLowerCase().contains(wanted);
+	}
+
+	/**
+	 * An immutable view of the catalog at one point in time.
+	 */
+	private static class Snapshot {
+		private final List<ProductSummary> all;
+		private final Map<String, ProductSummary> byId = new LinkedHashMap<String, ProductSummary>();
+		private final Map<String, List<ProductSummary>> byType = new LinkedHashMap<String, List<ProductSummary>>();
+		private final long loadedAt;
+		private final Map<String, List<ProductSummary>> sorted = new ConcurrentHashMap<String, List<ProductSummary>>();
+
+		private Snapshot(Collection<ProductSummary> products, long loadedAt) {
+			this.loadedAt = loadedAt;
+			for (ProductSummary product : products) {
+				byId.put(product.getProdId(), product);
+				String type = product.getProdType() == null ? "" : product.getProdType().toLowerCase();
+				byType.computeIfAbsent(type, key -> new ArrayList<ProductSummary>()).add(product);
+			}
+			for (Map.Entry<String, List<ProductSummary>> group : byType.entrySet())
+				group.setValue(Collections.unmodifiableList(group.getValue()));
+			this.all = Collections.unmodifiableList(new ArrayList<ProductSummary>(byId.values()));
+		}
+
+		/**
+		 * @return All products in the given order, sorted once per snapshot.
+		 */
+		private List<ProductSummary> sortedBy(String sortBy) {
+			return sorted.computeIfAbsent(sortBy, key -> {
+				List<ProductSummary> products = new ArrayList<ProductSummary>(all);
+				products.sort(PageToken.comparator(key));
+				return Collections.unmodifiableList(products);
+			});
+		}
+	}
+
+	/**
+	 * Loads the catalog through {@link ProductServiceImpl}.
+	 */
+	private static class DatabaseLoader implements Loader {
+
+		@Override
+		public List<ProductSummary> loadAll() throws SQLException {
+			return new ProductServiceImpl().loadAllProducts();
+		}
+
+		@Override
+		public ProductSummary load(String prodId) throws SQLException {
+			return new ProductServiceImpl().loadProductDetails(prodId);
+		}
+	}
+}
@@ -0,0 +1,287 @@
+package com.shashi.service.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.shashi.beans.ProductSummary;
+
+/**
+ * An in-process inverted index over the name, type and info of the products, used by the product search
+ * instead of LIKE '%term%' scans on the product table.
+ * <p>
+ * Text is split into words of letters and digits and lower-cased. Every word of the query must match a word of
+ * the product, either exactly or as a prefix ("gal" finds "galaxy"). Results are ranked by a score that favours
+ * exact matches and matches in the name over the type and the info.
+ * <p>
+ * The index is built by the shared {@link ProductCatalog} when it loads all products (first at startup, see
+ * AppContextListener) and kept up to date by the write methods of {@link ProductServiceImpl}. It only holds
+ * product ids; the product details come from the {@link ProductCatalog}.
+ * <p>
+ * Alongside, it keeps a trie of the product names and types for the suggestions shown while typing a search,
+ * which tolerate typos (see {@link #suggest(String, int)}).
+ */
+public class ProductSearchIndex {
+
+	private static final int NAME_WEIGHT = 3;
+	private static final int TYPE_WEIGHT = 2;
+	private static final int INFO_WEIGHT = 1;
+
+	/** A word matching exactly counts this many times more than a word only matching as a prefix. */
+	private static final int EXACT_MATCH_FACTOR = 2;
+
+	private static final ProductSearchIndex SHARED = new ProductSearchIndex();
+
+	/** Best score first, then by product id. */
+	public static final Comparator<Match> RANKING = Comparator.comparingInt((Match match) -> -match.getScore())
+			.thenComparing(Match::getProdId);
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	// word -> (product id -> weight), sorted so that all the words starting with a prefix are adjacent
+	private TreeMap<String, Map<String, Integer>> postings = new TreeMap<String, Map<String, Integer>>();
+
+	// product id -> (word -> weight), to remove a product from the postings when it changes
+	private Map<String, Map<String, Integer>> wordsByProduct = new HashMap<String, Map<String, Integer>>();
+
+	private SuggestionTrie suggestions = new SuggestionTrie();
+
+	private volatile boolean ready;
+
+	/**
+	 * @return The index shared by the whole application.
+	 */
+	public static ProductSearchIndex shared() {
+		return SHARED;
+	}
+
+	/**
+	 * @return true once the index has been built from a non-empty catalog.
+	 */
+	public boolean isReady() {
+		return ready;
+	}
+
+	/**
+	 * Replaces the content of the index with the given products.
+	 *
+	 * @param products All the products of the catalog.
+	 */
+	public void rebuild(Collection<? extends ProductSummary> products) {
+		TreeMap<String, Map<String, Integer>> newPostings = new TreeMap<String, Map<String, Integer>>();
+		Map<String, Map<String, Integer>> newWordsByProduct = new HashMap<String, Map<String, Integer>>();
+		SuggestionTrie newSuggestions = new SuggestionTrie();
+		for (ProductSummary product : products) {
+			add(product, newPostings, newWordsByProduct);
+			newSuggestions.add(product.getProdId(), product.getProdName(), product.getProdType());
+		}
+
+		lock.writeLock().lock();
+		try {
+			postings = newPostings;
+			wordsByProduct = newWordsByProduct;
+			suggestions = newSuggestions;
+			ready = !products.isEmpty();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Adds a product to the index, replacing what was indexed for it before.
+	 *
+	 * @param product The added or updated product.
+	 */
+	public void index(ProductSummary product) {
+		lock.writeLock().lock();
+		try {
+			removeWords(product.getProdId());
+			add(product, postings, wordsByProduct);
+			suggestions.add(product.getProdId(), product.getProdName(), product.getProdType());
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes a product from the index.
+	 *
+	 * @param prodId The ID of the removed product.
+	 */
+	public void remove(String prodId) {
+		lock.writeLock().lock();
+		try {
+			removeWords(prodId);
+			suggestions.remove(prodId);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Searches the index.
+	 *
+	 * @param query The words to search for.
+	 * @param limit The maximum number of results, 0 for all of them.
+	 * @return The IDs of the matching products, best match first.
+	 */
+	public List<String> search(String query, int limit) {
+		List<String> prodIds = new ArrayList<String>();
+		for (Match match : rank(query)) {
+			if (limit > 0 && prodIds.size() == limit)
+				break;
+			prodIds.add(match.getProdId());
+		}
+		return prodIds;
+	}
+
+	/**
+	 * Searches the index, keeping the score of every match.
+	 *
+	 * @param query The words to search for.
+	 * @return The matching products, in {@link #RANKING} order.
+	 */
+	public List<Match> rank(String query) {
+		List<String> words = tokenize(query);
+		if (words.isEmpty())
+			return new ArrayList<Match>();
+
+		Map<String, Integer> scores = null;
+
+		lock.readLock().lock();
+		try {
+			for (String word : words) {
+				Map<String, Integer> wordScores = new HashMap<String, Integer>();
+				for (Map.Entry<String, Map<String, Integer>> posting : postings
+						.subMap(word, true, word + Character.MAX_VALUE, false).entrySet()) {
+					int factor = posting.getKey().equals(word) ? EXACT_MATCH_FACTOR : 1;
+					for (Map.Entry<String, Integer> product : posting.getValue().entrySet())
+						wordScores.merge(product.getKey(), product.getValue() * factor, Integer::sum);
+				}
+
+				if (scores == null) {
+					scores = wordScores;
+				} else {
+					// Every word of the query must match
+					scores.keySet().retainAll(wordScores.keySet());
+					for (Map.Entry<String, Integer> score : scores.entrySet())
+						score.setValue(score.getValue() + wordScores.get(score.getKey()));
+				}
+				if (scores.isEmpty())
+					break;
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+
+		List<Match> ranked = new ArrayList<Match>(scores.size());
+		for (Map.Entry<String, Integer> score : scores.entrySet())
+			ranked.add(new Match(score.getKey(), score.getValue()));
+		ranked.sort(RANKING);
+		return ranked;
+	}
+
+	/**
+	 * Suggests product names and types for what was typed so far in the search box. Names and types starting with
+	 * the query come first, then the ones within one or two typos of it.
+	 *
+	 * @param query The text typed so far.
+	 * @param limit The maximum number of suggestions.
+	 * @return The suggestions, best first.
+	 */
+	public List<String> suggest(String query, int limit) {
+		lock.readLock().lock();
+		try {
+			return suggestions.suggest(query, limit);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Splits a text into lower-cased words of letters and digits.
+	 *
+	 * @param text The text, may be null.
+	 * @return The distinct words, in order of appearance.
+	 */
+	public static List<String> tokenize(String text) {
+		List<String> words = new ArrayList<String>();
+		if (text == null)
+			return words;
+
+		String lower = text.toLowerCase();
+		int start = -1;
+		for (int i = 0; i <= lower.length(); i++) {
+			boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+			if (wordChar && start < 0) {
+				start = i;
+			} else if (!wordChar && start >= 0) {
+				String word = lower.substring(start, i);
+				if (!words.contains(word))
+					words.add(word);
+				start = -1;
+			}
+		}
+		return words;
+	}
+
+	private static void add(ProductSummary product, TreeMap<String, Map<String, Integer>> postings,
+			Map<String, Map<String, Integer>> wordsByProduct) {
+		Map<String, Integer> words = new LinkedHashMap<String, Integer>();
+		addWords(words, product.getProdName(), NAME_WEIGHT);
+		addWords(words, product.getProdType(), TYPE_WEIGHT);
+		addWords(words, product.getProdInfo(), INFO_WEIGHT);
+
+		wordsByProduct.put(product.getProdId(), words);
+		for (Map.Entry<String, Integer> word : words.entrySet())
+			postings.computeIfAbsent(word.getKey(), key -> new HashMap<String, Integer>()).put(product.getProdId(),
+					word.getValue());
+	}
+
+	private static void addWords(Map<String, Integer> words, String text, int weight) {
+		for (String word : tokenize(text))
+			words.merge(word, weight, Math::max);
+	}
+
+	private void removeWords(String prodId) {
+		Map<String, Integer> words = wordsByProduct.remove(prodId);
+		if (words == null)
+			return;
+
+		for (String word : words.keySet()) {
+			Map<String, Integer> products = postings.get(word);
+			if (products != null) {
+				products.remove(prodId);
+				if (products.isEmpty())
+					postings.remove(word);
+			}
+		}
+	}
+
+	/**
+	 * A product matching a search, with its score.
+	 */
+	public static final class Match {
+		private final String prodId;
+		private final int score;
+
+		public Match(String prodId, int score) {
+			this.prodId = prodId;
+			this.score = score;
+		}
+
+		public String getProdId() {
+			return prodId;
+		}
+
+		public int getScore() {
+			return score;
+		}
+	}
+}
@@ -1,19 +1,27 @@
 package com.shashi.service.impl;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.Channels;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
-import com.shashi.beans.DemandBean;
 import com.shashi.beans.ProductBean;
+import com.shashi.beans.ProductPage;
+import com.shashi.beans.ProductSummary;
+import com.shashi.service.ImageStore;
 import com.shashi.service.ProductService;
 import com.shashi.utility.DBUtil;
 import com.shashi.utility.IDUtil;
-import com.shashi.utility.MailMessage;
+import com.shashi.utility.PageToken;
 
 /**
  * Implementation of the ProductService interface.
@@ -21,6 +29,30 @@ import com.shashi.utility.MailMessage;
  */
 public class ProductServiceImpl implements ProductService {
 
+	/** Every column of the product table except the image blob. */
+	private static final String SUMMARY_COLUMNS = "pid, pname, ptype, pinfo, pprice, pquantity, image_key";
+
+	private final ImageStore imageStore;
+	private final ImageVariants imageVariants;
+
+	/**
+	 * Creates a service storing the product images in the image store of the application.
+	 */
+	public ProductServiceImpl() {
+		this(FileImageStore.shared(), ImageVariants.shared());
+	}
+
+	/**
+	 * Creates a service storing the product images in the given store.
+	 *
+	 * @param imageStore Where the product images are saved.
+	 * @param imageVariants Generates the smaller variants of the saved images.
+	 */
+	public ProductServiceImpl(ImageStore imageStore, ImageVariants imageVariants) {
+		this.imageStore = imageStore;
+		this.imageVariants = imageVariants;
+	}
+
 	/**
 	 * Adds a new product to the database.
 	 * This is a convenience method that constructs a ProductBean before calling the primary addProduct method.
@@ -48,6 +80,7 @@ public class ProductServiceImpl implements ProductService {
 
 	/**
 	 * Adds a new product to the database using a ProductBean.
+	 * The image is saved to the image store; the product row only keeps its key.
 	 *
 	 * @param product The ProductBean object containing all product details.
 	 * @return A string indicating the status of the operation.
@@ -59,19 +92,28 @@ public class ProductServiceImpl implements ProductService {
 		if (product.getProdId() == null)
 			product.setProdId(IDUtil.generateId());
 
+		String imageKey;
+		try {
+			imageKey = saveImage(product.getProdImage());
+		} catch (IOException e) {
+			e.printStackTrace();
+			return "Error: " + e.getMessage();
+		}
+
 		Connection con = DBUtil.provideConnection();
 
 		PreparedStatement ps = null;
 
 		try {
-			ps = con.prepareStatement("insert into product values(?,?,?,?,?,?,?);");
+			ps = con.prepareStatement(
+					"insert into product (" + SUMMARY_COLUMNS + ") values(?,?,?,?,?,?,?);");
 			ps.setString(1, product.getProdId());
 			ps.setString(2, product.getProdName());
 			ps.setString(3, product.getProdType());
 			ps.setString(4, product.getProdInfo());
 			ps.setDouble(5, product.getProdPrice());
 			ps.setInt(6, product.getProdQuantity());
-			ps.setBlob(7, product.getProdImage());
+			ps.setString(7, imageKey);
 
 			int k = ps.executeUpdate();
 
@@ -79,6 +121,8 @@ public class ProductServiceImpl implements ProductService {
 
 				status = "Product Added Successfully with Product Id: " + product.getProdId();
 
+				productSaved(product);
+
 			} else {
 
 				// This status message is misleading, as a failed insert is not an "Updation Failed".
@@ -91,8 +135,8 @@ public class ProductServiceImpl implements ProductService {
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
 		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
 
 		return status;
 	}
@@ -122,6 +166,8 @@ public class ProductServiceImpl implements ProductService {
 			if (k > 0) {
 				status = "Product Removed Successfully!";
 
+				productRemoved(prodId);
+
 				// Then, delete the product from all user carts to maintain data integrity.
 				ps2 = con.prepareStatement("delete from usercart where prodid=?");
 
@@ -129,6 +175,8 @@ public class ProductServiceImpl implements ProductService {
 
 				ps2.executeUpdate();
 
+				CartStore.shared().removeProduct(prodId);
+
 			}
 
 		} catch (SQLException e) {
@@ -136,15 +184,16 @@ public class ProductServiceImpl implements ProductService {
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
-		DBUtil.closeConnection(ps);
 		DBUtil.closeConnection(ps2);
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
 
 		return status;
 	}
 
 	/**
 	 * Updates an existing product's details, including the image.
+	 * The new image is saved to the image store, and an image still kept in the product row is dropped.
 	 *
 	 * @param prevProduct The product bean with the original product ID.
 	 * @param updatedProduct The product bean with the new details.
@@ -161,34 +210,45 @@ public class ProductServiceImpl implements ProductService {
 			return status;
 		}
 
+		String imageKey;
+		try {
+			imageKey = saveImage(updatedProduct.getProdImage());
+		} catch (IOException e) {
+			e.printStackTrace();
+			return status;
+		}
+
 		Connection con = DBUtil.provideConnection();
 
 		PreparedStatement ps = null;
 
 		try {
 			ps = con.prepareStatement(
-					"update product set pname=?,ptype=?,pinfo=?,pprice=?,pquantity=?,image=? where pid=?");
+					"update product set pname=?,ptype=?,pinfo=?,pprice=?,pquantity=?,image_key=?,image=null where pid=?");
 
 			ps.setString(1, updatedProduct.getProdName());
 			ps.setString(2, updatedProduct.getProdType());
 			ps.setString(3, updatedProduct.getProdInfo());
 			ps.setDouble(4, updatedProduct.getProdPrice());
 			ps.setInt(5, updatedProduct.getProdQuantity());
-			ps.setBlob(6, updatedProduct.getProdImage());
+			ps.setString(6, imageKey);
 			ps.setString(7, prevProduct.getProdId());
 
 			int k = ps.executeUpdate();
 
-			if (k > 0)
+			if (k > 0) {
 				status = "Product Updated Successfully!";
 
+				productSaved(updatedProduct);
+			}
+
 		} catch (SQLException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
 		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
 
 		return status;
 	}
@@ -216,74 +276,168 @@ public class ProductServiceImpl implements ProductService {
 
 			int k = ps.executeUpdate();
 
-			if (k > 0)
+			if (k > 0) {
 				status = "Price Updated Successfully!";
+
+				productChanged(prodId);
+			}
 		} catch (SQLException e) {
 			status = "Error: " + e.getMessage();
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
 		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
 
 		return status;
 	}
 
 	/**
-	 * Retrieves a list of all products in the database.
+	 * Retrieves a list of all products in the database, without their images.
 	 *
-	 * @return A list of ProductBean objects.
+	 * @return A list of ProductSummary objects.
 	 */
 	@Override
-	public List<ProductBean> getAllProducts() {
-		List<ProductBean> products = new ArrayList<ProductBean>();
+	public List<ProductSummary> getAllProducts() {
+		try {
+			return loadAllProducts();
+		} catch (SQLException e) {
+			e.printStackTrace();
+			return new ArrayList<ProductSummary>();
+		}
+	}
+
+	/**
+	 * Retrieves a list of all products in the database, without their images, telling a failed query apart from an
+	 * empty table. Used by the {@link ProductCatalog}.
+	 *
+	 * @return A list of ProductSummary objects.
+	 * @throws SQLException if the products could not be read.
+	 */
+	List<ProductSummary> loadAllProducts() throws SQLException {
+		List<ProductSummary> products = new ArrayList<ProductSummary>();
 
 		Connection con = DBUtil.provideConnection();
+		if (con == null)
+			throw new SQLException("No database connection");
 
 		PreparedStatement ps = null;
 		ResultSet rs = null;
 
 		try {
-			ps = con.prepareStatement("select * from product");
+			ps = con.prepareStatement("select " + SUMMARY_COLUMNS + " from product");
 
 			rs = ps.executeQuery();
 
 			while (rs.next()) {
 
-				ProductBean product = new ProductBean();
+				products.add(readSummary(rs, new ProductSummary()));
+
+			}
+
+		} finally {
+			DBUtil.closeConnection(rs);
+			DBUtil.closeConnection(ps);
+			DBUtil.closeConnection(con);
+		}
+
+		return products;
+	}
+
+	/**
+	 * Retrieves one page of the product listing with a keyset query: instead of an offset, the query starts after
+	 * the sort key of the last product of the previous page, which the (pprice, pid) and (pname, pid) indexes serve
+	 * directly. One extra row is fetched to know whether another page follows.
+	 * <p>
+	 * Searches are not run against the product table: they are answered by the {@link ProductCatalog} and its
+	 * {@link ProductSearchIndex}, best match first unless another order is asked for.
+	 *
+	 * @param type Only list products whose type contains this text, or null for all types.
+	 * @param search Only list products matching this search, or null.
+	 * @param sortBy "id", "price", "name", "relevance", or null for the default order.
+	 * @param pageToken The next page token of the previous page, or null for the first page.
+	 * @param pageSize The number of products per page.
+	 * @return The page of products.
+	 */
+	@Override
+	public ProductPage getProductPage(String type, String search, String sortBy, String pageToken, int pageSize) {
+		if (search != null)
+			return ProductCatalog.shared().getProductPage(type, search, sortBy, pageToken, pageSize);
+
+		sortBy = PageToken.normalizeSort(sortBy, null);
+		pageSize = ProductPage.normalizePageSize(pageSize);
 
-				product.setProdId(rs.getString(1));
-				product.setProdName(rs.getString(2));
-				product.setProdType(rs.getString(3));
-				product.setProdInfo(rs.getString(4));
-				product.setProdPrice(rs.getDouble(5));
-				product.setProdQuantity(rs.getInt(6));
-				product.setProdImage(rs.getAsciiStream(7));
+		PageToken after = PageToken.parse(pageToken);
+		if (after != null && !after.getSortBy().equals(sortBy))
+			after = null;
 
-				products.add(product);
+		String sortColumn = PageToken.SORT_PRICE.equals(sortBy) ? "pprice"
+				: PageToken.SORT_NAME.equals(sortBy) ? "pname" : null;
 
+		StringBuilder sql = new StringBuilder("select " + SUMMARY_COLUMNS + " from product where 1=1");
+		List<Object> params = new ArrayList<Object>();
+
+		if (type != null) {
+			sql.append(" and lower(ptype) like ?");
+			params.add("%" + type.toLowerCase() + "%");
+		}
+		if (after != null) {
+			if (sortColumn == null) {
+				sql.append(" and pid > ?");
+			} else {
+				sql.append(" and (" + sortColumn + ", pid) > (?, ?)");
+				params.add(PageToken.SORT_PRICE.equals(sortBy) ? (Object) Double.valueOf(after.getValue())
+						: after.getValue());
 			}
+			params.add(after.getProdId());
+		}
+		sql.append(sortColumn == null ? " order by pid" : " order by " + sortColumn + ", pid");
+		sql.append(" limit ?");
+		params.add(pageSize + 1);
+
+		List<ProductSummary> products = new ArrayList<ProductSummary>();
+
+		Connection con = DBUtil.provideConnection();
+
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+
+		try {
+			ps = con.prepareStatement(sql.toString());
+			for (int i = 0; i < params.size(); i++)
+				ps.setObject(i + 1, params.get(i));
+
+			rs = ps.executeQuery();
+
+			while (rs.next())
+				products.add(readSummary(rs, new ProductSummary()));
 
 		} catch (SQLException e) {
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
-		DBUtil.closeConnection(ps);
 		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
 
-		return products;
+		String nextPageToken = null;
+		if (products.size() > pageSize) {
+			products = new ArrayList<ProductSummary>(products.subList(0, pageSize));
+			nextPageToken = PageToken.after(sortBy, products.get(pageSize - 1)).toString();
+		}
+
+		return new ProductPage(products, sortBy, nextPageToken);
 	}
 
 	/**
-	 * Retrieves all products that match a given type (category).
+	 * Retrieves all products that match a given type (category), without their images.
 	 *
 	 * @param type The product type to search for.
-	 * @return A list of matching ProductBean objects.
+	 * @return A list of matching ProductSummary objects.
 	 */
 	@Override
-	public List<ProductBean> getAllProductsByType(String type) {
-		List<ProductBean> products = new ArrayList<ProductBean>();
+	public List<ProductSummary> getAllProductsByType(String type) {
+		List<ProductSummary> products = new ArrayList<ProductSummary>();
 
 		Connection con = DBUtil.provideConnection();
 
@@ -291,23 +445,14 @@ public class ProductServiceImpl implements ProductService {
 		ResultSet rs = null;
 
 		try {
-			ps = con.prepareStatement("SELECT * FROM `shopping-cart`.product where lower(ptype) like ?;");
+			ps = con.prepareStatement(
+					"SELECT " + SUMMARY_COLUMNS + " FROM `shopping-cart`.product where lower(ptype) like ?;");
 			ps.setString(1, "%" + type + "%");
 			rs = ps.executeQuery();
 
 			while (rs.next()) {
 
-				ProductBean product = new ProductBean();
-
-				product.setProdId(rs.getString(1));
-				product.setProdName(rs.getString(2));
-				product.setProdType(rs.getString(3));
-				product.setProdInfo(rs.getString(4));
-				product.setProdPrice(rs.getDouble(5));
-				product.setProdQuantity(rs.getInt(6));
-				product.setProdImage(rs.getAsciiStream(7));
-
-				products.add(product);
+				products.add(readSummary(rs, new ProductSummary()));
 
 			}
 
@@ -315,22 +460,38 @@ public class ProductServiceImpl implements ProductService {
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
-		DBUtil.closeConnection(ps);
 		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
 
 		return products;
 	}
 
 	/**
-	 * Searches for products by type, name, or info.
+	 * Searches for products by type, name, or info, without their images.
+	 * The products come from the {@link ProductCatalog}, best match first once the {@link ProductSearchIndex} is
+	 * built; the product table is never scanned for the text.
 	 *
 	 * @param search The search term.
-	 * @return A list of matching ProductBean objects.
+	 * @return A list of matching ProductSummary objects.
 	 */
 	@Override
-	public List<ProductBean> searchAllProducts(String search) {
-		List<ProductBean> products = new ArrayList<ProductBean>();
+	public List<ProductSummary> searchAllProducts(String search) {
+		return ProductCatalog.shared().searchAllProducts(search);
+	}
+
+	/**
+	 * Retrieves the image for a given product ID, from the image store or, for a product whose image was not moved
+	 * there yet, from the product table.
+	 * Prefer {@link #getImageKey(String)} and streaming the image from the store, which does not load it in memory.
+	 *
+	 * @param prodId The product ID.
+	 * @return A byte array representing the image, or null if not found.
+	 */
+	@Override
+	public byte[] getImage(String prodId) {
+		byte[] image = null;
+		String imageKey = null;
 
 		Connection con = DBUtil.provideConnection();
 
@@ -338,50 +499,49 @@ public class ProductServiceImpl implements ProductService {
 		ResultSet rs = null;
 
 		try {
-			ps = con.prepareStatement(
-					"SELECT * FROM `shopping-cart`.product where lower(ptype) like ? or lower(pname) like ? or lower(pinfo) like ?");
-			search = "%" + search + "%";
-			ps.setString(1, search);
-			ps.setString(2, search);
-			ps.setString(3, search);
-			rs = ps.executeQuery();
-
-			while (rs.next()) {
+			ps = con.prepareStatement("select image_key, image from product where  pid=?");
 
-				ProductBean product = new ProductBean();
-
-				product.setProdId(rs.getString(1));
-				product.setProdName(rs.getString(2));
-				product.setProdType(rs.getString(3));
-				product.setProdInfo(rs.getString(4));
-				product.setProdPrice(rs.getDouble(5));
-				product.setProdQuantity(rs.getInt(6));
-				product.setProdImage(rs.getAsciiStream(7));
+			ps.setString(1, prodId);
 
-				products.add(product);
+			rs = ps.executeQuery();
 
+			if (rs.next()) {
+				imageKey = rs.getString("image_key");
+				if (imageKey == null)
+					image = rs.getBytes("image");
 			}
 
 		} catch (SQLException e) {
+			// TODO Auto-generated catch block
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
-		DBUtil.closeConnection(ps);
 		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
 
-		return products;
+		if (imageKey != null) {
+			try {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				if (imageStore.transferTo(imageKey, Channels.newChannel(bytes)) >= 0)
+					image = bytes.toByteArray();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+
+		return image;
 	}
 
 	/**
-	 * Retrieves the image for a given product ID.
+	 * Retrieves the key of a product image in the image store.
 	 *
 	 * @param prodId The product ID.
-	 * @return A byte array representing the image, or null if not found.
+	 * @return The key of the image, or null if the product has no image in the store.
 	 */
 	@Override
-	public byte[] getImage(String prodId) {
-		byte[] image = null;
+	public String getImageKey(String prodId) {
+		String imageKey = null;
 
 		Connection con = DBUtil.provideConnection();
 
@@ -389,73 +549,84 @@ public class ProductServiceImpl implements ProductService {
 		ResultSet rs = null;
 
 		try {
-			ps = con.prepareStatement("select image from product where  pid=?");
+			ps = con.prepareStatement("select image_key from product where pid=?");
 
 			ps.setString(1, prodId);
 
 			rs = ps.executeQuery();
 
 			if (rs.next())
-				image = rs.getBytes("image");
+				imageKey = rs.getString("image_key");
 
 		} catch (SQLException e) {
-			// TODO Auto-generated catch block
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
-		DBUtil.closeConnection(ps);
 		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
 
-		return image;
+		return imageKey;
 	}
 
 	/**
 	 * Retrieves all details for a given product ID.
+	 * The image is not loaded (the bean's image is null); use {@link #getImage(String)} for it.
 	 *
 	 * @param prodId The product ID.
 	 * @return A ProductBean object, or null if not found.
 	 */
 	@Override
 	public ProductBean getProductDetails(String prodId) {
+		try {
+			return loadProductDetails(prodId);
+		} catch (SQLException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Retrieves all details for a given product ID, telling a failed query apart from a missing product. Used by the
+	 * {@link ProductCatalog}.
+	 *
+	 * @param prodId The product ID.
+	 * @return A ProductBean object, or null if there is no such product.
+	 * @throws SQLException if the product could not be read.
+	 */
+	ProductBean loadProductDetails(String prodId) throws SQLException {
 		ProductBean product = null;
 
 		Connection con = DBUtil.provideConnection();
+		if (con == null)
+			throw new SQLException("No database connection");
 
 		PreparedStatement ps = null;
 		ResultSet rs = null;
 
 		try {
-			ps = con.prepareStatement("select * from product where pid=?");
+			ps = con.prepareStatement("select " + SUMMARY_COLUMNS + " from product where pid=?");
 
 			ps.setString(1, prodId);
 			rs = ps.executeQuery();
 
-			if (rs.next()) {
-				product = new ProductBean();
-				product.setProdId(rs.getString(1));
-				product.setProdName(rs.getString(2));
-				product.setProdType(rs.getString(3));
-				product.setProdInfo(rs.getString(4));
-				product.setProdPrice(rs.getDouble(5));
-				product.setProdQuantity(rs.getInt(6));
-				product.setProdImage(rs.getAsciiStream(7));
-			}
+			if (rs.next())
+				product = readSummary(rs, new ProductBean());
 
-		} catch (SQLException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+		} finally {
+			DBUtil.closeConnection(rs);
+			DBUtil.closeConnection(ps);
+			DBUtil.closeConnection(con);
 		}
 
-		DBUtil.closeConnection(con);
-		DBUtil.closeConnection(ps);
-
 		return product;
 	}
 
 	/**
 	 * Updates a product's details without changing the image.
 	 * This method has complex dependencies and is currently untestable without refactoring.
+	 * When the quantity goes up, the customers waiting for the product that the new stock can serve are notified in
+	 * the background by the {@link RestockNotifier}.
 	 *
 	 * @param prevProductId The original product ID.
 	 * @param updatedProduct A ProductBean with the updated information.
@@ -490,27 +661,18 @@ public class ProductServiceImpl implements ProductService {
 
 			int k = ps.executeUpdate();
 
+			if (k > 0)
+				productSaved(updatedProduct);
+
 			// If the update is successful and the quantity has increased, notify users who have demanded the product.
 			if ((k > 0) && (prevQuantity < updatedProduct.getProdQuantity())) {
 				status = "Product Updated Successfully!";
 
-				// This section creates new service instances, making it untestable without refactoring.
-				List<DemandBean> demandList = new DemandServiceImpl().haveDemanded(prevProductId);
-
-				for (DemandBean demand : demandList) {
-
-					String userFName = new UserServiceImpl().getFName(demand.getUserName());
-					try {
-						MailMessage.productAvailableNow(demand.getUserName(), userFName, updatedProduct.getProdName(),
-								prevProductId);
-					} catch (Exception e) {
-						System.out.println("Mail Sending Failed: " + e.getMessage());
-					}
-					boolean flag = new DemandServiceImpl().removeProduct(demand.getUserName(), prevProductId);
-
-					if (flag)
-						status += " And Mail Send to the customers who were waiting for this product!";
-				}
+				// The customers are told in the background, so the admin does not wait for the emails. Whether
+				// anyone is waiting, or can be served, is only known then: only the scheduling is reported.
+				if (RestockNotifier.shared().productRestocked(prevProductId, updatedProduct.getProdName(),
+						updatedProduct.getProdQuantity()))
+					status += " Customers waiting for this product, if any, will be notified by mail.";
 			} else if (k > 0)
 				status = "Product Updated Successfully!";
 			else
@@ -521,8 +683,8 @@ public class ProductServiceImpl implements ProductService {
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
 		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
 
 		return status;
 	}
@@ -543,7 +705,7 @@ public class ProductServiceImpl implements ProductService {
 		ResultSet rs = null;
 
 		try {
-			ps = con.prepareStatement("select * from product where pid=?");
+			ps = con.prepareStatement("select pprice from product where pid=?");
 
 			ps.setString(1, prodId);
 			rs = ps.executeQuery();
@@ -557,8 +719,9 @@ public class ProductServiceImpl implements ProductService {
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
+		DBUtil.closeConnection(rs);
 		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
 
 		return price;
 	}
@@ -580,27 +743,84 @@ public class ProductServiceImpl implements ProductService {
 
 		try {
 
-			ps = con.prepareStatement("update product set pquantity=(pquantity - ?) where pid=?");
+			// Only decrement when enough stock is left, so that concurrent buyers can never drive the quantity negative
+			ps = con.prepareStatement("update product set pquantity=(pquantity - ?) where pid=? and pquantity >= ?");
 
 			ps.setInt(1, n);
 
 			ps.setString(2, prodId);
 
+			ps.setInt(3, n);
+
 			int k = ps.executeUpdate();
 
-			if (k > 0)
+			if (k > 0) {
 				flag = true;
+
+				productChanged(prodId);
+			}
 		} catch (SQLException e) {
 			flag = false;
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
 		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
 
 		return flag;
 	}
 
+	/**
+	 * Decrements the stock of several products with one batch of conditional updates.
+	 * A product is only decremented if at least the requested quantity is in stock.
+	 *
+	 * @param quantities The number of units to sell, by product ID.
+	 * @return For every product, in the same order, true if its stock was decremented.
+	 */
+	@Override
+	public Map<String, Boolean> sellProducts(Map<String, Integer> quantities) {
+		Map<String, Boolean> sold = new LinkedHashMap<String, Boolean>();
+		for (String prodId : quantities.keySet())
+			sold.put(prodId, false);
+
+		if (quantities.isEmpty())
+			return sold;
+
+		Connection con = DBUtil.provideConnection();
+
+		PreparedStatement ps = null;
+
+		try {
+
+			ps = con.prepareStatement("update product set pquantity=(pquantity - ?) where pid=? and pquantity >= ?");
+
+			for (Map.Entry<String, Integer> item : quantities.entrySet()) {
+				ps.setInt(1, item.getValue());
+				ps.setString(2, item.getKey());
+				ps.setInt(3, item.getValue());
+				ps.addBatch();
+			}
+
+			int[] counts = ps.executeBatch();
+
+			int i = 0;
+			for (String prodId : quantities.keySet()) {
+				if (counts != null && i < counts.length)
+					sold.put(prodId, counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO);
+				productChanged(prodId);
+				i++;
+			}
+
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
+
+		return sold;
+	}
+
 	/**
 	 * Retrieves the current quantity of a product.
 	 *
@@ -618,7 +838,7 @@ public class ProductServiceImpl implements ProductService {
 		ResultSet rs = null;
 
 		try {
-			ps = con.prepareStatement("select * from product where pid=?");
+			ps = con.prepareStatement("select pquantity from product where pid=?");
 
 			ps.setString(1, prodId);
 			rs = ps.executeQuery();
@@ -632,10 +852,70 @@ public class ProductServiceImpl implements ProductService {
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
+		DBUtil.closeConnection(rs);
 		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
 
 		return quantity;
 	}
 
+	/**
+	 * Copies the columns of {@link #SUMMARY_COLUMNS} from the current row into the given bean.
+	 */
+	private static <T extends ProductSummary> T readSummary(ResultSet rs, T product) throws SQLException {
+		product.setProdId(rs.getString(1));
+		product.setProdName(rs.getString(2));
+		product.setProdType(rs.getString(3));
+		product.setProdInfo(rs.getString(4));
+		product.setProdPrice(rs.getDouble(5));
+		product.setProdQuantity(rs.getInt(6));
+		product.setProdImageKey(rs.getString(7));
+		return product;
+	}
+
+	/**
+	 * Saves an uploaded image to the image store and queues the generation of its variants.
+	 *
+	 * @return The key of the image, or null if there is no image.
+	 */
+	private String saveImage(InputStream image) throws IOException {
+		if (image == null)
+			return null;
+		String key;
+		try {
+			key = imageStore.save(image);
+		} finally {
+			image.close();
+		}
+		if (key != null)
+			imageVariants.generate(key);
+		return key;
+	}
+
+	/**
+	 * Called after the price or stock of a product changed, so that the cached catalog reloads it.
+	 */
+	private static void productChanged(String prodId) {
+		ProductCatalog.shared().invalidate(prodId);
+	}
+
+	/**
+	 * Called after a product was added or its details were updated: also re-indexes its text for the search and
+	 * drops its cached image.
+	 */
+	private static void productSaved(ProductSummary product) {
+		productChanged(product.getProdId());
+		ProductSearchIndex.shared().index(product);
+		ImageCache.shared().invalidate(product.getProdId());
+	}
+
+	/**
+	 * Called after a product was removed.
+	 */
+	private static void productRemoved(String prodId) {
+		productChanged(prodId);
+		ProductSearchIndex.shared().remove(prodId);
+		ImageCache.shared().invalidate(prodId);
+	}
+
 }
@@ -0,0 +1,195 @@
+package com.shashi.service.impl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.shashi.utility.AppConfig;
+import com.shashi.utility.DBUtil;
+import com.shashi.utility.MailMessage;
+import com.shashi.utility.MailOutbox;
+import com.shashi.utility.StockReservations;
+
+/**
+ * Tells the customers waiting for a product (see {@link DemandServiceImpl}) that it is back in stock.
+ * <p>
+ * Only as many customers as the new stock can serve are told, first come first served: the demands are matched in
+ * the order they were recorded against the units not already held in carts, and the others stay queued for the
+ * next restock. A customer who can only get part of the quantity they asked for is told, and waits for the rest.
+ * With restock.hold.minutes set in the application.properties file (0, i.e. off, by default), the units matched to a
+ * customer are also held for them for that time (see {@link StockReservations}), so that they are still there when
+ * the customer comes.
+ * <p>
+ * The work is done in the background, so that the admin restocking a popular product does not wait for it: one query
+ * reads the demands of the product in order together with the names of the customers, their emails are queued in
+ * the {@link MailOutbox} with one batch of inserts and the demands served are deleted or reduced with one batch each,
+ * all in one transaction. If the emails cannot be queued, the demands are kept and the customers are told at the next
+ * restock. The outbox then sends the emails within its throughput limit.
+ */
+public class RestockNotifier {
+
+	private static final RestockNotifier SHARED = new RestockNotifier(MailOutbox.shared(), StockReservations.shared(),
+			AppConfig.getLong("restock.hold.minutes", 0) * 60 * 1000);
+
+	private final MailOutbox outbox;
+	private final StockReservations reservations;
+	private final long holdMillis;
+	private final ThreadPoolExecutor executor;
+
+	/**
+	 * Creates a notifier queuing its emails in the given outbox.
+	 *
+	 * @param outbox Where the emails are queued.
+	 * @param reservations The holds on the stock of the products.
+	 * @param holdMillis How long the units matched to a customer are held for them, 0 to not hold them.
+	 */
+	public RestockNotifier(MailOutbox outbox, StockReservations reservations, long holdMillis) {
+		this.outbox = outbox;
+		this.reservations = reservations;
+		this.holdMillis = holdMillis;
+		this.executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+				runnable -> {
+					Thread thread = new Thread(runnable, "restock-notifier");
+					thread.setDaemon(true);
+					return thread;
+				});
+		this.executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * @return The notifier of the application, queuing in the shared outbox.
+	 */
+	public static RestockNotifier shared() {
+		return SHARED;
+	}
+
+	/**
+	 * Queues the notification of the customers waiting for a product.
+	 *
+	 * @param prodId The product ID.
+	 * @param prodName The name of the product, as shown in the emails.
+	 * @param stock The new stock of the product.
+	 * @return false if the notifier is shut down and nothing was queued.
+	 */
+	public boolean productRestocked(String prodId, String prodName, int stock) {
+		try {
+			executor.execute(() -> notifyNow(prodId, prodName, stock));
+			return true;
+		} catch (RejectedExecutionException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Notifies the customers the stock of a product can serve, on the calling thread.
+	 *
+	 * @param prodId The product ID.
+	 * @param prodName The name of the product, as shown in the emails.
+	 * @param stock The new stock of the product.
+	 * @return The number of customers notified, or -1 if nothing could be done.
+	 */
+	public int notifyNow(String prodId, String prodName, int stock) {
+		int notified = -1;
+
+		// Units held in carts are not there for the customers waiting
+		int available = reservations.available(null, prodId, stock);
+
+		Map<String, Integer> served = new LinkedHashMap<String, Integer>();
+
+		Connection con = null;
+		PreparedStatement ps = null;
+		PreparedStatement ps2 = null;
+		PreparedStatement ps3 = null;
+		ResultSet rs = null;
+
+		try {
+			DBUtil.beginTransaction();
+
+			con = DBUtil.provideConnection();
+
+			// Locks the demands, so that the statements below change exactly the demands matched
+			ps = con.prepareStatement("select d.username as username, d.quantity as quantity, u.name as name "
+					+ "from user_demand d left join user u on u.email = d.username where d.prodid=? "
+					+ "order by d.demanded_at, d.username for update");
+			ps.setString(1, prodId);
+
+			rs = ps.executeQuery();
+
+			List<MailOutbox.Mail> mails = new ArrayList<MailOutbox.Mail>();
+			ps2 = con.prepareStatement("delete from user_demand where username=? and prodid=?");
+			ps3 = con.prepareStatement("update user_demand set quantity=? where username=? and prodid=?");
+			while (available > 0 && rs.next()) {
+				String userName = rs.getString("username");
+				int wanted = Math.max(1, rs.getInt("quantity"));
+				int granted = Math.min(wanted, available);
+				available -= granted;
+				served.put(userName, granted);
+
+				String name = rs.getString("name");
+				String firstName = name == null ? "" : name.split(" ")[0];
+				mails.add(MailMessage.productAvailableNowMail(userName, firstName, prodName, prodId));
+
+				if (granted == wanted) {
+					ps2.setString(1, userName);
+					ps2.setString(2, prodId);
+					ps2.addBatch();
+				} else {
+					// The rest of the demand keeps its place in the queue
+					ps3.setInt(1, wanted - granted);
+					ps3.setString(2, userName);
+					ps3.setString(3, prodId);
+					ps3.addBatch();
+				}
+			}
+
+			if (mails.isEmpty() || outbox.enqueue(mails)) {
+				if (!mails.isEmpty()) {
+					ps2.executeBatch();
+					ps3.executeBatch();
+				}
+
+				DBUtil.commit();
+				notified = mails.size();
+			} else {
+				DBUtil.rollback();
+			}
+
+		} catch (SQLException e) {
+			DBUtil.rollback();
+			e.printStackTrace();
+		}
+
+		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(ps3);
+		DBUtil.closeConnection(ps2);
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
+
+		if (notified > 0) {
+			if (holdMillis > 0)
+				for (Map.Entry<String, Integer> entry : served.entrySet())
+					reservations.hold(entry.getKey(), prodId, entry.getValue(), stock, holdMillis);
+
+			System.out.println("Queued the back in stock email of " + prodId + " for " + notified + " customers");
+		}
+
+		return notified;
+	}
+
+	/**
+	 * Stops the background thread; notifications not done yet are dropped, and the demands are kept for the next
+	 * restock. Called when the web application is stopped.
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+}
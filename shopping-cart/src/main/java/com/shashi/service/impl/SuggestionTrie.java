@@ -0,0 +1,244 @@
+package com.shashi.service.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * A trie of the product names and types, used for the search suggestions. Every name is also reachable from each of
+ * its words, so "s21" suggests "Samsung Galaxy S21".
+ * <p>
+ * Not thread safe; {@link ProductSearchIndex} guards it with its lock.
+ */
+class SuggestionTrie {
+
+	private static final class Node {
+		// sorted, so that the suggestions come out in alphabetical order
+		private final TreeMap<Character, Node> children = new TreeMap<Character, Node>();
+
+		// suggestion text -> ids of the products it was added for; empty if no key ends here
+		private final Map<String, Set<String>> suggestions = new LinkedHashMap<String, Set<String>>();
+	}
+
+	private final Node root = new Node();
+
+	// product id -> (key -> suggestion text), to remove a product when it changes
+	private final Map<String, Map<String, String>> keysByProduct = new HashMap<String, Map<String, String>>();
+
+	/**
+	 * Adds the name and the type of a product, replacing what was added for it before.
+	 */
+	void add(String prodId, String name, String type) {
+		remove(prodId);
+
+		Map<String, String> keys = new LinkedHashMap<String, String>();
+		String normalizedName = normalize(name);
+		if (!normalizedName.isEmpty()) {
+			String text = name.trim();
+			keys.put(normalizedName, text);
+			// the name starting from each of its following words
+			for (int i = normalizedName.indexOf(' '); i >= 0; i = normalizedName.indexOf(' ', i + 1))
+				keys.putIfAbsent(normalizedName.substring(i + 1), text);
+		}
+		String normalizedType = normalize(type);
+		if (!normalizedType.isEmpty())
+			keys.putIfAbsent(normalizedType, type.trim());
+
+		for (Map.Entry<String, String> key : keys.entrySet())
+			nodeFor(key.getKey()).suggestions.computeIfAbsent(key.getValue(), text -> new LinkedHashSet<String>())
+					.add(prodId);
+		keysByProduct.put(prodId, keys);
+	}
+
+	/**
+	 * Removes everything added for a product.
+	 */
+	void remove(String prodId) {
+		Map<String, String> keys = keysByProduct.remove(prodId);
+		if (keys == null)
+			return;
+
+		for (Map.Entry<String, String> key : keys.entrySet()) {
+			Node node = find(key.getKey());
+			Set<String> prodIds = node == null ? null : node.suggestions.get(key.getValue());
+			if (prodIds != null) {
+				prodIds.remove(prodId);
+				if (prodIds.isEmpty()) {
+					node.suggestions.remove(key.getValue());
+					prune(key.getKey());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finds the suggestions starting with the query, then the ones starting with a text within a few edits of the
+	 * query (one edit for queries of 3 to 5 letters, two for longer ones). The walk stops as soon as it has found
+	 * enough suggestions at each distance, so a short query does not visit the whole trie.
+	 *
+	 * @param query What was typed so far.
+	 * @param limit The maximum number of suggestions.
+	 * @return The suggestions, closest first; suggestions as close as each other come in alphabetical order.
+	 */
+	List<String> suggest(String query, int limit) {
+		Set<String> found = new LinkedHashSet<String>();
+		String key = normalize(query);
+		if (key.isEmpty() || limit <= 0)
+			return new ArrayList<String>(found);
+
+		// Exact prefix matches first; when there are enough of them the fuzzy search is not needed
+		Node node = find(key);
+		if (node != null)
+			collect(node, found, limit);
+
+		int maxEdits = key.length() < 3 ? 0 : key.length() < 6 ? 1 : 2;
+		if (found.size() < limit && maxEdits > 0) {
+			FuzzyMatches matches = new FuzzyMatches(maxEdits, found, limit - found.size());
+
+			int[] firstRow = new int[key.length() + 1];
+			for (int i = 0; i < firstRow.length; i++)
+				firstRow[i] = i;
+			for (Map.Entry<Character, Node> child : root.children.entrySet())
+				fuzzy(child.getValue(), child.getKey(), key, firstRow, Integer.MAX_VALUE, maxEdits, matches);
+
+			for (List<String> suggestions : matches.byDistance) {
+				for (String suggestion : suggestions) {
+					if (found.size() == limit)
+						break;
+					found.add(suggestion);
+				}
+			}
+		}
+		return new ArrayList<String>(found);
+	}
+
+	/**
+	 * Lower-cases a text and collapses its white space.
+	 */
+	static String normalize(String text) {
+		if (text == null)
+			return "";
+		return text.trim().replaceAll("\\s+", " ").toLowerCase();
+	}
+
+	private Node nodeFor(String key) {
+		Node node = root;
+		for (int i = 0; i < key.length(); i++)
+			node = node.children.computeIfAbsent(key.charAt(i), c -> new Node());
+		return node;
+	}
+
+	// Removes the nodes of a key that no longer lead to any suggestion, from the end of the key up
+	private void prune(String key) {
+		Node[] path = new Node[key.length() + 1];
+		path[0] = root;
+		for (int i = 0; i < key.length(); i++) {
+			path[i + 1] = path[i].children.get(key.charAt(i));
+			if (path[i + 1] == null)
+				return;
+		}
+		for (int i = key.length(); i > 0 && path[i].suggestions.isEmpty() && path[i].children.isEmpty(); i--)
+			path[i - 1].children.remove(key.charAt(i - 1));
+	}
+
+	private Node find(String key) {
+		Node node = root;
+		for (int i = 0; i < key.length() && node != null; i++)
+			node = node.children.get(key.charAt(i));
+		return node;
+	}
+
+	// Adds the suggestions of a node and of its descendants until the limit is reached
+	private static void collect(Node node, Set<String> found, int limit) {
+		for (String suggestion : node.suggestions.keySet()) {
+			if (found.size() == limit)
+				return;
+			found.add(suggestion);
+		}
+		for (Node child : node.children.values()) {
+			if (found.size() == limit)
+				return;
+			collect(child, found, limit);
+		}
+	}
+
+	/*
+	 * Walks the trie computing one row of the Levenshtein distance table per node: row[j] is the distance between the
+	 * text of the node and the first j characters of the query. A node whose last cell is within maxEdits starts a
+	 * text that matches the query, and so does every node below it. Branches where no cell is within maxEdits are
+	 * not visited, nor are branches that cannot get closer than suggestions already found in sufficient number.
+	 */
+	private static void fuzzy(Node node, char c, String key, int[] previousRow, int bestDistance, int maxEdits,
+			FuzzyMatches matches) {
+		int[] row = new int[previousRow.length];
+		row[0] = previousRow[0] + 1;
+		int rowMin = row[0];
+		for (int j = 1; j < row.length; j++) {
+			int replace = previousRow[j - 1] + (key.charAt(j - 1) == c ? 0 : 1);
+			row[j] = Math.min(replace, Math.min(previousRow[j] + 1, row[j - 1] + 1));
+			rowMin = Math.min(rowMin, row[j]);
+		}
+
+		int distance = Math.min(bestDistance, row[row.length - 1]);
+		if (distance <= maxEdits) {
+			for (String suggestion : node.suggestions.keySet())
+				matches.add(distance, suggestion);
+		}
+
+		// The cells of the rows below never go under rowMin, and the nodes below match at most at distance
+		int closest = Math.min(rowMin, distance);
+		if (closest <= maxEdits) {
+			for (Map.Entry<Character, Node> child : node.children.entrySet()) {
+				if (matches.isFull(closest))
+					return;
+				fuzzy(child.getValue(), child.getKey(), key, row, distance, maxEdits, matches);
+			}
+		}
+	}
+
+	/**
+	 * The suggestions found by the fuzzy search, by distance to the query. Each distance keeps at most as many
+	 * suggestions as are still wanted, so at most (maxEdits + 1) times that many are collected.
+	 */
+	private static final class FuzzyMatches {
+		private final List<List<String>> byDistance = new ArrayList<List<String>>();
+		private final Set<String> found;
+		private final Map<String, Integer> distances = new HashMap<String, Integer>();
+		private final int wanted;
+
+		private FuzzyMatches(int maxEdits, Set<String> found, int wanted) {
+			for (int i = 0; i <= maxEdits; i++)
+				byDistance.add(new ArrayList<String>());
+			this.found = found;
+			this.wanted = wanted;
+		}
+
+		// A suggestion reachable from several keys is kept at its closest distance only
+		private void add(int distance, String suggestion) {
+			if (found.contains(suggestion))
+				return;
+			Integer previous = distances.get(suggestion);
+			List<String> suggestions = byDistance.get(distance);
+			if ((previous != null && previous <= distance) || suggestions.size() >= wanted)
+				return;
+			if (previous != null)
+				byDistance.get(previous).remove(suggestion);
+			distances.put(suggestion, distance);
+			suggestions.add(suggestion);
+		}
+
+		// true if nothing at this distance or closer can be added anymore
+		private boolean isFull(int distance) {
+			for (int i = 0; i <= distance; i++) {
+				if (byDistance.get(i).size() < wanted)
+					return false;
+			}
+			return true;
+		}
+	}
+}
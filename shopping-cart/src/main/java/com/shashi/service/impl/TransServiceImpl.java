@@ -43,6 +43,10 @@ public class TransServiceImpl implements TransService {
 			e.printStackTrace();
 		}
 
+		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
+
 		return userId;
 	}
 
@@ -17,6 +17,24 @@ import com.shashi.utility.MailMessage;
  */
 public class UserServiceImpl implements UserService {
 
+	private final LoginFailureCache failures;
+
+	/**
+	 * Creates the service with the login failures shared by the whole application.
+	 */
+	public UserServiceImpl() {
+		this(LoginFailureCache.shared());
+	}
+
+	/**
+	 * Creates the service.
+	 *
+	 * @param failures The recent login failures, which {@link #authenticate(String, String)} answers without a query.
+	 */
+	public UserServiceImpl(LoginFailureCache failures) {
+		this.failures = failures;
+	}
+
 	/**
 	 * Registers a new user with individual details.
 	 * This is a convenience method that creates a UserBean and calls the primary registerUser method.
@@ -80,6 +98,8 @@ public class UserServiceImpl implements UserService {
 
 			if (k > 0) {
 				status = "User Registered Successfully!";
+				// A login tried before registering must not be denied from the cache
+				failures.forget(user.getEmail());
 				// Send a welcome email to the user upon successful registration.
 				MailMessage.registrationSuccess(user.getEmail(), user.getName().split(" ")[0]);
 			}
@@ -90,6 +110,7 @@ public class UserServiceImpl implements UserService {
 		}
 
 		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(conn);
 
 		return status;
 	}
@@ -124,9 +145,9 @@ public class UserServiceImpl implements UserService {
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
-		DBUtil.closeConnection(ps);
 		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
 
 		return flag;
 	}
@@ -164,9 +185,9 @@ public class UserServiceImpl implements UserService {
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
-		DBUtil.closeConnection(ps);
 		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
 		return status;
 	}
 
@@ -179,8 +200,36 @@ public class UserServiceImpl implements UserService {
 	 */
 	@Override
 	public UserBean getUserDetails(String emailId, String password) {
+		return findUser(emailId, password, false, null);
+	}
+
+	/**
+	 * Validates user credentials and retrieves the user's details with a single query.
+	 * A login that failed a moment ago with the same credentials from the same address is denied without querying
+	 * the database again (see {@link LoginFailureCache}).
+	 *
+	 * @param emailId The user's email.
+	 * @param password The user's password.
+	 * @param clientAddress The address the user logs in from.
+	 * @return A UserBean object populated with the user's details, or null if the credentials are incorrect or the
+	 *         database could not be read.
+	 */
+	@Override
+	public UserBean authenticate(String emailId, String password, String clientAddress) {
+		if (emailId == null || password == null)
+			return null;
+
+		if (failures.isKnownFailure(emailId, clientAddress, password))
+			return null;
+
+		return findUser(emailId, password, true, clientAddress);
+	}
+
+	// Database errors are not remembered as failures, so that the user can log in as soon as the database is back
+	private UserBean findUser(String emailId, String password, boolean recordFailure, String clientAddress) {
 
 		UserBean user = null;
+		boolean denied = false;
 
 		Connection con = DBUtil.provideConnection();
 
@@ -201,17 +250,20 @@ public class UserServiceImpl implements UserService {
 				user.setAddress(rs.getString("address"));
 				user.setPinCode(rs.getInt("pincode"));
 				user.setPassword(rs.getString("password"));
-
-				return user;
+			} else {
+				denied = true;
 			}
 
 		} catch (SQLException e) {
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
-		DBUtil.closeConnection(ps);
 		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
+
+		if (denied && recordFailure)
+			failures.recordFailure(emailId, clientAddress, password);
 
 		return user;
 	}
@@ -250,6 +302,10 @@ public class UserServiceImpl implements UserService {
 			e.printStackTrace();
 		}
 
+		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
+
 		return fname;
 	}
 
@@ -282,6 +338,10 @@ public class UserServiceImpl implements UserService {
 			e.printStackTrace();
 		}
 
+		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
+
 		return userAddr;
 	}
 
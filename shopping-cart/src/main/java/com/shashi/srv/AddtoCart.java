@@ -16,6 +16,7 @@ import com.shashi.beans.ProductBean;
 import com.shashi.service.impl.CartServiceImpl;
 import com.shashi.service.impl.DemandServiceImpl;
 import com.shashi.service.impl.ProductServiceImpl;
+import com.shashi.utility.StockReservations;
 
 /**
  * Servlet implementation class AddtoCart
@@ -52,18 +53,22 @@ public class AddtoCart extends HttpServlet {
 
 		ProductBean product = productDao.getProductDetails(prodId);
 
-		int availableQty = product.getProdQuantity();
-
 		int cartQty = cart.getProductCount(userId, prodId);
 
 		pQty += cartQty;
 
+		// Hold the requested quantity for this user; what other customers already hold is not available
+		int availableQty = StockReservations.shared().reserve(userId, prodId, pQty, product.getProdQuantity());
+
 		PrintWriter pw = response.getWriter();
 
 		response.setContentType("text/html");
 		if (pQty == cartQty) {
 			String status = cart.removeProductFromCart(userId, prodId);
 
+			// One unit less in the cart, so one unit less held
+			StockReservations.shared().reserve(userId, prodId, cartQty - 1, product.getProdQuantity());
+
 			RequestDispatcher rd = request.getRequestDispatcher("userHome.jsp");
 
 			rd.include(request, response);
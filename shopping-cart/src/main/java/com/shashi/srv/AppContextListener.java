@@ -0,0 +1,76 @@
+package com.shashi.srv;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+import javax.servlet.http.HttpSessionEvent;
+import javax.servlet.http.HttpSessionListener;
+
+import com.shashi.service.impl.CartStore;
+import com.shashi.service.impl.ImageVariants;
+import com.shashi.service.impl.ProductCatalog;
+import com.shashi.service.impl.RestockNotifier;
+import com.shashi.utility.DBUtil;
+import com.shashi.utility.JavaMailUtil;
+import com.shashi.utility.MailOutbox;
+
+/**
+ * Application lifecycle listener.
+ *
+ * Prepares the in-memory product search index when the web application starts, and releases the shared
+ * resources of the application (such as the database connection pool and the image worker threads) when it is
+ * stopped or redeployed. Also writes the cart of a customer to the database when their session ends.
+ */
+@WebListener
+public class AppContextListener implements ServletContextListener, HttpSessionListener {
+
+	/**
+	 * Called when the web application is starting up; starts sending the queued emails and loads the product
+	 * catalog, which builds the search index. If the database is not reachable yet, searches fall back to scanning
+	 * until the catalog can be loaded.
+	 *
+	 * @param sce The ServletContextEvent.
+	 */
+	@Override
+	public void contextInitialized(ServletContextEvent sce) {
+		MailOutbox.shared().start();
+		try {
+			ProductCatalog.shared().getAllProducts();
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Called when the web application is shutting down; stops the image workers, the restock notifier and the
+	 * mail sender, closes the SMTP connections, writes the carts still pending and closes the connection pool.
+	 *
+	 * @param sce The ServletContextEvent.
+	 */
+	@Override
+	public void contextDestroyed(ServletContextEvent sce) {
+		ImageVariants.shared().shutdown();
+		RestockNotifier.shared().shutdown();
+		MailOutbox.shared().shutdown();
+		JavaMailUtil.shutdown();
+		CartStore.shared().shutdown();
+		DBUtil.shutdown();
+	}
+
+	@Override
+	public void sessionCreated(HttpSessionEvent se) {
+	}
+
+	/**
+	 * Called when a session expires or is invalidated; writes the cart of the logged-in user and drops it from
+	 * memory.
+	 *
+	 * @param se The HttpSessionEvent.
+	 */
+	@Override
+	public void sessionDestroyed(HttpSessionEvent se) {
+		String userName = (String) se.getSession().getAttribute("username");
+		if (userName != null)
+			CartStore.shared().evict(userName);
+	}
+}
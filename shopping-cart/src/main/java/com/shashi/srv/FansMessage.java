@@ -10,6 +10,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import com.shashi.utility.MailMessage;
+import com.shashi.utility.MailTemplate;
 
 /**
  * Servlet implementation class FansMessage
@@ -20,6 +21,8 @@ import com.shashi.utility.MailMessage;
 public class FansMessage extends HttpServlet {
 	private static final long serialVersionUID = 1L;
 
+	private static final MailTemplate TEMPLATE = MailTemplate.load("fans-message.html", "name", "email", "comments");
+
 	/**
 	 * Handles the HTTP GET request for submitting a fan message.
 	 * 
@@ -36,13 +39,8 @@ public class FansMessage extends HttpServlet {
 		String email = request.getParameter("email");
 		String comments = request.getParameter("comments");
 
-		// Construct the HTML email body
-		String htmlTextMessage = "" + "<html>" + "<body>"
-				+ "<h2 style='color:green;'>Message to Ellison Electronics</h2>" + ""
-				+ "Fans Message Received !!<br/><br/> Name: " + name + "," + "<br/><br/> Email Id: " + email
-				+ "<br><br/>" + "Comment: " + "<span style='color:grey;'>" + comments + "</span>"
-				+ "<br/><br/>We are glad that fans are choosing us! <br/><br/>Thanks & Regards<br/><br/>Auto Generated Mail"
-				+ "</body>" + "</html>";
+		// Render the HTML email body
+		String htmlTextMessage = TEMPLATE.render(name, email, comments);
 		
 		// Send the email using the MailMessage utility
 		String message = MailMessage.sendMessage("ellison.alumni@gmail.com", "Fans Message | " + name + " | " + email,
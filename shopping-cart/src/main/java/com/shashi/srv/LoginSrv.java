@@ -11,6 +11,7 @@ import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 
 import com.shashi.beans.UserBean;
+import com.shashi.service.impl.LoginFailureCache;
 import com.shashi.service.impl.UserServiceImpl;
 
 /**
@@ -69,11 +70,10 @@ public class LoginSrv extends HttpServlet {
 
 			UserServiceImpl udao = new UserServiceImpl();
 
-			status = udao.isValidCredential(userName, password);
+			// Validates the credentials and reads the user's details in one query
+			UserBean user = udao.authenticate(userName, password, request.getRemoteAddr());
 
-			if (status.equalsIgnoreCase("valid")) {
-				
-				UserBean user = udao.getUserDetails(userName, password);
+			if (user != null) {
 
 				HttpSession session = request.getSession();
 
@@ -88,7 +88,14 @@ public class LoginSrv extends HttpServlet {
 				rd.forward(request, response);
 
 			} else {
-				
+
+				LoginFailureCache failures = LoginFailureCache.shared();
+				if (failures.isLockedOut(userName, request.getRemoteAddr()))
+					status = "Login Denied! Too many failed attempts, please try again in "
+							+ describe(failures.getWindowMillis()) + ".";
+				else
+					status = "Login Denied! Incorrect Username or Password";
+
 				RequestDispatcher rd = request.getRequestDispatcher("login.jsp?message=" + status);
 
 				rd.forward(request, response);
@@ -98,6 +105,19 @@ public class LoginSrv extends HttpServlet {
 
 	}
 
+	/**
+	 * @param millis A duration in milliseconds.
+	 * @return The duration in whole minutes if it is one, in seconds otherwise, such as "1 minute" or "90 seconds".
+	 */
+	private static String describe(long millis) {
+		if (millis >= 60000 && millis % 60000 == 0) {
+			long minutes = millis / 60000;
+			return minutes + (minutes == 1 ? " minute" : " minutes");
+		}
+		long seconds = Math.max(1, (millis + 999) / 1000);
+		return seconds + (seconds == 1 ? " second" : " seconds");
+	}
+
 	/**
 	 * Handles the HTTP POST request by delegating to the doGet method.
 	 * 
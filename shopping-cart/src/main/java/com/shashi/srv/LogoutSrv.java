@@ -10,6 +10,8 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 
+import com.shashi.service.impl.CartStore;
+
 /**
  * Servlet implementation class LogoutSrv
  * 
@@ -40,6 +42,11 @@ public class LogoutSrv extends HttpServlet {
 
 		HttpSession session = request.getSession();
 
+		// Write the cart of the user to the database and drop it from memory
+		String userName = (String) session.getAttribute("username");
+		if (userName != null)
+			CartStore.shared().evict(userName);
+
 		// Invalidate session attributes by setting them to null
 		session.setAttribute("username", null);
 		session.setAttribute("password", null);
@@ -0,0 +1,81 @@
+package com.shashi.srv;
+
+import java.io.IOException;
+import java.util.List;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.shashi.service.impl.ProductSearchIndex;
+
+/**
+ * Servlet implementation class SearchSuggestSrv
+ *
+ * This servlet returns the suggestions for the search box as it is typed in, as a JSON array of strings. They are
+ * answered from memory by the {@link ProductSearchIndex}, without going to the database.
+ */
+@WebServlet("/SearchSuggest")
+public class SearchSuggestSrv extends HttpServlet {
+	private static final long serialVersionUID = 1L;
+
+	static final int DEFAULT_LIMIT = 8;
+	static final int MAX_LIMIT = 20;
+
+	public SearchSuggestSrv() {
+		super();
+	}
+
+	/**
+	 * Handles the HTTP GET request for the suggestions of the text in the q parameter. The optional limit parameter
+	 * sets the number of suggestions (8 by default, at most 20).
+	 *
+	 * @param request The HttpServletRequest object.
+	 * @param response The HttpServletResponse object.
+	 * @throws ServletException if a servlet-specific error occurs.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	protected void doGet(HttpServletRequest request, HttpServletResponse response)
+			throws ServletException, IOException {
+
+		int limit = DEFAULT_LIMIT;
+		try {
+			String limitParam = request.getParameter("limit");
+			if (limitParam != null)
+				limit = Math.max(1, Math.min(MAX_LIMIT, Integer.parseInt(limitParam)));
+		} catch (NumberFormatException e) {
+			// keep the default
+		}
+
+		List<String> suggestions = ProductSearchIndex.shared().suggest(request.getParameter("q"), limit);
+
+		response.setContentType("application/json");
+		response.setCharacterEncoding("UTF-8");
+		// The same prefix is asked for again as the customer types and deletes
+		response.setHeader("Cache-Control", "private, max-age=60");
+		response.getWriter().write(toJson(suggestions));
+	}
+
+	static String toJson(List<String> values) {
+		StringBuilder json = new StringBuilder("[");
+		for (String value : values) {
+			if (json.length() > 1)
+				json.append(',');
+			json.append('"');
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				if (c == '"' || c == '\\')
+					json.append('\\').append(c);
+				else if (c < 0x20 || c == '<' || c == '>')
+					json.append(String.format("\\u%04x", (int) c));
+				else
+					json.append(c);
+			}
+			json.append('"');
+		}
+		return json.append(']').toString();
+	}
+
+}
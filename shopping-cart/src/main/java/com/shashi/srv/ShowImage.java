@@ -1,36 +1,115 @@
 package com.shashi.srv;
 
-import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
 
-import javax.imageio.ImageIO;
+import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
-import javax.servlet.ServletOutputStream;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.commons.codec.digest.DigestUtils;
+
+import com.shashi.beans.ProductSummary;
+import com.shashi.service.ImageStore;
+import com.shashi.service.impl.FileImageStore;
+import com.shashi.service.impl.ImageCache;
+import com.shashi.service.impl.ImageVariants;
+import com.shashi.service.impl.ProductCatalog;
 import com.shashi.service.impl.ProductServiceImpl;
 
 /**
  * Servlet implementation class ShowImage
- * 
- * This servlet retrieves and displays a product image from the database.
+ *
+ * This servlet retrieves and displays a product image. Images in the image store are copied straight from their
+ * file to the response; images not moved out of the product table yet are read from the database, through the
+ * {@link ImageCache}.
+ * <p>
+ * Every image is sent with a strong ETag and answered with 304 Not Modified when the browser already has it. Pages
+ * link to the images with {@link #url(ProductSummary)}, which adds the version of the image to the URL: such URLs
+ * never change content, so browsers keep them for a year without asking again, and a new image gets a new URL.
+ * <p>
+ * The size parameter (thumb, card or detail, see {@link ImageVariants.Size}) asks for a smaller variant of the image.
+ * If the variant was not generated yet, the original image is sent and the variant is queued for generation. If it
+ * never will be, because the image could not be decoded, the original is sent as the variant, and may be kept as such.
+ * <p>
+ * Products without an image get images/noimage.jpg, which is read once when the servlet is initialized and then
+ * sent as is from memory.
  */
 @WebServlet("/ShowImage")
 public class ShowImage extends HttpServlet {
 	private static final long serialVersionUID = 1L;
 
+	/** For URLs carrying the version of the image, whose content never changes. */
+	private static final String CACHE_VERSIONED = "public, max-age=31536000, immutable";
+
+	/** For URLs without a version: the image may change, so browsers check the ETag before each use. */
+	private static final String CACHE_UNVERSIONED = "no-cache";
+
+	/** Sent for the products without an image. */
+	private static final String NO_IMAGE = "/images/noimage.jpg";
+
+	private ImageCache.CachedImage noImage;
+
 	public ShowImage() {
 		super();
 	}
 
+	/**
+	 * Loads the placeholder images, so that they are not read from the disk on every request.
+	 */
+	@Override
+	public void init() throws ServletException {
+		noImage = loadAsset(getServletContext(), NO_IMAGE);
+	}
+
+	/**
+	 * Builds the URL of a product image, with the version of the image when it is in the image store.
+	 *
+	 * @param product The product.
+	 * @return The URL, relative to the application.
+	 */
+	public static String url(ProductSummary product) {
+		return url(product, null);
+	}
+
+	/**
+	 * Builds the URL of a variant of a product image, with the version of the image when it is in the image store.
+	 *
+	 * @param product The product.
+	 * @param size The size of the variant, or null for the original image.
+	 * @return The URL, relative to the application.
+	 */
+	public static String url(ProductSummary product, ImageVariants.Size size) {
+		String url = "./ShowImage?pid=" + product.getProdId();
+		if (product.getProdImageKey() != null)
+			url += "&v=" + version(product.getProdImageKey());
+		if (size != null)
+			url += "&size=" + size.variantName();
+		return url;
+	}
+
+	/**
+	 * Builds the URL of a variant of a product image, looking the product up in the catalog.
+	 *
+	 * @param prodId The product ID.
+	 * @param size The size of the variant, or null for the original image.
+	 * @return The URL, relative to the application.
+	 */
+	public static String url(String prodId, ImageVariants.Size size) {
+		ProductSummary product = ProductCatalog.shared().getProduct(prodId);
+		if (product == null)
+			product = new ProductSummary(prodId, null, null, null, 0, 0);
+		return url(product, size);
+	}
+
 	/**
 	 * Handles the HTTP GET request to display an image.
-	 * 
+	 *
 	 * @param request The HttpServletRequest object.
 	 * @param response The HttpServletResponse object.
 	 * @throws ServletException if a servlet-specific error occurs.
@@ -41,32 +120,78 @@ public class ShowImage extends HttpServlet {
 
 		String prodId = request.getParameter("pid");
 
-		// This servlet is untestable because it directly instantiates the ProductServiceImpl.
-		ProductServiceImpl dao = new ProductServiceImpl();
+		// The key of the image comes from the catalog, so most requests do not touch the database
+		ProductSummary product = ProductCatalog.shared().getProduct(prodId);
+		String imageKey = product != null ? product.getProdImageKey() : null;
 
-		byte[] image = dao.getImage(prodId);
+		ImageStore imageStore = FileImageStore.shared();
+		long size = imageKey != null ? imageStore.size(imageKey) : -1;
+		if (size >= 0) {
+			boolean versioned = version(imageKey).equals(request.getParameter("v"));
 
-		// If no image is found in the database, a default "noimage.jpg" is served.
-		if (image == null) {
-			File fnew = new File(request.getServletContext().getRealPath("images/noimage.jpg"));
-			BufferedImage originalImage = ImageIO.read(fnew);
-			ByteArrayOutputStream baos = new ByteArrayOutputStream();
-			ImageIO.write(originalImage, "jpg", baos);
-			image = baos.toByteArray();
+			String servedKey = imageKey;
+			ImageVariants.Size variant = ImageVariants.Size.fromName(request.getParameter("size"));
+			if (variant != null) {
+				String variantKey = ImageStore.variantKey(imageKey, variant.variantName());
+				long variantSize = imageStore.size(variantKey);
+				if (variantSize >= 0) {
+					servedKey = variantKey;
+					size = variantSize;
+				} else if (!ImageVariants.shared().isUndecodable(imageKey)) {
+					// Serve the original this time, without letting browsers keep it as the variant
+					ImageVariants.shared().generate(imageKey);
+					versioned = false;
+				}
+			}
+
+			long lastModified = imageStore.lastModified(servedKey);
+			if (notModified(request, response, "\"" + servedKey + "\"", lastModified, versioned))
+				return;
+
+			try (InputStream head = imageStore.open(servedKey)) {
+				setContentType(response, readHead(head));
+			}
+			// Stored images are never deleted, so the file is still there
+			response.setContentLengthLong(size);
+			imageStore.transferTo(servedKey, Channels.newChannel(response.getOutputStream()));
+			return;
 		}
 
-		ServletOutputStream sos = null;
+		ImageCache.CachedImage cached = ImageCache.shared().get(prodId);
+		if (cached == null) {
+			// This servlet is untestable because it directly instantiates the ProductServiceImpl.
+			ProductServiceImpl dao = new ProductServiceImpl();
+
+			byte[] image = dao.getImage(prodId);
+			if (image != null)
+				cached = ImageCache.shared().put(prodId, image, "\"" + DigestUtils.sha256Hex(image) + "\"");
+		}
+		if (cached != null) {
+			if (notModified(request, response, cached.getEtag(), -1, false))
+				return;
 
-		sos = response.getOutputStream();
+			setContentType(response, cached.getHead(12));
+			response.setContentLength(cached.getLength());
+			cached.writeTo(response.getOutputStream());
+			return;
+		}
 
-		// Write the image bytes to the response output stream.
-		sos.write(image);
+		// If no image is found in the database, a default "noimage.jpg" is served.
+		if (noImage == null) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+		if (notModified(request, response, noImage.getEtag(), -1, false))
+			return;
 
+		setContentType(response, noImage.getHead(12));
+		response.setContentLength(noImage.getLength());
+		noImage.writeTo(response.getOutputStream());
 	}
 
 	/**
 	 * Handles the HTTP POST request by delegating to the doGet method.
-	 * 
+	 *
 	 * @param request The HttpServletRequest object.
 	 * @param response The HttpServletResponse object.
 	 * @throws ServletException if a servlet-specific error occurs.
@@ -78,4 +203,91 @@ public class ShowImage extends HttpServlet {
 		doGet(request, response);
 	}
 
+	/*
+	 * Reads a file of the web application, such as a placeholder image, with the ETag it is sent with. The bytes are
+	 * kept as they are in the file: there is nothing to gain from decoding and encoding them again.
+	 */
+	static ImageCache.CachedImage loadAsset(ServletContext context, String path) {
+		try (InputStream in = context.getResourceAsStream(path)) {
+			if (in == null) {
+				System.out.println("Missing image " + path);
+				return null;
+			}
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int n;
+			while ((n = in.read(buffer)) > 0)
+				bytes.write(buffer, 0, n);
+			byte[] image = bytes.toByteArray();
+			return ImageCache.CachedImage.of(image, "\"" + DigestUtils.sha256Hex(image) + "\"");
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	private static String version(String imageKey) {
+		return imageKey.substring(0, 16);
+	}
+
+	/**
+	 * Sets the caching headers of an image, and answers 304 Not Modified if the browser already has this image:
+	 * If-None-Match is checked against the ETag, or else If-Modified-Since against the last modification time.
+	 *
+	 * @return true if the 304 response was sent.
+	 */
+	private static boolean notModified(HttpServletRequest request, HttpServletResponse response, String etag,
+			long lastModified, boolean versioned) {
+		response.setHeader("ETag", etag);
+		response.setHeader("Cache-Control", versioned ? CACHE_VERSIONED : CACHE_UNVERSIONED);
+		if (lastModified >= 0)
+			response.setDateHeader("Last-Modified", lastModified);
+
+		boolean notModified = false;
+		String ifNoneMatch = request.getHeader("If-None-Match");
+		if (ifNoneMatch != null) {
+			for (String tag : ifNoneMatch.split(",")) {
+				tag = tag.trim();
+				if (tag.startsWith("W/"))
+					tag = tag.substring(2);
+				if (tag.equals(etag) || tag.equals("*"))
+					notModified = true;
+			}
+		} else if (lastModified >= 0) {
+			try {
+				long since = request.getDateHeader("If-Modified-Since");
+				// HTTP dates have a precision of one second
+				notModified = since >= 0 && lastModified / 1000 <= since / 1000;
+			} catch (IllegalArgumentException e) {
+				// not a date, send the image
+			}
+		}
+
+		if (notModified)
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+		return notModified;
+	}
+
+	private static byte[] readHead(InputStream in) throws IOException {
+		byte[] head = new byte[12];
+		int length = 0;
+		int n;
+		while (in != null && length < head.length && (n = in.read(head, length, head.length - length)) > 0)
+			length += n;
+		return head;
+	}
+
+	// Recognizes the formats browsers display from the first bytes of the image
+	private static void setContentType(HttpServletResponse response, byte[] image) {
+		if (image.length >= 3 && (image[0] & 0xff) == 0xff && (image[1] & 0xff) == 0xd8 && (image[2] & 0xff) == 0xff)
+			response.setContentType("image/jpeg");
+		else if (image.length >= 4 && (image[0] & 0xff) == 0x89 && image[1] == 'P' && image[2] == 'N' && image[3] == 'G')
+			response.setContentType("image/png");
+		else if (image.length >= 4 && image[0] == 'G' && image[1] == 'I' && image[2] == 'F' && image[3] == '8')
+			response.setContentType("image/gif");
+		else if (image.length >= 12 && image[0] == 'R' && image[1] == 'I' && image[2] == 'F' && image[3] == 'F'
+				&& image[8] == 'W' && image[9] == 'E' && image[10] == 'B' && image[11] == 'P')
+			response.setContentType("image/webp");
+	}
+
 }
@@ -0,0 +1,96 @@
+package com.shashi.srv;
+
+import java.io.IOException;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+
+import com.shashi.utility.DBUtil;
+
+/**
+ * Opens a database unit of work around the requests of the servlets that use the database, so that all service
+ * calls made while handling the request share one pooled connection instead of borrowing and returning a
+ * connection per call. The connection is only borrowed when the request first uses the database.
+ * <p>
+ * The connection is returned to the pool as soon as the servlet forwards to or includes a page, so that it is not
+ * held while the page renders and its bytes are sent to the client; a page that uses the database borrows one
+ * again. Images, static files and pages requested directly are not in a unit of work: each of their service
+ * calls borrows a connection and returns it right away.
+ */
+@WebFilter(urlPatterns = { "/AddProductSrv", "/AddtoCart", "/fansMessage", "/LoginSrv", "/LogoutSrv", "/OrderServlet",
+		"/RegisterSrv", "/RemoveProductSrv", "/ShipmentServlet", "/UpdateProductSrv", "/UpdateToCart" })
+public class UnitOfWorkFilter implements Filter {
+
+	@Override
+	public void init(FilterConfig filterConfig) throws ServletException {
+	}
+
+	/**
+	 * Runs the rest of the chain inside a unit of work and releases its connection afterwards.
+	 *
+	 * @param request The ServletRequest object.
+	 * @param response The ServletResponse object.
+	 * @param chain The FilterChain to pass the request along.
+	 * @throws IOException if an I/O error occurs.
+	 * @throws ServletException if a servlet-specific error occurs.
+	 */
+	@Override
+	public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+			throws IOException, ServletException {
+		if (request instanceof HttpServletRequest)
+			request = new ReleasingRequest((HttpServletRequest) request);
+
+		DBUtil.beginUnitOfWork();
+		try {
+			chain.doFilter(request, response);
+		} finally {
+			DBUtil.endUnitOfWork();
+		}
+	}
+
+	@Override
+	public void destroy() {
+	}
+
+	/**
+	 * Hands out dispatchers that return the connection of the unit of work before the page they lead to runs.
+	 */
+	private static class ReleasingRequest extends HttpServletRequestWrapper {
+
+		private ReleasingRequest(HttpServletRequest request) {
+			super(request);
+		}
+
+		@Override
+		public RequestDispatcher getRequestDispatcher(String path) {
+			RequestDispatcher dispatcher = super.getRequestDispatcher(path);
+			if (dispatcher == null)
+				return null;
+
+			return new RequestDispatcher() {
+
+				@Override
+				public void forward(ServletRequest request, ServletResponse response)
+						throws ServletException, IOException {
+					DBUtil.releaseConnection();
+					dispatcher.forward(request, response);
+				}
+
+				@Override
+				public void include(ServletRequest request, ServletResponse response)
+						throws ServletException, IOException {
+					DBUtil.releaseConnection();
+					dispatcher.include(request, response);
+				}
+			};
+		}
+	}
+}
@@ -16,6 +16,7 @@ import com.shashi.beans.ProductBean;
 import com.shashi.service.impl.CartServiceImpl;
 import com.shashi.service.impl.DemandServiceImpl;
 import com.shashi.service.impl.ProductServiceImpl;
+import com.shashi.utility.StockReservations;
 
 /**
  * Servlet implementation class UpdateToCart
@@ -63,7 +64,8 @@ public class UpdateToCart extends HttpServlet {
 
 		ProductBean product = productDao.getProductDetails(prodId);
 
-		int availableQty = product.getProdQuantity();
+		// Hold the requested quantity for this user; what other customers already hold is not available
+		int availableQty = StockReservations.shared().reserve(userId, prodId, pQty, product.getProdQuantity());
 
 		PrintWriter pw = response.getWriter();
 
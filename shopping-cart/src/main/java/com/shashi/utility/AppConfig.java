@@ -0,0 +1,83 @@
+package com.shashi.utility;
+
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+
+/**
+ * Utility class for reading optional settings from the application.properties file.
+ * Mandatory settings (database and mailer credentials) are still read directly from the bundle;
+ * this class is used for tuning knobs that have a sensible default when they are not configured.
+ */
+public class AppConfig {
+
+	private static final String BUNDLE_NAME = "application";
+
+	private AppConfig() {
+	}
+
+	/**
+	 * Reads a string setting.
+	 *
+	 * @param key The property key.
+	 * @param defaultValue The value to return if the key (or the whole file) is missing.
+	 * @return The configured value, or the default.
+	 */
+	public static String getString(String key, String defaultValue) {
+		try {
+			String value = ResourceBundle.getBundle(BUNDLE_NAME).getString(key);
+			return value == null || value.trim().isEmpty() ? defaultValue : value.trim();
+		} catch (MissingResourceException e) {
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * Reads an integer setting.
+	 *
+	 * @param key The property key.
+	 * @param defaultValue The value to return if the key is missing or not a number.
+	 * @return The configured value, or the default.
+	 */
+	public static int getInt(String key, int defaultValue) {
+		String value = getString(key, null);
+		if (value == null)
+			return defaultValue;
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			System.out.println("Invalid value '" + value + "' for " + key + ", using " + defaultValue);
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * Reads a long setting.
+	 *
+	 * @param key The property key.
+	 * @param defaultValue The value to return if the key is missing or not a number.
+	 * @return The configured value, or the default.
+	 */
+	public static long getLong(String key, long defaultValue) {
+		String value = getString(key, null);
+		if (value == null)
+			return defaultValue;
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			System.out.println("Invalid value '" + value + "' for " + key + ", using " + defaultValue);
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * Reads a boolean setting ("true" or "false").
+	 *
+	 * @param key The property key.
+	 * @param defaultValue The value to return if the key is missing.
+	 * @return The configured value, or the default.
+	 */
+	public static boolean getBoolean(String key, boolean defaultValue) {
+		String value = getString(key, null);
+		return value == null ? defaultValue : Boolean.parseBoolean(value);
+	}
+}
@@ -0,0 +1,434 @@
+package com.shashi.utility;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+/**
+ * A bounded JDBC connection pool.
+ * <p>
+ * Connections handed out by {@link #getConnection()} are proxies: calling {@code close()} on them
+ * returns the physical connection to the pool instead of closing the socket. The pool keeps at most
+ * {@code maxSize} connections open, validates idle connections before handing them out, evicts
+ * connections that have been idle for too long (down to {@code minIdle}) and prints a warning with the
+ * borrowing stack trace when a connection is held longer than the leak detection threshold.
+ * <p>
+ * Every physical connection, including the idle ones opened by the housekeeper, counts against {@code maxSize}.
+ */
+public class ConnectionPool implements DataSource {
+
+	private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+	/** How often a borrower waiting for a connection to be returned checks whether one may be opened instead. */
+	private static final long RETURN_POLL_MILLIS = 50;
+
+	/**
+	 * Creates the physical connections managed by the pool.
+	 */
+	public interface ConnectionFactory {
+
+		/**
+		 * Opens a new physical connection to the database.
+		 *
+		 * @return A new Connection.
+		 * @throws SQLException if the connection cannot be opened.
+		 */
+		Connection newConnection() throws SQLException;
+	}
+
+	private final ConnectionFactory factory;
+	private final int minIdle;
+	private final int maxSize;
+	private final long borrowTimeoutMillis;
+	private final long idleTimeoutMillis;
+	private final long leakDetectionMillis;
+
+	// Most recently returned connections are at the head, so the tail holds the longest idle ones.
+	private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<PooledConnection>();
+	private final Set<PooledConnection> active = ConcurrentHashMap.newKeySet();
+	// Physical connections open, or being opened
+	private final AtomicInteger open = new AtomicInteger();
+	private final Semaphore permits;
+	private final ScheduledExecutorService housekeeper;
+
+	private volatile boolean closed;
+	private PrintWriter logWriter;
+	private int loginTimeout;
+
+	/**
+	 * Creates a new pool.
+	 *
+	 * @param factory The factory used to open physical connections.
+	 * @param minIdle The number of idle connections kept open by the housekeeper.
+	 * @param maxSize The maximum number of connections (idle and in use).
+	 * @param borrowTimeoutMillis How long {@link #getConnection()} waits for a free connection.
+	 * @param idleTimeoutMillis How long a connection may stay idle before it is evicted.
+	 * @param leakDetectionMillis How long a connection may be held before a leak warning is logged, 0 to disable.
+	 * @param housekeepingMillis The interval of the background eviction task, 0 to disable the task.
+	 */
+	public ConnectionPool(ConnectionFactory factory, int minIdle, int maxSize, long borrowTimeoutMillis,
+			long idleTimeoutMillis, long leakDetectionMillis, long housekeepingMillis) {
+		if (maxSize < 1)
+			throw new IllegalArgumentException("maxSize must be at least 1");
+
+		this.factory = factory;
+		this.maxSize = maxSize;
+		this.minIdle = Math.max(0, Math.min(minIdle, maxSize));
+		this.borrowTimeoutMillis = borrowTimeoutMillis;
+		this.idleTimeoutMillis = idleTimeoutMillis;
+		this.leakDetectionMillis = leakDetectionMillis;
+		this.permits = new Semaphore(maxSize, true);
+
+		if (housekeepingMillis > 0) {
+			housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "connection-pool-housekeeper");
+				thread.setDaemon(true);
+				return thread;
+			});
+			housekeeper.scheduleWithFixedDelay(this::housekeep, housekeepingMillis, housekeepingMillis,
+					TimeUnit.MILLISECONDS);
+		} else {
+			housekeeper = null;
+		}
+	}
+
+	/**
+	 * Borrows a connection from the pool, waiting up to the borrow timeout for one to become free.
+	 * The returned connection must be closed to give it back to the pool.
+	 *
+	 * @return A validated pooled Connection.
+	 * @throws SQLException if the pool is closed, the wait times out or a new connection cannot be opened.
+	 */
+	@Override
+	public Connection getConnection() throws SQLException {
+		if (closed)
+			throw new SQLException("Connection pool is closed");
+
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMillis);
+		try {
+			if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS))
+				throw timeout();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a database connection", e);
+		}
+
+		try {
+			PooledConnection pooled = null;
+			while (pooled == null) {
+				pooled = idle.pollFirst();
+				if (pooled == null) {
+					if (reserve()) {
+						pooled = open();
+						break;
+					}
+					// Every connection is open: one is on its way back to the idle ones, or being opened by the
+					// housekeeper
+					long remaining = deadline - System.nanoTime();
+					if (remaining <= 0)
+						throw timeout();
+					pooled = idle.pollFirst(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(RETURN_POLL_MILLIS)),
+							TimeUnit.NANOSECONDS);
+					if (pooled == null)
+						continue;
+				}
+				if (!isUsable(pooled)) {
+					destroy(pooled);
+					pooled = null;
+				}
+			}
+
+			pooled.borrowedAt = System.currentTimeMillis();
+			pooled.borrowedBy = leakDetectionMillis > 0 ? new Throwable("Connection borrowed here") : null;
+			pooled.leakReported = false;
+			active.add(pooled);
+
+			return pooled.newHandle();
+
+		} catch (SQLException | RuntimeException e) {
+			permits.release();
+			throw e;
+		} catch (InterruptedException e) {
+			permits.release();
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a database connection", e);
+		}
+	}
+
+	/**
+	 * Not supported, the pool always uses the credentials of its connection factory.
+	 */
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		throw new SQLFeatureNotSupportedException("The pool uses the configured database credentials");
+	}
+
+	/**
+	 * Evicts connections that have been idle longer than the idle timeout (keeping at least minIdle),
+	 * tops the pool back up to minIdle and reports connections held longer than the leak threshold.
+	 * Runs periodically on the housekeeper thread; it can also be called directly.
+	 */
+	public void housekeep() {
+		if (closed)
+			return;
+
+		long now = System.currentTimeMillis();
+
+		Iterator<PooledConnection> oldestFirst = idle.descendingIterator();
+		while (oldestFirst.hasNext() && idle.size() > minIdle) {
+			PooledConnection pooled = oldestFirst.next();
+			if (now - pooled.lastReturnedAt >= idleTimeoutMillis && idle.remove(pooled))
+				destroy(pooled);
+		}
+
+		// Connections being opened by borrowers count too, so the pool never grows past maxSize
+		while (idle.size() + active.size() < minIdle && reserve()) {
+			try {
+				idle.offerLast(open());
+			} catch (SQLException e) {
+				System.out.println("Could not open an idle database connection");
+				e.printStackTrace();
+				break;
+			}
+		}
+
+		if (leakDetectionMillis > 0) {
+			for (PooledConnection pooled : active) {
+				if (!pooled.leakReported && now - pooled.borrowedAt > leakDetectionMillis) {
+					pooled.leakReported = true;
+					System.out.println("Possible connection leak: connection held for " + (now - pooled.borrowedAt)
+							+ " ms");
+					pooled.borrowedBy.printStackTrace();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Closes all idle connections and stops the housekeeper. Connections still in use are closed when
+	 * they are returned.
+	 */
+	public void close() {
+		closed = true;
+
+		if (housekeeper != null)
+			housekeeper.shutdownNow();
+
+		PooledConnection pooled;
+		while ((pooled = idle.pollFirst()) != null)
+			destroy(pooled);
+	}
+
+	/**
+	 * @return The number of connections currently borrowed.
+	 */
+	public int getActiveCount() {
+		return active.size();
+	}
+
+	/**
+	 * @return The number of open connections waiting in the pool.
+	 */
+	public int getIdleCount() {
+		return idle.size();
+	}
+
+	/**
+	 * @return The number of physical connections open, idle or in use.
+	 */
+	public int getOpenCount() {
+		return open.get();
+	}
+
+	/**
+	 * @return The maximum number of connections the pool will open.
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	private SQLTimeoutException timeout() {
+		return new SQLTimeoutException("Timed out after " + borrowTimeoutMillis
+				+ " ms waiting for a database connection (" + maxSize + " in use)");
+	}
+
+	// Takes a slot for a new physical connection, if fewer than maxSize are open
+	private boolean reserve() {
+		int count;
+		do {
+			count = open.get();
+			if (count >= maxSize)
+				return false;
+		} while (!open.compareAndSet(count, count + 1));
+		return true;
+	}
+
+	// Opens a physical connection in a slot taken by reserve(), giving the slot back if it fails
+	private PooledConnection open() throws SQLException {
+		try {
+			return new PooledConnection(factory.newConnection());
+		} catch (SQLException | RuntimeException e) {
+			open.decrementAndGet();
+			throw e;
+		}
+	}
+
+	private boolean isUsable(PooledConnection pooled) {
+		try {
+			return !pooled.connection.isClosed() && pooled.connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	private void release(PooledConnection pooled) {
+		active.remove(pooled);
+		try {
+			// Never hand an open transaction to the next borrower.
+			if (!pooled.connection.getAutoCommit()) {
+				pooled.connection.rollback();
+				pooled.connection.setAutoCommit(true);
+			}
+
+			if (closed) {
+				destroy(pooled);
+			} else {
+				pooled.lastReturnedAt = System.currentTimeMillis();
+				idle.offerFirst(pooled);
+			}
+		} catch (SQLException e) {
+			destroy(pooled);
+		} finally {
+			permits.release();
+		}
+	}
+
+	private void destroy(PooledConnection pooled) {
+		open.decrementAndGet();
+		try {
+			pooled.connection.close();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public PrintWriter getLogWriter() throws SQLException {
+		return logWriter;
+	}
+
+	@Override
+	public void setLogWriter(PrintWriter out) throws SQLException {
+		this.logWriter = out;
+	}
+
+	@Override
+	public void setLoginTimeout(int seconds) throws SQLException {
+		this.loginTimeout = seconds;
+	}
+
+	@Override
+	public int getLoginTimeout() throws SQLException {
+		return loginTimeout;
+	}
+
+	@Override
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		throw new SQLFeatureNotSupportedException("The pool does not use java.util.logging");
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		if (iface.isInstance(this))
+			return iface.cast(this);
+		throw new SQLException("Not a wrapper for " + iface.getName());
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return iface.isInstance(this);
+	}
+
+	/**
+	 * A physical connection together with its pool bookkeeping.
+	 */
+	private class PooledConnection {
+		private final Connection connection;
+		private volatile long borrowedAt;
+		private volatile long lastReturnedAt = System.currentTimeMillis();
+		private volatile Throwable borrowedBy;
+		private volatile boolean leakReported;
+
+		private PooledConnection(Connection connection) {
+			this.connection = connection;
+		}
+
+		/**
+		 * Creates a fresh proxy for one borrow, so a stale handle kept by a caller cannot touch the
+		 * connection after it has been returned and handed to someone else.
+		 */
+		private Connection newHandle() {
+			return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+					new Class<?>[] { Connection.class }, new Handle(this));
+		}
+	}
+
+	/**
+	 * Intercepts close() and isClosed() on the borrowed connection; everything else is delegated.
+	 */
+	private class Handle implements InvocationHandler {
+		private final PooledConnection pooled;
+		private boolean returned;
+
+		private Handle(PooledConnection pooled) {
+			this.pooled = pooled;
+		}
+
+		@Override
+		public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+
+			if ("close".equals(name)) {
+				if (!returned) {
+					returned = true;
+					release(pooled);
+				}
+				return null;
+			}
+			if ("isClosed".equals(name))
+				return returned || pooled.connection.isClosed();
+			if ("equals".equals(name))
+				return proxy == args[0];
+			if ("hashCode".equals(name))
+				return System.identityHashCode(proxy);
+			if ("toString".equals(name))
+				return "Pooled" + pooled.connection;
+			if (returned)
+				throw new SQLException("Connection has already been returned to the pool");
+
+			try {
+				return method.invoke(pooled.connection, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+}
@@ -9,52 +9,244 @@ import java.util.ResourceBundle;
 
 /**
  * A utility class for managing database connections.
- * It provides a singleton connection to the database and helper methods to close resources.
+ * Connections are borrowed from a bounded {@link ConnectionPool} configured from the application.properties
+ * file, and the helper methods below return them to the pool and close other JDBC resources.
+ * <p>
+ * While a unit of work is open on the current thread (see {@link #beginUnitOfWork()}), every call to
+ * {@link #provideConnection()} returns the same connection, so that all service calls made while handling
+ * one request share a single borrowed connection and can take part in one transaction.
  */
 public class DBUtil {
-	private static Connection conn;
+	private static volatile ConnectionPool pool;
+
+	private static final ThreadLocal<UnitOfWork> CURRENT_UNIT = new ThreadLocal<UnitOfWork>();
 
 	public DBUtil() {
 	}
 
 	/**
-	 * Provides a singleton database connection.
-	 * If the connection is null or closed, it creates a new one using details from the application.properties file.
+	 * Borrows a connection from the pool, creating the pool on first use.
+	 * The connection must be handed back with {@link #closeConnection(Connection)} once the caller is done with it.
+	 * Inside a unit of work the connection bound to the current thread is returned instead.
 	 * 
-	 * @return A Connection object to the database.
+	 * @return A Connection object to the database, or null if no connection could be obtained.
 	 */
 	public static Connection provideConnection() {
 
 		try {
-			if (conn == null || conn.isClosed()) {
-				// Load database configuration from the properties file
-				ResourceBundle rb = ResourceBundle.getBundle("application");
-				String connectionString = rb.getString("db.connectionString");
-				String driverName = rb.getString("db.driverName");
-				String username = rb.getString("db.username");
-				String password = rb.getString("db.password");
+			UnitOfWork unit = CURRENT_UNIT.get();
+			if (unit != null)
+				return unit.connection();
+
+			return getDataSource().getConnection();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+
+		return null;
+	}
+
+	/**
+	 * Provides the pooled DataSource behind {@link #provideConnection()}.
+	 * The pool is created lazily using the db.* keys of the application.properties file.
+	 * Pool sizing can be tuned with the optional db.pool.* keys.
+	 * 
+	 * @return The shared ConnectionPool.
+	 */
+	public static ConnectionPool getDataSource() {
+		ConnectionPool current = pool;
+		if (current == null) {
+			synchronized (DBUtil.class) {
+				current = pool;
+				if (current == null) {
+					current = createPool();
+					pool = current;
+				}
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * Closes the connection pool and all idle connections. Called when the web application is stopped.
+	 */
+	public static void shutdown() {
+		synchronized (DBUtil.class) {
+			if (pool != null) {
+				pool.close();
+				pool = null;
+			}
+		}
+	}
+
+	/**
+	 * Opens a unit of work on the current thread. Until the matching {@link #endUnitOfWork()} call, every
+	 * connection provided on this thread is the same pooled connection, borrowed on first use.
+	 * Calls may be nested; only the outermost end releases the connection.
+	 */
+	public static void beginUnitOfWork() {
+		UnitOfWork unit = CURRENT_UNIT.get();
+		if (unit == null) {
+			unit = new UnitOfWork(getDataSource());
+			CURRENT_UNIT.set(unit);
+		}
+		unit.depth++;
+	}
+
+	/**
+	 * Closes the unit of work opened by {@link #beginUnitOfWork()}. When the outermost unit ends, a transaction
+	 * still open is rolled back and the connection is returned to the pool.
+	 */
+	public static void endUnitOfWork() {
+		UnitOfWork unit = CURRENT_UNIT.get();
+		if (unit == null)
+			return;
+
+		if (--unit.depth <= 0) {
+			CURRENT_UNIT.remove();
+			unit.release();
+		}
+	}
+
+	/**
+	 * Returns the connection of the current unit of work to the pool without ending the unit, for instance before
+	 * a view is rendered to a possibly slow client. If the database is used again in the unit, a connection is
+	 * borrowed again. Does nothing outside of a unit of work or while a transaction is open.
+	 */
+	public static void releaseConnection() {
+		UnitOfWork unit = CURRENT_UNIT.get();
+		if (unit != null)
+			unit.releaseIdleConnection();
+	}
+
+	/**
+	 * Starts a transaction on the connection of the current unit of work (opening one if needed).
+	 * Every call must be paired with either {@link #commit()} or {@link #rollback()}. Nested transactions join
+	 * the outermost one, which is the only one that actually commits.
+	 * 
+	 * @throws SQLException if no connection could be obtained or auto-commit could not be switched off.
+	 */
+	public static void beginTransaction() throws SQLException {
+		beginUnitOfWork();
+		UnitOfWork unit = CURRENT_UNIT.get();
+		try {
+			if (unit.transactionDepth == 0) {
+				unit.connection().setAutoCommit(false);
+				unit.rollbackOnly = false;
+			}
+			unit.transactionDepth++;
+		} catch (SQLException e) {
+			endUnitOfWork();
+			throw e;
+		}
+	}
+
+	/**
+	 * Commits the transaction started by {@link #beginTransaction()}. For a nested transaction this only leaves
+	 * the nested scope; the work is committed when the outermost transaction commits.
+	 * 
+	 * @throws SQLException if the commit fails, or if a nested transaction rolled back or the transaction was marked
+	 *                      rollback-only (the work is then rolled back as a whole).
+	 */
+	public static void commit() throws SQLException {
+		UnitOfWork unit = CURRENT_UNIT.get();
+		if (unit == null || unit.transactionDepth == 0)
+			return;
+
+		try {
+			if (unit.transactionDepth == 1) {
+				Connection con = unit.connection();
 				try {
-					Class.forName(driverName);
-				} catch (ClassNotFoundException e) {
-					e.printStackTrace();
+					if (unit.rollbackOnly) {
+						con.rollback();
+						throw new SQLException("Transaction rolled back because part of it failed");
+					}
+					con.commit();
+				} finally {
+					con.setAutoCommit(true);
 				}
-				conn = DriverManager.getConnection(connectionString, username, password);
+			}
+		} finally {
+			unit.transactionDepth--;
+			endUnitOfWork();
+		}
+	}
 
+	/**
+	 * Rolls back the transaction started by {@link #beginTransaction()}. A nested transaction marks the
+	 * outermost one as rollback-only. Does nothing if no transaction is open.
+	 */
+	public static void rollback() {
+		UnitOfWork unit = CURRENT_UNIT.get();
+		if (unit == null || unit.transactionDepth == 0)
+			return;
+
+		try {
+			if (unit.transactionDepth == 1) {
+				Connection con = unit.connection();
+				con.rollback();
+				con.setAutoCommit(true);
+			} else {
+				unit.rollbackOnly = true;
 			}
 		} catch (SQLException e) {
-			// TODO Auto-generated catch block
+			e.printStackTrace();
+		} finally {
+			unit.transactionDepth--;
+			endUnitOfWork();
+		}
+	}
+
+	/**
+	 * @return true if a transaction started by {@link #beginTransaction()} is open on the current thread.
+	 */
+	public static boolean isInTransaction() {
+		UnitOfWork unit = CURRENT_UNIT.get();
+		return unit != null && unit.transactionDepth > 0;
+	}
+
+	/**
+	 * Marks the open transaction so that it cannot commit: the outermost {@link #commit()} rolls it back and throws.
+	 * Used by work that failed inside a transaction it does not own. Does nothing if no transaction is open.
+	 */
+	public static void setRollbackOnly() {
+		UnitOfWork unit = CURRENT_UNIT.get();
+		if (unit != null && unit.transactionDepth > 0)
+			unit.rollbackOnly = true;
+	}
+
+	private static ConnectionPool createPool() {
+		// Load database configuration from the properties file
+		ResourceBundle rb = ResourceBundle.getBundle("application");
+		String connectionString = rb.getString("db.connectionString");
+		String driverName = rb.getString("db.driverName");
+		String username = rb.getString("db.username");
+		String password = rb.getString("db.password");
+		try {
+			Class.forName(driverName);
+		} catch (ClassNotFoundException e) {
 			e.printStackTrace();
 		}
 
-		return conn;
+		return new ConnectionPool(() -> DriverManager.getConnection(connectionString, username, password),
+				AppConfig.getInt("db.pool.minIdle", 2), AppConfig.getInt("db.pool.maxSize", 10),
+				AppConfig.getLong("db.pool.borrowTimeoutMillis", 5000),
+				AppConfig.getLong("db.pool.idleTimeoutMillis", 300000),
+				AppConfig.getLong("db.pool.leakDetectionMillis", 60000),
+				AppConfig.getLong("db.pool.housekeepingMillis", 30000));
 	}
 
 	/**
-	 * Closes the given database connection.
+	 * Closes the given database connection, which returns a pooled connection to the pool.
+	 * The connection of an open unit of work is left open; it is released by {@link #endUnitOfWork()}.
 	 * 
 	 * @param con The Connection to close.
 	 */
 	public static void closeConnection(Connection con) {
+		UnitOfWork unit = CURRENT_UNIT.get();
+		if (unit != null && unit.owns(con))
+			return;
+
 		try {
 			if (con != null && !con.isClosed()) {
 				con.close();
@@ -1,42 +1,29 @@
 package com.shashi.utility;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-
 /**
- * Utility class for generating unique IDs based on timestamps.
+ * Utility class for generating unique IDs.
+ * The IDs come from the {@link IdGenerator} of the application: they start with a letter and the date and time of
+ * their creation, and two IDs are never the same, however many are generated in the same second.
  */
 public class IDUtil {
 
 	/**
 	 * Generates a unique product ID.
-	 * The ID is prefixed with "P" followed by a timestamp (yyyyMMddhhmmss).
+	 * The ID is prefixed with "P" followed by a timestamp (yyyyMMddHHmmssSSS, UTC), the node and a sequence.
 	 * 
 	 * @return A unique product ID string.
 	 */
 	public static String generateId() {
-		String pId = null;
-
-		SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMddhhmmss");
-		pId = sdf.format(new Date());
-		pId = "P" + pId;
-
-		return pId;
+		return IdGenerator.shared().next("P");
 	}
 
 	/**
 	 * Generates a unique transaction ID.
-	 * The ID is prefixed with "T" followed by a timestamp (yyyyMMddhhmmss).
+	 * The ID is prefixed with "T" followed by a timestamp (yyyyMMddHHmmssSSS, UTC), the node and a sequence.
 	 * 
 	 * @return A unique transaction ID string.
 	 */
 	public static String generateTransId() {
-		String tId = null;
-
-		SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMddhhmmss");
-		tId = sdf.format(new Date());
-		tId = "T" + tId;
-
-		return tId;
+		return IdGenerator.shared().next("T");
 	}
 }
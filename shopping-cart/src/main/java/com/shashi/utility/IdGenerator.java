@@ -0,0 +1,143 @@
+package com.shashi.utility;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Generates unique, increasing IDs without locking, in the manner of Twitter's Snowflake: every ID is made of the
+ * time in milliseconds, the number of the node (the server) generating it and a sequence number within the
+ * millisecond.
+ * <p>
+ * The sequence allows 4096 IDs per millisecond, i.e. about 4 million per second. When a millisecond is used up, the
+ * following IDs borrow the next millisecond, and when the clock goes back the IDs keep counting from the last one, so
+ * IDs never repeat and always increase on one node. IDs of different nodes differ as long as each node has its own
+ * number (id.node in the application.properties file, between 0 and 999; by default a number derived from the
+ * process and host names).
+ * <p>
+ * The string form is a prefix followed by the UTC time (yyyyMMddHHmmssSSS), the node (3 digits) and the sequence (4
+ * digits): P202610170930151230420007 is the product ID generated at 2026-10-17 09:30:15.123 UTC by node 42 with
+ * sequence 7. It keeps the letter and the date first, like the IDs generated before, and sorts after them in
+ * generation order.
+ */
+public class IdGenerator {
+
+	private static final int SEQUENCE_BITS = 12;
+
+	private static final int MAX_NODE = 999;
+
+	private static final DateTimeFormatter SECONDS = DateTimeFormatter.ofPattern("yyyyMMddHHmmss")
+			.withZone(ZoneOffset.UTC);
+
+	private static final IdGenerator SHARED = new IdGenerator(configuredNode(), System::currentTimeMillis);
+
+	private final int node;
+	private final LongSupplier clock;
+
+	// the last ID: the milliseconds shifted left, plus the sequence
+	private final AtomicLong last = new AtomicLong();
+
+	// the second of the last ID formatted, reused until the second changes
+	private volatile FormattedSecond formattedSecond = new FormattedSecond(-1, null);
+
+	/**
+	 * Creates a new generator.
+	 *
+	 * @param node The number of the node, between 0 and 999.
+	 * @param clock The time source, in milliseconds.
+	 */
+	public IdGenerator(int node, LongSupplier clock) {
+		if (node < 0 || node > MAX_NODE)
+			throw new IllegalArgumentException("The node must be between 0 and " + MAX_NODE + ": " + node);
+		this.node = node;
+		this.clock = clock;
+	}
+
+	/**
+	 * @return The generator of the application.
+	 */
+	public static IdGenerator shared() {
+		return SHARED;
+	}
+
+	/**
+	 * Generates the next ID.
+	 *
+	 * @return The time in milliseconds shifted left by 12 bits, plus the sequence within the millisecond.
+	 */
+	public long nextId() {
+		long now = clock.getAsLong();
+		while (true) {
+			long previous = last.get();
+			// a full sequence carries over into the next millisecond
+			long next = now > previous >>> SEQUENCE_BITS ? now << SEQUENCE_BITS : previous + 1;
+			if (last.compareAndSet(previous, next))
+				return next;
+		}
+	}
+
+	/**
+	 * Generates the next ID in its string form.
+	 *
+	 * @param prefix The letter identifying the kind of ID, such as P for products.
+	 * @return The ID.
+	 */
+	public String next(String prefix) {
+		return format(prefix, nextId());
+	}
+
+	/**
+	 * Builds the string form of an ID.
+	 *
+	 * @param prefix The letter identifying the kind of ID.
+	 * @param id An ID returned by {@link #nextId()}.
+	 * @return The prefix, the UTC time of the ID, the node and the sequence.
+	 */
+	public String format(String prefix, long id) {
+		long millis = id >>> SEQUENCE_BITS;
+		long second = Math.floorDiv(millis, 1000);
+
+		FormattedSecond formatted = formattedSecond;
+		if (formatted.second != second) {
+			formatted = new FormattedSecond(second, SECONDS.format(Instant.ofEpochSecond(second)));
+			formattedSecond = formatted;
+		}
+
+		StringBuilder sb = new StringBuilder(prefix.length() + 24).append(prefix).append(formatted.text);
+		appendDigits(sb, Math.floorMod(millis, 1000L), 3);
+		appendDigits(sb, node, 3);
+		appendDigits(sb, id & ((1 << SEQUENCE_BITS) - 1), 4);
+		return sb.toString();
+	}
+
+	private static void appendDigits(StringBuilder sb, long value, int digits) {
+		String text = Long.toString(value);
+		for (int i = text.length(); i < digits; i++)
+			sb.append('0');
+		sb.append(text);
+	}
+
+	private static int configuredNode() {
+		// "pid@host" on the usual JVMs
+		int defaultNode = Math.floorMod(ManagementFactory.getRuntimeMXBean().getName().hashCode(), MAX_NODE + 1);
+		int node = AppConfig.getInt("id.node", defaultNode);
+		if (node < 0 || node > MAX_NODE) {
+			System.out.println("Invalid value " + node + " for id.node, using " + defaultNode);
+			return defaultNode;
+		}
+		return node;
+	}
+
+	private static final class FormattedSecond {
+		private final long second;
+		private final String text;
+
+		private FormattedSecond(long second, String text) {
+			this.second = second;
+			this.text = text;
+		}
+	}
+}
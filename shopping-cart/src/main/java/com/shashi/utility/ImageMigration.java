@@ -0,0 +1,109 @@
+package com.shashi.utility;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.shashi.service.ImageStore;
+import com.shashi.service.impl.FileImageStore;
+import com.shashi.service.impl.ImageVariants;
+
+/**
+ * Moves the product images still stored in the image column of the product table to the image store.
+ * <p>
+ * Run it once (Run As > Java Application) after adding the image_key column to an existing database. Every image is
+ * saved to the store and its row then only keeps the key; the application keeps working while it runs, and it can be
+ * run again if it was stopped. The smaller variants of the images are generated on the way. Run OPTIMIZE TABLE product
+ * afterwards to give the space back.
+ */
+public class ImageMigration {
+
+	public static void main(String[] args) {
+		int moved = 0;
+		int failed = 0;
+		try {
+			ImageStore imageStore = FileImageStore.shared();
+			List<String> prodIds = findProductsToMove();
+			System.out.println(prodIds.size() + " product images to move");
+
+			for (String prodId : prodIds) {
+				if (moveImage(prodId, imageStore))
+					moved++;
+				else
+					failed++;
+			}
+		} catch (SQLException e) {
+			e.printStackTrace();
+		} finally {
+			DBUtil.shutdown();
+		}
+		System.out.println(moved + " product images moved, " + failed + " failed");
+	}
+
+	private static List<String> findProductsToMove() throws SQLException {
+		List<String> prodIds = new ArrayList<String>();
+
+		Connection con = DBUtil.provideConnection();
+		if (con == null)
+			throw new SQLException("No database connection");
+
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		try {
+			ps = con.prepareStatement("select pid from product where image is not null and image_key is null");
+			rs = ps.executeQuery();
+			while (rs.next())
+				prodIds.add(rs.getString("pid"));
+		} finally {
+			DBUtil.closeConnection(rs);
+			DBUtil.closeConnection(ps);
+			DBUtil.closeConnection(con);
+		}
+		return prodIds;
+	}
+
+	// One image per query, so that the images of the whole table are never in memory together
+	private static boolean moveImage(String prodId, ImageStore imageStore) {
+		Connection con = DBUtil.provideConnection();
+
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		try {
+			ps = con.prepareStatement("select image from product where pid=? and image_key is null");
+			ps.setString(1, prodId);
+			rs = ps.executeQuery();
+			if (!rs.next())
+				return true;
+
+			String imageKey;
+			try (InputStream image = rs.getBinaryStream("image")) {
+				imageKey = image == null ? null : imageStore.save(image);
+			}
+			DBUtil.closeConnection(rs);
+			DBUtil.closeConnection(ps);
+
+			// image_key is still null unless the product got a new image meanwhile, which must not be overwritten
+			ps = con.prepareStatement("update product set image_key=?, image=null where pid=? and image_key is null");
+			ps.setString(1, imageKey);
+			ps.setString(2, prodId);
+			ps.executeUpdate();
+
+			if (imageKey != null)
+				ImageVariants.shared().generateNow(imageKey);
+			return true;
+		} catch (SQLException | IOException e) {
+			System.out.println("Could not move the image of product " + prodId);
+			e.printStackTrace();
+			return false;
+		} finally {
+			DBUtil.closeConnection(rs);
+			DBUtil.closeConnection(ps);
+			DBUtil.closeConnection(con);
+		}
+	}
+}
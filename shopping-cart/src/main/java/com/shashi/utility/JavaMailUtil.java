@@ -17,9 +17,19 @@ import jakarta.mail.internet.MimeMessage;
 /**
  * Utility class for sending emails using the Jakarta Mail API.
  * Configured specifically for sending emails via Gmail SMTP.
+ * <p>
+ * The mail session is created once, on first use, and emails are sent on the connections of a
+ * {@link SmtpTransportPool}, which keeps them open between emails. The pool can be tuned with the optional
+ * mail.smtp.pool.* keys of the application.properties file.
  */
 public class JavaMailUtil {
 
+	private static final String HOST = "smtp.gmail.com";
+
+	private static volatile Session session;
+
+	private static volatile SmtpTransportPool transports;
+
 	/**
 	 * Sends a simple welcome email.
 	 * 
@@ -29,9 +39,75 @@ public class JavaMailUtil {
 	public static void sendMail(String recipientMailId) throws MessagingException {
 
 		System.out.println("Preparing to send Mail");
+
+		Message message = prepareMessage(getSession(), getSenderAddress(), recipientMailId);
+
+		getTransportPool().send(message);
+
+		System.out.println("Message Sent Successfully!");
+
+	}
+
+	/**
+	 * Provides the mail session, created on first use from the mailer.* keys of the application.properties file.
+	 *
+	 * @return The shared Session.
+	 */
+	public static Session getSession() {
+		Session current = session;
+		if (current == null) {
+			synchronized (JavaMailUtil.class) {
+				current = session;
+				if (current == null) {
+					current = createSession();
+					session = current;
+				}
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * Provides the pool of SMTP connections the emails are sent on, created on first use.
+	 *
+	 * @return The shared SmtpTransportPool.
+	 */
+	public static SmtpTransportPool getTransportPool() {
+		SmtpTransportPool current = transports;
+		if (current == null) {
+			synchronized (JavaMailUtil.class) {
+				current = transports;
+				if (current == null) {
+					current = new SmtpTransportPool(() -> {
+						Transport transport = getSession().getTransport("smtp");
+						transport.connect();
+						return transport;
+					}, AppConfig.getInt("mail.smtp.pool.maxSize", 4),
+							AppConfig.getInt("mail.smtp.pool.maxMessagesPerConnection", 100),
+							AppConfig.getLong("mail.smtp.pool.idleTimeoutMillis", 60000),
+							AppConfig.getLong("mail.smtp.pool.borrowTimeoutMillis", 30000));
+					transports = current;
+				}
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * Closes the open SMTP connections. Called when the web application is stopped.
+	 */
+	public static void shutdown() {
+		synchronized (JavaMailUtil.class) {
+			if (transports != null) {
+				transports.close();
+				transports = null;
+			}
+		}
+	}
+
+	private static Session createSession() {
 		Properties properties = new Properties();
-		String host = "smtp.gmail.com";
-		properties.put("mail.smtp.host", host);
+		properties.put("mail.smtp.host", HOST);
 		properties.put("mail.transport.protocol", "smtp");
 		properties.put("mail.smtp.auth", "true");
 		properties.put("mail.smtp.starttls.enable", "true");
@@ -46,7 +122,7 @@ public class JavaMailUtil {
 		properties.put("mail.password", passWord);
 
 		// Create a session with an authenticator
-		Session session = Session.getInstance(properties, new Authenticator() {
+		return Session.getInstance(properties, new Authenticator() {
 
 			@Override
 			protected PasswordAuthentication getPasswordAuthentication() {
@@ -54,13 +130,10 @@ public class JavaMailUtil {
 			}
 
 		});
+	}
 
-		Message message = prepareMessage(session, emailId, recipientMailId);
-
-		Transport.send(message);
-
-		System.out.println("Message Sent Successfully!");
-
+	private static String getSenderAddress() {
+		return getSession().getProperty("mail.user");
 	}
 
 	/**
@@ -101,34 +174,10 @@ public class JavaMailUtil {
 	public static void sendMail(String recipient, String subject, String htmlTextMessage) throws MessagingException {
 
 		System.out.println("Preparing to send Mail");
-		Properties properties = new Properties();
-		String host = "smtp.gmail.com";
-		properties.put("mail.smtp.host", host);
-		properties.put("mail.transport.protocol", "smtp");
-		properties.put("mail.smtp.auth", "true");
-		properties.put("mail.smtp.starttls.enable", "true");
-		properties.put("mail.smtp.port", "587");
-
-		ResourceBundle rb = ResourceBundle.getBundle("application");
-
-		String emailId = rb.getString("mailer.email");
-		String passWord = rb.getString("mailer.password");
-
-		properties.put("mail.user", emailId);
-		properties.put("mail.password", passWord);
-
-		Session session = Session.getInstance(properties, new Authenticator() {
-
-			@Override
-			protected PasswordAuthentication getPasswordAuthentication() {
-				return new PasswordAuthentication(emailId, passWord);
-			}
-
-		});
 
-		Message message = prepareMessage(session, emailId, recipient, subject, htmlTextMessage);
+		Message message = prepareMessage(getSession(), getSenderAddress(), recipient, subject, htmlTextMessage);
 
-		Transport.send(message);
+		getTransportPool().send(message);
 
 		System.out.println("Message Sent Successfully!");
 
@@ -0,0 +1,54 @@
+package com.shashi.utility;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+
+/**
+ * Builds the links of the product listing pages (index.jsp, userHome.jsp and adminViewProduct.jsp), which keep the
+ * current search, type and sort order, and carry the {@link PageToken} of the page to show.
+ */
+public final class ListingUrl {
+
+	private ListingUrl() {
+	}
+
+	/**
+	 * Builds a link to a listing page.
+	 *
+	 * @param page The listing page, such as index.jsp.
+	 * @param search The current search, or null.
+	 * @param type The current product type, or null.
+	 * @param sort The sort order, see {@link PageToken#normalizeSort(String)}, or null for the default order of the
+	 *            listing.
+	 * @param pageToken The token of the page to show, or null for the first page.
+	 * @return The URL, relative to the application.
+	 */
+	public static String build(String page, String search, String type, String sort, String pageToken) {
+		StringBuilder url = new StringBuilder(page);
+		char separator = '?';
+		if (sort != null) {
+			url.append(separator).append("sort=").append(sort);
+			separator = '&';
+		}
+		if (search != null) {
+			url.append(separator).append("search=").append(encode(search));
+			separator = '&';
+		}
+		if (type != null) {
+			url.append(separator).append("type=").append(encode(type));
+			separator = '&';
+		}
+		if (pageToken != null)
+			url.append(separator).append("page=").append(pageToken);
+		return url.toString();
+	}
+
+	private static String encode(String value) {
+		try {
+			return URLEncoder.encode(value, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			// every Java platform has UTF-8
+			throw new IllegalStateException(e);
+		}
+	}
+}
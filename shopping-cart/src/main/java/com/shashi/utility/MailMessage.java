@@ -1,12 +1,28 @@
 package com.shashi.utility;
 
-import jakarta.mail.MessagingException;
+import java.util.Objects;
 
 /**
  * A utility class for sending pre-formatted emails for various application events.
+ * The emails are queued in the {@link MailOutbox} and sent in the background, so callers do not wait for the mail
+ * server. Their content comes from the {@link MailTemplate}s of the mail folder of the classpath.
  */
 public class MailMessage {
-	
+
+	private static final MailTemplate REGISTRATION_SUCCESS = MailTemplate.load("registration-success.html", "name");
+
+	private static final MailTemplate TRANSACTION_SUCCESS = MailTemplate.load("transaction-success.html", "name",
+			"transId", "transAmount");
+
+	private static final MailTemplate ORDER_SHIPPED = MailTemplate.load("order-shipped.html", "name", "transId",
+			"transAmount");
+
+	private static final MailTemplate PRODUCT_AVAILABLE = MailTemplate.load("product-available.html", "name",
+			"prodName", "prodId");
+
+	// the back in stock email of the last product notified, with the product rendered, reused for all its customers
+	private static volatile BoundProduct boundProduct = new BoundProduct(null, null, PRODUCT_AVAILABLE);
+
 	/**
 	 * Sends a registration success email to a new user.
 	 * 
@@ -16,23 +32,8 @@ public class MailMessage {
 	public static void registrationSuccess(String emailId, String name) {
 		String recipient = emailId;
 		String subject = "Registration Successfull";
-		String htmlTextMessage = "" + "<html>" + "<body>"
-				+ "<h2 style='color:green;'>Welcome to Ellison Electronics</h2>" + "" + "Hi " + name + ","
-				+ "<br><br>Thanks for singing up with Ellison Electronics.<br>"
-				+ "We are glad that you choose us. We invite you to check out our latest collection of new electonics appliances."
-				+ "<br>We are providing upto 60% OFF on most of the electronic gadgets. So please visit our site and explore the collections."
-				+ "<br><br>Our Online electronics is growing in a larger amount these days and we are in high demand so we thanks all of you for "
-				+ "making us up to that level. We Deliver Product to your house with no extra delivery charges and we also have collection of most of the"
-				+ "branded items.<br><br>As a Welcome gift for our New Customers we are providing additional 10% OFF Upto 500 Rs for the first product purchase. "
-				+ "<br>To avail this offer you only have "
-				+ "to enter the promo code given below.<br><br><br> PROMO CODE: " + "ELLISON500<br><br><br>"
-				+ "Have a good day!<br>" + "" + "</body>" + "</html>";
-		try {
-			JavaMailUtil.sendMail(recipient, subject, htmlTextMessage);
-		} catch (MessagingException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
+		String htmlTextMessage = REGISTRATION_SUCCESS.render(name);
+		MailOutbox.shared().enqueue(recipient, subject, htmlTextMessage);
 	}
 
 	/**
@@ -46,23 +47,9 @@ public class MailMessage {
 	public static void transactionSuccess(String recipientEmail, String name, String transId, double transAmount) {
 		String recipient = recipientEmail;
 		String subject = "Order Placed at Ellison Electronics";
-		String htmlTextMessage = "<html>" + "  <body>" + "    <p>" + "      Hey " + name + ",<br/><br/>"
-				+ "      We are glad that you shop with Ellison Electronics!" + "      <br/><br/>"
-				+ "      Your order has been placed successfully and under process to be shipped."
-				+ "<br/><h6>Please Note that this is a demo projet Email and you have not made any real transaction with us till now!</h6>"
-				+ "      <br/>" + "      Here is Your Transaction Details:<br/>" + "      <br/>"
-				+ "      <font style=\"color:red;font-weight:bold;\">Order Id:</font>"
-				+ "      <font style=\"color:green;font-weight:bold;\">" + transId + "</font><br/>" + "      <br/>"
-				+ "      <font style=\"color:red;font-weight:bold;\">Amount Paid:</font> <font style=\"color:green;font-weight:bold;\">"
-				+ transAmount + "</font>" + "      <br/><br/>" + "      Thanks for shopping with us!<br/><br/>"
-				+ "      Come Shop Again! <br/<br/> <font style=\"color:green;font-weight:bold;\">Ellison Electronics.</font>"
-				+ "    </p>" + "    " + "  </body>" + "</html>";
-
-		try {
-			JavaMailUtil.sendMail(recipient, subject, htmlTextMessage);
-		} catch (MessagingException e) {
-			e.printStackTrace();
-		}
+		String htmlTextMessage = TRANSACTION_SUCCESS.render(name, transId, transAmount);
+
+		MailOutbox.shared().enqueue(recipient, subject, htmlTextMessage);
 	}
 
 	/**
@@ -76,23 +63,9 @@ public class MailMessage {
 	public static void orderShipped(String recipientEmail, String name, String transId, double transAmount) {
 		String recipient = recipientEmail;
 		String subject = "Hurray!!, Your Order has been Shipped from Ellison Electronics";
-		String htmlTextMessage = "<html>" + "  <body>" + "    <p>" + "      Hey " + name + ",<br/><br/>"
-				+ "      We are glad that you shop with Ellison Electronics!" + "      <br/><br/>"
-				+ "      Your order has been shipped successfully and on the way to be delivered."
-				+ "<br/><h6>Please Note that this is a demo projet Email and you have not made any real transaction with us till now!</h6>"
-				+ "      <br/>" + "      Here is Your Transaction Details:<br/>" + "      <br/>"
-				+ "      <font style=\"color:red;font-weight:bold;\">Order Id:</font>"
-				+ "      <font style=\"color:green;font-weight:bold;\">" + transId + "</font><br/>" + "      <br/>"
-				+ "      <font style=\"color:red;font-weight:bold;\">Amount Paid:</font> <font style=\"color:green;font-weight:bold;\">"
-				+ transAmount + "</font>" + "      <br/><br/>" + "      Thanks for shopping with us!<br/><br/>"
-				+ "      Come Shop Again! <br/<br/> <font style=\"color:green;font-weight:bold;\">Ellison Electronics.</font>"
-				+ "    </p>" + "    " + "  </body>" + "</html>";
-
-		try {
-			JavaMailUtil.sendMail(recipient, subject, htmlTextMessage);
-		} catch (MessagingException e) {
-			e.printStackTrace();
-		}
+		String htmlTextMessage = ORDER_SHIPPED.render(name, transId, transAmount);
+
+		MailOutbox.shared().enqueue(recipient, subject, htmlTextMessage);
 	}
 
 	/**
@@ -104,27 +77,28 @@ public class MailMessage {
 	 * @param prodId The ID of the product.
 	 */
 	public static void productAvailableNow(String recipientEmail, String name, String prodName, String prodId) {
+		MailOutbox.Mail mail = productAvailableNowMail(recipientEmail, name, prodName, prodId);
+
+		MailOutbox.shared().enqueue(mail.getRecipient(), mail.getSubject(), mail.getBody());
+	}
+
+	/**
+	 * Builds the notification that a demanded product is now available, to be queued with others in one batch.
+	 * The emails of one product are rendered from the template with the product already rendered into it.
+	 * 
+	 * @param recipientEmail The recipient's email address.
+	 * @param name The recipient's name.
+	 * @param prodName The name of the product.
+	 * @param prodId The ID of the product.
+	 * @return The email.
+	 */
+	public static MailOutbox.Mail productAvailableNowMail(String recipientEmail, String name, String prodName,
+			String prodId) {
 		String recipient = recipientEmail;
 		String subject = "Product " + prodName + " is Now Available at Ellison Electronics";
-		String htmlTextMessage = "<html>" + "  <body>" + "    <p>" + "      Hey " + name + ",<br/><br/>"
-				+ "      We are glad that you shop with Ellison Electronics!" + "      <br/><br/>"
-				+ "      As per your recent browsing history, we seen that you were searching for an item that was not available in sufficient amount"
-				+ " at that time. <br/><br/>"
-				+ "We are glad to say that the product named <font style=\"color:green;font-weight:bold;\">" + prodName
-				+ "</font> with " + "product Id <font style=\"color:green;font-weight:bold;\">" + prodId
-				+ "</font> is now available to shop in our store!"
-				+ "<br/><h6>Please Note that this is a demo projet Email and you have not made any real transaction with us and not ordered anything till now!</h6>"
-				+ "      <br/>" + "      Here is The product detail which is now available to shop:<br/>" + "      <br/>"
-				+ "      <font style=\"color:red;font-weight:bold;\">Product Id: </font><font style=\"color:green;font-weight:bold;\">" + prodId + " " + "      </font><br/>" + "      <br/>"
-				+ "      <font style=\"color:red;font-weight:bold;\">Product Name: </font> <font style=\"color:green;font-weight:bold;\">" + prodName + "</font>"
-				+ "      <br/><br/>" + "      Thanks for shopping with us!<br/><br/>" + "      Come Shop Again! <br/<br/><br/> <font style=\"color:green;font-weight:bold;\">Ellison Electronics.</font>"
-				+ "    </p>" + "    " + "  </body>" + "</html>";
-
-		try {
-			JavaMailUtil.sendMail(recipient, subject, htmlTextMessage);
-		} catch (MessagingException e) {
-			e.printStackTrace();
-		}
+		String htmlTextMessage = productAvailableTemplate(prodName, prodId).render(name);
+
+		return new MailOutbox.Mail(recipient, subject, htmlTextMessage);
 	}
 
 	/**
@@ -133,15 +107,31 @@ public class MailMessage {
 	 * @param toEmailId The recipient's email address.
 	 * @param subject The subject of the email.
 	 * @param htmlTextMessage The HTML content of the email.
-	 * @return "SUCCESS" or "FAILURE".
+	 * @return "SUCCESS" once queued, or "FAILURE".
 	 */
 	public static String sendMessage(String toEmailId, String subject, String htmlTextMessage) {
-		try {
-			JavaMailUtil.sendMail(toEmailId, subject, htmlTextMessage);
-		} catch (MessagingException e) {
-			e.printStackTrace();
-			return "FAILURE";
+		return MailOutbox.shared().enqueue(toEmailId, subject, htmlTextMessage) ? "SUCCESS" : "FAILURE";
+	}
+
+	private static MailTemplate productAvailableTemplate(String prodName, String prodId) {
+		BoundProduct bound = boundProduct;
+		if (bound.prodId == null || !bound.prodId.equals(prodId) || !Objects.equals(bound.prodName, prodName)) {
+			bound = new BoundProduct(prodId, prodName,
+					PRODUCT_AVAILABLE.bind("prodName", prodName).bind("prodId", prodId));
+			boundProduct = bound;
+		}
+		return bound.template;
+	}
+
+	private static final class BoundProduct {
+		private final String prodId;
+		private final String prodName;
+		private final MailTemplate template;
+
+		private BoundProduct(String prodId, String prodName, MailTemplate template) {
+			this.prodId = prodId;
+			this.prodName = prodName;
+			this.template = template;
 		}
-		return "SUCCESS";
 	}
 }
@@ -0,0 +1,435 @@
+package com.shashi.utility;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+import jakarta.mail.MessagingException;
+
+/**
+ * An outbox for the emails of the application, so that requests do not wait for the mail server.
+ * <p>
+ * {@link #enqueue(String, String, String)} only inserts the email in the mail_outbox table, on the connection of the
+ * current unit of work: an email queued inside a transaction is only sent if the transaction commits. A single
+ * background thread then sends the emails that are due, a batch at a time, every mail.outbox.pollMillis (2000 by
+ * default). An email that could not be sent is tried again later, waiting twice as long after every failure
+ * (mail.outbox.backoffMillis, 30 seconds by default, then 1 minute, 2 minutes... up to an hour), until
+ * mail.outbox.maxAttempts (8 by default) attempts failed; it is then left in the table with its last error. At
+ * most mail.outbox.maxPerSecond emails (10 by default, 0 for no limit) are sent per second, so that a notification
+ * to thousands of customers does not get the sender blocked by the mail server.
+ * <p>
+ * Each attempt is counted in the table before the email is sent. Several servers can share the table without
+ * sending an email twice, and an email whose sending was interrupted (e.g. by a restart) is tried again after its
+ * backoff.
+ */
+public class MailOutbox {
+
+	/**
+	 * Sends one email.
+	 */
+	public interface Sender {
+
+		/**
+		 * @param recipient The recipient's email address.
+		 * @param subject The subject of the email.
+		 * @param htmlTextMessage The HTML content of the email.
+		 * @throws MessagingException if the email could not be sent.
+		 */
+		void send(String recipient, String subject, String htmlTextMessage) throws MessagingException;
+	}
+
+	/**
+	 * An email to queue.
+	 */
+	public static final class Mail {
+		private final String recipient;
+		private final String subject;
+		private final String body;
+
+		/**
+		 * @param recipient The recipient's email address.
+		 * @param subject The subject of the email.
+		 * @param body The HTML content of the email.
+		 */
+		public Mail(String recipient, String subject, String body) {
+			this.recipient = recipient;
+			this.subject = subject;
+			this.body = body;
+		}
+
+		public String getRecipient() {
+			return recipient;
+		}
+
+		public String getSubject() {
+			return subject;
+		}
+
+		public String getBody() {
+			return body;
+		}
+	}
+
+	private static final long MAX_BACKOFF_MILLIS = 60 * 60 * 1000;
+
+	private static final MailOutbox SHARED = new MailOutbox(JavaMailUtil::sendMail,
+			AppConfig.getLong("mail.outbox.pollMillis", 2000), AppConfig.getInt("mail.outbox.batchSize", 50),
+			AppConfig.getInt("mail.outbox.maxAttempts", 8), AppConfig.getLong("mail.outbox.backoffMillis", 30000),
+			AppConfig.getInt("mail.outbox.maxPerSecond", 10), System::currentTimeMillis);
+
+	private final Sender sender;
+	private final long pollMillis;
+	private final int batchSize;
+	private final int maxAttempts;
+	private final long backoffMillis;
+	private final int maxPerSecond;
+	private final LongSupplier clock;
+
+	// when the next email may be sent, with the throughput limit; only used by the thread draining the outbox
+	private long nextSendAt;
+
+	private ScheduledThreadPoolExecutor dispatcher;
+	private final AtomicBoolean wakeUpPending = new AtomicBoolean();
+
+	/**
+	 * Creates a new outbox. The emails are only sent once {@link #start()} was called, or by {@link #drain()}.
+	 *
+	 * @param sender Sends the emails.
+	 * @param pollMillis How often the table is checked for emails to send.
+	 * @param batchSize How many emails are read from the table at a time.
+	 * @param maxAttempts How many times an email is tried before giving up.
+	 * @param backoffMillis How long to wait after the first failure; doubled after every other one.
+	 * @param maxPerSecond How many emails may be sent per second, 0 for no limit.
+	 * @param clock The time source, in milliseconds.
+	 */
+	public MailOutbox(Sender sender, long pollMillis, int batchSize, int maxAttempts, long backoffMillis,
+			int maxPerSecond, LongSupplier clock) {
+		this.sender = sender;
+		this.pollMillis = pollMillis;
+		this.batchSize = batchSize;
+		this.maxAttempts = maxAttempts;
+		this.backoffMillis = backoffMillis;
+		this.maxPerSecond = maxPerSecond;
+		this.clock = clock;
+	}
+
+	/**
+	 * @return The outbox of the application, sending through {@link JavaMailUtil}.
+	 */
+	public static MailOutbox shared() {
+		return SHARED;
+	}
+
+	/**
+	 * Starts the background thread sending the emails. Called when the web application starts.
+	 */
+	public synchronized void start() {
+		if (dispatcher != null)
+			return;
+		dispatcher = new ScheduledThreadPoolExecutor(1, runnable -> {
+			Thread thread = new Thread(runnable, "mail-outbox");
+			thread.setDaemon(true);
+			return thread;
+		});
+		dispatcher.scheduleWithFixedDelay(this::drainQuietly, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stops the background thread; the emails not sent yet stay in the table. Called when the web application is
+	 * stopped.
+	 */
+	public synchronized void shutdown() {
+		if (dispatcher != null) {
+			dispatcher.shutdownNow();
+			dispatcher = null;
+		}
+	}
+
+	/**
+	 * Queues an email. If it cannot be queued (for example because the database is not reachable), it is sent
+	 * right away instead, unless a transaction is open: the email may be about work that is then rolled back, such as
+	 * an order, so it is not sent and the transaction is marked rollback-only (see {@link DBUtil#setRollbackOnly()}),
+	 * leaving the caller to try again.
+	 *
+	 * @param recipient The recipient's email address.
+	 * @param subject The subject of the email.
+	 * @param htmlTextMessage The HTML content of the email.
+	 * @return false if the email could neither be queued nor sent.
+	 */
+	public boolean enqueue(String recipient, String subject, String htmlTextMessage) {
+		boolean queued = false;
+
+		Connection con = DBUtil.provideConnection();
+
+		PreparedStatement ps = null;
+
+		try {
+			ps = con.prepareStatement(
+					"insert into mail_outbox (recipient, subject, body, attempts, next_attempt) values(?,?,?,0,?)");
+
+			ps.setString(1, recipient);
+			ps.setString(2, subject);
+			ps.setString(3, htmlTextMessage);
+			ps.setLong(4, clock.getAsLong());
+
+			queued = ps.executeUpdate() > 0;
+
+		} catch (SQLException | RuntimeException e) {
+			e.printStackTrace();
+		}
+
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
+
+		if (queued) {
+			wakeUp();
+			return true;
+		}
+
+		if (DBUtil.isInTransaction()) {
+			System.out.println("Could not queue the mail to " + recipient + ", rolling the transaction back");
+			DBUtil.setRollbackOnly();
+			return false;
+		}
+
+		System.out.println("Could not queue the mail to " + recipient + ", sending it now");
+		try {
+			sender.send(recipient, subject, htmlTextMessage);
+			return true;
+		} catch (MessagingException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	/**
+	 * Queues several emails with one batch of inserts, such as the notifications of a product back in stock. Unlike
+	 * {@link #enqueue(String, String, String)}, the emails are not sent right away if they cannot be queued: the
+	 * caller can roll its transaction back and try again later.
+	 *
+	 * @param mails The emails.
+	 * @return false if the emails could not be queued.
+	 */
+	public boolean enqueue(List<Mail> mails) {
+		if (mails.isEmpty())
+			return true;
+
+		boolean queued = false;
+
+		Connection con = DBUtil.provideConnection();
+
+		PreparedStatement ps = null;
+
+		try {
+			ps = con.prepareStatement(
+					"insert into mail_outbox (recipient, subject, body, attempts, next_attempt) values(?,?,?,0,?)");
+
+			long now = clock.getAsLong();
+			for (Mail mail : mails) {
+				ps.setString(1, mail.getRecipient());
+				ps.setString(2, mail.getSubject());
+				ps.setString(3, mail.getBody());
+				ps.setLong(4, now);
+				ps.addBatch();
+			}
+			ps.executeBatch();
+			queued = true;
+
+		} catch (SQLException | RuntimeException e) {
+			e.printStackTrace();
+		}
+
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
+
+		if (queued)
+			wakeUp();
+		return queued;
+	}
+
+	/**
+	 * Sends the emails that are due, a batch after the other. Called by the background thread.
+	 *
+	 * @return The number of emails sent.
+	 */
+	public int drain() {
+		int sent = 0;
+		List<QueuedMail> due;
+		boolean claimed;
+		do {
+			due = loadDue(clock.getAsLong());
+			claimed = false;
+			for (QueuedMail mail : due) {
+				if (!throttle())
+					return sent;
+				if (!claim(mail))
+					continue;
+				claimed = true;
+				if (send(mail))
+					sent++;
+			}
+			// stop when the table is empty, or when nothing could be claimed (to not loop on a database error)
+		} while (claimed && due.size() == batchSize);
+		return sent;
+	}
+
+	/*
+	 * Waits until the next email may be sent without going over maxPerSecond; false if the thread was interrupted,
+	 * i.e. the outbox is shutting down.
+	 */
+	private boolean throttle() {
+		if (maxPerSecond <= 0)
+			return true;
+		long now = clock.getAsLong();
+		try {
+			if (nextSendAt > now)
+				Thread.sleep(nextSendAt - now);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		nextSendAt = Math.max(now, nextSendAt) + 1000 / maxPerSecond;
+		return true;
+	}
+
+	/*
+	 * Counts the attempt and sets the time of the next one before sending, so that no other server sends the same
+	 * email meanwhile.
+	 */
+	private boolean claim(QueuedMail mail) {
+		long backoff = Math.min(MAX_BACKOFF_MILLIS, backoffMillis << Math.min(mail.attempts, 20));
+		return update("update mail_outbox set attempts=?, next_attempt=? where id=? and attempts=?", mail.attempts + 1,
+				clock.getAsLong() + backoff, mail.id, mail.attempts);
+	}
+
+	// Sends a claimed email, and deletes it once sent
+	private boolean send(QueuedMail mail) {
+		try {
+			sender.send(mail.recipient, mail.subject, mail.body);
+		} catch (MessagingException | RuntimeException e) {
+			System.out.println("Could not send the mail " + mail.id + " to " + mail.recipient + " (attempt "
+					+ (mail.attempts + 1) + " of " + maxAttempts + "): " + e.getMessage());
+			String error = String.valueOf(e.getMessage());
+			recordError(mail.id, error.length() > 255 ? error.substring(0, 255) : error);
+			return false;
+		}
+
+		update("delete from mail_outbox where id=?", mail.id);
+		return true;
+	}
+
+	private List<QueuedMail> loadDue(long now) {
+		List<QueuedMail> due = new ArrayList<QueuedMail>();
+
+		Connection con = DBUtil.provideConnection();
+
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+
+		try {
+			ps = con.prepareStatement("select id, recipient, subject, body, attempts from mail_outbox "
+					+ "where next_attempt<=? and attempts<? order by next_attempt limit ?");
+
+			ps.setLong(1, now);
+			ps.setInt(2, maxAttempts);
+			ps.setInt(3, batchSize);
+
+			rs = ps.executeQuery();
+
+			while (rs.next())
+				due.add(new QueuedMail(rs.getLong("id"), rs.getString("recipient"), rs.getString("subject"),
+						rs.getString("body"), rs.getInt("attempts")));
+
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+
+		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
+
+		return due;
+	}
+
+	private void recordError(long id, String error) {
+		Connection con = DBUtil.provideConnection();
+
+		PreparedStatement ps = null;
+
+		try {
+			ps = con.prepareStatement("update mail_outbox set last_error=? where id=?");
+			ps.setString(1, error);
+			ps.setLong(2, id);
+			ps.executeUpdate();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
+	}
+
+	// Runs an update whose parameters are all numbers; true if it changed a row
+	private boolean update(String sql, long... parameters) {
+		boolean updated = false;
+
+		Connection con = DBUtil.provideConnection();
+
+		PreparedStatement ps = null;
+
+		try {
+			ps = con.prepareStatement(sql);
+			for (int i = 0; i < parameters.length; i++)
+				ps.setLong(i + 1, parameters[i]);
+			updated = ps.executeUpdate() > 0;
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
+
+		return updated;
+	}
+
+	// Sends the new email soon rather than at the next poll, once the enclosing transaction (if any) committed
+	private synchronized void wakeUp() {
+		if (dispatcher != null && wakeUpPending.compareAndSet(false, true))
+			dispatcher.schedule(() -> {
+				wakeUpPending.set(false);
+				drainQuietly();
+			}, 100, TimeUnit.MILLISECONDS);
+	}
+
+	private void drainQuietly() {
+		try {
+			drain();
+		} catch (RuntimeException e) {
+			// an exception would cancel the periodic task
+			e.printStackTrace();
+		}
+	}
+
+	private static final class QueuedMail {
+		private final long id;
+		private final String recipient;
+		private final String subject;
+		private final String body;
+		private final int attempts;
+
+		private QueuedMail(long id, String recipient, String subject, String body, int attempts) {
+			this.id = id;
+			this.recipient = recipient;
+			this.subject = subject;
+			this.body = body;
+			this.attempts = attempts;
+		}
+	}
+}
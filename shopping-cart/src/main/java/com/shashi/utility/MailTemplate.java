@@ -0,0 +1,294 @@
+package com.shashi.utility;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An HTML email template, parsed once and then rendered any number of times.
+ * <p>
+ * Templates are the files of the mail folder of the classpath (src/main/resources/mail). A parameter is written
+ * {{name}}; its value is HTML-escaped when the template is rendered, so that text typed by customers (such as their
+ * name or the comments of a fan message) cannot change the email. Parsing splits the template into the text between
+ * the parameters and the position of each parameter. Rendering appends them with the escaped values to a StringBuilder
+ * kept by each thread and sized for the template, so that only the email itself is allocated; a template with a single
+ * parameter is joined into a string of the exact length instead, which spares the copy out of the builder. Values
+ * without any character to escape, which is most of them, are appended as they are.
+ * <p>
+ * When many emails share some of the values, such as the product of the back in stock emails, {@link #bind(String,
+ * Object)} renders these values once into the text around them, leaving fewer and longer pieces to append for each
+ * email. See {@link MailTemplateBenchmark} for the cost compared to string concatenation.
+ */
+public final class MailTemplate {
+
+	/** The characters to escape, as bits of a mask: they are all below 64. */
+	private static final long ESCAPED_CHARS = 1L << '<' | 1L << '>' | 1L << '&' | 1L << '"' | 1L << '\'';
+
+	/** Beyond this capacity, the buffer of a thread is dropped after rendering rather than kept for the next email. */
+	private static final int MAX_BUFFER_CAPACITY = 64 * 1024;
+
+	/** The buffer each thread renders its emails into, so that rendering allocates little more than the email. */
+	private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(4096));
+
+	private final String name;
+	private final String[] parameters;
+
+	// literals[i] comes before the parameter slots[i]; the last literal ends the template
+	private final String[] literals;
+	private final int[] slots;
+	private final int literalLength;
+
+	private MailTemplate(String name, String[] parameters, String[] literals, int[] slots) {
+		this.name = name;
+		this.parameters = parameters;
+		this.literals = literals;
+		this.slots = slots;
+		int length = 0;
+		for (String literal : literals)
+			length += literal.length();
+		this.literalLength = length;
+	}
+
+	/**
+	 * Loads and parses a template of the mail folder of the classpath.
+	 *
+	 * @param fileName The name of the file, such as order-shipped.html.
+	 * @param parameters The names of the parameters, in the order their values are given to
+	 *                   {@link #render(Object...)}.
+	 * @return The template.
+	 * @throws IllegalStateException if the file is missing or uses an unknown parameter.
+	 */
+	public static MailTemplate load(String fileName, String... parameters) {
+		String path = "/mail/" + fileName;
+		try (InputStream in = MailTemplate.class.getResourceAsStream(path)) {
+			if (in == null)
+				throw new IllegalStateException("Missing mail template " + path);
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int n;
+			while ((n = in.read(buffer)) > 0)
+				bytes.write(buffer, 0, n);
+			return compile(fileName, new String(bytes.toByteArray(), StandardCharsets.UTF_8), parameters);
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not read the mail template " + path, e);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalStateException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Parses a template.
+	 *
+	 * @param name The name of the template, for the error messages.
+	 * @param source The text of the template.
+	 * @param parameters The names of the parameters, in the order their values are given to
+	 *                   {@link #render(Object...)}.
+	 * @return The template.
+	 * @throws IllegalArgumentException if a parameter is not closed or not one of the given names.
+	 */
+	public static MailTemplate compile(String name, String source, String... parameters) {
+		List<String> literals = new ArrayList<String>();
+		List<Integer> slots = new ArrayList<Integer>();
+		List<String> names = Arrays.asList(parameters);
+
+		int start = 0;
+		int open;
+		while ((open = source.indexOf("{{", start)) >= 0) {
+			int close = source.indexOf("}}", open + 2);
+			if (close < 0)
+				throw new IllegalArgumentException("Unclosed parameter in mail template " + name);
+			String parameter = source.substring(open + 2, close).trim();
+			int slot = names.indexOf(parameter);
+			if (slot < 0)
+				throw new IllegalArgumentException(
+						"Unknown parameter {{" + parameter + "}} in mail template " + name);
+			literals.add(source.substring(start, open));
+			slots.add(slot);
+			start = close + 2;
+		}
+		literals.add(source.substring(start));
+
+		int[] slotArray = new int[slots.size()];
+		for (int i = 0; i < slotArray.length; i++)
+			slotArray[i] = slots.get(i);
+		return new MailTemplate(name, parameters.clone(), literals.toArray(new String[0]), slotArray);
+	}
+
+	/**
+	 * Renders the value of a parameter into the template, for the emails that share it.
+	 *
+	 * @param parameter The name of the parameter.
+	 * @param value The value of the parameter; null renders as nothing.
+	 * @return A template without this parameter, whose other parameters keep their order.
+	 * @throws IllegalArgumentException if the template has no such parameter.
+	 */
+	public MailTemplate bind(String parameter, Object value) {
+		int bound = Arrays.asList(parameters).indexOf(parameter);
+		if (bound < 0)
+			throw new IllegalArgumentException("The mail template " + name + " has no parameter " + parameter);
+
+		String rendered = escape(value);
+		String[] remaining = new String[parameters.length - 1];
+		for (int i = 0, j = 0; i < parameters.length; i++)
+			if (i != bound)
+				remaining[j++] = parameters[i];
+
+		List<String> newLiterals = new ArrayList<String>();
+		List<Integer> newSlots = new ArrayList<Integer>();
+		StringBuilder literal = new StringBuilder(literals[0]);
+		for (int i = 0; i < slots.length; i++) {
+			if (slots[i] == bound) {
+				literal.append(rendered);
+			} else {
+				newLiterals.add(literal.toString());
+				newSlots.add(slots[i] < bound ? slots[i] : slots[i] - 1);
+				literal.setLength(0);
+			}
+			literal.append(literals[i + 1]);
+		}
+		newLiterals.add(literal.toString());
+
+		int[] slotArray = new int[newSlots.size()];
+		for (int i = 0; i < slotArray.length; i++)
+			slotArray[i] = newSlots.get(i);
+		return new MailTemplate(name, remaining, newLiterals.toArray(new String[0]), slotArray);
+	}
+
+	/**
+	 * Renders the template.
+	 *
+	 * @param values The values of the parameters, in the order of their names; null renders as nothing.
+	 * @return The email.
+	 * @throws IllegalArgumentException if the number of values is not the number of parameters.
+	 */
+	public String render(Object... values) {
+		checkValues(values);
+		if (slots.length == 0)
+			return literals[0];
+		if (slots.length == 1)
+			// String.join sizes the email from its three pieces and copies each of them once
+			return String.join("", literals[0], escape(values[slots[0]]), literals[1]);
+
+		StringBuilder sb = BUFFER.get();
+		sb.setLength(0);
+		appendTo(sb, values);
+		String email = sb.toString();
+		// the buffer of an unusually long email is not kept for the life of the thread
+		if (sb.capacity() > MAX_BUFFER_CAPACITY)
+			BUFFER.remove();
+		return email;
+	}
+
+	/**
+	 * Renders the template at the end of a StringBuilder.
+	 *
+	 * @param sb Where to render the template.
+	 * @param values The values of the parameters, in the order of their names; null renders as nothing.
+	 * @throws IllegalArgumentException if the number of values is not the number of parameters.
+	 */
+	public void renderTo(StringBuilder sb, Object... values) {
+		checkValues(values);
+		appendTo(sb, values);
+	}
+
+	/**
+	 * @return The name of the template.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	private void checkValues(Object[] values) {
+		if (values.length != parameters.length)
+			throw new IllegalArgumentException("The mail template " + name + " takes " + parameters.length
+					+ " parameters, not " + values.length);
+	}
+
+	private void appendTo(StringBuilder sb, Object[] values) {
+		sb.ensureCapacity(sb.length() + literalLength + 64 * slots.length);
+		for (int i = 0; i < slots.length; i++) {
+			sb.append(literals[i]);
+			appendValue(sb, values[slots[i]]);
+		}
+		sb.append(literals[slots.length]);
+	}
+
+	// The value as it is when there is nothing to escape, which is most of the time
+	private static String escape(Object value) {
+		if (value == null)
+			return "";
+		String text = String.valueOf(value);
+		if (!needsEscaping(text))
+			return text;
+		StringBuilder sb = new StringBuilder(text.length() + 16);
+		appendEscaped(sb, text);
+		return sb.toString();
+	}
+
+	private static boolean needsEscaping(String text) {
+		for (int i = 0, length = text.length(); i < length; i++) {
+			char c = text.charAt(i);
+			if (c < 64 && (ESCAPED_CHARS & (1L << c)) != 0)
+				return true;
+		}
+		return false;
+	}
+
+	// Numbers are appended as they are, which spares their string form
+	private static void appendValue(StringBuilder sb, Object value) {
+		if (value == null)
+			return;
+		if (value instanceof Double)
+			sb.append(((Double) value).doubleValue());
+		else if (value instanceof Integer)
+			sb.append(((Integer) value).intValue());
+		else if (value instanceof Long)
+			sb.append(((Long) value).longValue());
+		else {
+			// escaped straight into the email, without a string of its own
+			String text = String.valueOf(value);
+			if (needsEscaping(text))
+				appendEscaped(sb, text);
+			else
+				sb.append(text);
+		}
+	}
+
+	private static void appendEscaped(StringBuilder sb, String text) {
+		int length = text.length();
+		int copied = 0;
+		for (int i = 0; i < length; i++) {
+			String entity;
+			switch (text.charAt(i)) {
+			case '<':
+				entity = "&lt;";
+				break;
+			case '>':
+				entity = "&gt;";
+				break;
+			case '&':
+				entity = "&amp;";
+				break;
+			case '"':
+				entity = "&quot;";
+				break;
+			case '\'':
+				entity = "&#39;";
+				break;
+			default:
+				continue;
+			}
+			// the text before the character is copied at once
+			sb.append(text, copied, i).append(entity);
+			copied = i + 1;
+		}
+		if (copied == 0)
+			sb.append(text);
+		else
+			sb.append(text, copied, length);
+	}
+}
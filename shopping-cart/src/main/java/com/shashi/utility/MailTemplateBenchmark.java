@@ -0,0 +1,186 @@
+package com.shashi.utility;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * A utility class with a main method comparing the cost of rendering each email with its {@link MailTemplate} to
+ * building it with string concatenation, as it was before the templates, and of rendering the back in stock email with
+ * the product bound as for a batch of notifications.
+ * This class is intended for development and testing purposes only, not for production use.
+ * <p>
+ * Prints the time and, on JVMs able to measure it, the memory allocated per email. The first argument is the number
+ * of emails rendered (100000 by default). Each way is measured in several rounds, taking turns with the others so that
+ * a pause of the machine does not favour one of them, and the fastest round is printed.
+ */
+public class MailTemplateBenchmark {
+
+	private static final MailTemplate REGISTRATION_SUCCESS = MailTemplate.load("registration-success.html", "name");
+
+	private static final MailTemplate TRANSACTION_SUCCESS = MailTemplate.load("transaction-success.html", "name",
+			"transId", "transAmount");
+
+	private static final MailTemplate ORDER_SHIPPED = MailTemplate.load("order-shipped.html", "name", "transId",
+			"transAmount");
+
+	private static final MailTemplate PRODUCT_AVAILABLE = MailTemplate.load("product-available.html", "name",
+			"prodName", "prodId");
+
+	private static final MailTemplate FANS_MESSAGE = MailTemplate.load("fans-message.html", "name", "email",
+			"comments");
+
+	private static final String[] NAMES = { "Jane", "Sam", "Max", "Ann" };
+
+	private static final double[] AMOUNTS = { 74999.0, 1250.5, 899.99, 15000.0 };
+
+	private static final int ROUNDS = 5;
+
+	/** Keeps the result of every render alive for the JIT, so that no render is optimized away. */
+	private static int checksum;
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args The number of emails to render.
+	 */
+	public static void main(String[] args) {
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+
+		MailTemplate boundProduct = PRODUCT_AVAILABLE.bind("prodName", "Laptop X").bind("prodId", "P20230423084144");
+		String[] labels = { "registration concatenation", "registration template", "transaction concatenation",
+				"transaction template", "shipped concatenation", "shipped template", "fans concatenation",
+				"fans template", "back in stock concatenation", "back in stock template",
+				"back in stock bound template" };
+		List<IntFunction<String>> emails = Arrays.asList(i -> registrationSuccess(NAMES[i & 3]),
+				i -> REGISTRATION_SUCCESS.render(NAMES[i & 3]),
+				i -> transactionSuccess(NAMES[i & 3], "TR10001", AMOUNTS[i & 3]),
+				i -> TRANSACTION_SUCCESS.render(NAMES[i & 3], "TR10001", AMOUNTS[i & 3]),
+				i -> orderShipped(NAMES[i & 3], "TR10001", AMOUNTS[i & 3]),
+				i -> ORDER_SHIPPED.render(NAMES[i & 3], "TR10001", AMOUNTS[i & 3]),
+				i -> fansMessage(NAMES[i & 3], "fan@example.com", "Great deals on laptops"),
+				i -> FANS_MESSAGE.render(NAMES[i & 3], "fan@example.com", "Great deals on laptops"),
+				i -> productAvailable(NAMES[i & 3], "Laptop X", "P20230423084144"),
+				i -> PRODUCT_AVAILABLE.render(NAMES[i & 3], "Laptop X", "P20230423084144"),
+				i -> boundProduct.render(NAMES[i & 3]));
+
+		// Warm up every way, so that all are compiled before being measured
+		for (int i = 0; i < 3; i++)
+			for (IntFunction<String> email : emails)
+				render(email, iterations / 4);
+
+		long[] bestNanos = new long[emails.size()];
+		long[] allocated = new long[emails.size()];
+		Arrays.fill(bestNanos, Long.MAX_VALUE);
+		for (int round = 0; round < ROUNDS; round++) {
+			for (int i = 0; i < emails.size(); i++) {
+				IntFunction<String> email = emails.get(i);
+				long[] measured = measure(() -> render(email, iterations));
+				bestNanos[i] = Math.min(bestNanos[i], measured[0]);
+				allocated[i] = measured[1];
+			}
+		}
+
+		for (int i = 0; i < labels.length; i++) {
+			String line = String.format("%-28s %8.1f ns/email", labels[i], (double) bestNanos[i] / iterations);
+			if (allocated[i] >= 0)
+				line += String.format(" %8d bytes/email", allocated[i] / iterations);
+			System.out.println(line);
+		}
+		System.out.println("(checksum " + checksum + ")");
+	}
+
+	private static void render(IntFunction<String> email, int iterations) {
+		for (int i = 0; i < iterations; i++)
+			checksum += email.apply(i).length();
+	}
+
+	// Returns the time taken by the run and the memory it allocated, or -1 if the JVM cannot tell
+	private static long[] measure(Runnable run) {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		com.sun.management.ThreadMXBean allocations = threads instanceof com.sun.management.ThreadMXBean
+				? (com.sun.management.ThreadMXBean) threads
+				: null;
+		long threadId = Thread.currentThread().getId();
+
+		long allocatedBefore = allocations != null ? allocations.getThreadAllocatedBytes(threadId) : -1;
+		long start = System.nanoTime();
+		run.run();
+		long nanos = System.nanoTime() - start;
+		long allocatedAfter = allocations != null ? allocations.getThreadAllocatedBytes(threadId) : -1;
+
+		long allocated = allocatedBefore >= 0 && allocatedAfter >= 0 ? allocatedAfter - allocatedBefore : -1;
+		return new long[] { nanos, allocated };
+	}
+
+	// The emails as MailMessage and FansMessage built them before the templates
+
+	private static String registrationSuccess(String name) {
+		return "" + "<html>" + "<body>"
+				+ "<h2 style='color:green;'>Welcome to Ellison Electronics</h2>" + "" + "Hi " + name + ","
+				+ "<br><br>Thanks for singing up with Ellison Electronics.<br>"
+				+ "We are glad that you choose us. We invite you to check out our latest collection of new electonics appliances."
+				+ "<br>We are providing upto 60% OFF on most of the electronic gadgets. So please visit our site and explore the collections."
+				+ "<br><br>Our Online electronics is growing in a larger amount these days and we are in high demand so we thanks all of you for "
+				+ "making us up to that level. We Deliver Product to your house with no extra delivery charges and we also have collection of most of the"
+				+ "branded items.<br><br>As a Welcome gift for our New Customers we are providing additional 10% OFF Upto 500 Rs for the first product purchase. "
+				+ "<br>To avail this offer you only have "
+				+ "to enter the promo code given below.<br><br><br> PROMO CODE: " + "ELLISON500<br><br><br>"
+				+ "Have a good day!<br>" + "" + "</body>" + "</html>";
+	}
+
+	private static String transactionSuccess(String name, String transId, double transAmount) {
+		return "<html>" + "  <body>" + "    <p>" + "      Hey " + name + ",<br/><br/>"
+				+ "      We are glad that you shop with Ellison Electronics!" + "      <br/><br/>"
+				+ "      Your order has been placed successfully and under process to be shipped."
+				+ "<br/><h6>Please Note that this is a demo projet Email and you have not made any real transaction with us till now!</h6>"
+				+ "      <br/>" + "      Here is Your Transaction Details:<br/>" + "      <br/>"
+				+ "      <font style=\"color:red;font-weight:bold;\">Order Id:</font>"
+				+ "      <font style=\"color:green;font-weight:bold;\">" + transId + "</font><br/>" + "      <br/>"
+				+ "      <font style=\"color:red;font-weight:bold;\">Amount Paid:</font> <font style=\"color:green;font-weight:bold;\">"
+				+ transAmount + "</font>" + "      <br/><br/>" + "      Thanks for shopping with us!<br/><br/>"
+				+ "      Come Shop Again! <br/<br/> <font style=\"color:green;font-weight:bold;\">Ellison Electronics.</font>"
+				+ "    </p>" + "    " + "  </body>" + "</html>";
+	}
+
+	private static String orderShipped(String name, String transId, double transAmount) {
+		return "<html>" + "  <body>" + "    <p>" + "      Hey " + name + ",<br/><br/>"
+				+ "      We are glad that you shop with Ellison Electronics!" + "      <br/><br/>"
+				+ "      Your order has been shipped successfully and on the way to be delivered."
+				+ "<br/><h6>Please Note that this is a demo projet Email and you have not made any real transaction with us till now!</h6>"
+				+ "      <br/>" + "      Here is Your Transaction Details:<br/>" + "      <br/>"
+				+ "      <font style=\"color:red;font-weight:bold;\">Order Id:</font>"
+				+ "      <font style=\"color:green;font-weight:bold;\">" + transId + "</font><br/>" + "      <br/>"
+				+ "      <font style=\"color:red;font-weight:bold;\">Amount Paid:</font> <font style=\"color:green;font-weight:bold;\">"
+				+ transAmount + "</font>" + "      <br/><br/>" + "      Thanks for shopping with us!<br/><br/>"
+				+ "      Come Shop Again! <br/<br/> <font style=\"color:green;font-weight:bold;\">Ellison Electronics.</font>"
+				+ "    </p>" + "    " + "  </body>" + "</html>";
+	}
+
+	private static String fansMessage(String name, String email, String comments) {
+		return "" + "<html>" + "<body>"
+				+ "<h2 style='color:green;'>Message to Ellison Electronics</h2>" + ""
+				+ "Fans Message Received !!<br/><br/> Name: " + name + "," + "<br/><br/> Email Id: " + email
+				+ "<br><br/>" + "Comment: " + "<span style='color:grey;'>" + comments + "</span>"
+				+ "<br/><br/>We are glad that fans are choosing us! <br/><br/>Thanks & Regards<br/><br/>Auto Generated Mail"
+				+ "</body>" + "</html>";
+	}
+
+	private static String productAvailable(String name, String prodName, String prodId) {
+		return "<html>" + "  <body>" + "    <p>" + "      Hey " + name + ",<br/><br/>"
+				+ "      We are glad that you shop with Ellison Electronics!" + "      <br/><br/>"
+				+ "      As per your recent browsing history, we seen that you were searching for an item that was not available in sufficient amount"
+				+ " at that time. <br/><br/>"
+				+ "We are glad to say that the product named <font style=\"color:green;font-weight:bold;\">" + prodName
+				+ "</font> with " + "product Id <font style=\"color:green;font-weight:bold;\">" + prodId
+				+ "</font> is now available to shop in our store!"
+				+ "<br/><h6>Please Note that this is a demo projet Email and you have not made any real transaction with us and not ordered anything till now!</h6>"
+				+ "      <br/>" + "      Here is The product detail which is now available to shop:<br/>" + "      <br/>"
+				+ "      <font style=\"color:red;font-weight:bold;\">Product Id: </font><font style=\"color:green;font-weight:bold;\">" + prodId + " " + "      </font><br/>" + "      <br/>"
+				+ "      <font style=\"color:red;font-weight:bold;\">Product Name: </font> <font style=\"color:green;font-weight:bold;\">" + prodName + "</font>"
+				+ "      <br/><br/>" + "      Thanks for shopping with us!<br/><br/>" + "      Come Shop Again! <br/<br/><br/> <font style=\"color:green;font-weight:bold;\">Ellison Electronics.</font>"
+				+ "    </p>" + "    " + "  </body>" + "</html>";
+	}
+}
@@ -0,0 +1,174 @@
+package com.shashi.utility;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Comparator;
+
+import com.shashi.beans.ProductSummary;
+
+/**
+ * The position of a keyset-paginated product listing: the sort order and the sort key of the last product
+ * of the previous page. The next page starts right after that key, so fetching a page costs the same however
+ * deep into the listing it is. Tokens are opaque URL-safe strings.
+ * <p>
+ * Search results are listed by relevance unless another order is asked for; their sort key is the search score.
+ */
+public final class PageToken {
+
+	/** Sort by product id. */
+	public static final String SORT_ID = "id";
+
+	/** Sort by price, then product id. */
+	public static final String SORT_PRICE = "price";
+
+	/** Sort by name, then product id. */
+	public static final String SORT_NAME = "name";
+
+	/** Sort search results by score, best first, then product id. */
+	public static final String SORT_RELEVANCE = "relevance";
+
+	private final String sortBy;
+	private final String prodId;
+	private final String value;
+
+	private PageToken(String sortBy, String prodId, String value) {
+		this.sortBy = sortBy;
+		this.prodId = prodId;
+		this.value = value;
+	}
+
+	/**
+	 * Creates the token of the page following the given product.
+	 *
+	 * @param sortBy The sort order, see {@link #normalizeSort(String)}.
+	 * @param last The last product of the current page.
+	 * @return The token.
+	 */
+	public static PageToken after(String sortBy, ProductSummary last) {
+		sortBy = normalizeSort(sortBy);
+		String value = null;
+		if (SORT_PRICE.equals(sortBy))
+			value = String.valueOf(last.getProdPrice());
+		else if (SORT_NAME.equals(sortBy))
+			value = last.getProdName() == null ? "" : last.getProdName();
+		return new PageToken(sortBy, last.getProdId(), value);
+	}
+
+	/**
+	 * Creates the token of the page following the given search result, in relevance order.
+	 *
+	 * @param score The search score of the last product of the current page.
+	 * @param prodId The ID of the last product of the current page.
+	 * @return The token.
+	 */
+	public static PageToken afterMatch(int score, String prodId) {
+		return new PageToken(SORT_RELEVANCE, prodId, String.valueOf(score));
+	}
+
+	/**
+	 * Reads a token produced by {@link #toString()}.
+	 *
+	 * @param token The token, may be null.
+	 * @return The token, or null if it is missing or invalid (the listing then starts from the first page).
+	 */
+	public static PageToken parse(String token) {
+		if (token == null || token.isEmpty())
+			return null;
+		try {
+			String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+			String[] parts = decoded.split(":", 3);
+			if (parts.length < 2)
+				return null;
+
+			String sortBy = normalizeSort(parts[0]);
+			String value = parts.length == 3 ? parts[2] : null;
+			if (SORT_PRICE.equals(sortBy))
+				Double.parseDouble(value);
+			else if (SORT_RELEVANCE.equals(sortBy))
+				Integer.parseInt(value);
+			else if (SORT_NAME.equals(sortBy) && value == null)
+				return null;
+			return new PageToken(sortBy, parts[1], value);
+		} catch (IllegalArgumentException | NullPointerException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @param sortBy The requested sort order ("id", "price", "name" or "relevance"), may be null.
+	 * @return The sort order to use, "id" if the requested one is unknown.
+	 */
+	public static String normalizeSort(String sortBy) {
+		if (SORT_PRICE.equalsIgnoreCase(sortBy))
+			return SORT_PRICE;
+		if (SORT_NAME.equalsIgnoreCase(sortBy))
+			return SORT_NAME;
+		if (SORT_RELEVANCE.equalsIgnoreCase(sortBy))
+			return SORT_RELEVANCE;
+		return SORT_ID;
+	}
+
+	/**
+	 * @param sortBy The requested sort order, may be null.
+	 * @param search The search term of the listing, or null.
+	 * @return The sort order to use: relevance for a search without a requested order, never relevance without a
+	 *         search, see {@link #normalizeSort(String)} otherwise.
+	 */
+	public static String normalizeSort(String sortBy, String search) {
+		if (search == null)
+			return SORT_RELEVANCE.equalsIgnoreCase(sortBy) ? SORT_ID : normalizeSort(sortBy);
+		if (sortBy == null || sortBy.isEmpty())
+			return SORT_RELEVANCE;
+		return normalizeSort(sortBy);
+	}
+
+	/**
+	 * @param sortBy The sort order, see {@link #normalizeSort(String)}.
+	 * @return The comparator ordering products the same way as the listing queries; by product id for relevance,
+	 *         which is not a property of the product.
+	 */
+	public static Comparator<ProductSummary> comparator(String sortBy) {
+		Comparator<ProductSummary> byId = Comparator.comparing(ProductSummary::getProdId);
+		sortBy = normalizeSort(sortBy);
+		if (SORT_PRICE.equals(sortBy))
+			return Comparator.comparingDouble(ProductSummary::getProdPrice).thenComparing(byId);
+		if (SORT_NAME.equals(sortBy))
+			return Comparator.comparing((ProductSummary p) -> p.getProdName() == null ? "" : p.getProdName(),
+					String.CASE_INSENSITIVE_ORDER).thenComparing(byId);
+		return byId;
+	}
+
+	/**
+	 * @return A product with the sort key of this token, for comparing with {@link #comparator(String)}.
+	 */
+	public ProductSummary toProbe() {
+		ProductSummary probe = new ProductSummary();
+		probe.setProdId(prodId);
+		if (SORT_PRICE.equals(sortBy))
+			probe.setProdPrice(Double.parseDouble(value));
+		else if (SORT_NAME.equals(sortBy))
+			probe.setProdName(value);
+		return probe;
+	}
+
+	public String getSortBy() {
+		return sortBy;
+	}
+
+	public String getProdId() {
+		return prodId;
+	}
+
+	public String getValue() {
+		return value;
+	}
+
+	/**
+	 * @return The encoded token.
+	 */
+	@Override
+	public String toString() {
+		String raw = sortBy + ":" + prodId + (value == null ? "" : ":" + value);
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+	}
+}
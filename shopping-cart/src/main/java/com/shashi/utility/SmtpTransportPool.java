@@ -0,0 +1,220 @@
+package com.shashi.utility;
+
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+
+/**
+ * A bounded pool of connected SMTP transports, so that emails do not each pay for a new connection, TLS handshake
+ * and login.
+ * <p>
+ * At most {@code maxSize} emails are sent at the same time, each on its own connection; other senders wait up to the
+ * borrow timeout for a connection to become free. A connection is closed after {@code maxMessagesPerConnection}
+ * emails (mail servers limit how much may be sent on one connection) or when it was left unused longer than the idle
+ * timeout, as the server has likely closed it by then. If sending on a connection kept open fails, the email is sent
+ * once more on a new connection: the server may have dropped the old one in the meantime.
+ */
+public class SmtpTransportPool {
+
+	/**
+	 * Opens the connections managed by the pool.
+	 */
+	public interface TransportFactory {
+
+		/**
+		 * Opens and authenticates a new connection to the mail server.
+		 *
+		 * @return A connected Transport.
+		 * @throws MessagingException if the connection cannot be opened.
+		 */
+		Transport connect() throws MessagingException;
+	}
+
+	private final TransportFactory factory;
+	private final int maxSize;
+	private final int maxMessagesPerConnection;
+	private final long idleTimeoutMillis;
+	private final long borrowTimeoutMillis;
+
+	// Most recently used connections are at the head
+	private final LinkedBlockingDeque<PooledTransport> idle = new LinkedBlockingDeque<PooledTransport>();
+	private final Semaphore permits;
+
+	private final LongAdder opened = new LongAdder();
+	private final LongAdder sent = new LongAdder();
+
+	private volatile boolean closed;
+
+	/**
+	 * Creates a new pool. Connections are opened when they are first needed.
+	 *
+	 * @param factory The factory used to open connections.
+	 * @param maxSize The maximum number of connections, i.e. of emails sent at the same time.
+	 * @param maxMessagesPerConnection How many emails are sent on a connection before it is closed.
+	 * @param idleTimeoutMillis How long a connection may stay unused before it is closed instead of reused.
+	 * @param borrowTimeoutMillis How long {@link #send(Message)} waits for a free connection.
+	 */
+	public SmtpTransportPool(TransportFactory factory, int maxSize, int maxMessagesPerConnection,
+			long idleTimeoutMillis, long borrowTimeoutMillis) {
+		if (maxSize < 1)
+			throw new IllegalArgumentException("maxSize must be at least 1");
+
+		this.factory = factory;
+		this.maxSize = maxSize;
+		this.maxMessagesPerConnection = Math.max(1, maxMessagesPerConnection);
+		this.idleTimeoutMillis = idleTimeoutMillis;
+		this.borrowTimeoutMillis = borrowTimeoutMillis;
+		this.permits = new Semaphore(maxSize, true);
+	}
+
+	/**
+	 * Sends an email on a pooled connection, opening one if none is free.
+	 *
+	 * @param message The email, with its recipients.
+	 * @throws MessagingException if the pool is closed, the wait for a connection times out or the email could not
+	 *                            be sent.
+	 */
+	public void send(Message message) throws MessagingException {
+		if (closed)
+			throw new MessagingException("SMTP transport pool is closed");
+
+		try {
+			if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS))
+				throw new MessagingException("Timed out after " + borrowTimeoutMillis
+						+ " ms waiting for an SMTP connection (" + maxSize + " in use)");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MessagingException("Interrupted while waiting for an SMTP connection", e);
+		}
+
+		try {
+			// as Transport.send does, to set the headers (such as Message-ID) derived from the content
+			message.saveChanges();
+
+			PooledTransport pooled = pollIdle();
+			boolean reused = pooled != null;
+			while (true) {
+				if (pooled == null)
+					pooled = open();
+				try {
+					pooled.transport.sendMessage(message, message.getAllRecipients());
+					pooled.sent++;
+					sent.increment();
+					release(pooled);
+					return;
+				} catch (SendFailedException e) {
+					// Recipients were refused; the connection itself is still usable
+					release(pooled);
+					throw e;
+				} catch (MessagingException | IllegalStateException e) {
+					destroy(pooled);
+					pooled = null;
+					if (!reused)
+						throw e instanceof MessagingException ? (MessagingException) e
+								: new MessagingException(e.getMessage(), e);
+					reused = false;
+				}
+			}
+		} finally {
+			permits.release();
+		}
+	}
+
+	/**
+	 * Closes all idle connections. Connections in use are closed when their email is sent.
+	 */
+	public void close() {
+		closed = true;
+
+		PooledTransport pooled;
+		while ((pooled = idle.pollFirst()) != null)
+			destroy(pooled);
+	}
+
+	/**
+	 * @return The number of open connections waiting in the pool.
+	 */
+	public int getIdleCount() {
+		return idle.size();
+	}
+
+	/**
+	 * @return The maximum number of connections the pool will open.
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @return The number of connections opened since the pool was created.
+	 */
+	public long getOpenedCount() {
+		return opened.sum();
+	}
+
+	/**
+	 * @return The number of emails sent since the pool was created.
+	 */
+	public long getSentCount() {
+		return sent.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "SmtpTransportPool [sent=" + getSentCount() + ", opened=" + getOpenedCount() + ", idle="
+				+ getIdleCount() + ", maxSize=" + maxSize + "]";
+	}
+
+	private PooledTransport pollIdle() {
+		long now = System.currentTimeMillis();
+		PooledTransport pooled;
+		while ((pooled = idle.pollFirst()) != null) {
+			if (now - pooled.lastUsedAt < idleTimeoutMillis)
+				return pooled;
+			destroy(pooled);
+		}
+		return null;
+	}
+
+	private PooledTransport open() throws MessagingException {
+		PooledTransport pooled = new PooledTransport(factory.connect());
+		opened.increment();
+		return pooled;
+	}
+
+	private void release(PooledTransport pooled) {
+		if (closed || pooled.sent >= maxMessagesPerConnection) {
+			destroy(pooled);
+		} else {
+			pooled.lastUsedAt = System.currentTimeMillis();
+			idle.offerFirst(pooled);
+		}
+	}
+
+	private void destroy(PooledTransport pooled) {
+		try {
+			pooled.transport.close();
+		} catch (MessagingException e) {
+			// the connection is dropped either way
+		}
+	}
+
+	/**
+	 * A connection together with its pool bookkeeping. Only used by one sender at a time.
+	 */
+	private static class PooledTransport {
+		private final Transport transport;
+		private int sent;
+		private long lastUsedAt;
+
+		private PooledTransport(Transport transport) {
+			this.transport = transport;
+		}
+	}
+}
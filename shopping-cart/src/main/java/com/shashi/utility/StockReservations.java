@@ -0,0 +1,207 @@
+package com.shashi.utility;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps time-limited holds on product stock for the items customers put in their cart.
+ * <p>
+ * When a customer adds a product to the cart, the quantity is held for them for a while (cart.hold.minutes in the
+ * application.properties file, 15 minutes by default), so that other customers can only add what is not held yet.
+ * Holds expire on their own and are released when the customer checks out or removes the item. The holds only
+ * decide how much can be put in a cart: the stock itself is decremented at checkout with a conditional update, which
+ * is what finally guarantees that a product is never oversold.
+ * <p>
+ * The holds of a product are guarded by a lock of their own, held only for the few map operations of one call,
+ * so customers buying different products never wait for each other.
+ */
+public class StockReservations {
+
+	private static final StockReservations SHARED = new StockReservations(
+			AppConfig.getLong("cart.hold.minutes", 15) * 60 * 1000, System::currentTimeMillis);
+
+	private final long holdMillis;
+
+	private final LongSupplier clock;
+
+	private final ConcurrentHashMap<String, ProductHolds> holdsByProduct = new ConcurrentHashMap<String, ProductHolds>();
+
+	/**
+	 * Creates a new set of holds.
+	 *
+	 * @param holdMillis How long a hold lasts after it was last renewed.
+	 * @param clock The time source, in milliseconds.
+	 */
+	public StockReservations(long holdMillis, LongSupplier clock) {
+		this.holdMillis = holdMillis;
+		this.clock = clock;
+	}
+
+	/**
+	 * @return The holds shared by the whole application.
+	 */
+	public static StockReservations shared() {
+		return SHARED;
+	}
+
+	/**
+	 * Sets the quantity of a product held for a user, renewing the hold. The quantity granted is capped by what
+	 * the other users do not hold yet.
+	 *
+	 * @param userId The user's email address.
+	 * @param prodId The ID of the product.
+	 * @param quantity The quantity the user wants in the cart; 0 releases the hold.
+	 * @param stock The current stock of the product.
+	 * @return The quantity actually held for the user, between 0 and quantity.
+	 */
+	public int reserve(String userId, String prodId, int quantity, int stock) {
+		if (quantity <= 0) {
+			release(userId, prodId);
+			return 0;
+		}
+
+		while (true) {
+			ProductHolds holds = holdsByProduct.computeIfAbsent(prodId, id -> new ProductHolds());
+			synchronized (holds) {
+				// A release may have dropped these holds from the map while we were waiting for the lock
+				if (holdsByProduct.get(prodId) != holds)
+					continue;
+
+				long now = clock.getAsLong();
+				holds.removeExpired(now);
+
+				holds.byUser.remove(userId);
+				int granted = Math.max(0, Math.min(quantity, stock - holds.total()));
+				if (granted > 0)
+					holds.byUser.put(userId, new Hold(granted, now + holdMillis));
+				else if (holds.byUser.isEmpty())
+					holdsByProduct.remove(prodId, holds);
+
+				return granted;
+			}
+		}
+	}
+
+	/**
+	 * Adds to the quantity of a product held for a user, such as the units set aside for a customer told that the
+	 * product is back in stock. The hold lasts at least the given time; it is replaced as usual when the customer
+	 * changes the quantity in the cart.
+	 *
+	 * @param userId The user's email address.
+	 * @param prodId The ID of the product.
+	 * @param quantity The quantity to add to the hold of the user.
+	 * @param stock The current stock of the product.
+	 * @param millis How long the hold lasts.
+	 * @return The quantity actually added, between 0 and quantity.
+	 */
+	public int hold(String userId, String prodId, int quantity, int stock, long millis) {
+		if (quantity <= 0)
+			return 0;
+
+		while (true) {
+			ProductHolds holds = holdsByProduct.computeIfAbsent(prodId, id -> new ProductHolds());
+			synchronized (holds) {
+				if (holdsByProduct.get(prodId) != holds)
+					continue;
+
+				long now = clock.getAsLong();
+				holds.removeExpired(now);
+
+				int granted = Math.max(0, Math.min(quantity, stock - holds.total()));
+				if (granted > 0) {
+					Hold own = holds.byUser.get(userId);
+					int held = own == null ? 0 : own.quantity;
+					long expiresAt = Math.max(own == null ? 0 : own.expiresAt, now + millis);
+					holds.byUser.put(userId, new Hold(held + granted, expiresAt));
+				} else if (holds.byUser.isEmpty()) {
+					holdsByProduct.remove(prodId, holds);
+				}
+
+				return granted;
+			}
+		}
+	}
+
+	/**
+	 * Returns how many units of a product are not held by other users.
+	 *
+	 * @param userId The user asking, whose own hold counts as available; may be null.
+	 * @param prodId The ID of the product.
+	 * @param stock The current stock of the product.
+	 * @return The quantity the user could still hold.
+	 */
+	public int available(String userId, String prodId, int stock) {
+		ProductHolds holds = holdsByProduct.get(prodId);
+		if (holds == null)
+			return Math.max(0, stock);
+
+		synchronized (holds) {
+			holds.removeExpired(clock.getAsLong());
+			Hold own = userId == null ? null : holds.byUser.get(userId);
+			return Math.max(0, stock - holds.total() + (own == null ? 0 : own.quantity));
+		}
+	}
+
+	/**
+	 * Releases the hold of a user on one product.
+	 *
+	 * @param userId The user's email address.
+	 * @param prodId The ID of the product.
+	 */
+	public void release(String userId, String prodId) {
+		ProductHolds holds = holdsByProduct.get(prodId);
+		if (holds == null)
+			return;
+
+		synchronized (holds) {
+			holds.byUser.remove(userId);
+			if (holds.byUser.isEmpty())
+				holdsByProduct.remove(prodId, holds);
+		}
+	}
+
+	/**
+	 * Releases all the holds of a user, e.g. after checkout.
+	 *
+	 * @param userId The user's email address.
+	 */
+	public void releaseAll(String userId) {
+		for (String prodId : holdsByProduct.keySet())
+			release(userId, prodId);
+	}
+
+	/**
+	 * The holds of all users on one product.
+	 */
+	private static class ProductHolds {
+		private final Map<String, Hold> byUser = new LinkedHashMap<String, Hold>();
+
+		private void removeExpired(long now) {
+			Iterator<Hold> it = byUser.values().iterator();
+			while (it.hasNext()) {
+				if (it.next().expiresAt <= now)
+					it.remove();
+			}
+		}
+
+		private int total() {
+			int total = 0;
+			for (Hold hold : byUser.values())
+				total += hold.quantity;
+			return total;
+		}
+	}
+
+	private static class Hold {
+		private final int quantity;
+		private final long expiresAt;
+
+		private Hold(int quantity, long expiresAt) {
+			this.quantity = quantity;
+			this.expiresAt = expiresAt;
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package com.shashi.utility;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * The per-thread state behind {@link DBUtil#beginUnitOfWork()}.
+ * It holds the connection shared by every service call made on the thread while the unit of work is open,
+ * borrowing it lazily so that requests which never touch the database never take a connection from the pool.
+ */
+class UnitOfWork {
+
+	private final ConnectionPool pool;
+
+	private Connection connection;
+
+	/** Number of nested begin/end scopes currently open on this thread. */
+	int depth;
+
+	/** Number of nested transactions currently open; only the outermost one commits. */
+	int transactionDepth;
+
+	/** Set when a nested transaction rolled back or part of the work failed, so that the outermost one cannot commit. */
+	boolean rollbackOnly;
+
+	UnitOfWork(ConnectionPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Returns the shared connection, borrowing it from the pool on first use.
+	 *
+	 * @return The connection bound to this unit of work.
+	 * @throws SQLException if no connection could be borrowed.
+	 */
+	Connection connection() throws SQLException {
+		if (connection == null)
+			connection = pool.getConnection();
+		return connection;
+	}
+
+	/**
+	 * @param con A connection handed out by DBUtil.
+	 * @return true if the connection is the one shared by this unit of work.
+	 */
+	boolean owns(Connection con) {
+		return con != null && con == connection;
+	}
+
+	/**
+	 * Returns the connection to the pool before the unit of work ends, unless a transaction is open on it.
+	 * The next call to {@link #connection()} borrows a connection again.
+	 */
+	void releaseIdleConnection() {
+		if (connection == null || transactionDepth > 0)
+			return;
+
+		try {
+			connection.close();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+		connection = null;
+	}
+
+	/**
+	 * Rolls back any transaction that was left open and returns the connection to the pool.
+	 */
+	void release() {
+		if (connection == null)
+			return;
+
+		try {
+			if (transactionDepth > 0) {
+				connection.rollback();
+				connection.setAutoCommit(true);
+			}
+			connection.close();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+
+		connection = null;
+		transactionDepth = 0;
+		rollbackOnly = false;
+	}
+}
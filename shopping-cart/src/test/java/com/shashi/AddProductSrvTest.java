@@ -1,5 +1,7 @@
 package com.shashi;
 
+import com.shashi.service.impl.FileImageStore;
+import com.shashi.service.impl.ImageVariants;
 import com.shashi.srv.AddProductSrv;
 import com.shashi.utility.DBUtil;
 import com.shashi.utility.IDUtil;
@@ -44,6 +46,12 @@ class AddProductSrvTest {
 
     private MockedStatic<DBUtil> dbUtilMockedStatic;
     private MockedStatic<IDUtil> idUtilMockedStatic;
+    private MockedStatic<FileImageStore> imageStoreMockedStatic;
+    @Mock
+    private FileImageStore imageStore;
+    private MockedStatic<ImageVariants> imageVariantsMockedStatic;
+    @Mock
+    private ImageVariants imageVariants;
     @Mock
     private Connection connection;
     @Mock
@@ -66,12 +74,21 @@ class AddProductSrvTest {
         dbUtilMockedStatic.when(DBUtil::provideConnection).thenReturn(connection);
         idUtilMockedStatic.when(IDUtil::generateId).thenReturn("test-id");
         when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+
+        // Keep the uploaded image away from the disk
+        imageStoreMockedStatic = mockStatic(FileImageStore.class);
+        imageStoreMockedStatic.when(FileImageStore::shared).thenReturn(imageStore);
+        when(imageStore.save(inputStream)).thenReturn("image-key");
+        imageVariantsMockedStatic = mockStatic(ImageVariants.class);
+        imageVariantsMockedStatic.when(ImageVariants::shared).thenReturn(imageVariants);
     }
 
     @AfterEach
     void tearDown() {
         dbUtilMockedStatic.close();
         idUtilMockedStatic.close();
+        imageStoreMockedStatic.close();
+        imageVariantsMockedStatic.close();
     }
 
     private void invokeDoPost() throws Exception {
@@ -2,17 +2,20 @@ package com.shashi;
 
 import com.shashi.beans.CartBean;
 import com.shashi.service.impl.CartServiceImpl;
+import com.shashi.service.impl.CartStore;
 import com.shashi.utility.DBUtil;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.MockedStatic;
+import org.mockito.stubbing.OngoingStubbing;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -21,6 +24,7 @@ import static org.mockito.Mockito.*;
 class CartServiceImplTest {
 
     private CartServiceImpl cartService;
+    private CartStore cartStore;
 
     private MockedStatic<DBUtil> dbUtilMockedStatic;
     private Connection connection;
@@ -29,7 +33,9 @@ class CartServiceImplTest {
 
     @BeforeEach
     void setUp() throws SQLException {
-        cartService = new CartServiceImpl();
+        // No background thread: the tests write the pending changes with flush()
+        cartStore = new CartStore(new CartStore.DatabaseStorage(), 0);
+        cartService = new CartServiceImpl(cartStore);
 
         dbUtilMockedStatic = mockStatic(DBUtil.class);
         connection = mock(Connection.class);
@@ -46,15 +52,28 @@ class CartServiceImplTest {
         dbUtilMockedStatic.close();
     }
 
+    private void arrangeCartRows(String[] prodIds, Integer[] quantities) throws SQLException {
+        // One stubbing at a time: Mockito does not allow interleaving them
+        OngoingStubbing<Boolean> next = when(resultSet.next());
+        for (int i = 0; i < prodIds.length; i++)
+            next = next.thenReturn(true);
+        next.thenReturn(false);
+
+        OngoingStubbing<String> prodId = when(resultSet.getString("prodid"));
+        for (String id : prodIds)
+            prodId = prodId.thenReturn(id);
+
+        OngoingStubbing<Integer> quantity = when(resultSet.getInt("quantity"));
+        for (Integer q : quantities)
+            quantity = quantity.thenReturn(q);
+    }
+
     // =============== Tests for getAllCartItems ===============
 
     @Test
     void testGetAllCartItems_WhenItemsExist_ShouldReturnCartList() throws SQLException {
         // Arrange
-        when(resultSet.next()).thenReturn(true, true, false);
-        when(resultSet.getString("username")).thenReturn("user1");
-        when(resultSet.getString("prodid")).thenReturn("prod1", "prod2");
-        when(resultSet.getString("quantity")).thenReturn("2", "3");
+        arrangeCartRows(new String[] {"prod1", "prod2"}, new Integer[] {2, 3});
 
         // Act
         List<CartBean> cartItems = cartService.getAllCartItems("user1");
@@ -62,6 +81,7 @@ class CartServiceImplTest {
         // Assert
         assertNotNull(cartItems);
         assertEquals(2, cartItems.size());
+        assertEquals("user1", cartItems.get(0).getUserId());
         assertEquals("prod1", cartItems.get(0).getProdId());
         assertEquals(3, cartItems.get(1).getQuantity());
     }
@@ -84,9 +104,7 @@ class CartServiceImplTest {
     @Test
     void testGetCartCount_WhenItemsExist_ShouldReturnSum() throws SQLException {
         // Arrange
-        when(resultSet.next()).thenReturn(true);
-        when(resultSet.wasNull()).thenReturn(false);
-        when(resultSet.getInt(1)).thenReturn(5);
+        arrangeCartRows(new String[] {"prod1", "prod2"}, new Integer[] {2, 3});
 
         // Act
         int count = cartService.getCartCount("user1");
@@ -107,6 +125,100 @@ class CartServiceImplTest {
         assertEquals(0, count);
     }
 
+    @Test
+    void testGetCartCount_AfterFirstRead_ShouldBeServedFromMemory() throws SQLException {
+        // Arrange
+        arrangeCartRows(new String[] {"prod1"}, new Integer[] {2});
+        cartService.getCartCount("user1");
+
+        // Act
+        cartService.updateProductToCart("user1", "prod2", 4);
+        int count = cartService.getCartCount("user1");
+
+        // Assert
+        assertEquals(6, count);
+        verify(preparedStatement, times(1)).executeQuery();
+    }
+
+    // =============== Tests for getCartQuantities ===============
+
+    @Test
+    void testGetCartQuantities_WhenItemsExist_ShouldMapProductsToQuantities() throws SQLException {
+        // Arrange
+        arrangeCartRows(new String[] {"prod1", "prod2"}, new Integer[] {2, 3});
+
+        // Act
+        Map<String, Integer> quantities = cartService.getCartQuantities("user1");
+
+        // Assert
+        assertEquals(2, quantities.size());
+        assertEquals(2, quantities.get("prod1"));
+        assertEquals(3, quantities.get("prod2"));
+        verify(connection, times(1)).prepareStatement("select prodid, quantity from usercart where username=?");
+    }
+
+    @Test
+    void testGetCartQuantities_WhenNotLoggedIn_ShouldNotQueryDatabase() {
+        // Act
+        Map<String, Integer> quantities = cartService.getCartQuantities(null);
+
+        // Assert
+        assertTrue(quantities.isEmpty());
+        dbUtilMockedStatic.verifyNoInteractions();
+    }
+
+    // =============== Tests for updateProductToCart ===============
+
+    @Test
+    void testUpdateProductToCart_WhenChangedTwice_ShouldWriteLastQuantityOnce() throws SQLException {
+        // Arrange
+        when(resultSet.next()).thenReturn(false);
+
+        // Act
+        String status = cartService.updateProductToCart("user1", "prod1", 2);
+        cartService.updateProductToCart("user1", "prod1", 5);
+        cartStore.flush();
+
+        // Assert
+        assertEquals("Product Successfully Updated to Cart!", status);
+        verify(connection).prepareStatement("insert into usercart (username, prodid, quantity) values(?,?,?) as new "
+                + "on duplicate key update quantity=new.quantity");
+        verify(preparedStatement, times(1)).setInt(3, 5);
+        verify(preparedStatement, never()).setInt(3, 2);
+        verify(preparedStatement, times(1)).executeBatch();
+    }
+
+    @Test
+    void testUpdateProductToCart_WhenLinesAddedAndRemoved_ShouldWriteOneBatchEach() throws SQLException {
+        // Arrange
+        arrangeCartRows(new String[] {"prod1"}, new Integer[] {2});
+
+        // Act
+        cartService.updateProductToCart("user1", "prod1", 0);
+        cartService.updateProductToCart("user1", "prod2", 1);
+        cartService.updateProductToCart("user1", "prod3", 1);
+        cartStore.flush();
+
+        // Assert
+        // prod2 and prod3 in the upsert batch, prod1 in the delete batch
+        verify(preparedStatement, times(3)).addBatch();
+        verify(preparedStatement, times(2)).executeBatch();
+        verify(connection).prepareStatement("delete from usercart where username=? and prodid=?");
+    }
+
+    @Test
+    void testUpdateProductToCart_BeforeFlush_ShouldNotWriteDatabase() throws SQLException {
+        // Arrange
+        when(resultSet.next()).thenReturn(false);
+
+        // Act
+        cartService.updateProductToCart("user1", "prod1", 2);
+
+        // Assert
+        verify(preparedStatement, never()).executeBatch();
+        assertEquals(2, cartService.getCartItemCount("user1", "prod1"));
+    }
+
     // =============== Tests for removeProductFromCart ===============
 
     @Test
@@ -124,33 +236,32 @@ class CartServiceImplTest {
     @Test
     void testRemoveProductFromCart_WhenQuantityGreaterThanOne_ShouldDecrementQuantity() throws SQLException {
         // Arrange
-        when(resultSet.next()).thenReturn(true);
-        when(resultSet.getInt("quantity")).thenReturn(3);
-        when(preparedStatement.executeUpdate()).thenReturn(1);
+        arrangeCartRows(new String[] {"prod1"}, new Integer[] {3});
 
         // Act
         String status = cartService.removeProductFromCart("user1", "prod1");
+        cartStore.flush();
 
         // Assert
         assertEquals("Product Successfully removed from the Cart!", status);
-        verify(preparedStatement).setInt(1, 2); // 3 - 1 = 2
+        verify(preparedStatement).setInt(3, 2); // 3 - 1 = 2
     }
 
     @Test
     void testRemoveProductFromCart_WhenQuantityIsOne_ShouldDeleteProduct() throws SQLException {
         // Arrange
-        when(resultSet.next()).thenReturn(true);
-        when(resultSet.getInt("quantity")).thenReturn(1);
-        when(preparedStatement.executeUpdate()).thenReturn(1);
+        arrangeCartRows(new String[] {"prod1"}, new Integer[] {1});
 
         // Act
         String status = cartService.removeProductFromCart("user1", "prod1");
+        cartStore.flush();
 
         // Assert
         assertEquals("Product Successfully removed from the Cart!", status);
-        // Verifies that the 'delete' statement was prepared and executed
+        // Verifies that the 'delete' statement was prepared and executed, and nothing inserted again
         verify(connection).prepareStatement("delete from usercart where username=? and prodid=?");
-        verify(preparedStatement).executeUpdate();
+        verify(preparedStatement, times(1)).executeBatch();
+        assertEquals(0, cartService.getCartCount("user1"));
     }
 
     // =============== Tests for removeAProduct ===============
@@ -158,19 +269,20 @@ class CartServiceImplTest {
     @Test
     void testRemoveAProduct_WhenSuccessful_ShouldReturnTrue() throws SQLException {
         // Arrange
-        when(preparedStatement.executeUpdate()).thenReturn(1);
+        arrangeCartRows(new String[] {"prod1"}, new Integer[] {2});
 
         // Act
         boolean result = cartService.removeAProduct("user1", "prod1");
 
         // Assert
         assertTrue(result);
+        assertEquals(0, cartService.getCartItemCount("user1", "prod1"));
     }
 
     @Test
     void testRemoveAProduct_WhenFails_ShouldReturnFalse() throws SQLException {
         // Arrange
-        when(preparedStatement.executeUpdate()).thenReturn(0);
+        when(resultSet.next()).thenReturn(false);
 
         // Act
         boolean result = cartService.removeAProduct("user1", "prod1");
@@ -0,0 +1,208 @@
+package com.shashi;
+
+import com.shashi.service.impl.CartStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CartStoreTest {
+
+    private FakeStorage storage;
+    private CartStore cartStore;
+
+    /**
+     * Keeps the carts in a map and records every write.
+     */
+    private static class FakeStorage implements CartStore.Storage {
+        private final Map<String, Map<String, Integer>> rows = new HashMap<>();
+        private final List<Map<String, Map<String, Integer>>> writes = new ArrayList<>();
+        private int loads;
+        private boolean failing;
+
+        @Override
+        public Map<String, Integer> load(String userId) {
+            loads++;
+            return new LinkedHashMap<>(rows.getOrDefault(userId, new LinkedHashMap<>()));
+        }
+
+        @Override
+        public boolean store(Map<String, Map<String, Integer>> quantities) {
+            if (failing)
+                return false;
+            writes.add(quantities);
+            for (Map.Entry<String, Map<String, Integer>> cart : quantities.entrySet()) {
+                Map<String, Integer> lines = rows.computeIfAbsent(cart.getKey(), user -> new LinkedHashMap<>());
+                for (Map.Entry<String, Integer> line : cart.getValue().entrySet()) {
+                    if (line.getValue() > 0)
+                        lines.put(line.getKey(), line.getValue());
+                    else
+                        lines.remove(line.getKey());
+                }
+            }
+            return true;
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        storage = new FakeStorage();
+        storage.rows.put("user1", new LinkedHashMap<>(Map.of("prod1", 2)));
+        cartStore = new CartStore(storage, 0);
+    }
+
+    // =============== Tests for reads ===============
+
+    @Test
+    void testGetCount_WhenReadTwice_ShouldLoadCartOnce() {
+        // Act
+        int first = cartStore.getCount("user1");
+        int second = cartStore.getCount("user1");
+
+        // Assert
+        assertEquals(2, first);
+        assertEquals(2, second);
+        assertEquals(1, storage.loads);
+    }
+
+    @Test
+    void testGetCount_WhenNotLoggedIn_ShouldReturnZeroWithoutLoading() {
+        // Act
+        int count = cartStore.getCount(null);
+
+        // Assert
+        assertEquals(0, count);
+        assertEquals(0, storage.loads);
+    }
+
+    // =============== Tests for write-behind ===============
+
+    @Test
+    void testFlush_WhenLineChangedSeveralTimes_ShouldWriteLastQuantityOnce() {
+        // Arrange
+        cartStore.addQuantity("user1", "prod1", 1);
+        cartStore.addQuantity("user1", "prod1", 1);
+        cartStore.setQuantity("user1", "prod2", 1);
+
+        // Act
+        cartStore.flush();
+
+        // Assert
+        assertEquals(1, storage.writes.size());
+        assertEquals(Map.of("prod1", 4, "prod2", 1), storage.writes.get(0).get("user1"));
+        assertEquals(0, cartStore.getPendingCount());
+    }
+
+    @Test
+    void testFlush_WhenNothingChanged_ShouldNotWrite() {
+        // Arrange
+        cartStore.getCount("user1");
+
+        // Act
+        cartStore.flush();
+
+        // Assert
+        assertTrue(storage.writes.isEmpty());
+    }
+
+    @Test
+    void testFlush_WhenWriteFails_ShouldKeepChangesPending() {
+        // Arrange
+        cartStore.setQuantity("user1", "prod1", 0);
+        storage.failing = true;
+
+        // Act
+        boolean flushed = cartStore.flush("user1");
+
+        // Assert
+        assertFalse(flushed);
+        assertEquals(1, cartStore.getPendingCount());
+
+        // Act again, once the database is back
+        storage.failing = false;
+        cartStore.flush();
+
+        // Assert
+        assertFalse(storage.rows.get("user1").containsKey("prod1"));
+    }
+
+    @Test
+    void testAddQuantity_WhenBelowZero_ShouldRemoveLine() {
+        // Act
+        int quantity = cartStore.addQuantity("user1", "prod1", -5);
+
+        // Assert
+        assertEquals(0, quantity);
+        assertEquals(0, cartStore.getCount("user1"));
+        assertTrue(cartStore.getQuantities("user1").isEmpty());
+    }
+
+    // =============== Tests for evict and clear ===============
+
+    @Test
+    void testEvict_ShouldWritePendingChangesAndDropCart() {
+        // Arrange
+        cartStore.setQuantity("user1", "prod1", 7);
+
+        // Act
+        cartStore.evict("user1");
+
+        // Assert
+        assertEquals(7, storage.rows.get("user1").get("prod1"));
+        assertEquals(0, cartStore.getSize());
+        assertEquals(7, cartStore.getQuantity("user1", "prod1"));
+        assertEquals(2, storage.loads);
+    }
+
+    @Test
+    void testEvict_WhenWriteFails_ShouldKeepCart() {
+        // Arrange
+        cartStore.setQuantity("user1", "prod1", 7);
+        storage.failing = true;
+
+        // Act
+        cartStore.evict("user1");
+
+        // Assert
+        assertEquals(1, cartStore.getSize());
+        assertEquals(1, cartStore.getPendingCount());
+    }
+
+    @Test
+    void testClear_ShouldDropPendingChangesAndKeepEmptyCart() {
+        // Arrange
+        cartStore.setQuantity("user1", "prod1", 7);
+
+        // Act
+        cartStore.clear("user1");
+        cartStore.flush();
+
+        // Assert
+        assertTrue(storage.writes.isEmpty());
+        assertEquals(0, cartStore.getCount("user1"));
+        assertEquals(1, storage.loads);
+    }
+
+    // =============== Tests for the cart count ===============
+
+    @Test
+    void testGetCount_ShouldFollowEveryChange() {
+        // Act & Assert
+        assertEquals(2, cartStore.getCount("user1"));
+        cartStore.addQuantity("user1", "prod1", 3);
+        assertEquals(5, cartStore.getCount("user1"));
+        cartStore.setQuantity("user1", "prod2", 4);
+        assertEquals(9, cartStore.getCount("user1"));
+        cartStore.setQuantity("user1", "prod1", 0);
+        assertEquals(4, cartStore.getCount("user1"));
+        cartStore.removeProduct("prod2");
+        assertEquals(0, cartStore.getCount("user1"));
+        assertEquals(1, storage.loads);
+    }
+}
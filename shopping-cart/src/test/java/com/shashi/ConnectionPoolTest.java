@@ -0,0 +1,164 @@
+package com.shashi;
+
+import com.shashi.utility.ConnectionPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+class ConnectionPoolTest {
+
+    private final List<Connection> opened = new ArrayList<>();
+    private ConnectionPool pool;
+
+    private Connection newPhysicalConnection() throws SQLException {
+        Connection connection = mock(Connection.class);
+        when(connection.isValid(anyInt())).thenReturn(true);
+        when(connection.getAutoCommit()).thenReturn(true);
+        opened.add(connection);
+        return connection;
+    }
+
+    private ConnectionPool newPool(int minIdle, int maxSize, long idleTimeoutMillis) {
+        return new ConnectionPool(this::newPhysicalConnection, minIdle, maxSize, 50, idleTimeoutMillis, 0, 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null)
+            pool.close();
+    }
+
+    // =============== Tests for getConnection ===============
+
+    @Test
+    void testGetConnection_WhenReturnedAndBorrowedAgain_ShouldReusePhysicalConnection() throws SQLException {
+        // Arrange
+        pool = newPool(0, 2, 60000);
+
+        // Act
+        Connection first = pool.getConnection();
+        first.close();
+        Connection second = pool.getConnection();
+
+        // Assert
+        assertEquals(1, opened.size());
+        assertTrue(first.isClosed());
+        assertFalse(second.isClosed());
+        verify(opened.get(0), never()).close();
+    }
+
+    @Test
+    void testGetConnection_WhenPoolExhausted_ShouldTimeOut() throws SQLException {
+        // Arrange
+        pool = newPool(0, 1, 60000);
+        pool.getConnection();
+
+        // Act & Assert
+        assertThrows(SQLException.class, () -> pool.getConnection());
+        assertEquals(1, pool.getActiveCount());
+    }
+
+    @Test
+    void testGetConnection_WhenIdleConnectionIsInvalid_ShouldOpenNewOne() throws SQLException {
+        // Arrange
+        pool = newPool(0, 1, 60000);
+        pool.getConnection().close();
+        when(opened.get(0).isValid(anyInt())).thenReturn(false);
+
+        // Act
+        pool.getConnection();
+
+        // Assert
+        assertEquals(2, opened.size());
+        verify(opened.get(0)).close();
+    }
+
+    @Test
+    void testGetConnection_WhenHandleUsedAfterClose_ShouldThrow() throws SQLException {
+        // Arrange
+        pool = newPool(0, 1, 60000);
+        Connection connection = pool.getConnection();
+        connection.close();
+
+        // Act & Assert
+        assertThrows(SQLException.class, () -> connection.prepareStatement("select 1"));
+    }
+
+    // =============== Tests for returning connections ===============
+
+    @Test
+    void testClose_WhenTransactionLeftOpen_ShouldRollBack() throws SQLException {
+        // Arrange
+        pool = newPool(0, 1, 60000);
+        Connection connection = pool.getConnection();
+        when(opened.get(0).getAutoCommit()).thenReturn(false);
+
+        // Act
+        connection.close();
+
+        // Assert
+        verify(opened.get(0)).rollback();
+        verify(opened.get(0)).setAutoCommit(true);
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    // =============== Tests for housekeep ===============
+
+    @Test
+    void testHousekeep_WhenConnectionsIdleTooLong_ShouldEvictDownToMinIdle() throws SQLException {
+        // Arrange
+        pool = newPool(1, 3, 0);
+        Connection a = pool.getConnection();
+        Connection b = pool.getConnection();
+        Connection c = pool.getConnection();
+        a.close();
+        b.close();
+        c.close();
+
+        // Act
+        pool.housekeep();
+
+        // Assert
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    void testHousekeep_WhenBelowMinIdle_ShouldOpenConnections() {
+        // Arrange
+        pool = newPool(2, 5, 60000);
+
+        // Act
+        pool.housekeep();
+
+        // Assert
+        assertEquals(2, pool.getIdleCount());
+        assertEquals(2, opened.size());
+    }
+
+    @Test
+    void testHousekeep_WhileBorrowerOpensLastConnection_ShouldNotExceedMaxSize() throws SQLException {
+        // Arrange: the housekeeper runs while the borrower is opening the only connection the pool may have
+        pool = new ConnectionPool(() -> {
+            if (opened.isEmpty())
+                pool.housekeep();
+            return newPhysicalConnection();
+        }, 1, 1, 50, 60000, 0, 0);
+
+        // Act
+        Connection connection = pool.getConnection();
+
+        // Assert
+        assertNotNull(connection);
+        assertEquals(1, opened.size());
+        assertEquals(1, pool.getOpenCount());
+        assertEquals(0, pool.getIdleCount());
+    }
+}
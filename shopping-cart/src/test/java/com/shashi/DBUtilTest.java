@@ -0,0 +1,211 @@
+package com.shashi;
+
+import com.shashi.utility.DBUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+class DBUtilTest {
+
+    /**
+     * Answers the "dummy" connection string of the test application.properties with mock connections.
+     */
+    public static class StubDriver implements Driver {
+        private final List<Connection> opened = new ArrayList<>();
+
+        @Override
+        public Connection connect(String url, Properties info) throws SQLException {
+            if (!acceptsURL(url))
+                return null;
+            Connection connection = mock(Connection.class);
+            when(connection.isValid(anyInt())).thenReturn(true);
+            when(connection.getAutoCommit()).thenReturn(true);
+            opened.add(connection);
+            return connection;
+        }
+
+        @Override
+        public boolean acceptsURL(String url) {
+            return "dummy".equals(url);
+        }
+
+        @Override
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        @Override
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        @Override
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        @Override
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        @Override
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+    }
+
+    private StubDriver driver;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        driver = new StubDriver();
+        DriverManager.registerDriver(driver);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        DBUtil.shutdown();
+        DriverManager.deregisterDriver(driver);
+    }
+
+    // =============== Tests for provideConnection ===============
+
+    @Test
+    void testProvideConnection_WithoutUnitOfWork_ShouldBorrowPerCall() {
+        // Act
+        Connection first = DBUtil.provideConnection();
+        Connection second = DBUtil.provideConnection();
+        DBUtil.closeConnection(first);
+        DBUtil.closeConnection(second);
+
+        // Assert
+        assertNotSame(first, second);
+        assertEquals(0, DBUtil.getDataSource().getActiveCount());
+    }
+
+    @Test
+    void testProvideConnection_InsideUnitOfWork_ShouldShareOneConnection() throws SQLException {
+        // Act
+        DBUtil.beginUnitOfWork();
+        Connection first = DBUtil.provideConnection();
+        DBUtil.closeConnection(first);
+        Connection second = DBUtil.provideConnection();
+        DBUtil.closeConnection(second);
+
+        // Assert
+        assertSame(first, second);
+        assertFalse(second.isClosed());
+        assertEquals(1, DBUtil.getDataSource().getActiveCount());
+
+        DBUtil.endUnitOfWork();
+        assertTrue(second.isClosed());
+        assertEquals(0, DBUtil.getDataSource().getActiveCount());
+    }
+
+    @Test
+    void testReleaseConnection_InsideUnitOfWork_ShouldReturnConnectionUntilNextUse() throws SQLException {
+        // Arrange
+        DBUtil.beginUnitOfWork();
+        Connection first = DBUtil.provideConnection();
+
+        // Act
+        DBUtil.releaseConnection();
+
+        // Assert
+        assertTrue(first.isClosed());
+        assertEquals(0, DBUtil.getDataSource().getActiveCount());
+        Connection second = DBUtil.provideConnection();
+        assertFalse(second.isClosed());
+        assertEquals(1, DBUtil.getDataSource().getActiveCount());
+
+        DBUtil.endUnitOfWork();
+        assertEquals(0, DBUtil.getDataSource().getActiveCount());
+    }
+
+    @Test
+    void testReleaseConnection_InsideTransaction_ShouldKeepConnection() throws SQLException {
+        // Arrange
+        DBUtil.beginTransaction();
+        Connection connection = DBUtil.provideConnection();
+
+        // Act
+        DBUtil.releaseConnection();
+
+        // Assert
+        assertFalse(connection.isClosed());
+        assertSame(connection, DBUtil.provideConnection());
+
+        DBUtil.rollback();
+    }
+
+    // =============== Tests for transactions ===============
+
+    @Test
+    void testCommit_WhenTransactionSucceeds_ShouldCommitAndRestoreAutoCommit() throws SQLException {
+        // Arrange
+        DBUtil.beginTransaction();
+        Connection physical = driver.opened.get(driver.opened.size() - 1);
+
+        // Act
+        DBUtil.commit();
+
+        // Assert
+        verify(physical).setAutoCommit(false);
+        verify(physical).commit();
+        verify(physical).setAutoCommit(true);
+        assertEquals(0, DBUtil.getDataSource().getActiveCount());
+    }
+
+    @Test
+    void testCommit_WhenNestedTransactionRolledBack_ShouldRollBackEverything() throws SQLException {
+        // Arrange
+        DBUtil.beginTransaction();
+        Connection physical = driver.opened.get(driver.opened.size() - 1);
+        DBUtil.beginTransaction();
+        DBUtil.rollback();
+
+        // Act & Assert
+        assertThrows(SQLException.class, DBUtil::commit);
+        verify(physical).rollback();
+        verify(physical, never()).commit();
+        assertEquals(0, DBUtil.getDataSource().getActiveCount());
+    }
+
+    @Test
+    void testCommit_WhenMarkedRollbackOnly_ShouldRollBackEverything() throws SQLException {
+        // Arrange
+        assertFalse(DBUtil.isInTransaction());
+        DBUtil.beginTransaction();
+        Connection physical = driver.opened.get(driver.opened.size() - 1);
+        assertTrue(DBUtil.isInTransaction());
+        DBUtil.setRollbackOnly();
+
+        // Act & Assert
+        assertThrows(SQLException.class, DBUtil::commit);
+        verify(physical).rollback();
+        verify(physical, never()).commit();
+        assertFalse(DBUtil.isInTransaction());
+    }
+
+    @Test
+    void testRollback_WithoutTransaction_ShouldDoNothing() {
+        // Act & Assert
+        assertDoesNotThrow(DBUtil::rollback);
+    }
+}
@@ -0,0 +1,100 @@
+package com.shashi;
+
+import com.shashi.service.impl.FileImageStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileImageStoreTest {
+
+    @TempDir
+    Path root;
+
+    private FileImageStore store;
+
+    private final byte[] image = "not really a jpeg".getBytes();
+
+    @BeforeEach
+    void setUp() {
+        store = new FileImageStore(root);
+    }
+
+    private long countFiles() throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+
+    // =============== Tests for save ===============
+
+    @Test
+    void testSave_ShouldReturnContentHash() throws IOException {
+        // Act
+        String key = store.save(new ByteArrayInputStream(image));
+
+        // Assert
+        assertEquals(64, key.length());
+        assertTrue(Files.isRegularFile(root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key)));
+        assertEquals(image.length, store.size(key));
+    }
+
+    @Test
+    void testSave_WithSameContentTwice_ShouldStoreOneFile() throws IOException {
+        // Act
+        String first = store.save(new ByteArrayInputStream(image));
+        String second = store.save(new ByteArrayInputStream(image));
+
+        // Assert
+        assertEquals(first, second);
+        assertEquals(1, countFiles());
+    }
+
+    @Test
+    void testSave_WithEmptyStream_ShouldReturnNull() throws IOException {
+        // Act
+        String key = store.save(new ByteArrayInputStream(new byte[0]));
+
+        // Assert
+        assertNull(key);
+        assertEquals(0, countFiles());
+    }
+
+    // =============== Tests for transferTo ===============
+
+    @Test
+    void testTransferTo_ShouldWriteStoredBytes() throws IOException {
+        // Arrange
+        String key = store.save(new ByteArrayInputStream(image));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Act
+        long written = store.transferTo(key, Channels.newChannel(out));
+
+        // Assert
+        assertEquals(image.length, written);
+        assertArrayEquals(image, out.toByteArray());
+    }
+
+    @Test
+    void testTransferTo_WithUnknownOrInvalidKey_ShouldReturnMinusOne() throws IOException {
+        // Arrange
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        String unknown = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+
+        // Act & Assert
+        assertEquals(-1, store.transferTo(unknown, Channels.newChannel(out)));
+        assertEquals(-1, store.transferTo("../../etc/passwd", Channels.newChannel(out)));
+        assertEquals(-1, store.size(null));
+        assertEquals(0, out.size());
+    }
+}
@@ -0,0 +1,122 @@
+package com.shashi;
+
+import com.shashi.utility.IdGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdGeneratorTest {
+
+    // 2026-10-17 09:30:15.123 UTC
+    private static final long NOW = 1792229415123L;
+
+    // =============== Tests for nextId ===============
+
+    @Test
+    void testNextId_WithinSameMillisecond_ShouldIncrementSequence() {
+        // Arrange
+        IdGenerator generator = new IdGenerator(1, () -> NOW);
+
+        // Act
+        long first = generator.nextId();
+        long second = generator.nextId();
+
+        // Assert
+        assertEquals(first + 1, second);
+        assertEquals(NOW, second >>> 12);
+    }
+
+    @Test
+    void testNextId_WhenSequenceUsedUp_ShouldBorrowNextMillisecond() {
+        // Arrange
+        IdGenerator generator = new IdGenerator(1, () -> NOW);
+
+        // Act
+        long last = 0;
+        for (int i = 0; i <= 4096; i++)
+            last = generator.nextId();
+
+        // Assert
+        assertEquals(NOW + 1, last >>> 12);
+        assertEquals(0, last & 0xfff);
+    }
+
+    @Test
+    void testNextId_WhenClockGoesBack_ShouldKeepIncreasing() {
+        // Arrange
+        AtomicLong clock = new AtomicLong(NOW);
+        IdGenerator generator = new IdGenerator(1, clock::get);
+        long before = generator.nextId();
+
+        // Act
+        clock.set(NOW - 5000);
+        long after = generator.nextId();
+
+        // Assert
+        assertTrue(after > before);
+    }
+
+    @Test
+    void testNextId_FromManyThreads_ShouldNeverRepeat() throws InterruptedException {
+        // Arrange
+        IdGenerator generator = new IdGenerator(1, System::currentTimeMillis);
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 20000; i++)
+                    ids.add(generator.next("T"));
+            }));
+        }
+
+        // Act
+        for (Thread thread : threads)
+            thread.start();
+        for (Thread thread : threads)
+            thread.join();
+
+        // Assert
+        assertEquals(8 * 20000, ids.size());
+    }
+
+    // =============== Tests for format ===============
+
+    @Test
+    void testFormat_ShouldSpellTimeNodeAndSequence() {
+        // Arrange
+        IdGenerator generator = new IdGenerator(42, () -> NOW);
+        long id = (NOW << 12) + 7;
+
+        // Act
+        String formatted = generator.format("P", id);
+
+        // Assert
+        assertEquals("P202610170930151230420007", formatted);
+    }
+
+    @Test
+    void testFormat_ShouldSortAfterLegacyIdsAndInGenerationOrder() {
+        // Arrange
+        IdGenerator generator = new IdGenerator(7, () -> NOW);
+
+        // Act
+        String first = generator.next("P");
+        String second = generator.next("P");
+
+        // Assert
+        assertTrue(first.compareTo("P20230423082243") > 0);
+        assertTrue(second.compareTo(first) > 0);
+    }
+
+    @Test
+    void testConstructor_WithNodeOutOfRange_ShouldThrow() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> new IdGenerator(1000, () -> NOW));
+    }
+}
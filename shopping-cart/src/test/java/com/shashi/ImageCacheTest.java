@@ -0,0 +1,128 @@
+package com.shashi;
+
+import com.shashi.service.impl.ImageCache;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageCacheTest {
+
+    private static byte[] image(int length, int value) {
+        byte[] image = new byte[length];
+        Arrays.fill(image, (byte) value);
+        return image;
+    }
+
+    // =============== Tests for get and put ===============
+
+    @Test
+    void testGet_AfterPut_ShouldReturnSameBytesAndEtag() throws IOException {
+        // Arrange
+        ImageCache cache = new ImageCache(1000, false);
+        cache.put("p1", image(10, 7), "\"etag\"");
+
+        // Act
+        ImageCache.CachedImage cached = cache.get("p1");
+
+        // Assert
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cached.writeTo(out);
+        assertArrayEquals(image(10, 7), out.toByteArray());
+        assertEquals("\"etag\"", cached.getEtag());
+        assertEquals(10, cached.getLength());
+        assertArrayEquals(image(4, 7), cached.getHead(4));
+    }
+
+    @Test
+    void testPut_WhenFull_ShouldEvictLeastRecentlyUsedByBytes() {
+        // Arrange
+        ImageCache cache = new ImageCache(800, false);
+        cache.put("p1", image(100, 1), "\"1\"");
+        cache.put("p2", image(100, 2), "\"2\"");
+        cache.put("p3", image(100, 3), "\"3\"");
+        cache.get("p1");
+
+        // Act
+        for (int i = 4; i <= 9; i++)
+            cache.put("p" + i, image(100, i), "\"" + i + "\"");
+
+        // Assert
+        assertTrue(cache.getResidentBytes() <= 800);
+        assertNull(cache.get("p2"));
+        assertNotNull(cache.get("p1"));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    void testPut_WithImageLargerThanAnEighth_ShouldNotCacheIt() {
+        // Arrange
+        ImageCache cache = new ImageCache(800, true);
+        byte[] image = image(101, 1);
+
+        // Act
+        ImageCache.CachedImage cached = cache.put("p1", image, "\"1\"");
+
+        // Assert
+        assertEquals(101, cached.getLength());
+        // wrapped, not copied into a new buffer
+        image[0] = 42;
+        assertEquals(42, cached.getHead(1)[0]);
+        assertNull(cache.get("p1"));
+        assertEquals(0, cache.getResidentBytes());
+    }
+
+    @Test
+    void testPut_WithOffHeap_ShouldWriteSameBytes() throws IOException {
+        // Arrange
+        ImageCache cache = new ImageCache(1000, true);
+        cache.put("p1", image(20, 9), "\"9\"");
+
+        // Act
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cache.get("p1").writeTo(out);
+        cache.get("p1").writeTo(out);
+
+        // Assert
+        assertEquals(40, out.size());
+    }
+
+    // =============== Tests for invalidate and metrics ===============
+
+    @Test
+    void testInvalidate_ShouldDropImageAndItsBytes() {
+        // Arrange
+        ImageCache cache = new ImageCache(1000, false);
+        cache.put("p1", image(50, 1), "\"1\"");
+        cache.put("p1", image(60, 2), "\"2\"");
+
+        // Act
+        cache.invalidate("p1");
+
+        // Assert
+        assertNull(cache.get("p1"));
+        assertEquals(0, cache.getResidentBytes());
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    void testHitRatio_ShouldCountHitsAndMisses() {
+        // Arrange
+        ImageCache cache = new ImageCache(1000, false);
+        cache.put("p1", image(10, 1), "\"1\"");
+
+        // Act
+        cache.get("p1");
+        cache.get("p1");
+        cache.get("p1");
+        cache.get("p2");
+
+        // Assert
+        assertEquals(3, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0.75, cache.getHitRatio(), 0.0001);
+    }
+}
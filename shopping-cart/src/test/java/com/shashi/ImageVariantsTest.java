@@ -0,0 +1,143 @@
+package com.shashi;
+
+import com.shashi.service.ImageStore;
+import com.shashi.service.impl.FileImageStore;
+import com.shashi.service.impl.ImageVariants;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageVariantsTest {
+
+    @TempDir
+    Path storeDir;
+
+    private FileImageStore store;
+    private ImageVariants variants;
+
+    @BeforeEach
+    void setUp() {
+        store = new FileImageStore(storeDir);
+        variants = new ImageVariants(store, 1, 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        variants.shutdown();
+    }
+
+    private String saveImage(int width, int height) throws IOException {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB), "png", png);
+        return store.save(new ByteArrayInputStream(png.toByteArray()));
+    }
+
+    private BufferedImage readVariant(String key, ImageVariants.Size size) throws IOException {
+        try (InputStream in = store.open(ImageStore.variantKey(key, size.variantName()))) {
+            return in == null ? null : ImageIO.read(in);
+        }
+    }
+
+    // =============== Tests for generateNow ===============
+
+    @Test
+    void testGenerateNow_WithLargeImage_ShouldScaleEveryVariantKeepingProportions() throws IOException {
+        // Arrange
+        String key = saveImage(1600, 1200);
+
+        // Act
+        boolean generated = variants.generateNow(key);
+
+        // Assert
+        assertTrue(generated);
+        BufferedImage thumb = readVariant(key, ImageVariants.Size.THUMB);
+        assertEquals(100, thumb.getWidth());
+        assertEquals(75, thumb.getHeight());
+        assertEquals(300, readVariant(key, ImageVariants.Size.CARD).getWidth());
+        assertEquals(600, readVariant(key, ImageVariants.Size.DETAIL).getHeight());
+    }
+
+    @Test
+    void testGenerateNow_WithSmallImage_ShouldNotEnlargeIt() throws IOException {
+        // Arrange
+        String key = saveImage(40, 80);
+
+        // Act
+        variants.generateNow(key);
+
+        // Assert
+        BufferedImage card = readVariant(key, ImageVariants.Size.CARD);
+        assertEquals(40, card.getWidth());
+        assertEquals(80, card.getHeight());
+    }
+
+    @Test
+    void testGenerateNow_WithUnreadableImage_ShouldReturnFalse() throws IOException {
+        // Arrange
+        String key = store.save(new ByteArrayInputStream("not an image".getBytes()));
+
+        // Act & Assert
+        assertFalse(variants.generateNow(key));
+        assertEquals(-1, store.size(ImageStore.variantKey(key, "thumb")));
+        assertFalse(variants.generateNow("0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef"));
+    }
+
+    // =============== Tests for generate ===============
+
+    @Test
+    void testGenerate_ShouldCreateVariantsInBackground() throws Exception {
+        // Arrange
+        String key = saveImage(500, 500);
+
+        // Act
+        assertTrue(variants.generate(key));
+
+        // Assert
+        long deadline = System.currentTimeMillis() + 5000;
+        while (store.size(ImageStore.variantKey(key, "detail")) < 0 && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        assertEquals(100, readVariant(key, ImageVariants.Size.THUMB).getWidth());
+        assertNotNull(readVariant(key, ImageVariants.Size.DETAIL));
+    }
+
+    @Test
+    void testGenerate_WhenImageCouldNotBeDecoded_ShouldNotQueueItAgain() throws Exception {
+        // Arrange
+        String key = store.save(new ByteArrayInputStream("not an image".getBytes()));
+        assertFalse(variants.isUndecodable(key));
+        assertFalse(variants.generateNow(key));
+
+        // A pipeline that is shut down rejects whatever is queued
+        variants.shutdown();
+
+        // Act
+        boolean skipped = variants.generate(key);
+        boolean queued = variants.generate(saveImage(10, 10));
+
+        // Assert
+        assertTrue(variants.isUndecodable(key));
+        assertTrue(skipped);
+        assertFalse(queued);
+    }
+
+    // =============== Tests for Size ===============
+
+    @Test
+    void testFromName_ShouldOnlyAcceptKnownSizes() {
+        // Act & Assert
+        assertEquals(ImageVariants.Size.CARD, ImageVariants.Size.fromName("card"));
+        assertNull(ImageVariants.Size.fromName("CARD"));
+        assertNull(ImageVariants.Size.fromName(null));
+    }
+}
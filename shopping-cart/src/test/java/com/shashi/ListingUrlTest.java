@@ -0,0 +1,36 @@
+package com.shashi;
+
+import com.shashi.utility.ListingUrl;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ListingUrlTest {
+
+    @Test
+    void testFirstPageWithoutFilters() {
+        // Act
+        String url = ListingUrl.build("index.jsp", null, null, "price", null);
+
+        // Assert
+        assertEquals("index.jsp?sort=price", url);
+    }
+
+    @Test
+    void testKeepsSearchTypeAndPage() {
+        // Act
+        String url = ListingUrl.build("userHome.jsp", "red & blue", "mobile", "name", "abc123");
+
+        // Assert
+        assertEquals("userHome.jsp?sort=name&search=red+%26+blue&type=mobile&page=abc123", url);
+    }
+
+    @Test
+    void testDefaultOrderLeavesSortOut() {
+        // Act
+        String url = ListingUrl.build("index.jsp", "phone", null, null, null);
+
+        // Assert
+        assertEquals("index.jsp?search=phone", url);
+    }
+}
@@ -0,0 +1,147 @@
+package com.shashi;
+
+import com.shashi.service.impl.LoginFailureCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoginFailureCacheTest {
+
+    private final AtomicLong now = new AtomicLong(1000);
+    private LoginFailureCache failures;
+
+    @BeforeEach
+    void setUp() {
+        failures = new LoginFailureCache(5000, 3, 3, now::get);
+    }
+
+    // =============== Tests for isKnownFailure ===============
+
+    @Test
+    void testIsKnownFailure_WhenSameCredentialsFailed_ShouldReturnTrue() {
+        // Arrange
+        failures.recordFailure("user@example.com", "10.0.0.1", "wrong");
+
+        // Act & Assert
+        assertTrue(failures.isKnownFailure("user@example.com", "10.0.0.1", "wrong"));
+        assertFalse(failures.isKnownFailure("user@example.com", "10.0.0.1", "other"));
+        assertFalse(failures.isKnownFailure("other@example.com", "10.0.0.1", "wrong"));
+    }
+
+    @Test
+    void testIsKnownFailure_WhenMaxFailuresReached_ShouldDenyEveryPassword() {
+        // Arrange
+        failures.recordFailure("user@example.com", "10.0.0.1", "guess1");
+        failures.recordFailure("User@Example.com", "10.0.0.1", "guess2");
+        assertFalse(failures.isLockedOut("user@example.com", "10.0.0.1"));
+
+        // Act
+        failures.recordFailure("user@example.com", "10.0.0.1", "guess3");
+
+        // Assert
+        assertTrue(failures.isLockedOut("user@example.com", "10.0.0.1"));
+        assertTrue(failures.isKnownFailure("user@example.com", "10.0.0.1", "guess4"));
+        assertFalse(failures.isKnownFailure("other@example.com", "10.0.0.1", "guess4"));
+    }
+
+    @Test
+    void testIsKnownFailure_WhenWindowEnded_ShouldReturnFalseAndDropEntry() {
+        // Arrange
+        failures.recordFailure("user@example.com", "10.0.0.1", "guess1");
+        failures.recordFailure("user@example.com", "10.0.0.1", "guess2");
+        failures.recordFailure("user@example.com", "10.0.0.1", "guess3");
+        now.addAndGet(5000);
+
+        // Act
+        boolean known = failures.isKnownFailure("user@example.com", "10.0.0.1", "guess1");
+
+        // Assert
+        assertFalse(known);
+        assertFalse(failures.isLockedOut("user@example.com", "10.0.0.1"));
+        assertEquals(0, failures.size());
+    }
+
+    @Test
+    void testIsKnownFailure_WhenCacheDisabled_ShouldReturnFalse() {
+        // Arrange
+        LoginFailureCache disabled = new LoginFailureCache(0, 3, 3, now::get);
+        disabled.recordFailure("user@example.com", "10.0.0.1", "wrong");
+
+        // Act & Assert
+        assertFalse(disabled.isKnownFailure("user@example.com", "10.0.0.1", "wrong"));
+        assertEquals(0, disabled.size());
+    }
+
+    @Test
+    void testIsLockedOut_ShouldOnlyDenyTheAddressTheFailuresCameFrom() {
+        // Arrange
+        failures.recordFailure("user@example.com", "10.0.0.1", "guess1");
+        failures.recordFailure("user@example.com", "10.0.0.1", "guess2");
+        failures.recordFailure("user@example.com", "10.0.0.1", "guess3");
+
+        // Act & Assert
+        assertTrue(failures.isLockedOut("user@example.com", "10.0.0.1"));
+        assertFalse(failures.isLockedOut("user@example.com", "10.0.0.2"));
+        assertFalse(failures.isKnownFailure("user@example.com", "10.0.0.2", "password"));
+    }
+
+    // =============== Tests for recordFailure ===============
+
+    @Test
+    void testRecordFailure_WhenFull_ShouldDropEntryExpiringFirst() {
+        // Arrange
+        failures.recordFailure("a@example.com", "10.0.0.1", "x");
+        now.addAndGet(1000);
+        failures.recordFailure("b@example.com", "10.0.0.1", "x");
+        failures.recordFailure("c@example.com", "10.0.0.1", "x");
+        // a failure of an email already tracked keeps its place
+        failures.recordFailure("a@example.com", "10.0.0.1", "y");
+
+        // Act
+        failures.recordFailure("d@example.com", "10.0.0.1", "x");
+
+        // Assert
+        assertEquals(3, failures.size());
+        assertFalse(failures.isKnownFailure("a@example.com", "10.0.0.1", "x"));
+        assertTrue(failures.isKnownFailure("b@example.com", "10.0.0.1", "x"));
+        assertTrue(failures.isKnownFailure("d@example.com", "10.0.0.1", "x"));
+    }
+
+    @Test
+    void testRecordFailure_ShouldDropExpiredEntries() {
+        // Arrange
+        failures.recordFailure("a@example.com", "10.0.0.1", "x");
+        failures.recordFailure("b@example.com", "10.0.0.1", "x");
+        now.addAndGet(5000);
+
+        // Act
+        failures.recordFailure("c@example.com", "10.0.0.1", "x");
+
+        // Assert
+        assertEquals(1, failures.size());
+        assertTrue(failures.isKnownFailure("c@example.com", "10.0.0.1", "x"));
+    }
+
+    // =============== Tests for forget ===============
+
+    @Test
+    void testForget_ShouldDropEveryPasswordAndAddressOfEmailOnly() {
+        // Arrange
+        failures.recordFailure("User@Example.com", "10.0.0.1", "one");
+        failures.recordFailure("user@example.com", "10.0.0.1", "two");
+        failures.recordFailure("user@example.com", "10.0.0.2", "one");
+        failures.recordFailure("other@example.com", "10.0.0.1", "one");
+
+        // Act
+        failures.forget("user@example.com");
+
+        // Assert
+        assertFalse(failures.isKnownFailure("User@Example.com", "10.0.0.1", "one"));
+        assertFalse(failures.isKnownFailure("user@example.com", "10.0.0.1", "two"));
+        assertFalse(failures.isKnownFailure("user@example.com", "10.0.0.2", "one"));
+        assertTrue(failures.isKnownFailure("other@example.com", "10.0.0.1", "one"));
+    }
+}
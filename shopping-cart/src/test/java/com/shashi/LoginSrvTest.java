@@ -143,4 +143,25 @@ class LoginSrvTest {
         assertTrue(dispatcherArgument.getValue().startsWith("login.jsp?message="));
         verify(requestDispatcher).forward(request, response);
     }
+
+    @Test
+    void testDoGet_WhenCustomerLockedOut_ShouldTellHowLongToWait() throws Exception {
+        // Arrange
+        when(request.getParameter("username")).thenReturn("lockedout@example.com");
+        when(request.getParameter("usertype")).thenReturn("customer");
+        when(request.getRemoteAddr()).thenReturn("10.0.0.1");
+        when(resultSet.next()).thenReturn(false);
+        for (int i = 0; i < 4; i++) {
+            when(request.getParameter("password")).thenReturn("guess" + i);
+            invokeDoGet();
+        }
+        when(request.getParameter("password")).thenReturn("guess4");
+
+        // Act: the fifth failure locks the email out from this address
+        invokeDoGet();
+
+        // Assert
+        verify(request).getRequestDispatcher(
+                "login.jsp?message=Login Denied! Too many failed attempts, please try again in 1 minute.");
+    }
 }
@@ -1,7 +1,7 @@
 package com.shashi;
 
-import com.shashi.utility.JavaMailUtil;
 import com.shashi.utility.MailMessage;
+import com.shashi.utility.MailOutbox;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -9,22 +9,28 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.MockedStatic;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.verify;
 
 class MailMessageTest {
 
-    private MockedStatic<JavaMailUtil> javaMailUtilMockedStatic;
+    private MockedStatic<MailOutbox> mailOutboxMockedStatic;
+    private MailOutbox mailOutbox;
 
     @BeforeEach
     void setUp() {
-        javaMailUtilMockedStatic = mockStatic(JavaMailUtil.class);
+        mailOutbox = mock(MailOutbox.class);
+        mailOutboxMockedStatic = mockStatic(MailOutbox.class);
+        mailOutboxMockedStatic.when(MailOutbox::shared).thenReturn(mailOutbox);
     }
 
     @AfterEach
     void tearDown() {
-        javaMailUtilMockedStatic.close();
+        mailOutboxMockedStatic.close();
     }
 
     @Test
@@ -38,13 +44,26 @@ class MailMessageTest {
         MailMessage.registrationSuccess("test@example.com", "John");
 
         // Assert
-        javaMailUtilMockedStatic.verify(() -> JavaMailUtil.sendMail(recipientCaptor.capture(), subjectCaptor.capture(), bodyCaptor.capture()));
+        verify(mailOutbox).enqueue(recipientCaptor.capture(), subjectCaptor.capture(), bodyCaptor.capture());
         assertEquals("test@example.com", recipientCaptor.getValue());
         assertEquals("Registration Successfull", subjectCaptor.getValue());
         assertTrue(bodyCaptor.getValue().contains("Welcome to Ellison Electronics"));
         assertTrue(bodyCaptor.getValue().contains("Hi John"));
     }
 
+    @Test
+    void testRegistrationSuccess_WhenNameHasMarkup_ShouldEscapeIt() {
+        // Arrange
+        ArgumentCaptor<String> bodyCaptor = ArgumentCaptor.forClass(String.class);
+
+        // Act
+        MailMessage.registrationSuccess("test@example.com", "<script>John</script>");
+
+        // Assert
+        verify(mailOutbox).enqueue(anyString(), anyString(), bodyCaptor.capture());
+        assertTrue(bodyCaptor.getValue().contains("Hi &lt;script&gt;John&lt;/script&gt;,"));
+    }
+
     @Test
     void testTransactionSuccess() {
         // Arrange
@@ -55,7 +74,7 @@ class MailMessageTest {
         MailMessage.transactionSuccess("test@example.com", "Jane", "trans123", 250.75);
 
         // Assert
-        javaMailUtilMockedStatic.verify(() -> JavaMailUtil.sendMail(anyString(), subjectCaptor.capture(), bodyCaptor.capture()));
+        verify(mailOutbox).enqueue(anyString(), subjectCaptor.capture(), bodyCaptor.capture());
         assertEquals("Order Placed at Ellison Electronics", subjectCaptor.getValue());
         assertTrue(bodyCaptor.getValue().contains("Hey Jane"));
         assertTrue(bodyCaptor.getValue().contains("trans123"));
@@ -72,7 +91,7 @@ class MailMessageTest {
         MailMessage.orderShipped("test@example.com", "Doe", "order456", 199.99);
 
         // Assert
-        javaMailUtilMockedStatic.verify(() -> JavaMailUtil.sendMail(anyString(), subjectCaptor.capture(), bodyCaptor.capture()));
+        verify(mailOutbox).enqueue(anyString(), subjectCaptor.capture(), bodyCaptor.capture());
         assertTrue(subjectCaptor.getValue().contains("Your Order has been Shipped"));
         assertTrue(bodyCaptor.getValue().contains("Hey Doe"));
         assertTrue(bodyCaptor.getValue().contains("order456"));
@@ -88,9 +107,24 @@ class MailMessageTest {
         MailMessage.productAvailableNow("test@example.com", "Sam", "Laptop X", "prod789");
 
         // Assert
-        javaMailUtilMockedStatic.verify(() -> JavaMailUtil.sendMail(anyString(), subjectCaptor.capture(), bodyCaptor.capture()));
+        verify(mailOutbox).enqueue(anyString(), subjectCaptor.capture(), bodyCaptor.capture());
         assertTrue(subjectCaptor.getValue().contains("Product Laptop X is Now Available"));
         assertTrue(bodyCaptor.getValue().contains("Hey Sam"));
         assertTrue(bodyCaptor.getValue().contains("prod789"));
     }
+
+    @Test
+    void testProductAvailableNowMail_WhenSameProductForSeveralCustomers_ShouldRenderEachName() {
+        // Act
+        MailOutbox.Mail first = MailMessage.productAvailableNowMail("a@example.com", "Ann", "Laptop X", "prod789");
+        MailOutbox.Mail second = MailMessage.productAvailableNowMail("b@example.com", "Ben", "Laptop X", "prod789");
+        MailOutbox.Mail other = MailMessage.productAvailableNowMail("b@example.com", "Ben", "Phone Y", "prod790");
+
+        // Assert
+        assertTrue(first.getBody().contains("Hey Ann,"));
+        assertTrue(second.getBody().contains("Hey Ben,"));
+        assertEquals(first.getBody().replace("Ann", "Ben"), second.getBody());
+        assertTrue(other.getBody().contains("prod790"));
+        assertFalse(other.getBody().contains("prod789"));
+    }
 }
@@ -0,0 +1,197 @@
+package com.shashi;
+
+import com.shashi.utility.DBUtil;
+import com.shashi.utility.MailOutbox;
+import jakarta.mail.MessagingException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class MailOutboxTest {
+
+    private static final long NOW = 1_000_000L;
+
+    private static final String CLAIM = "update mail_outbox set attempts=?, next_attempt=? where id=? and attempts=?";
+    private static final String DELETE = "delete from mail_outbox where id=?";
+
+    private MailOutbox.Sender sender;
+    private MailOutbox mailOutbox;
+
+    private MockedStatic<DBUtil> dbUtilMockedStatic;
+    private Connection connection;
+    private PreparedStatement preparedStatement;
+    private PreparedStatement claimStatement;
+    private PreparedStatement deleteStatement;
+    private ResultSet resultSet;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        sender = mock(MailOutbox.Sender.class);
+        mailOutbox = new MailOutbox(sender, 1000, 10, 3, 30000, 0, () -> NOW);
+
+        dbUtilMockedStatic = mockStatic(DBUtil.class);
+        connection = mock(Connection.class);
+        preparedStatement = mock(PreparedStatement.class);
+        claimStatement = mock(PreparedStatement.class);
+        deleteStatement = mock(PreparedStatement.class);
+        resultSet = mock(ResultSet.class);
+
+        dbUtilMockedStatic.when(DBUtil::provideConnection).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(connection.prepareStatement(CLAIM)).thenReturn(claimStatement);
+        when(connection.prepareStatement(DELETE)).thenReturn(deleteStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dbUtilMockedStatic.close();
+    }
+
+    private void arrangeOneDueMail(int attempts) throws SQLException {
+        when(resultSet.next()).thenReturn(true, false);
+        when(resultSet.getLong("id")).thenReturn(7L);
+        when(resultSet.getString("recipient")).thenReturn("test@example.com");
+        when(resultSet.getString("subject")).thenReturn("Subject");
+        when(resultSet.getString("body")).thenReturn("<p>Body</p>");
+        when(resultSet.getInt("attempts")).thenReturn(attempts);
+    }
+
+    // =============== Tests for enqueue ===============
+
+    @Test
+    void testEnqueue_WhenInserted_ShouldNotSendOnCallerThread() throws Exception {
+        // Arrange
+        when(preparedStatement.executeUpdate()).thenReturn(1);
+
+        // Act
+        boolean queued = mailOutbox.enqueue("test@example.com", "Subject", "<p>Body</p>");
+
+        // Assert
+        assertTrue(queued);
+        verify(preparedStatement).setString(1, "test@example.com");
+        verify(preparedStatement).setLong(4, NOW);
+        verifyNoInteractions(sender);
+    }
+
+    @Test
+    void testEnqueue_WhenInsertFails_ShouldSendRightAway() throws Exception {
+        // Arrange
+        when(preparedStatement.executeUpdate()).thenThrow(new SQLException("no table"));
+
+        // Act
+        boolean queued = mailOutbox.enqueue("test@example.com", "Subject", "<p>Body</p>");
+
+        // Assert
+        assertTrue(queued);
+        verify(sender).send("test@example.com", "Subject", "<p>Body</p>");
+    }
+
+    @Test
+    void testEnqueue_WhenInsertFailsInTransaction_ShouldNotSendAndMarkRollbackOnly() throws Exception {
+        // Arrange
+        when(preparedStatement.executeUpdate()).thenThrow(new SQLException("no table"));
+        dbUtilMockedStatic.when(DBUtil::isInTransaction).thenReturn(true);
+
+        // Act
+        boolean queued = mailOutbox.enqueue("test@example.com", "Order Placed", "<p>Body</p>");
+
+        // Assert
+        assertFalse(queued);
+        verifyNoInteractions(sender);
+        dbUtilMockedStatic.verify(DBUtil::setRollbackOnly);
+    }
+
+    @Test
+    void testEnqueueList_ShouldInsertAllMailsInOneBatch() throws Exception {
+        // Arrange
+        List<MailOutbox.Mail> mails = Arrays.asList(new MailOutbox.Mail("a@example.com", "Subject", "<p>A</p>"),
+                new MailOutbox.Mail("b@example.com", "Subject", "<p>B</p>"));
+
+        // Act
+        boolean queued = mailOutbox.enqueue(mails);
+
+        // Assert
+        assertTrue(queued);
+        verify(preparedStatement, times(2)).addBatch();
+        verify(preparedStatement, times(1)).executeBatch();
+        verify(preparedStatement, never()).executeUpdate();
+    }
+
+    @Test
+    void testEnqueueList_WhenInsertFails_ShouldNotSendRightAway() throws Exception {
+        // Arrange
+        when(preparedStatement.executeBatch()).thenThrow(new SQLException("no table"));
+
+        // Act
+        boolean queued = mailOutbox.enqueue(Collections.singletonList(new MailOutbox.Mail("a@example.com", "Subject", "<p>A</p>")));
+
+        // Assert
+        assertFalse(queued);
+        verifyNoInteractions(sender);
+    }
+
+    // =============== Tests for drain ===============
+
+    @Test
+    void testDrain_WhenMailIsDue_ShouldClaimSendAndDelete() throws Exception {
+        // Arrange
+        arrangeOneDueMail(0);
+        when(claimStatement.executeUpdate()).thenReturn(1);
+        when(deleteStatement.executeUpdate()).thenReturn(1);
+
+        // Act
+        int sent = mailOutbox.drain();
+
+        // Assert
+        assertEquals(1, sent);
+        verify(claimStatement).setLong(1, 1);
+        verify(claimStatement).setLong(2, NOW + 30000);
+        verify(sender).send("test@example.com", "Subject", "<p>Body</p>");
+        verify(deleteStatement).setLong(1, 7L);
+    }
+
+    @Test
+    void testDrain_WhenSendFails_ShouldKeepMailAndBackOffLonger() throws Exception {
+        // Arrange
+        arrangeOneDueMail(2);
+        when(claimStatement.executeUpdate()).thenReturn(1);
+        doThrow(new MessagingException("smtp down")).when(sender).send(anyString(), anyString(), anyString());
+
+        // Act
+        int sent = mailOutbox.drain();
+
+        // Assert
+        assertEquals(0, sent);
+        verify(claimStatement).setLong(2, NOW + 4 * 30000);
+        verify(preparedStatement).setString(1, "smtp down");
+        verify(deleteStatement, never()).executeUpdate();
+    }
+
+    @Test
+    void testDrain_WhenClaimedByAnotherServer_ShouldNotSend() throws Exception {
+        // Arrange
+        arrangeOneDueMail(0);
+        when(claimStatement.executeUpdate()).thenReturn(0);
+
+        // Act
+        int sent = mailOutbox.drain();
+
+        // Assert
+        assertEquals(0, sent);
+        verifyNoInteractions(sender);
+    }
+}
@@ -0,0 +1,147 @@
+package com.shashi;
+
+import com.shashi.utility.MailTemplate;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MailTemplateTest {
+
+    private static final String SOURCE = "<p>Hey {{name}},</p><p>{{product}} is back for {{ price }}. {{name}}!</p>";
+
+    private MailTemplate newTemplate() {
+        return MailTemplate.compile("test", SOURCE, "name", "product", "price");
+    }
+
+    // =============== Tests for compile ===============
+
+    @Test
+    void testCompile_WhenParameterUnknown_ShouldThrow() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> MailTemplate.compile("test", "Hi {{nmae}}", "name"));
+    }
+
+    @Test
+    void testCompile_WhenParameterNotClosed_ShouldThrow() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> MailTemplate.compile("test", "Hi {{name", "name"));
+    }
+
+    // =============== Tests for load ===============
+
+    @Test
+    void testLoad_WhenTemplateMissing_ShouldThrow() {
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> MailTemplate.load("missing.html", "name"));
+    }
+
+    @Test
+    void testLoad_WhenTemplateOnClasspath_ShouldRenderIt() {
+        // Arrange
+        MailTemplate template = MailTemplate.load("order-shipped.html", "name", "transId", "transAmount");
+
+        // Act
+        String body = template.render("Doe", "order456", 99.5);
+
+        // Assert
+        assertTrue(body.contains("Hey Doe,"));
+        assertTrue(body.contains(">order456<"));
+        assertTrue(body.contains(">99.5<"));
+    }
+
+    // =============== Tests for render ===============
+
+    @Test
+    void testRender_ShouldPutValuesInPlaceOfParameters() {
+        // Act
+        String body = newTemplate().render("Jane", "Laptop X", 250.75);
+
+        // Assert
+        assertEquals("<p>Hey Jane,</p><p>Laptop X is back for 250.75. Jane!</p>", body);
+    }
+
+    @Test
+    void testRender_ShouldEscapeValues() {
+        // Act
+        String body = newTemplate().render("<b>Jane</b>", "Tom & Jerry's \"DVD\"", null);
+
+        // Assert
+        assertEquals("<p>Hey &lt;b&gt;Jane&lt;/b&gt;,</p><p>Tom &amp; Jerry&#39;s &quot;DVD&quot; is back for . "
+                + "&lt;b&gt;Jane&lt;/b&gt;!</p>", body);
+    }
+
+    @Test
+    void testRender_WhenCalledAgain_ShouldNotKeepPreviousEmail() {
+        // Arrange
+        MailTemplate template = newTemplate();
+        template.render("A much longer name than the next one", "Laptop X", 1);
+
+        // Act
+        String body = template.render("Al", "TV", 2);
+
+        // Assert
+        assertEquals("<p>Hey Al,</p><p>TV is back for 2. Al!</p>", body);
+    }
+
+    @Test
+    void testRender_WithOneParameter_ShouldEscapeValue() {
+        // Arrange
+        MailTemplate template = MailTemplate.compile("test", "<p>Hi {{name}}!</p>", "name");
+
+        // Act
+        String body = template.render("Tom & Jerry");
+
+        // Assert
+        assertEquals("<p>Hi Tom &amp; Jerry!</p>", body);
+    }
+
+    @Test
+    void testRender_WhenWrongNumberOfValues_ShouldThrow() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> newTemplate().render("Jane"));
+    }
+
+    @Test
+    void testRenderTo_ShouldAppendLikeRender() {
+        // Arrange
+        StringBuilder sb = new StringBuilder("<!-- header -->");
+
+        // Act
+        newTemplate().renderTo(sb, "Jane", "Tom & Jerry", 250.75);
+
+        // Assert
+        assertEquals("<!-- header --><p>Hey Jane,</p><p>Tom &amp; Jerry is back for 250.75. Jane!</p>", sb.toString());
+    }
+
+    // =============== Tests for bind ===============
+
+    @Test
+    void testBind_ShouldRenderTheSameEmailWithFewerValues() {
+        // Arrange
+        MailTemplate bound = newTemplate().bind("product", "Tom & Jerry").bind("price", 10);
+
+        // Act
+        String body = bound.render("Jane");
+
+        // Assert
+        assertEquals(newTemplate().render("Jane", "Tom & Jerry", 10), body);
+    }
+
+    @Test
+    void testBind_WhenAllParametersBound_ShouldRenderConstantEmail() {
+        // Arrange
+        MailTemplate bound = newTemplate().bind("name", "Jane").bind("product", "TV").bind("price", 5);
+
+        // Act
+        String body = bound.render();
+
+        // Assert
+        assertEquals("<p>Hey Jane,</p><p>TV is back for 5. Jane!</p>", body);
+    }
+
+    @Test
+    void testBind_WhenParameterUnknown_ShouldThrow() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> newTemplate().bind("nmae", "Jane"));
+    }
+}
@@ -5,6 +5,7 @@ import com.shashi.beans.OrderDetails;
 import com.shashi.beans.TransactionBean;
 import com.shashi.service.impl.OrderServiceImpl;
 import com.shashi.utility.DBUtil;
+import com.shashi.utility.MailMessage;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -14,7 +15,9 @@ import java.sql.*;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 class OrderServiceImplTest {
@@ -45,6 +48,73 @@ class OrderServiceImplTest {
         dbUtilMockedStatic.close();
     }
 
+    // =============== Tests for paymentSuccess ===============
+
+    @Test
+    void testPaymentSuccess_WhenCartIsEmpty_ShouldFailWithoutWriting() throws SQLException {
+        // Arrange
+        when(resultSet.next()).thenReturn(false);
+
+        try (MockedStatic<MailMessage> mailMessage = mockStatic(MailMessage.class)) {
+            // Act
+            String result = orderService.paymentSuccess("user1", 100.0);
+
+            // Assert
+            assertEquals("Order Placement Failed!", result);
+            verify(preparedStatement, never()).executeBatch();
+            dbUtilMockedStatic.verify(DBUtil::rollback);
+            dbUtilMockedStatic.verify(DBUtil::commit, never());
+            mailMessage.verifyNoInteractions();
+        }
+    }
+
+    @Test
+    void testPaymentSuccess_WhenAllStatementsSucceed_ShouldCommitAndSendMail() throws SQLException {
+        // Arrange
+        when(resultSet.next()).thenReturn(true, true, false);
+        when(resultSet.getString("prodid")).thenReturn("p1", "p2");
+        when(resultSet.getInt("quantity")).thenReturn(2, 1);
+        when(resultSet.getDouble("pprice")).thenReturn(10.0, 5.0);
+        when(preparedStatement.executeBatch()).thenReturn(new int[] { 1, 1 });
+        when(preparedStatement.executeUpdate()).thenReturn(1);
+
+        try (MockedStatic<MailMessage> mailMessage = mockStatic(MailMessage.class)) {
+            // Act
+            String result = orderService.paymentSuccess("user1", 25.0);
+
+            // Assert
+            assertEquals("Order Placed Successfully!", result);
+            verify(connection).prepareStatement("delete from usercart where username=?");
+            verify(preparedStatement).setDouble(4, 20.0);
+            verify(preparedStatement, times(2)).executeBatch();
+            dbUtilMockedStatic.verify(DBUtil::commit);
+            mailMessage.verify(() -> MailMessage.transactionSuccess(eq("user1"), any(), anyString(), eq(25.0)));
+        }
+    }
+
+    @Test
+    void testPaymentSuccess_WhenStockRunsOut_ShouldRollBack() throws SQLException {
+        // Arrange
+        when(resultSet.next()).thenReturn(true, false);
+        when(resultSet.getString("prodid")).thenReturn("p1");
+        when(resultSet.getInt("quantity")).thenReturn(3);
+        when(resultSet.getDouble("pprice")).thenReturn(10.0);
+        when(preparedStatement.executeBatch()).thenReturn(new int[] { 1 }, new int[] { 0 });
+        when(preparedStatement.executeUpdate()).thenReturn(1);
+
+        try (MockedStatic<MailMessage> mailMessage = mockStatic(MailMessage.class)) {
+            // Act
+            String result = orderService.paymentSuccess("user1", 30.0);
+
+            // Assert
+            assertEquals("Order Placement Failed!", result);
+            verify(connection, never()).prepareStatement("insert into transactions values(?,?,?,?)");
+            dbUtilMockedStatic.verify(DBUtil::rollback);
+            dbUtilMockedStatic.verify(DBUtil::commit, never());
+            mailMessage.verifyNoInteractions();
+        }
+    }
+
     // =============== Tests for addOrder ===============
 
     @Test
@@ -0,0 +1,243 @@
+package com.shashi;
+
+import com.shashi.beans.ProductPage;
+import com.shashi.beans.ProductSummary;
+import com.shashi.service.impl.ProductCatalog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductCatalogTest {
+
+    private final Map<String, ProductSummary> database = new LinkedHashMap<>();
+    private final AtomicInteger fullLoads = new AtomicInteger();
+    private final AtomicInteger singleLoads = new AtomicInteger();
+    private final AtomicLong now = new AtomicLong(1000);
+    private final AtomicBoolean databaseDown = new AtomicBoolean();
+    private ProductCatalog catalog;
+
+    private static ProductSummary product(String id, String name, String type) {
+        return new ProductSummary(id, name, type, name + " info", 100.0, 5);
+    }
+
+    @BeforeEach
+    void setUp() {
+        database.put("p1", product("p1", "Galaxy", "mobile"));
+        database.put("p2", product("p2", "Bravia", "tv"));
+        database.put("p3", product("p3", "Pixel", "mobile"));
+
+        catalog = new ProductCatalog(new ProductCatalog.Loader() {
+            @Override
+            public List<ProductSummary> loadAll() throws SQLException {
+                fullLoads.incrementAndGet();
+                if (databaseDown.get())
+                    throw new SQLException("Connection refused");
+                return new ArrayList<>(database.values());
+            }
+
+            @Override
+            public ProductSummary load(String prodId) throws SQLException {
+                singleLoads.incrementAndGet();
+                if (databaseDown.get())
+                    throw new SQLException("Connection refused");
+                return database.get(prodId);
+            }
+        }, 60000, now::get);
+    }
+
+    // =============== Tests for reads ===============
+
+    @Test
+    void testGetAllProducts_WhenCalledTwice_ShouldLoadOnce() {
+        // Act
+        catalog.getAllProducts();
+        List<ProductSummary> products = catalog.getAllProducts();
+
+        // Assert
+        assertEquals(3, products.size());
+        assertEquals(1, fullLoads.get());
+        assertEquals(1, catalog.getHitCount());
+        assertEquals(1, catalog.getMissCount());
+    }
+
+    @Test
+    void testGetAllProductsByType_ShouldMatchTypeIgnoringCase() {
+        // Act
+        List<ProductSummary> products = catalog.getAllProductsByType("MOBILE");
+
+        // Assert
+        assertEquals(2, products.size());
+        assertEquals("p1", products.get(0).getProdId());
+        assertEquals("p3", products.get(1).getProdId());
+    }
+
+    @Test
+    void testSearchAllProducts_ShouldMatchNameTypeOrInfo() {
+        // Act & Assert
+        assertEquals(1, catalog.searchAllProducts("brav").size());
+        assertEquals(2, catalog.searchAllProducts("mob").size());
+        assertEquals(0, catalog.searchAllProducts("laptop").size());
+    }
+
+    @Test
+    void testGetAllProducts_WhenTtlElapsed_ShouldReloadEverything() {
+        // Arrange
+        catalog.getAllProducts();
+        now.addAndGet(60000);
+
+        // Act
+        catalog.getAllProducts();
+
+        // Assert
+        assertEquals(2, fullLoads.get());
+    }
+
+    @Test
+    void testGetAllProducts_WhenReloadFails_ShouldKeepStaleSnapshotAndRetryLater() {
+        // Arrange
+        catalog.getAllProducts();
+        now.addAndGet(60000);
+        databaseDown.set(true);
+
+        // Act
+        List<ProductSummary> stale = catalog.getAllProducts();
+        catalog.getAllProducts();
+
+        // Assert
+        assertEquals(3, stale.size());
+        assertEquals(2, fullLoads.get());
+
+        // Act
+        databaseDown.set(false);
+        now.addAndGet(10000);
+        catalog.getAllProducts();
+
+        // Assert
+        assertEquals(3, fullLoads.get());
+    }
+
+    @Test
+    void testGetAllProducts_WhenFirstLoadFails_ShouldReturnEmptyWithoutRetryingOnEveryRead() {
+        // Arrange
+        databaseDown.set(true);
+
+        // Act
+        List<ProductSummary> first = catalog.getAllProducts();
+        List<ProductSummary> second = catalog.getAllProducts();
+
+        // Assert
+        assertTrue(first.isEmpty());
+        assertTrue(second.isEmpty());
+        assertEquals(1, fullLoads.get());
+
+        // Act
+        databaseDown.set(false);
+        now.addAndGet(10000);
+
+        // Assert
+        assertEquals(3, catalog.getAllProducts().size());
+    }
+
+    @Test
+    void testIsLoaded_ShouldTellWhetherProductsCouldBeLoaded() {
+        // Arrange
+        databaseDown.set(true);
+
+        // Act & Assert
+        assertFalse(catalog.isLoaded());
+        databaseDown.set(false);
+        now.addAndGet(10000);
+        assertTrue(catalog.isLoaded());
+        database.clear();
+        catalog.invalidateAll();
+        assertTrue(catalog.isLoaded());
+    }
+
+    // =============== Tests for getProductPage ===============
+
+    @Test
+    void testGetProductPage_ShouldWalkThroughAllPagesInOrder() {
+        // Act
+        ProductPage first = catalog.getProductPage(null, null, "name", null, 2);
+        ProductPage second = catalog.getProductPage(null, null, "name", first.getNextPageToken(), 2);
+
+        // Assert
+        assertEquals("Bravia", first.getProducts().get(0).getProdName());
+        assertEquals("Galaxy", first.getProducts().get(1).getProdName());
+        assertTrue(first.hasNextPage());
+        assertEquals(1, second.getProducts().size());
+        assertEquals("Pixel", second.getProducts().get(0).getProdName());
+        assertFalse(second.hasNextPage());
+    }
+
+    @Test
+    void testGetProductPage_WithTypeFilter_ShouldOnlyReturnMatchingProducts() {
+        // Act
+        ProductPage page = catalog.getProductPage("mobile", null, "id", null, 10);
+
+        // Assert
+        assertEquals(2, page.getProducts().size());
+        assertFalse(page.hasNextPage());
+    }
+
+    // =============== Tests for invalidate ===============
+
+    @Test
+    void testInvalidate_ShouldReloadOnlyThatProduct() {
+        // Arrange
+        catalog.getAllProducts();
+        database.put("p2", product("p2", "Bravia XR", "tv"));
+        database.remove("p3");
+        database.put("p4", product("p4", "Macbook", "laptop"));
+
+        // Act
+        catalog.invalidate("p2");
+        catalog.invalidate("p3");
+        catalog.invalidate("p4");
+        List<ProductSummary> products = catalog.getAllProducts();
+
+        // Assert
+        assertEquals(1, fullLoads.get());
+        assertEquals(3, singleLoads.get());
+        assertEquals(3, products.size());
+        assertEquals("Bravia XR", catalog.getProduct("p2").getProdName());
+        assertNull(catalog.getProduct("p3"));
+        assertEquals(1, catalog.getAllProductsByType("laptop").size());
+        assertEquals(2, catalog.getRefreshCount());
+    }
+
+    @Test
+    void testInvalidate_WhenReloadFails_ShouldKeepPreviousProductAndRetryLater() {
+        // Arrange
+        catalog.getAllProducts();
+        database.put("p2", product("p2", "Bravia XR", "tv"));
+        catalog.invalidate("p2");
+        databaseDown.set(true);
+
+        // Act
+        ProductSummary stale = catalog.getProduct("p2");
+        catalog.getProduct("p2");
+
+        // Assert
+        assertEquals("Bravia", stale.getProdName());
+        assertEquals(1, singleLoads.get());
+
+        // Act
+        databaseDown.set(false);
+        now.addAndGet(10000);
+
+        // Assert
+        assertEquals("Bravia XR", catalog.getProduct("p2").getProdName());
+        assertEquals(2, singleLoads.get());
+    }
+}
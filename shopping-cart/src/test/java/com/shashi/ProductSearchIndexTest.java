@@ -0,0 +1,316 @@
+package com.shashi;
+
+import com.shashi.beans.ProductPage;
+import com.shashi.beans.ProductSummary;
+import com.shashi.service.impl.ProductCatalog;
+import com.shashi.service.impl.ProductSearchIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductSearchIndexTest {
+
+    private ProductSearchIndex index;
+
+    private static ProductSummary product(String id, String name, String type, String info) {
+        return new ProductSummary(id, name, type, info, 100.0, 5);
+    }
+
+    @BeforeEach
+    void setUp() {
+        index = new ProductSearchIndex();
+        index.rebuild(Arrays.asList(
+                product("p1", "Samsung Galaxy S21", "mobile", "Android phone with a great camera"),
+                product("p2", "Galaxy Buds", "accessory", "Wireless earbuds"),
+                product("p3", "Pixel 6", "mobile", "Phone by Google, works with the galaxy of Android apps"),
+                product("p4", "Bravia 55", "tv", "Smart TV")));
+    }
+
+    // =============== Tests for search ===============
+
+    @Test
+    void testSearch_WithPrefix_ShouldMatchLongerWords() {
+        // Act
+        List<String> result = index.search("gal", 0);
+
+        // Assert
+        assertEquals(Arrays.asList("p1", "p2", "p3"), result);
+    }
+
+    @Test
+    void testSearch_WhenWordInNameAndInfo_ShouldRankNameFirst() {
+        // Act
+        List<String> result = index.search("galaxy", 0);
+
+        // Assert
+        assertEquals(3, result.size());
+        assertEquals("p3", result.get(2));
+    }
+
+    @Test
+    void testSearch_WithSeveralWords_ShouldRequireAllOfThem() {
+        // Act
+        List<String> result = index.search("Android phone", 0);
+
+        // Assert
+        assertEquals(Arrays.asList("p1", "p3"), result);
+        assertTrue(index.search("galaxy tv", 0).isEmpty());
+    }
+
+    @Test
+    void testSearch_WithLimit_ShouldReturnBestMatches() {
+        // Act
+        List<String> result = index.search("galaxy", 1);
+
+        // Assert
+        assertEquals(1, result.size());
+    }
+
+    @Test
+    void testSearch_WithBlankQuery_ShouldReturnNothing() {
+        // Act & Assert
+        assertTrue(index.search("  ", 0).isEmpty());
+        assertTrue(index.search(null, 0).isEmpty());
+    }
+
+    // =============== Tests for updates ===============
+
+    @Test
+    void testIndex_WhenProductUpdated_ShouldReplaceOldWords() {
+        // Act
+        index.index(product("p4", "Bravia OLED", "tv", "Smart TV"));
+
+        // Assert
+        assertEquals(Collections.singletonList("p4"), index.search("oled", 0));
+        assertTrue(index.search("55", 0).isEmpty());
+    }
+
+    @Test
+    void testRemove_ShouldDropProductFromResults() {
+        // Act
+        index.remove("p2");
+
+        // Assert
+        assertEquals(Arrays.asList("p1", "p3"), index.search("galaxy", 0));
+        assertTrue(index.search("buds", 0).isEmpty());
+    }
+
+    @Test
+    void testRebuild_WithNoProducts_ShouldNotBeReady() {
+        // Arrange
+        ProductSearchIndex empty = new ProductSearchIndex();
+
+        // Act
+        empty.rebuild(new ArrayList<ProductSummary>());
+
+        // Assert
+        assertFalse(empty.isReady());
+        assertTrue(index.isReady());
+    }
+
+    @Test
+    void testCatalogLoad_ShouldRebuildIndex() {
+        // Arrange
+        ProductSearchIndex catalogIndex = new ProductSearchIndex();
+        ProductCatalog catalog = new ProductCatalog(new ProductCatalog.Loader() {
+            @Override
+            public List<ProductSummary> loadAll() {
+                return Collections.singletonList(product("p9", "Galaxy Tab", "tablet", "Tablet"));
+            }
+
+            @Override
+            public ProductSummary load(String prodId) {
+                return null;
+            }
+        }, 60000, () -> 1000L, catalogIndex);
+
+        // Act
+        List<ProductSummary> result = catalog.searchAllProducts("tab");
+
+        // Assert
+        assertTrue(catalogIndex.isReady());
+        assertEquals(1, result.size());
+        assertEquals("p9", result.get(0).getProdId());
+    }
+
+    @Test
+    void testCatalogInvalidate_ShouldReindexReloadedProducts() {
+        // Arrange
+        ProductSearchIndex catalogIndex = new ProductSearchIndex();
+        List<ProductSummary> database = new ArrayList<>(Arrays.asList(
+                product("p1", "Galaxy Tab", "tablet", "Tablet"), product("p2", "Bravia 55", "tv", "Smart TV")));
+        ProductCatalog catalog = new ProductCatalog(new ProductCatalog.Loader() {
+            @Override
+            public List<ProductSummary> loadAll() {
+                return new ArrayList<>(database);
+            }
+
+            @Override
+            public ProductSummary load(String prodId) {
+                return database.stream().filter(p -> p.getProdId().equals(prodId)).findFirst().orElse(null);
+            }
+        }, 60000, () -> 1000L, catalogIndex);
+        catalog.getAllProducts();
+        database.set(0, product("p1", "Pixel Tablet", "tablet", "Tablet"));
+        database.remove(1);
+
+        // Act
+        catalog.invalidate("p1");
+        catalog.invalidate("p2");
+        catalog.getAllProducts();
+
+        // Assert
+        assertEquals(Collections.singletonList("p1"), catalogIndex.search("pixel", 0));
+        assertTrue(catalogIndex.search("galaxy", 0).isEmpty());
+        assertTrue(catalogIndex.search("bravia", 0).isEmpty());
+    }
+
+    @Test
+    void testCatalogLoad_WhenProductSavedDuringLoad_ShouldKeepNewerVersionIndexed() {
+        // Arrange
+        ProductSearchIndex catalogIndex = new ProductSearchIndex();
+        ProductSummary saved = product("p1", "Pixel Tablet", "tablet", "Tablet");
+        ProductCatalog[] catalog = new ProductCatalog[1];
+        catalog[0] = new ProductCatalog(new ProductCatalog.Loader() {
+            @Override
+            public List<ProductSummary> loadAll() {
+                // The product is saved, as ProductServiceImpl does, after the load read its old version
+                List<ProductSummary> read = Collections.singletonList(product("p1", "Galaxy Tab", "tablet", "Tablet"));
+                catalog[0].invalidate("p1");
+                catalogIndex.index(saved);
+                return read;
+            }
+
+            @Override
+            public ProductSummary load(String prodId) {
+                return saved;
+            }
+        }, 60000, () -> 1000L, catalogIndex);
+
+        // Act
+        List<ProductSummary> products = catalog[0].getAllProducts();
+
+        // Assert
+        assertEquals("Pixel Tablet", products.get(0).getProdName());
+        assertEquals(Collections.singletonList("p1"), catalogIndex.search("pixel", 0));
+        assertTrue(catalogIndex.search("galaxy", 0).isEmpty());
+    }
+
+    @Test
+    void testCatalogPage_WithSearchAndNoSort_ShouldListBestMatchFirst() {
+        // Arrange: the product that only mentions the word in its info comes first by id
+        ProductSearchIndex catalogIndex = new ProductSearchIndex();
+        ProductCatalog catalog = new ProductCatalog(new ProductCatalog.Loader() {
+            @Override
+            public List<ProductSummary> loadAll() {
+                return Arrays.asList(product("a1", "Charger", "accessory", "Fits any phone"),
+                        product("b2", "Phone X", "mobile", "Flagship"), product("c3", "Bravia", "tv", "Smart TV"));
+            }
+
+            @Override
+            public ProductSummary load(String prodId) {
+                return null;
+            }
+        }, 60000, () -> 1000L, catalogIndex);
+
+        // Act
+        ProductPage first = catalog.getProductPage(null, "phone", null, null, 1);
+        ProductPage second = catalog.getProductPage(null, "phone", first.getSortBy(), first.getNextPageToken(), 1);
+        ProductPage byId = catalog.getProductPage(null, "phone", "id", null, 10);
+
+        // Assert
+        assertEquals("relevance", first.getSortBy());
+        assertEquals("b2", first.getProducts().get(0).getProdId());
+        assertEquals("a1", second.getProducts().get(0).getProdId());
+        assertFalse(second.hasNextPage());
+        assertEquals("a1", byId.getProducts().get(0).getProdId());
+        assertEquals(2, byId.getProducts().size());
+    }
+
+    // =============== Tests for suggest ===============
+
+    @Test
+    void testSuggest_WithPrefix_ShouldSuggestNamesAndTypes() {
+        // Act
+        List<String> result = index.suggest("Mo", 5);
+
+        // Assert
+        assertEquals(Collections.singletonList("mobile"), result);
+        assertEquals(Arrays.asList("Galaxy Buds", "Samsung Galaxy S21"), index.suggest("galaxy", 5));
+    }
+
+    @Test
+    void testSuggest_WithTypo_ShouldSuggestCloseNames() {
+        // Act
+        List<String> result = index.suggest("brvia", 5);
+
+        // Assert
+        assertEquals(Collections.singletonList("Bravia 55"), result);
+        assertEquals(Collections.singletonList("Samsung Galaxy S21"), index.suggest("samsnug gal", 5));
+    }
+
+    @Test
+    void testSuggest_WithShortQuery_ShouldNotBeFuzzy() {
+        // Act & Assert
+        assertTrue(index.suggest("bx", 5).isEmpty());
+        assertTrue(index.suggest("", 5).isEmpty());
+    }
+
+    @Test
+    void testSuggest_ShouldPutExactPrefixBeforeTypos() {
+        // Arrange
+        index.index(product("p5", "Pixie Lamp", "lighting", "Desk lamp"));
+
+        // Act
+        List<String> result = index.suggest("pixi", 5);
+
+        // Assert
+        assertEquals(Arrays.asList("Pixie Lamp", "Pixel 6"), result);
+        assertEquals(1, index.suggest("pixi", 1).size());
+    }
+
+    @Test
+    void testSuggest_WhenProductRenamedOrRemoved_ShouldFollowChanges() {
+        // Act
+        index.index(product("p4", "Sony Bravia", "tv", "Smart TV"));
+        index.remove("p2");
+
+        // Assert
+        assertEquals(Collections.singletonList("Sony Bravia"), index.suggest("bravia", 5));
+        assertTrue(index.suggest("buds", 5).isEmpty());
+        assertTrue(index.suggest("accessory", 5).isEmpty());
+    }
+
+    @Test
+    void testSuggest_WithManyTypoMatches_ShouldKeepClosestFirstWithinLimit() {
+        // Arrange: the farther names come first in the trie
+        List<ProductSummary> products = new ArrayList<>();
+        for (int i = 1; i <= 30; i++)
+            products.add(product("g" + i, "Gadget " + i, "toy", "A gadget"));
+        products.add(product("g0", "Gidget", "toy", "A gidget"));
+        index.rebuild(products);
+
+        // Act
+        List<String> result = index.suggest("gidgez", 3);
+
+        // Assert
+        assertEquals(Arrays.asList("Gidget", "Gadget 1", "Gadget 10"), result);
+    }
+
+    // =============== Tests for tokenize ===============
+
+    @Test
+    void testTokenize_ShouldSplitAndLowerCaseDistinctWords() {
+        // Act
+        List<String> words = ProductSearchIndex.tokenize("Galaxy S21, galaxy-buds!");
+
+        // Assert
+        assertEquals(Arrays.asList("galaxy", "s21", "buds"), words);
+    }
+}
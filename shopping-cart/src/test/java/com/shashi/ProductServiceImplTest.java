@@ -1,29 +1,44 @@
 package com.shashi;
 
 import com.shashi.beans.ProductBean;
+import com.shashi.beans.ProductPage;
+import com.shashi.beans.ProductSummary;
+import com.shashi.service.ImageStore;
+import com.shashi.service.impl.ImageVariants;
 import com.shashi.service.impl.ProductServiceImpl;
 import com.shashi.utility.DBUtil;
 import com.shashi.utility.IDUtil;
+import com.shashi.utility.PageToken;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.MockedStatic;
 import org.mockito.Mockito;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
 import static org.mockito.Mockito.*;
 
 class ProductServiceImplTest {
 
     private ProductServiceImpl productService;
+    private ImageStore imageStore;
+    private ImageVariants imageVariants;
 
     // Mocks for static utilities
     private MockedStatic<DBUtil> dbUtilMockedStatic;
@@ -36,7 +51,9 @@ class ProductServiceImplTest {
 
     @BeforeEach
     void setUp() throws SQLException {
-        productService = new ProductServiceImpl();
+        imageStore = mock(ImageStore.class);
+        imageVariants = mock(ImageVariants.class);
+        productService = new ProductServiceImpl(imageStore, imageVariants);
 
         // Mock the static utility classes
         dbUtilMockedStatic = mockStatic(DBUtil.class);
@@ -108,6 +125,40 @@ class ProductServiceImplTest {
         assertEquals("Error: " + exceptionMessage, status);
     }
 
+    @Test
+    void testAddProduct_WithImage_ShouldSaveImageAndInsertItsKey() throws Exception {
+        // Arrange
+        when(preparedStatement.executeUpdate()).thenReturn(1);
+        when(imageStore.save(any(InputStream.class))).thenReturn("image-key");
+        ProductBean product = new ProductBean("p1", "Phone", "mobile", "info", 10.0, 1,
+                new ByteArrayInputStream(new byte[]{1, 2, 3}));
+
+        // Act
+        String status = productService.addProduct(product);
+
+        // Assert
+        assertEquals("Product Added Successfully with Product Id: p1", status);
+        verify(connection).prepareStatement(contains("image_key"));
+        verify(preparedStatement).setString(7, "image-key");
+        verify(imageVariants).generate("image-key");
+        verify(preparedStatement, never()).setBlob(anyInt(), any(InputStream.class));
+    }
+
+    @Test
+    void testAddProduct_WhenImageCannotBeSaved_ShouldNotInsert() throws Exception {
+        // Arrange
+        when(imageStore.save(any(InputStream.class))).thenThrow(new IOException("disk full"));
+        ProductBean product = new ProductBean("p1", "Phone", "mobile", "info", 10.0, 1,
+                new ByteArrayInputStream(new byte[]{1, 2, 3}));
+
+        // Act
+        String status = productService.addProduct(product);
+
+        // Assert
+        assertEquals("Error: disk full", status);
+        verify(preparedStatement, never()).executeUpdate();
+    }
+
     // =============== Tests for removeProduct ===============
 
     @Test
@@ -228,7 +279,7 @@ class ProductServiceImplTest {
         when(resultSet.getString(2)).thenReturn("Product 1", "Product 2");
 
         // Act
-        List<ProductBean> products = productService.getAllProducts();
+        List<ProductSummary> products = productService.getAllProducts();
 
         // Assert
         assertNotNull(products);
@@ -243,13 +294,79 @@ class ProductServiceImplTest {
         when(resultSet.next()).thenReturn(false);
 
         // Act
-        List<ProductBean> products = productService.getAllProducts();
+        List<ProductSummary> products = productService.getAllProducts();
 
         // Assert
         assertNotNull(products);
         assertTrue(products.isEmpty());
     }
 
+    @Test
+    void testGetAllProducts_ShouldNeverReadTheImageColumn() throws SQLException {
+        // Arrange
+        when(resultSet.next()).thenReturn(true, false);
+
+        // Act
+        productService.getAllProducts();
+
+        // Assert
+        verify(connection).prepareStatement("select pid, pname, ptype, pinfo, pprice, pquantity, image_key from product");
+        verify(resultSet, never()).getAsciiStream(anyInt());
+        verify(resultSet, never()).getBlob(anyInt());
+    }
+
+    // =============== Tests for getProductPage ===============
+
+    @Test
+    void testGetProductPage_WhenMoreRowsThanPageSize_ShouldReturnNextPageToken() throws SQLException {
+        // Arrange
+        when(resultSet.next()).thenReturn(true, true, true, false);
+        when(resultSet.getString(1)).thenReturn("p1", "p2", "p3");
+
+        // Act
+        ProductPage page = productService.getProductPage(null, null, "id", null, 2);
+
+        // Assert
+        assertEquals(2, page.getProducts().size());
+        assertTrue(page.hasNextPage());
+        assertEquals("p2", PageToken.parse(page.getNextPageToken()).getProdId());
+        verify(connection).prepareStatement(
+                "select pid, pname, ptype, pinfo, pprice, pquantity, image_key from product where 1=1 order by pid limit ?");
+        verify(preparedStatement).setObject(1, 3);
+    }
+
+    @Test
+    void testGetProductPage_WithPriceToken_ShouldSeekPastTheLastProduct() throws SQLException {
+        // Arrange
+        ProductSummary last = new ProductSummary("p7", "Phone", "mobile", "info", 199.5, 3);
+        String token = PageToken.after("price", last).toString();
+        when(resultSet.next()).thenReturn(false);
+
+        // Act
+        ProductPage page = productService.getProductPage(null, null, "price", token, 10);
+
+        // Assert
+        assertFalse(page.hasNextPage());
+        verify(connection).prepareStatement("select pid, pname, ptype, pinfo, pprice, pquantity, image_key from product "
+                + "where 1=1 and (pprice, pid) > (?, ?) order by pprice, pid limit ?");
+        verify(preparedStatement).setObject(1, 199.5);
+        verify(preparedStatement).setObject(2, "p7");
+        verify(preparedStatement).setObject(3, 11);
+    }
+
+    @Test
+    void testGetProductPage_WithSearch_ShouldNotScanTheProductTable() throws SQLException {
+        // Arrange
+        when(resultSet.next()).thenReturn(false);
+
+        // Act
+        productService.getProductPage(null, "phone", null, null, 10);
+        productService.searchAllProducts("phone");
+
+        // Assert
+        verify(connection, never()).prepareStatement(contains("like"));
+    }
+
     // =============== Tests for getProductDetails ===============
 
     @Test
@@ -297,6 +414,37 @@ class ProductServiceImplTest {
         assertArrayEquals(dummyImage, image);
     }
 
+    @Test
+    void testGetImage_WhenImageInStore_ShouldReadItFromStore() throws Exception {
+        // Arrange
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getString("image_key")).thenReturn("image-key");
+        when(imageStore.transferTo(eq("image-key"), any(WritableByteChannel.class))).thenAnswer(invocation -> {
+            WritableByteChannel target = invocation.getArgument(1);
+            return (long) target.write(ByteBuffer.wrap(new byte[]{4, 5}));
+        });
+
+        // Act
+        byte[] image = productService.getImage("p1");
+
+        // Assert
+        assertArrayEquals(new byte[]{4, 5}, image);
+        verify(resultSet, never()).getBytes("image");
+    }
+
+    @Test
+    void testGetImageKey_ShouldReturnStoredKey() throws SQLException {
+        // Arrange
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getString("image_key")).thenReturn("image-key");
+
+        // Act
+        String imageKey = productService.getImageKey("p1");
+
+        // Assert
+        assertEquals("image-key", imageKey);
+    }
+
     @Test
     void testGetImage_WhenImageNotFound_ShouldReturnNull() throws SQLException {
         // Arrange
@@ -400,4 +548,47 @@ class ProductServiceImplTest {
         // Assert
         assertFalse(result);
     }
+
+    @Test
+    void testSellNProduct_ShouldOnlyDecrementWhenEnoughStock() throws SQLException {
+        // Act
+        productService.sellNProduct("p1", 5);
+
+        // Assert
+        verify(connection).prepareStatement("update product set pquantity=(pquantity - ?) where pid=? and pquantity >= ?");
+        verify(preparedStatement).setInt(3, 5);
+    }
+
+    // =============== Tests for sellProducts ===============
+
+    @Test
+    void testSellProducts_ShouldReportEachProduct() throws SQLException {
+        // Arrange
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        quantities.put("p1", 2);
+        quantities.put("p2", 7);
+        when(preparedStatement.executeBatch()).thenReturn(new int[] { 1, 0 });
+
+        // Act
+        Map<String, Boolean> sold = productService.sellProducts(quantities);
+
+        // Assert
+        assertTrue(sold.get("p1"));
+        assertFalse(sold.get("p2"));
+        verify(preparedStatement, times(2)).addBatch();
+    }
+
+    @Test
+    void testSellProducts_WhenSqlExceptionOccurs_ShouldReportNothingSold() throws SQLException {
+        // Arrange
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        quantities.put("p1", 2);
+        when(preparedStatement.executeBatch()).thenThrow(new SQLException("DB error"));
+
+        // Act
+        Map<String, Boolean> sold = productService.sellProducts(quantities);
+
+        // Assert
+        assertFalse(sold.get("p1"));
+    }
 }
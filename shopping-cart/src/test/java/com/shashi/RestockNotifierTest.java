@@ -0,0 +1,205 @@
+package com.shashi;
+
+import com.shashi.service.impl.RestockNotifier;
+import com.shashi.utility.DBUtil;
+import com.shashi.utility.MailOutbox;
+import com.shashi.utility.StockReservations;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.MockedStatic;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class RestockNotifierTest {
+
+    private static final String DELETE = "delete from user_demand where username=? and prodid=?";
+    private static final String UPDATE = "update user_demand set quantity=? where username=? and prodid=?";
+
+    private MailOutbox outbox;
+    private StockReservations reservations;
+    private RestockNotifier notifier;
+
+    private MockedStatic<DBUtil> dbUtilMockedStatic;
+    private Connection connection;
+    private PreparedStatement preparedStatement;
+    private PreparedStatement deleteStatement;
+    private PreparedStatement updateStatement;
+    private ResultSet resultSet;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        outbox = mock(MailOutbox.class);
+        reservations = new StockReservations(60000, () -> 1000L);
+        notifier = new RestockNotifier(outbox, reservations, 0);
+
+        dbUtilMockedStatic = mockStatic(DBUtil.class);
+        connection = mock(Connection.class);
+        preparedStatement = mock(PreparedStatement.class);
+        deleteStatement = mock(PreparedStatement.class);
+        updateStatement = mock(PreparedStatement.class);
+        resultSet = mock(ResultSet.class);
+
+        dbUtilMockedStatic.when(DBUtil::provideConnection).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(connection.prepareStatement(DELETE)).thenReturn(deleteStatement);
+        when(connection.prepareStatement(UPDATE)).thenReturn(updateStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+    }
+
+    @AfterEach
+    void tearDown() {
+        notifier.shutdown();
+        dbUtilMockedStatic.close();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<MailOutbox.Mail> captureQueuedMails() {
+        ArgumentCaptor<List<MailOutbox.Mail>> captor = ArgumentCaptor.forClass(List.class);
+        verify(outbox).enqueue(captor.capture());
+        return captor.getValue();
+    }
+
+    // =============== Tests for notifyNow ===============
+
+    @Test
+    void testNotifyNow_WhenStockServesEveryone_ShouldQueueOneBatchAndDeleteDemandsInOneBatch() throws SQLException {
+        // Arrange
+        when(resultSet.next()).thenReturn(true, true, false);
+        when(resultSet.getString("username")).thenReturn("jane@example.com", "sam@example.com");
+        when(resultSet.getInt("quantity")).thenReturn(2, 1);
+        when(resultSet.getString("name")).thenReturn("Jane Doe", null);
+        when(outbox.enqueue(anyList())).thenReturn(true);
+
+        // Act
+        int notified = notifier.notifyNow("prod1", "Laptop X", 5);
+
+        // Assert
+        assertEquals(2, notified);
+        List<MailOutbox.Mail> mails = captureQueuedMails();
+        assertEquals(2, mails.size());
+        assertEquals("jane@example.com", mails.get(0).getRecipient());
+        assertTrue(mails.get(0).getBody().contains("Hey Jane,"));
+        assertEquals("sam@example.com", mails.get(1).getRecipient());
+        assertTrue(mails.get(1).getSubject().contains("Laptop X"));
+        verify(deleteStatement, times(2)).addBatch();
+        verify(deleteStatement, times(1)).executeBatch();
+        verify(updateStatement, never()).addBatch();
+        dbUtilMockedStatic.verify(DBUtil::commit);
+    }
+
+    @Test
+    void testNotifyNow_WhenMailsCannotBeQueued_ShouldKeepDemands() throws SQLException {
+        // Arrange
+        when(resultSet.next()).thenReturn(true, false);
+        when(resultSet.getString("username")).thenReturn("jane@example.com");
+        when(resultSet.getInt("quantity")).thenReturn(1);
+        when(resultSet.getString("name")).thenReturn("Jane Doe");
+        when(outbox.enqueue(anyList())).thenReturn(false);
+
+        // Act
+        int notified = notifier.notifyNow("prod1", "Laptop X", 5);
+
+        // Assert
+        assertEquals(-1, notified);
+        verify(deleteStatement, never()).executeBatch();
+        dbUtilMockedStatic.verify(DBUtil::rollback);
+        dbUtilMockedStatic.verify(DBUtil::commit, never());
+    }
+
+    @Test
+    void testNotifyNow_WhenNobodyWaiting_ShouldNotQueueAnything() throws SQLException {
+        // Arrange
+        when(resultSet.next()).thenReturn(false);
+
+        // Act
+        int notified = notifier.notifyNow("prod1", "Laptop X", 5);
+
+        // Assert
+        assertEquals(0, notified);
+        verify(outbox, never()).enqueue(anyList());
+        verify(deleteStatement, never()).executeBatch();
+    }
+
+    @Test
+    void testNotifyNow_WhenStockRunsOut_ShouldNotifyOnlyCustomersServedAndKeepRestQueued() throws SQLException {
+        // Arrange
+        when(resultSet.next()).thenReturn(true, true, true, false);
+        when(resultSet.getString("username")).thenReturn("jane@example.com", "sam@example.com", "max@example.com");
+        when(resultSet.getInt("quantity")).thenReturn(2, 3, 1);
+        when(resultSet.getString("name")).thenReturn("Jane Doe", "Sam Smith", "Max Power");
+        when(outbox.enqueue(anyList())).thenReturn(true);
+
+        // Act
+        int notified = notifier.notifyNow("prod1", "Laptop X", 4);
+
+        // Assert
+        assertEquals(2, notified);
+        List<MailOutbox.Mail> mails = captureQueuedMails();
+        assertEquals("jane@example.com", mails.get(0).getRecipient());
+        assertEquals("sam@example.com", mails.get(1).getRecipient());
+        verify(deleteStatement).setString(1, "jane@example.com");
+        verify(updateStatement).setInt(1, 1);
+        verify(updateStatement).setString(2, "sam@example.com");
+        verify(updateStatement, times(1)).executeBatch();
+        verify(resultSet, times(2)).next();
+    }
+
+    @Test
+    void testNotifyNow_WhenUnitsHeldInCarts_ShouldOnlyMatchTheRest() throws SQLException {
+        // Arrange
+        reservations.reserve("other@example.com", "prod1", 3, 4);
+        when(resultSet.next()).thenReturn(true, true, false);
+        when(resultSet.getString("username")).thenReturn("jane@example.com", "sam@example.com");
+        when(resultSet.getInt("quantity")).thenReturn(1, 1);
+        when(outbox.enqueue(anyList())).thenReturn(true);
+
+        // Act
+        int notified = notifier.notifyNow("prod1", "Laptop X", 4);
+
+        // Assert
+        assertEquals(1, notified);
+        assertEquals(1, captureQueuedMails().size());
+    }
+
+    @Test
+    void testNotifyNow_WhenHoldConfigured_ShouldHoldMatchedUnitsForCustomers() throws SQLException {
+        // Arrange
+        notifier = new RestockNotifier(outbox, reservations, 60000);
+        when(resultSet.next()).thenReturn(true, false);
+        when(resultSet.getString("username")).thenReturn("jane@example.com");
+        when(resultSet.getInt("quantity")).thenReturn(2);
+        when(outbox.enqueue(anyList())).thenReturn(true);
+
+        // Act
+        notifier.notifyNow("prod1", "Laptop X", 3);
+
+        // Assert
+        assertEquals(1, reservations.available("sam@example.com", "prod1", 3));
+        assertEquals(3, reservations.available("jane@example.com", "prod1", 3));
+    }
+
+    // =============== Tests for productRestocked ===============
+
+    @Test
+    void testProductRestocked_WhenShutDown_ShouldReturnFalse() {
+        // Arrange
+        notifier.shutdown();
+
+        // Act
+        boolean queued = notifier.productRestocked("prod1", "Laptop X", 5);
+
+        // Assert
+        assertFalse(queued);
+    }
+}
@@ -0,0 +1,96 @@
+package com.shashi;
+
+import com.shashi.beans.ProductSummary;
+import com.shashi.service.impl.ProductSearchIndex;
+import com.shashi.srv.SearchSuggestSrv;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+class SearchSuggestSrvTest {
+
+    private SearchSuggestSrv searchSuggestSrv;
+
+    @Mock
+    private HttpServletRequest request;
+    @Mock
+    private HttpServletResponse response;
+
+    private final StringWriter body = new StringWriter();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        searchSuggestSrv = new SearchSuggestSrv();
+        when(response.getWriter()).thenReturn(new PrintWriter(body));
+
+        ProductSearchIndex.shared().rebuild(Arrays.asList(
+                new ProductSummary("p1", "Galaxy \"Note\"", "mobile", "Phone", 100.0, 5),
+                new ProductSummary("p2", "Galaxy Tab", "tablet", "Tablet", 100.0, 5),
+                new ProductSummary("p3", "Pixel", "mobile", "Phone", 100.0, 5)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        ProductSearchIndex.shared().rebuild(new ArrayList<ProductSummary>());
+    }
+
+    private void invokeDoGet() throws Exception {
+        Method doGet = SearchSuggestSrv.class.getDeclaredMethod("doGet", HttpServletRequest.class, HttpServletResponse.class);
+        doGet.setAccessible(true);
+        doGet.invoke(searchSuggestSrv, request, response);
+    }
+
+    // =============== Tests for doGet ===============
+
+    @Test
+    void testDoGet_WithQuery_ShouldWriteJsonArray() throws Exception {
+        // Arrange
+        when(request.getParameter("q")).thenReturn("gal");
+
+        // Act
+        invokeDoGet();
+
+        // Assert
+        verify(response).setContentType("application/json");
+        assertEquals("[\"Galaxy \\\"Note\\\"\",\"Galaxy Tab\"]", body.toString());
+    }
+
+    @Test
+    void testDoGet_WithLimit_ShouldCapSuggestions() throws Exception {
+        // Arrange
+        when(request.getParameter("q")).thenReturn("gal");
+        when(request.getParameter("limit")).thenReturn("1");
+
+        // Act
+        invokeDoGet();
+
+        // Assert
+        assertEquals("[\"Galaxy \\\"Note\\\"\"]", body.toString());
+    }
+
+    @Test
+    void testDoGet_WithoutQuery_ShouldWriteEmptyArray() throws Exception {
+        // Arrange
+        when(request.getParameter("limit")).thenReturn("abc");
+
+        // Act
+        invokeDoGet();
+
+        // Assert
+        assertEquals("[]", body.toString());
+    }
+}
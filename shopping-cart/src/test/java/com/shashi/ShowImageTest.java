@@ -0,0 +1,315 @@
+package com.shashi;
+
+import com.shashi.beans.ProductSummary;
+import com.shashi.service.ImageStore;
+import com.shashi.service.impl.FileImageStore;
+import com.shashi.service.impl.ImageVariants;
+import com.shashi.service.impl.ProductCatalog;
+import com.shashi.srv.ShowImage;
+import com.shashi.utility.DBUtil;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockedStatic;
+import org.mockito.MockitoAnnotations;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class ShowImageTest {
+
+    private ShowImage showImage;
+
+    @Mock
+    private HttpServletRequest request;
+    @Mock
+    private HttpServletResponse response;
+    @Mock
+    private ProductCatalog catalog;
+    @Mock
+    private ImageVariants imageVariants;
+
+    @TempDir
+    Path storeDir;
+
+    private MockedStatic<ProductCatalog> catalogMockedStatic;
+    private MockedStatic<FileImageStore> imageStoreMockedStatic;
+    private MockedStatic<ImageVariants> imageVariantsMockedStatic;
+    private FileImageStore store;
+
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private final byte[] jpeg = {(byte) 0xff, (byte) 0xd8, (byte) 0xff, 0x01, 0x02, 0x03};
+    private ProductSummary product;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        showImage = new ShowImage();
+
+        store = new FileImageStore(storeDir);
+        product = new ProductSummary("p1", "Phone", "mobile", "info", 10.0, 1);
+        product.setProdImageKey(store.save(new ByteArrayInputStream(jpeg)));
+
+        catalogMockedStatic = mockStatic(ProductCatalog.class);
+        catalogMockedStatic.when(ProductCatalog::shared).thenReturn(catalog);
+        // Only shared() is replaced: the store itself relies on static helpers
+        imageStoreMockedStatic = mockStatic(FileImageStore.class, CALLS_REAL_METHODS);
+        imageStoreMockedStatic.when(FileImageStore::shared).thenReturn(store);
+        imageVariantsMockedStatic = mockStatic(ImageVariants.class);
+        imageVariantsMockedStatic.when(ImageVariants::shared).thenReturn(imageVariants);
+        when(catalog.getProduct("p1")).thenReturn(product);
+
+        when(request.getParameter("pid")).thenReturn("p1");
+        when(request.getDateHeader(anyString())).thenReturn(-1L);
+        when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+
+            @Override
+            public void write(int b) {
+                body.write(b);
+            }
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        catalogMockedStatic.close();
+        imageStoreMockedStatic.close();
+        imageVariantsMockedStatic.close();
+    }
+
+    private void invokeDoGet() throws Exception {
+        Method doGet = ShowImage.class.getDeclaredMethod("doGet", HttpServletRequest.class, HttpServletResponse.class);
+        doGet.setAccessible(true);
+        doGet.invoke(showImage, request, response);
+    }
+
+    private String versionParameter() {
+        return product.getProdImageKey().substring(0, 16);
+    }
+
+    // =============== Tests for url ===============
+
+    @Test
+    void testUrl_WithStoredImage_ShouldCarryImageVersion() {
+        // Act
+        String url = ShowImage.url(product);
+
+        // Assert
+        assertEquals("./ShowImage?pid=p1&v=" + product.getProdImageKey().substring(0, 16), url);
+        assertEquals("./ShowImage?pid=p2", ShowImage.url(new ProductSummary("p2", "Tv", "tv", "info", 1.0, 1)));
+        assertEquals(url + "&size=card", ShowImage.url(product, ImageVariants.Size.CARD));
+    }
+
+    // =============== Tests for doGet ===============
+
+    @Test
+    void testDoGet_WithVersionedUrl_ShouldSendImageCachedForLong() throws Exception {
+        // Arrange
+        when(request.getParameter("v")).thenReturn(versionParameter());
+
+        // Act
+        invokeDoGet();
+
+        // Assert
+        assertArrayEquals(jpeg, body.toByteArray());
+        verify(response).setContentType("image/jpeg");
+        verify(response).setContentLengthLong(jpeg.length);
+        verify(response).setHeader("ETag", "\"" + product.getProdImageKey() + "\"");
+        verify(response).setHeader("Cache-Control", "public, max-age=31536000, immutable");
+        verify(response).setDateHeader(eq("Last-Modified"), anyLong());
+    }
+
+    @Test
+    void testDoGet_WithGeneratedVariant_ShouldSendVariant() throws Exception {
+        // Arrange
+        byte[] thumb = {(byte) 0xff, (byte) 0xd8, (byte) 0xff, 0x09};
+        store.saveVariant(product.getProdImageKey(), "thumb", new ByteArrayInputStream(thumb));
+        when(request.getParameter("v")).thenReturn(versionParameter());
+        when(request.getParameter("size")).thenReturn("thumb");
+
+        // Act
+        invokeDoGet();
+
+        // Assert
+        assertArrayEquals(thumb, body.toByteArray());
+        verify(response).setHeader("ETag", "\"" + ImageStore.variantKey(product.getProdImageKey(), "thumb") + "\"");
+        verify(response).setHeader("Cache-Control", "public, max-age=31536000, immutable");
+        verify(imageVariants, never()).generate(anyString());
+    }
+
+    @Test
+    void testDoGet_WithMissingVariant_ShouldSendOriginalAndQueueVariants() throws Exception {
+        // Arrange
+        when(request.getParameter("v")).thenReturn(versionParameter());
+        when(request.getParameter("size")).thenReturn("card");
+
+        // Act
+        invokeDoGet();
+
+        // Assert
+        assertArrayEquals(jpeg, body.toByteArray());
+        verify(imageVariants).generate(product.getProdImageKey());
+        verify(response).setHeader("Cache-Control", "no-cache");
+    }
+
+    @Test
+    void testDoGet_WithoutVersion_ShouldAskBrowserToRevalidate() throws Exception {
+        // Act
+        invokeDoGet();
+
+        // Assert
+        assertArrayEquals(jpeg, body.toByteArray());
+        verify(response).setHeader("Cache-Control", "no-cache");
+    }
+
+    @Test
+    void testDoGet_WithMatchingIfNoneMatch_ShouldSendNotModified() throws Exception {
+        // Arrange
+        when(request.getHeader("If-None-Match")).thenReturn("\"other\", W/\"" + product.getProdImageKey() + "\"");
+
+        // Act
+        invokeDoGet();
+
+        // Assert
+        verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        assertEquals(0, body.size());
+    }
+
+    @Test
+    void testDoGet_WithOtherIfNoneMatch_ShouldSendImage() throws Exception {
+        // Arrange
+        when(request.getHeader("If-None-Match")).thenReturn("\"other\"");
+        when(request.getDateHeader("If-Modified-Since")).thenReturn(System.currentTimeMillis() + 60000);
+
+        // Act
+        invokeDoGet();
+
+        // Assert
+        verify(response, never()).setStatus(anyInt());
+        assertArrayEquals(jpeg, body.toByteArray());
+    }
+
+    @Test
+    void testDoGet_WhenNotModifiedSince_ShouldSendNotModified() throws Exception {
+        // Arrange
+        when(request.getDateHeader("If-Modified-Since")).thenReturn(System.currentTimeMillis() + 60000);
+
+        // Act
+        invokeDoGet();
+
+        // Assert
+        verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        assertEquals(0, body.size());
+    }
+
+    @Test
+    void testDoGet_WhenModifiedSince_ShouldSendImage() throws Exception {
+        // Arrange
+        when(request.getDateHeader("If-Modified-Since")).thenReturn(0L);
+
+        // Act
+        invokeDoGet();
+
+        // Assert
+        verify(response, never()).setStatus(anyInt());
+        assertArrayEquals(jpeg, body.toByteArray());
+    }
+
+    // =============== Tests for the noimage placeholder ===============
+
+    private void arrangeProductWithoutImage(ServletContext context) throws Exception {
+        ServletConfig config = mock(ServletConfig.class);
+        when(config.getServletContext()).thenReturn(context);
+        showImage.init(config);
+        when(request.getParameter("pid")).thenReturn("missing");
+    }
+
+    private void invokeDoGetWithoutDatabaseImage() throws Exception {
+        Connection connection = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(false);
+        try (MockedStatic<DBUtil> dbUtilMockedStatic = mockStatic(DBUtil.class)) {
+            dbUtilMockedStatic.when(DBUtil::provideConnection).thenReturn(connection);
+            invokeDoGet();
+        }
+    }
+
+    @Test
+    void testDoGet_WithoutImage_ShouldSendPlaceholderLoadedAtInit() throws Exception {
+        // Arrange
+        ServletContext context = mock(ServletContext.class);
+        when(context.getResourceAsStream("/images/noimage.jpg")).thenReturn(new ByteArrayInputStream(jpeg));
+        arrangeProductWithoutImage(context);
+
+        // Act
+        invokeDoGetWithoutDatabaseImage();
+        invokeDoGetWithoutDatabaseImage();
+
+        // Assert
+        verify(context, times(1)).getResourceAsStream("/images/noimage.jpg");
+        verify(response, times(2)).setContentType("image/jpeg");
+        verify(response, times(2)).setContentLength(jpeg.length);
+        verify(response, times(2)).setHeader("Cache-Control", "no-cache");
+        assertEquals(jpeg.length * 2, body.size());
+    }
+
+    @Test
+    void testDoGet_WithMatchingPlaceholderEtag_ShouldSendNotModified() throws Exception {
+        // Arrange
+        ServletContext context = mock(ServletContext.class);
+        when(context.getResourceAsStream("/images/noimage.jpg")).thenReturn(new ByteArrayInputStream(jpeg));
+        arrangeProductWithoutImage(context);
+        when(request.getHeader("If-None-Match"))
+                .thenReturn("\"" + DigestUtils.sha256Hex(jpeg) + "\"");
+
+        // Act
+        invokeDoGetWithoutDatabaseImage();
+
+        // Assert
+        verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        assertEquals(0, body.size());
+    }
+
+    @Test
+    void testDoGet_WithMissingPlaceholderFile_ShouldSendNotFound() throws Exception {
+        // Arrange
+        arrangeProductWithoutImage(mock(ServletContext.class));
+
+        // Act
+        invokeDoGetWithoutDatabaseImage();
+
+        // Assert
+        verify(response).sendError(HttpServletResponse.SC_NOT_FOUND);
+        assertEquals(0, body.size());
+    }
+}
@@ -0,0 +1,169 @@
+package com.shashi;
+
+import com.shashi.utility.SmtpTransportPool;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class SmtpTransportPoolTest {
+
+    private final List<Transport> opened = new ArrayList<>();
+    private SmtpTransportPool pool;
+    private Message message;
+
+    private Transport connect() {
+        Transport transport = mock(Transport.class);
+        opened.add(transport);
+        return transport;
+    }
+
+    private SmtpTransportPool newPool(int maxSize, int maxMessagesPerConnection, long idleTimeoutMillis) {
+        return new SmtpTransportPool(this::connect, maxSize, maxMessagesPerConnection, idleTimeoutMillis, 50);
+    }
+
+    @BeforeEach
+    void setUp() {
+        message = mock(Message.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null)
+            pool.close();
+    }
+
+    // =============== Tests for send ===============
+
+    @Test
+    void testSend_WhenSendingSeveralEmails_ShouldReuseOneConnection() throws MessagingException {
+        // Arrange
+        pool = newPool(2, 100, 60000);
+
+        // Act
+        pool.send(message);
+        pool.send(message);
+        pool.send(message);
+
+        // Assert
+        assertEquals(1, opened.size());
+        verify(opened.get(0), times(3)).sendMessage(eq(message), any());
+        verify(opened.get(0), never()).close();
+        verify(message, times(3)).saveChanges();
+        assertEquals(3, pool.getSentCount());
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    void testSend_WhenConnectionReachedMessageLimit_ShouldOpenNewConnection() throws MessagingException {
+        // Arrange
+        pool = newPool(2, 2, 60000);
+
+        // Act
+        pool.send(message);
+        pool.send(message);
+        pool.send(message);
+
+        // Assert
+        assertEquals(2, opened.size());
+        verify(opened.get(0)).close();
+        verify(opened.get(1), never()).close();
+    }
+
+    @Test
+    void testSend_WhenConnectionIdleTooLong_ShouldCloseItAndOpenNewOne() throws MessagingException {
+        // Arrange
+        pool = newPool(2, 100, 0);
+
+        // Act
+        pool.send(message);
+        pool.send(message);
+
+        // Assert
+        assertEquals(2, opened.size());
+        verify(opened.get(0)).close();
+    }
+
+    @Test
+    void testSend_WhenPooledConnectionWasDropped_ShouldRetryOnNewConnection() throws MessagingException {
+        // Arrange
+        pool = newPool(2, 100, 60000);
+        pool.send(message);
+        doThrow(new MessagingException("connection reset")).when(opened.get(0)).sendMessage(eq(message), any());
+
+        // Act
+        pool.send(message);
+
+        // Assert
+        assertEquals(2, opened.size());
+        verify(opened.get(0)).close();
+        verify(opened.get(1)).sendMessage(eq(message), any());
+        assertEquals(2, pool.getSentCount());
+    }
+
+    @Test
+    void testSend_WhenNewConnectionFails_ShouldThrowWithoutRetrying() {
+        // Arrange
+        pool = new SmtpTransportPool(() -> {
+            Transport transport = connect();
+            doThrow(new MessagingException("server unavailable")).when(transport).sendMessage(any(), any());
+            return transport;
+        }, 2, 100, 60000, 50);
+
+        // Act & Assert
+        assertThrows(MessagingException.class, () -> pool.send(message));
+        assertEquals(1, opened.size());
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    @Test
+    void testSend_WhenRecipientRefused_ShouldKeepConnection() throws MessagingException {
+        // Arrange
+        pool = newPool(2, 100, 60000);
+        pool.send(message);
+        doThrow(new SendFailedException("invalid address")).when(opened.get(0)).sendMessage(eq(message), any());
+
+        // Act & Assert
+        assertThrows(SendFailedException.class, () -> pool.send(message));
+        assertEquals(1, opened.size());
+        verify(opened.get(0), never()).close();
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    void testSend_WhenPoolClosed_ShouldThrow() {
+        // Arrange
+        pool = newPool(2, 100, 60000);
+        pool.close();
+
+        // Act & Assert
+        assertThrows(MessagingException.class, () -> pool.send(message));
+        assertTrue(opened.isEmpty());
+    }
+
+    // =============== Tests for close ===============
+
+    @Test
+    void testClose_ShouldCloseIdleConnections() throws MessagingException {
+        // Arrange
+        pool = newPool(2, 100, 60000);
+        pool.send(message);
+
+        // Act
+        pool.close();
+
+        // Assert
+        verify(opened.get(0)).close();
+        assertEquals(0, pool.getIdleCount());
+    }
+}
@@ -0,0 +1,126 @@
+package com.shashi;
+
+import com.shashi.utility.StockReservations;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StockReservationsTest {
+
+    private final AtomicLong now = new AtomicLong(1000);
+    private StockReservations reservations;
+
+    @BeforeEach
+    void setUp() {
+        reservations = new StockReservations(60000, now::get);
+    }
+
+    // =============== Tests for reserve ===============
+
+    @Test
+    void testReserve_WhenEnoughStock_ShouldGrantFullQuantity() {
+        // Act
+        int granted = reservations.reserve("user1", "p1", 3, 5);
+
+        // Assert
+        assertEquals(3, granted);
+        assertEquals(2, reservations.available("user2", "p1", 5));
+        assertEquals(5, reservations.available("user1", "p1", 5));
+    }
+
+    @Test
+    void testReserve_WhenOthersHoldStock_ShouldGrantOnlyTheRest() {
+        // Arrange
+        reservations.reserve("user1", "p1", 4, 5);
+
+        // Act
+        int granted = reservations.reserve("user2", "p1", 3, 5);
+
+        // Assert
+        assertEquals(1, granted);
+        assertEquals(0, reservations.reserve("user3", "p1", 1, 5));
+    }
+
+    @Test
+    void testReserve_WhenOwnHoldRenewed_ShouldReplaceNotAdd() {
+        // Arrange
+        reservations.reserve("user1", "p1", 2, 5);
+
+        // Act
+        int granted = reservations.reserve("user1", "p1", 5, 5);
+
+        // Assert
+        assertEquals(5, granted);
+    }
+
+    @Test
+    void testReserve_WhenHoldExpired_ShouldFreeStock() {
+        // Arrange
+        reservations.reserve("user1", "p1", 5, 5);
+        now.addAndGet(60000);
+
+        // Act
+        int granted = reservations.reserve("user2", "p1", 5, 5);
+
+        // Assert
+        assertEquals(5, granted);
+    }
+
+    // =============== Tests for releaseAll ===============
+
+    @Test
+    void testReleaseAll_ShouldFreeEveryHoldOfTheUser() {
+        // Arrange
+        reservations.reserve("user1", "p1", 2, 2);
+        reservations.reserve("user1", "p2", 1, 1);
+
+        // Act
+        reservations.releaseAll("user1");
+
+        // Assert
+        assertEquals(2, reservations.available("user2", "p1", 2));
+        assertEquals(1, reservations.available("user2", "p2", 1));
+    }
+
+    // =============== Tests for hold ===============
+
+    @Test
+    void testHold_WhenUserAlreadyHoldsSome_ShouldAddToTheHold() {
+        // Arrange
+        reservations.reserve("user1", "p1", 2, 10);
+
+        // Act
+        int granted = reservations.hold("user1", "p1", 3, 10, 5000);
+
+        // Assert
+        assertEquals(3, granted);
+        assertEquals(5, reservations.available("user2", "p1", 10));
+    }
+
+    @Test
+    void testHold_WhenOthersHoldStock_ShouldAddOnlyTheRest() {
+        // Arrange
+        reservations.reserve("user1", "p1", 4, 5);
+
+        // Act
+        int granted = reservations.hold("user2", "p1", 3, 5, 5000);
+
+        // Assert
+        assertEquals(1, granted);
+    }
+
+    @Test
+    void testHold_WhenExpired_ShouldFreeTheUnits() {
+        // Arrange
+        reservations.hold("user1", "p1", 3, 5, 5000);
+
+        // Act
+        now.addAndGet(5000);
+
+        // Assert
+        assertEquals(5, reservations.available("user2", "p1", 5));
+    }
+}
@@ -0,0 +1,83 @@
+package com.shashi;
+
+import com.shashi.srv.UnitOfWorkFilter;
+import com.shashi.utility.DBUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockedStatic;
+import org.mockito.MockitoAnnotations;
+
+import javax.servlet.FilterChain;
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletRequest;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class UnitOfWorkFilterTest {
+
+    private UnitOfWorkFilter filter;
+
+    @Mock
+    private HttpServletRequest request;
+    @Mock
+    private HttpServletResponse response;
+    @Mock
+    private RequestDispatcher requestDispatcher;
+    @Mock
+    private FilterChain chain;
+
+    private MockedStatic<DBUtil> dbUtilMockedStatic;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        filter = new UnitOfWorkFilter();
+        when(request.getRequestDispatcher("userHome.jsp")).thenReturn(requestDispatcher);
+        dbUtilMockedStatic = mockStatic(DBUtil.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dbUtilMockedStatic.close();
+    }
+
+    // =============== Tests for doFilter ===============
+
+    @Test
+    void testDoFilter_ShouldRunChainInsideUnitOfWork() throws Exception {
+        // Act
+        filter.doFilter(request, response, chain);
+
+        // Assert
+        verify(chain).doFilter(any(ServletRequest.class), eq(response));
+        dbUtilMockedStatic.verify(DBUtil::beginUnitOfWork);
+        dbUtilMockedStatic.verify(DBUtil::endUnitOfWork);
+    }
+
+    @Test
+    void testDoFilter_WhenServletForwards_ShouldReleaseConnectionBeforePageRenders() throws Exception {
+        // Arrange
+        doAnswer(invocation -> {
+            ServletRequest wrapped = invocation.getArgument(0);
+            wrapped.getRequestDispatcher("userHome.jsp").forward(wrapped, response);
+            return null;
+        }).when(chain).doFilter(any(ServletRequest.class), eq(response));
+        doAnswer(invocation -> {
+            // the page runs without the connection of the unit of work
+            dbUtilMockedStatic.verify(DBUtil::releaseConnection);
+            return null;
+        }).when(requestDispatcher).forward(any(ServletRequest.class), eq(response));
+
+        // Act
+        filter.doFilter(request, response, chain);
+
+        // Assert
+        verify(requestDispatcher).forward(any(ServletRequest.class), eq(response));
+        dbUtilMockedStatic.verify(DBUtil::endUnitOfWork);
+    }
+}
@@ -2,6 +2,7 @@
 package com.shashi;
 
 import com.shashi.beans.UserBean;
+import com.shashi.service.impl.LoginFailureCache;
 import com.shashi.service.impl.UserServiceImpl;
 import com.shashi.utility.DBUtil;
 import com.shashi.utility.MailMessage;
@@ -14,6 +15,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -23,6 +25,9 @@ class UserServiceImplTest {
 
     private UserServiceImpl userService;
 
+    private final AtomicLong now = new AtomicLong(1000);
+    private LoginFailureCache failures;
+
     // Mocks for static utilities
     private MockedStatic<DBUtil> dbUtilMockedStatic;
     private MockedStatic<MailMessage> mailMessageMockedStatic;
@@ -34,7 +39,8 @@ class UserServiceImplTest {
 
     @BeforeEach
     void setUp() throws SQLException {
-        userService = new UserServiceImpl();
+        failures = new LoginFailureCache(10000, 5, 100, now::get);
+        userService = new UserServiceImpl(failures);
 
         // Mock the static utility classes
         dbUtilMockedStatic = mockStatic(DBUtil.class);
@@ -207,6 +213,117 @@ class UserServiceImplTest {
         assertNull(user);
     }
 
+    // =============== Tests for authenticate ===============
+
+    @Test
+    void testAuthenticate_WhenCredentialsAreValid_ShouldReturnUserBeanWithOneQuery() throws SQLException {
+        // Arrange
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getString("name")).thenReturn("Test User");
+        when(resultSet.getString("email")).thenReturn("test@example.com");
+
+        // Act
+        UserBean user = userService.authenticate("test@example.com", "password", "10.0.0.1");
+
+        // Assert
+        assertNotNull(user);
+        assertEquals("Test User", user.getName());
+        verify(connection, times(1)).prepareStatement("select * from user where email=? and password=?");
+        verify(preparedStatement, times(1)).executeQuery();
+        dbUtilMockedStatic.verify(() -> DBUtil.closeConnection(connection));
+        assertEquals(0, failures.size());
+    }
+
+    @Test
+    void testAuthenticate_WhenSameWrongPasswordRetried_ShouldNotQueryAgain() throws SQLException {
+        // Arrange
+        when(resultSet.next()).thenReturn(false);
+        assertNull(userService.authenticate("test@example.com", "wrong", "10.0.0.1"));
+
+        // Act
+        UserBean user = userService.authenticate("test@example.com", "wrong", "10.0.0.1");
+
+        // Assert
+        assertNull(user);
+        verify(preparedStatement, times(1)).executeQuery();
+    }
+
+    @Test
+    void testAuthenticate_WhenNewPasswordTriedEachTime_ShouldStopQueryingAfterMaxFailures() throws SQLException {
+        // Arrange
+        when(resultSet.next()).thenReturn(false);
+        for (int i = 0; i < 5; i++)
+            userService.authenticate("test@example.com", "guess" + i, "10.0.0.1");
+
+        // Act
+        UserBean user = userService.authenticate("test@example.com", "guess5", "10.0.0.1");
+
+        // Assert
+        assertNull(user);
+        verify(preparedStatement, times(5)).executeQuery();
+    }
+
+    @Test
+    void testAuthenticate_WhenOtherAddressLockedOut_ShouldStillLetUserIn() throws SQLException {
+        // Arrange
+        when(resultSet.next()).thenReturn(false);
+        for (int i = 0; i < 5; i++)
+            userService.authenticate("test@example.com", "guess" + i, "10.0.0.1");
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getString("email")).thenReturn("test@example.com");
+
+        // Act
+        UserBean user = userService.authenticate("test@example.com", "password", "10.0.0.2");
+
+        // Assert
+        assertNotNull(user);
+        verify(preparedStatement, times(6)).executeQuery();
+    }
+
+    @Test
+    void testAuthenticate_WhenFailureExpired_ShouldQueryAgain() throws SQLException {
+        // Arrange
+        when(resultSet.next()).thenReturn(false);
+        userService.authenticate("test@example.com", "wrong", "10.0.0.1");
+        now.addAndGet(10000);
+
+        // Act
+        userService.authenticate("test@example.com", "wrong", "10.0.0.1");
+
+        // Assert
+        verify(preparedStatement, times(2)).executeQuery();
+    }
+
+    @Test
+    void testAuthenticate_WhenDatabaseFails_ShouldNotRememberFailure() throws SQLException {
+        // Arrange
+        when(preparedStatement.executeQuery()).thenThrow(new SQLException("DB error"));
+
+        // Act
+        UserBean user = userService.authenticate("test@example.com", "password", "10.0.0.1");
+
+        // Assert
+        assertNull(user);
+        assertEquals(0, failures.size());
+    }
+
+    @Test
+    void testAuthenticate_WhenUserRegistersAfterFailedLogin_ShouldQueryAgain() throws SQLException {
+        // Arrange
+        when(resultSet.next()).thenReturn(false);
+        userService.authenticate("new@example.com", "password", "10.0.0.1");
+        when(preparedStatement.executeUpdate()).thenReturn(1);
+        userService.registerUser(new UserBean("New User", 1234567890L, "new@example.com", "1 Test St", 12345, "password"));
+        when(resultSet.next()).thenReturn(true);
+
+        // Act
+        UserBean user = userService.authenticate("new@example.com", "password", "10.0.0.1");
+
+        // Assert
+        assertNotNull(user);
+        assertEquals(0, failures.size());
+    }
+
     // =============== Tests for getFName ===============
 
     @Test